@@ -21,9 +21,16 @@ package asaintsever.tinyworld.cfg;
 
 import java.util.Map;
 
+import asaintsever.tinyworld.metadata.extractor.Extract;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
 import lombok.ToString;
 
+/**
+ * TinyWorld configuration. Sections and settings added after first release are initialized with
+ * their defaults, so that config files created by previous versions can still be used as is.
+ * Numeric settings left to 0 mean default value unless stated otherwise.
+ */
 @ToString
 public class Configuration {
     public UI ui;
@@ -42,6 +49,7 @@ public class Configuration {
         @ToString
         public class PhotoTree {
             public Filter filter;
+            public int pageSize;
 
             @ToString
             public class Filter {
@@ -54,6 +62,12 @@ public class Configuration {
     public class INDEXOR {
         public Cluster cluster;
         public Photo photo;
+        public Ingestion ingestion = new Ingestion();
+        public Bulk bulk = new Bulk();
+        public Cache cache = new Cache();
+        public Spool spool = new Spool();
+        public Thumbnails thumbnails = new Thumbnails();
+        public Watch watch = new Watch();
 
         @ToString
         public class Cluster {
@@ -61,11 +75,41 @@ public class Configuration {
             public String address;
             public int port;
             public String index;
+            public String backend;
+            public Transport transport = new Transport();
 
             @ToString
             public class Embedded {
                 public boolean enabled;
                 public boolean expose;
+                public Tuning tuning = new Tuning();
+
+                @ToString
+                public class Tuning {
+                    public String preset;
+                    public String indexBufferSize;
+                    public int writeThreads;
+                    public int searchThreads;
+                    public String storeType;
+                    public String breakerLimit;
+                    public boolean singleNode;
+                }
+            }
+
+            @ToString
+            public class Transport {
+                public int maxConnPerRoute;
+                public int maxConnTotal;
+                public int keepAlive;
+                public int ioThreads;
+                public int connectTimeout;
+                public int socketTimeout;
+                public int maxInFlightRequests;
+                public int maxPendingRequests;
+                public Integer maxRetries; // Boxed: 0 disables retries
+                public int retryBackoff;
+                public Integer circuitBreakerThreshold; // Boxed: 0 disables circuit breaker
+                public int circuitBreakerOpenTime;
             }
         }
 
@@ -73,5 +117,49 @@ public class Configuration {
         public class Photo {
             public PhotoMetadata defaultMetadata;
         }
+
+        @ToString
+        public class Ingestion {
+            public int ioWorkers = Extract.AUTO_WORKERS;
+            public int cpuWorkers = Extract.AUTO_WORKERS;
+            public int magickWorkers = Extract.DEFAULT_IMAGE_MAGICK_WORKERS; // 0 starts one process per photo
+            public int decodeMemoryMb = Extract.AUTO_DECODE_MEMORY;
+        }
+
+        @ToString
+        public class Bulk {
+            public int actions;
+            public int sizeMb;
+            public int flushInterval;
+            public int concurrentRequests;
+        }
+
+        @ToString
+        public class Cache {
+            public boolean enabled;
+            public int maxEntries;
+            public int ttl;
+        }
+
+        @ToString
+        public class Spool {
+            public boolean enabled;
+            public int segmentSizeMb;
+            public int maxBackoff;
+        }
+
+        @ToString
+        public class Thumbnails {
+            public boolean enabled;
+            public int packSizeMb;
+            public int compactionThreshold;
+        }
+
+        @ToString
+        public class Watch {
+            public boolean enabled;
+            public int debounce = (int) WatchSettings.DEFAULT_DEBOUNCE_MS;
+            public int reconcileInterval = (int) (WatchSettings.DEFAULT_RECONCILE_INTERVAL_MS / 1000); // 0 disables
+        }
     }
 }
@@ -45,6 +45,36 @@ public class LoaderTest {
         assertEquals(cfg.indexor.cluster.port, 9200);
         assertEquals(cfg.indexor.cluster.index, "photos");
         assertEquals(cfg.ui.photoTree.filter.template, "year_month");
+        assertEquals(cfg.ui.photoTree.pageSize, 100);
+        assertEquals(cfg.indexor.ingestion.ioWorkers, 0);
+        assertEquals(cfg.indexor.ingestion.cpuWorkers, 0);
+        assertEquals(cfg.indexor.ingestion.magickWorkers, 2);
+        assertEquals(cfg.indexor.ingestion.decodeMemoryMb, 0);
+        assertEquals(cfg.indexor.bulk.actions, 500);
+        assertEquals(cfg.indexor.bulk.sizeMb, 5);
+        assertEquals(cfg.indexor.cache.enabled, true);
+        assertEquals(cfg.indexor.cache.maxEntries, 1000);
+        assertEquals(cfg.indexor.cache.ttl, 300);
+        assertEquals(cfg.indexor.spool.enabled, true);
+        assertEquals(cfg.indexor.spool.segmentSizeMb, 64);
+        assertEquals(cfg.indexor.spool.maxBackoff, 300);
+        assertEquals(cfg.indexor.thumbnails.enabled, true);
+        assertEquals(cfg.indexor.thumbnails.packSizeMb, 64);
+        assertEquals(cfg.indexor.thumbnails.compactionThreshold, 50);
+        assertEquals(cfg.indexor.watch.enabled, false);
+        assertEquals(cfg.indexor.watch.debounce, 2000);
+        assertEquals(cfg.indexor.watch.reconcileInterval, 900);
+        assertEquals(cfg.indexor.cluster.backend, "opensearch");
+        assertEquals(cfg.indexor.cluster.transport.maxConnPerRoute, 10);
+        assertEquals(cfg.indexor.cluster.transport.socketTimeout, 30000);
+        assertEquals(cfg.indexor.cluster.transport.maxInFlightRequests, 64);
+        assertEquals(cfg.indexor.cluster.transport.maxPendingRequests, 1024);
+        assertEquals(cfg.indexor.cluster.transport.maxRetries, 3);
+        assertEquals(cfg.indexor.cluster.transport.retryBackoff, 200);
+        assertEquals(cfg.indexor.cluster.transport.circuitBreakerThreshold, 5);
+        assertEquals(cfg.indexor.cluster.transport.circuitBreakerOpenTime, 10000);
+        assertEquals(cfg.indexor.cluster.embedded.tuning.preset, "default");
+        assertEquals(cfg.indexor.cluster.embedded.tuning.writeThreads, 0);
     }
 
     @Test
@@ -59,6 +89,14 @@ public class LoaderTest {
     @SetEnvironmentVariable(key = "TW_IDX_CLUSTER_PORT", value = "9210")
     @SetEnvironmentVariable(key = "TW_IDX_CLUSTER_INDEX", value = "test")
     @SetEnvironmentVariable(key = "TW_UI_PHOTOTREE_FILTER_TMPL", value = "country_year_month")
+    @SetEnvironmentVariable(key = "TW_UI_PHOTOTREE_PAGE_SIZE", value = "50")
+    @SetEnvironmentVariable(key = "TW_IDX_INGEST_IO_WORKERS", value = "4")
+    @SetEnvironmentVariable(key = "TW_IDX_INGEST_CPU_WORKERS", value = "2")
+    @SetEnvironmentVariable(key = "TW_IDX_INGEST_MAGICK_WORKERS", value = "0")
+    @SetEnvironmentVariable(key = "TW_IDX_INGEST_DECODE_MEMORY_MB", value = "128")
+    @SetEnvironmentVariable(key = "TW_IDX_THUMBNAILS_ENABLED", value = "false")
+    @SetEnvironmentVariable(key = "TW_IDX_WATCH_ENABLED", value = "true")
+    @SetEnvironmentVariable(key = "TW_IDX_WATCH_RECONCILE_INTERVAL", value = "0")
     void loadDefaultInternalConfigOverrideWithEnv() {
         Configuration cfg = Loader.getConfig(false);
         assertNotNull(cfg);
@@ -71,6 +109,14 @@ public class LoaderTest {
         assertEquals(cfg.indexor.cluster.port, 9210);
         assertEquals(cfg.indexor.cluster.index, "test");
         assertEquals(cfg.ui.photoTree.filter.template, "country_year_month");
+        assertEquals(cfg.ui.photoTree.pageSize, 50);
+        assertEquals(cfg.indexor.ingestion.ioWorkers, 4);
+        assertEquals(cfg.indexor.ingestion.cpuWorkers, 2);
+        assertEquals(cfg.indexor.ingestion.magickWorkers, 0);
+        assertEquals(cfg.indexor.ingestion.decodeMemoryMb, 128);
+        assertFalse(cfg.indexor.thumbnails.enabled);
+        assertTrue(cfg.indexor.watch.enabled);
+        assertEquals(cfg.indexor.watch.reconcileInterval, 0);
     }
 
     @Test
@@ -88,5 +134,18 @@ public class LoaderTest {
         assertEquals(cfg.indexor.cluster.port, 9200);
         assertEquals(cfg.indexor.cluster.index, "my_index");
         assertEquals(cfg.ui.photoTree.filter.template, "year_country_month");
+
+        // Sections missing in config file get their defaults
+        assertEquals(cfg.ui.photoTree.pageSize, 0);
+        assertEquals(cfg.indexor.cluster.transport.maxInFlightRequests, 0);
+        assertNull(cfg.indexor.cluster.embedded.tuning.preset);
+        assertEquals(cfg.indexor.ingestion.magickWorkers, 2);
+        assertEquals(cfg.indexor.bulk.actions, 0);
+        assertFalse(cfg.indexor.cache.enabled);
+        assertFalse(cfg.indexor.spool.enabled);
+        assertFalse(cfg.indexor.thumbnails.enabled);
+        assertFalse(cfg.indexor.watch.enabled);
+        assertEquals(cfg.indexor.watch.debounce, 2000);
+        assertEquals(cfg.indexor.watch.reconcileInterval, 900);
     }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Buffered writer sending documents to index by batches. Result of each document is reported
+ * asynchronously to the listener provided when creating the writer. Closing the writer flushes
+ * remaining documents and waits for all results.
+ */
+public interface IBulkWriter<T> extends Closeable {
+
+    void add(T document) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -30,4 +30,10 @@ public interface IIndex {
     Boolean delete() throws IOException;
 
     Boolean clear() throws IOException;
+
+    /**
+     * Upgrade index to current mapping, reindexing documents if index was created with an older mapping
+     * version. Index stays available while migrating.
+     */
+    MigrationReport migrate() throws IOException;
 }
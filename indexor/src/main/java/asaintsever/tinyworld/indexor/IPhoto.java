@@ -20,8 +20,15 @@
 package asaintsever.tinyworld.indexor;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
 import asaintsever.tinyworld.indexor.search.results.IndexPage;
 import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
@@ -30,13 +37,52 @@ public interface IPhoto {
 
     String add(PhotoMetadata photo, boolean allowUpdate) throws IOException;
 
+    List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+            throws IOException;
+
+    IBulkWriter<PhotoMetadata> bulkWriter(boolean allowUpdate, Consumer<BulkItemResult<PhotoMetadata>> resultListener);
+
     PhotoMetadata get(String id) throws IOException;
 
     long count() throws IOException;
 
-    List<TermsAggregation> getAggregations(String searchTemplateId) throws IOException;
+    default List<TermsAggregation> getAggregations(String searchTemplateId) throws IOException {
+        return this.getAggregations(searchTemplateId, null, null);
+    }
+
+    /**
+     * Aggregations of photos matching filter (null for none), in a single request. Bucket sizes can be
+     * null to keep search template defaults.
+     */
+    List<TermsAggregation> getAggregations(String searchTemplateId, PhotoFilter filter, BucketSizes bucketSizes)
+            throws IOException;
+
+    /**
+     * Photos located in viewport and matching filter (null for none), grouped by map tile. Zoom level
+     * (0 to 29) splits the world in 2^zoom x 2^zoom tiles.
+     */
+    List<GeoCluster> getGeoClusters(GeoBoundingBox viewport, int zoom, PhotoFilter filter) throws IOException;
 
     IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException;
 
+    /**
+     * Search returning only included fields of photo metadata, minus excluded ones (e.g. "thumbnail")
+     */
+    IndexPage<PhotoMetadata> search(String query, int from, int size, String[] includes, String[] excludes)
+            throws IOException;
+
+    /**
+     * Search returning projections of photo metadata (e.g. PhotoLocation with PhotoLocation.FIELDS as
+     * includes)
+     */
+    <R> IndexPage<R> search(String query, int from, int size, String[] includes, String[] excludes, Class<R> projection)
+            throws IOException;
+
+    IndexPage<PhotoMetadata> searchWithPointInTime(String query, int size) throws IOException;
+
     IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException;
+
+    <R> IndexPage<R> next(IndexPage<R> page, Class<R> projection) throws IOException;
+
+    void release(IndexPage<?> page);
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Non-blocking variant of IPhoto: calling thread never waits. Futures fail with same exceptions as
+ * IPhoto methods, or with a transient IOException if too many requests are already waiting.
+ */
+public interface IPhotoAsync {
+
+    CompletableFuture<String> add(PhotoMetadata photo, boolean allowUpdate);
+
+    CompletableFuture<PhotoMetadata> get(String id);
+
+    CompletableFuture<Long> count();
+
+    default CompletableFuture<List<TermsAggregation>> getAggregations(String searchTemplateId) {
+        return this.getAggregations(searchTemplateId, null, null);
+    }
+
+    CompletableFuture<List<TermsAggregation>> getAggregations(String searchTemplateId, PhotoFilter filter,
+            BucketSizes bucketSizes);
+
+    CompletableFuture<IndexPage<PhotoMetadata>> search(String query, int from, int size);
+
+    /**
+     * Search returning projections of photo metadata (e.g. PhotoLocation with PhotoLocation.FIELDS as
+     * includes)
+     */
+    <R> CompletableFuture<IndexPage<R>> search(String query, int from, int size, String[] includes, String[] excludes,
+            Class<R> projection);
+
+    CompletableFuture<IndexPage<PhotoMetadata>> next(IndexPage<PhotoMetadata> page);
+
+    <R> CompletableFuture<IndexPage<R>> next(IndexPage<R> page, Class<R> projection);
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import asaintsever.tinyworld.indexor.opensearch.ResilienceStats;
+
+/**
+ * Backend where photos are indexed, chosen when indexor is created: metadata index and photos,
+ * sharing backend's connection (cluster client or local index)
+ */
+public interface IPhotoIndexBackend extends Closeable {
+
+    IIndex metadataIndex();
+
+    /**
+     * Photos read and written directly in backend (no cache)
+     */
+    IPhoto photos();
+
+    IPhotoAsync photosAsync();
+
+    boolean isConnected();
+
+    /**
+     * Connect again to backend
+     */
+    void reset() throws IOException;
+
+    /**
+     * Start a bulk load session on existing index
+     */
+    IBulkLoadSession beginBulkLoad() throws IOException;
+
+    /**
+     * Retries and circuit breaker statistics of requests sent to backend
+     */
+    ResilienceStats resilienceStats();
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor;
+
+import java.io.IOException;
+
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Indexor services shared by photo index backends: mapping, bulk settings, thumbnail store, spool
+ * and cache do not depend on where photos are indexed
+ */
+public interface IPhotoIndexContext {
+
+    String getMapping();
+
+    /**
+     * Version of mapping ("version" in mapping "_meta" section, 1 if none)
+     */
+    int getMappingVersion();
+
+    String getDateFormat();
+
+    BulkSettings getBulkSettings();
+
+    /**
+     * Move thumbnail of photo to thumbnail store (if enabled). Return a copy of photo only keeping its
+     * reference (photo itself is left untouched), to be indexed instead of photo.
+     */
+    PhotoMetadata storeThumbnail(PhotoMetadata photo) throws IOException;
+
+    /**
+     * Bulk writer moving thumbnails of photos to thumbnail store before they are buffered
+     */
+    IBulkWriter<PhotoMetadata> storingThumbnails(IBulkWriter<PhotoMetadata> writer);
+
+    /**
+     * Save photo in spool, to be indexed when spool is replayed. Return false if spool is disabled.
+     */
+    boolean spool(PhotoMetadata photo, boolean allowUpdate) throws IOException;
+
+    /**
+     * Invalidate cached photo with given id (and aggregations), or whole cache if id is null
+     */
+    void invalidateCache(String id);
+
+    /**
+     * Index has been deleted: manifest must not report photos as unchanged anymore, nor spooled photos
+     * be replayed nor thumbnails be kept
+     */
+    void clear() throws IOException;
+}
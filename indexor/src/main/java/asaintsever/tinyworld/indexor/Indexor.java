@@ -22,25 +22,60 @@ package asaintsever.tinyworld.indexor;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import asaintsever.tinyworld.cfg.Configuration;
 import asaintsever.tinyworld.cfg.utils.Utils;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.indexor.cache.CacheSettings;
+import asaintsever.tinyworld.indexor.cache.CacheStats;
+import asaintsever.tinyworld.indexor.cache.CachedPhoto;
+import asaintsever.tinyworld.indexor.lucene.LuceneBackend;
+import asaintsever.tinyworld.indexor.manifest.PhotoManifest;
 import asaintsever.tinyworld.indexor.opensearch.Cluster;
-import asaintsever.tinyworld.indexor.opensearch.Cluster.ClusterNodeException;
+import asaintsever.tinyworld.indexor.opensearch.ClusterBackend;
+import asaintsever.tinyworld.indexor.opensearch.ClusterTuning;
+import asaintsever.tinyworld.indexor.opensearch.ResilienceStats;
+import asaintsever.tinyworld.indexor.opensearch.TransportSettings;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
 import asaintsever.tinyworld.indexor.search.results.IndexPage;
-import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
-import asaintsever.tinyworld.indexor.opensearch.ClusterClient;
-import asaintsever.tinyworld.indexor.opensearch.Document;
-import asaintsever.tinyworld.indexor.opensearch.DocumentAlreadyExistsException;
+import asaintsever.tinyworld.indexor.spool.PhotoSpool;
+import asaintsever.tinyworld.indexor.spool.SpoolReplayer;
+import asaintsever.tinyworld.indexor.spool.SpoolSettings;
+import asaintsever.tinyworld.indexor.thumbnail.ThumbnailStore;
+import asaintsever.tinyworld.indexor.thumbnail.ThumbnailStoreSettings;
+import asaintsever.tinyworld.indexor.watch.LibraryWatch;
 import asaintsever.tinyworld.metadata.extractor.Extract;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
 
 public class Indexor implements Closeable {
     protected static Logger logger = LoggerFactory.getLogger(Indexor.class);
@@ -49,22 +84,43 @@ public class Indexor implements Closeable {
                                                            // external local one)
     public final static int DEFAULT_PORT = 9200;
 
+    public enum Backend {
+        OPENSEARCH, // Embedded or external OpenSearch / Elasticsearch cluster
+        LUCENE // Local Lucene index, written and searched from within the JVM
+    }
+
     private Configuration.INDEXOR indexorCfg;
     private final String host;
     private final int port;
     private final String index;
-    private final boolean useEmbeddedCluster;
+    private final Backend backend;
 
-    private ClusterClient clusterClient;
-    private Cluster embeddedCluster;
+    private final IPhotoIndexContext context = new Context();
+    private final IPhotoIndexBackend photoIndex; // Metadata index and photos of backend
+    private CachedPhoto cachedPhotos; // Null if cache is disabled
 
-    private final MetadataIndex mtdIndx;
-    private final Photo photos;
+    private PhotoManifest manifest;
+    private PhotoSpool spool; // Null if spool is disabled
+    private SpoolReplayer spoolReplayer;
+    private ThumbnailStore thumbnailStore; // Null if thumbnail store is disabled
+    private ThumbnailStoreSettings thumbnailStoreSettings;
+    private BulkSettings bulkSettings = new BulkSettings();
+    private LibraryWatch libraryWatch; // Null if no folder is watched
 
     private final static String DEFAULT_MAPPING = "mapping/tinyworld_photo.json";
+    private final static String DEFAULT_INDEX_SETTINGS = "mapping/tinyworld_photo_settings.json";
+    private final static String THUMBNAIL_REFERENCES_QUERY = "{\"exists\":{\"field\":\"thumbnailId\"}}";
+    private final static int THUMBNAIL_REFERENCES_PAGE_SIZE = 1000;
+
+    // Fields used to cluster photos on the globe: location, and date to pick most recent photo of
+    // clusters
+    public final static String GEO_FIELD = "gpsLatLong";
+    public final static String GEO_CLUSTER_SORT_FIELD = "takenDate";
+
+    private final static ObjectMapper QUERY_MAPPER = new ObjectMapper();
 
     // Init map of Search Templates (<template id>, <template path>) using Java 9 Map<K, V> interface
-    private final static Map<String, String> SEARCH_TEMPLATES = Map.of("country_year_month",
+    public final static Map<String, String> SEARCH_TEMPLATES = Map.of("country_year_month",
             "search_templates/country_year_month.json", "year_country_month",
             "search_templates/year_country_month.json", "year_month", "search_templates/year_month.json");
 
@@ -73,14 +129,21 @@ public class Indexor implements Closeable {
     private static String CLUSTER_PATH_HOME = "index";
     private static String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
     private static String MAPPING;
+    private static String INDEX_SETTINGS;
 
     static {
-        // Load default mapping from internal resource
+        // Load default mapping and index settings from internal resources
         try {
             MAPPING = new String(Utils.getInternalResource(DEFAULT_MAPPING));
         } catch (IOException | URISyntaxException e) {
             logger.error("Fail to load internal mapping (" + DEFAULT_MAPPING + ")", e);
         }
+
+        try {
+            INDEX_SETTINGS = new String(Utils.getInternalResource(DEFAULT_INDEX_SETTINGS));
+        } catch (IOException | URISyntaxException e) {
+            logger.error("Fail to load internal index settings (" + DEFAULT_INDEX_SETTINGS + ")", e);
+        }
     }
 
     public static void setDateFormat(String format) {
@@ -91,88 +154,335 @@ public class Indexor implements Closeable {
         MAPPING = mapping;
     }
 
+    /**
+     * Settings applied when creating index (not used by local index)
+     */
+    public static void setIndexSettings(String settings) {
+        INDEX_SETTINGS = settings;
+    }
+
+    /**
+     * Version of mapping ("version" in mapping "_meta" section, 1 if none)
+     */
+    static int getMappingVersion() {
+        try {
+            return QUERY_MAPPER.readTree(MAPPING).path("_meta").path("version").asInt(1);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid mapping", e);
+        }
+    }
+
     public static void setClusterPathHome(String path) {
         CLUSTER_PATH_HOME = path;
     }
 
+    /**
+     * Compute unique photo metadata id from path
+     */
+    public static String getPhotoId(URL path) {
+        return DigestUtils.sha256Hex(path.toString());
+    }
+
     // Using defaults
     public Indexor(String index) throws Exception {
         this(DEFAULT_HOST, DEFAULT_PORT, index, true, false);
     }
 
+    // Using defaults and given backend
+    public Indexor(String index, Backend backend) throws Exception {
+        this(DEFAULT_HOST, DEFAULT_PORT, index, true, false, new TransportSettings(), new ClusterTuning(), backend);
+    }
+
     // From config file
     public Indexor(Configuration.INDEXOR indexorCfg) throws Exception {
         this(indexorCfg.cluster.address, indexorCfg.cluster.port, indexorCfg.cluster.index,
-                indexorCfg.cluster.embedded.enabled, indexorCfg.cluster.embedded.expose);
+                indexorCfg.cluster.embedded.enabled, indexorCfg.cluster.embedded.expose,
+                getTransportSettings(indexorCfg.cluster.transport),
+                getClusterTuning(indexorCfg.cluster.embedded.tuning), getBackend(indexorCfg.cluster.backend));
         this.indexorCfg = indexorCfg;
+
+        this.bulkSettings = new BulkSettings()
+                .setActions(indexorCfg.bulk.actions > 0 ? indexorCfg.bulk.actions : BulkSettings.DEFAULT_ACTIONS)
+                .setSizeMb(indexorCfg.bulk.sizeMb > 0 ? indexorCfg.bulk.sizeMb : BulkSettings.DEFAULT_SIZE_MB)
+                .setFlushIntervalSeconds(indexorCfg.bulk.flushInterval > 0 ? indexorCfg.bulk.flushInterval
+                        : BulkSettings.DEFAULT_FLUSH_INTERVAL_SECONDS)
+                .setConcurrentRequests(indexorCfg.bulk.concurrentRequests > 0 ? indexorCfg.bulk.concurrentRequests
+                        : BulkSettings.DEFAULT_CONCURRENT_REQUESTS);
+
+        if (indexorCfg.cache.enabled)
+            this.setCache(new CacheSettings()
+                    .setMaxEntries(indexorCfg.cache.maxEntries > 0 ? indexorCfg.cache.maxEntries
+                            : CacheSettings.DEFAULT_MAX_ENTRIES)
+                    .setTtlSeconds(
+                            indexorCfg.cache.ttl > 0 ? indexorCfg.cache.ttl : CacheSettings.DEFAULT_TTL_SECONDS));
+
+        if (indexorCfg.spool.enabled)
+            this.setSpool(new SpoolSettings()
+                    .setSegmentSizeMb(indexorCfg.spool.segmentSizeMb > 0 ? indexorCfg.spool.segmentSizeMb
+                            : SpoolSettings.DEFAULT_SEGMENT_SIZE_MB)
+                    .setMaxBackoffMs(indexorCfg.spool.maxBackoff > 0 ? indexorCfg.spool.maxBackoff * 1000L
+                            : SpoolSettings.DEFAULT_MAX_BACKOFF_MS));
+
+        if (indexorCfg.thumbnails.enabled)
+            this.setThumbnailStore(new ThumbnailStoreSettings()
+                    .setPackSizeMb(indexorCfg.thumbnails.packSizeMb > 0 ? indexorCfg.thumbnails.packSizeMb
+                            : ThumbnailStoreSettings.DEFAULT_PACK_SIZE_MB)
+                    .setCompactionThreshold(
+                            indexorCfg.thumbnails.compactionThreshold > 0 ? indexorCfg.thumbnails.compactionThreshold
+                                    : ThumbnailStoreSettings.DEFAULT_COMPACTION_THRESHOLD));
     }
 
-    @SuppressWarnings("resource")
     public Indexor(String host, int port, String index, boolean useEmbeddedCluster, boolean exposeEmbeddedCluster)
             throws Exception {
+        this(host, port, index, useEmbeddedCluster, exposeEmbeddedCluster, new TransportSettings());
+    }
+
+    public Indexor(String host, int port, String index, boolean useEmbeddedCluster, boolean exposeEmbeddedCluster,
+            TransportSettings transportSettings) throws Exception {
+        this(host, port, index, useEmbeddedCluster, exposeEmbeddedCluster, transportSettings, new ClusterTuning());
+    }
+
+    public Indexor(String host, int port, String index, boolean useEmbeddedCluster, boolean exposeEmbeddedCluster,
+            TransportSettings transportSettings, ClusterTuning clusterTuning) throws Exception {
+        this(host, port, index, useEmbeddedCluster, exposeEmbeddedCluster, transportSettings, clusterTuning,
+                Backend.OPENSEARCH);
+    }
+
+    @SuppressWarnings("resource")
+    private Indexor(String host, int port, String index, boolean useEmbeddedCluster, boolean exposeEmbeddedCluster,
+            TransportSettings transportSettings, ClusterTuning clusterTuning, Backend backend) throws Exception {
         this.host = host;
         this.port = port;
         this.index = index;
-        this.useEmbeddedCluster = useEmbeddedCluster;
-
-        if (this.useEmbeddedCluster) {
-            try {
-                this.embeddedCluster = new Cluster().setHttpPort(port).setPathHome(CLUSTER_PATH_HOME)
-                        .create(exposeEmbeddedCluster);
-            } catch (ClusterNodeException e) {
-                logger.error("Fail to create and start embedded cluster: " + e.getMessage());
-                throw e;
-            }
+        this.backend = backend;
+
+        if (backend == Backend.LUCENE) {
+            // No cluster to start nor connect to: index is stored in a "lucene" directory next to cluster path
+            // home
+            this.photoIndex = new LuceneBackend(
+                    Paths.get(CLUSTER_PATH_HOME).toAbsolutePath().resolveSibling("lucene").resolve(index), index,
+                    this.context, this::photos);
+        } else {
+            Cluster embeddedCluster = useEmbeddedCluster
+                    ? new Cluster().setHttpPort(port).setPathHome(CLUSTER_PATH_HOME).setTuning(clusterTuning)
+                    : null;
+            // Index settings, with store type of embedded cluster tuning
+            String indexSettings = useEmbeddedCluster ? withTuning(INDEX_SETTINGS, clusterTuning) : INDEX_SETTINGS;
+
+            this.photoIndex = new ClusterBackend(host, port, index, embeddedCluster, exposeEmbeddedCluster,
+                    transportSettings, indexSettings, this.context, this.getLocalFile("bulkload"));
         }
 
-        this.clusterClient = new ClusterClient(this.host, this.port);
-        this.mtdIndx = new MetadataIndex().setConnection(this.clusterClient, this.index);
-        this.photos = new Photo().setConnection(this.clusterClient, this.index);
-
-        // Load all search templates into cluster
-        SEARCH_TEMPLATES.forEach((k, v) -> {
-            try {
-                if (!this.clusterClient.isSearchTemplateExists(k)) {
-                    this.clusterClient.loadSearchTemplate(k, v);
-                }
-            } catch (IOException e) {
-                logger.error("Fail to load search template " + k + " from resource " + v + ": " + e.getMessage());
-                throw new RuntimeException(e);
-            }
-        });
-
         // Check metadata extractor prerequisites
         Extract.checkPrerequisites();
     }
 
+    /**
+     * Query DSL matching photos matching filter (if any), to be used with search methods
+     */
+    public static String getFilterQuery(PhotoFilter filter) {
+        try {
+            return QUERY_MAPPER.writeValueAsString(Map.of("bool", Map.of("filter", getFilterClauses(filter))));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid filter " + filter, e);
+        }
+    }
+
+    /**
+     * Query DSL matching photos located in viewport and matching filter (if any)
+     */
+    public static String getGeoQuery(GeoBoundingBox viewport, PhotoFilter filter) {
+        List<Map<String, Object>> clauses = getFilterClauses(filter);
+        clauses.add(getGeoBoundingBoxClause(viewport));
+
+        try {
+            return QUERY_MAPPER.writeValueAsString(Map.of("bool", Map.of("filter", clauses)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid filter " + filter, e);
+        }
+    }
+
+    /**
+     * Search template parameters: filter clauses (inserted in a bool query by templates) and bucket
+     * sizes
+     */
+    public static Map<String, Object> getTemplateParams(PhotoFilter filter, BucketSizes bucketSizes) {
+        Map<String, Object> params = bucketSizes != null ? bucketSizes.toParams() : new HashMap<String, Object>();
+        params.put("filters", getFilterClauses(filter));
+        return params;
+    }
+
+    /**
+     * Search template parameters as JSON, map entries being ordered by key so that same parameters
+     * always give same JSON (e.g. to be used as cache key)
+     */
+    public static String getTemplateParamsJson(PhotoFilter filter, BucketSizes bucketSizes) {
+        try {
+            return QUERY_MAPPER.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsString(getTemplateParams(filter, bucketSizes));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid filter " + filter, e);
+        }
+    }
+
+    /**
+     * Query DSL clauses (one per criterion) of filter
+     */
+    static List<Map<String, Object>> getFilterClauses(PhotoFilter filter) {
+        List<Map<String, Object>> clauses = new ArrayList<Map<String, Object>>();
+
+        if (filter == null)
+            return clauses;
+
+        if (filter.getTakenFrom() != null || filter.getTakenTo() != null) {
+            Map<String, Object> range = new HashMap<String, Object>();
+            range.put("format", "epoch_millis");
+            if (filter.getTakenFrom() != null)
+                range.put("gte", filter.getTakenFrom().getTime());
+            if (filter.getTakenTo() != null)
+                range.put("lt", filter.getTakenTo().getTime());
+
+            clauses.add(Map.of("range", Map.of("takenDate", range)));
+        }
+
+        if (filter.getYear() != null)
+            clauses.add(Map.of("term", Map.of("takenYear", filter.getYear())));
+        if (filter.getMonth() != null)
+            clauses.add(Map.of("term", Map.of("takenMonth", filter.getMonth())));
+        if (filter.getArea() != null)
+            clauses.add(getGeoBoundingBoxClause(filter.getArea()));
+        if (filter.getCountries() != null && !filter.getCountries().isEmpty())
+            clauses.add(Map.of("terms", Map.of("country.keyword", filter.getCountries())));
+        if (filter.getTags() != null && !filter.getTags().isEmpty())
+            clauses.add(Map.of("terms", Map.of("tags.keyword", filter.getTags())));
+        if (filter.getCameraModel() != null)
+            clauses.add(Map.of("term", Map.of("camModelMake.keyword", filter.getCameraModel())));
+
+        return clauses;
+    }
+
+    private static Map<String, Object> getGeoBoundingBoxClause(GeoBoundingBox box) {
+        return Map.of("geo_bounding_box",
+                Map.of(GEO_FIELD, Map.of("top_left", Map.of("lat", box.getTop(), "lon", box.getLeft()), "bottom_right",
+                        Map.of("lat", box.getBottom(), "lon", box.getRight()))));
+    }
+
+    private static TransportSettings getTransportSettings(Configuration.INDEXOR.Cluster.Transport transportCfg) {
+        return new TransportSettings()
+                .setMaxConnPerRoute(transportCfg.maxConnPerRoute > 0 ? transportCfg.maxConnPerRoute
+                        : TransportSettings.DEFAULT_MAX_CONN_PER_ROUTE)
+                .setMaxConnTotal(transportCfg.maxConnTotal > 0 ? transportCfg.maxConnTotal
+                        : TransportSettings.DEFAULT_MAX_CONN_TOTAL)
+                .setKeepAliveSeconds(transportCfg.keepAlive > 0 ? transportCfg.keepAlive
+                        : TransportSettings.DEFAULT_KEEP_ALIVE_SECONDS)
+                .setIoThreads(transportCfg.ioThreads)
+                .setConnectTimeoutMs(transportCfg.connectTimeout > 0 ? transportCfg.connectTimeout
+                        : TransportSettings.DEFAULT_CONNECT_TIMEOUT_MS)
+                .setSocketTimeoutMs(transportCfg.socketTimeout > 0 ? transportCfg.socketTimeout
+                        : TransportSettings.DEFAULT_SOCKET_TIMEOUT_MS)
+                .setMaxInFlightRequests(transportCfg.maxInFlightRequests > 0 ? transportCfg.maxInFlightRequests
+                        : TransportSettings.DEFAULT_MAX_IN_FLIGHT_REQUESTS)
+                .setMaxPendingRequests(transportCfg.maxPendingRequests > 0 ? transportCfg.maxPendingRequests
+                        : TransportSettings.DEFAULT_MAX_PENDING_REQUESTS)
+                .setMaxRetries(transportCfg.maxRetries != null ? transportCfg.maxRetries
+                        : TransportSettings.DEFAULT_MAX_RETRIES)
+                .setRetryBackoffMs(transportCfg.retryBackoff > 0 ? transportCfg.retryBackoff
+                        : TransportSettings.DEFAULT_RETRY_BACKOFF_MS)
+                .setCircuitBreakerThreshold(
+                        transportCfg.circuitBreakerThreshold != null ? transportCfg.circuitBreakerThreshold
+                                : TransportSettings.DEFAULT_CIRCUIT_BREAKER_THRESHOLD)
+                .setCircuitBreakerOpenMs(transportCfg.circuitBreakerOpenTime > 0 ? transportCfg.circuitBreakerOpenTime
+                        : TransportSettings.DEFAULT_CIRCUIT_BREAKER_OPEN_MS);
+    }
+
+    // Store type is an index setting: add it to settings of indices created on the tuned embedded
+    // cluster
+    private static String withTuning(String indexSettings, ClusterTuning clusterTuning) throws JsonProcessingException {
+        if (clusterTuning == null || clusterTuning.getIndexSettings().isEmpty())
+            return indexSettings;
+
+        ObjectNode settings = indexSettings == null ? QUERY_MAPPER.createObjectNode()
+                : (ObjectNode) QUERY_MAPPER.readTree(indexSettings);
+        clusterTuning.getIndexSettings().forEach(settings::put);
+        return QUERY_MAPPER.writeValueAsString(settings);
+    }
+
+    private static ClusterTuning getClusterTuning(Configuration.INDEXOR.Cluster.Embedded.Tuning tuningCfg) {
+        // Values set in config override preset ones
+        ClusterTuning tuning = ClusterTuning.preset(tuningCfg.preset);
+
+        if (tuningCfg.indexBufferSize != null && !tuningCfg.indexBufferSize.isEmpty())
+            tuning.setIndexBufferSize(tuningCfg.indexBufferSize);
+        if (tuningCfg.writeThreads > 0)
+            tuning.setWriteThreads(tuningCfg.writeThreads);
+        if (tuningCfg.searchThreads > 0)
+            tuning.setSearchThreads(tuningCfg.searchThreads);
+        if (tuningCfg.storeType != null && !tuningCfg.storeType.isEmpty())
+            tuning.setStoreType(tuningCfg.storeType);
+        if (tuningCfg.breakerLimit != null && !tuningCfg.breakerLimit.isEmpty())
+            tuning.setBreakerLimit(tuningCfg.breakerLimit);
+        if (tuningCfg.singleNode)
+            tuning.setSingleNode(true);
+
+        return tuning;
+    }
+
+    private static Backend getBackend(String backend) {
+        if (backend == null || backend.isEmpty())
+            return Backend.OPENSEARCH;
+
+        try {
+            return Backend.valueOf(backend.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            String allowed = Arrays.stream(Backend.values()).map(b -> b.name().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.joining("|"));
+            throw new IllegalArgumentException("Unknown indexor.cluster.backend: " + backend + " (" + allowed + ")", e);
+        }
+    }
+
     public PhotoMetadata getDefaultMetadata() {
         return (this.indexorCfg != null && this.indexorCfg.photo != null) ? this.indexorCfg.photo.defaultMetadata
                 : null;
     }
 
-    public boolean isConnected() {
-        return this.clusterClient.isConnected();
+    public BulkSettings getBulkSettings() {
+        return this.bulkSettings;
     }
 
-    public void reset() throws IOException {
-        this.photos.close();
-        this.clusterClient.close();
+    public Indexor setBulkSettings(BulkSettings bulkSettings) {
+        this.bulkSettings = bulkSettings;
+        return this;
+    }
 
-        this.clusterClient = new ClusterClient(this.host, this.port);
+    public Backend getBackend() {
+        return this.backend;
+    }
 
-        this.mtdIndx.setConnection(this.clusterClient, this.index);
-        this.photos.setConnection(this.clusterClient, this.index);
+    public boolean isConnected() {
+        return this.photoIndex.isConnected();
+    }
+
+    public void reset() throws IOException {
+        this.photoIndex.reset();
+        this.invalidateCache(null);
     }
 
     @Override
     public void close() throws IOException {
-        this.photos.close();
-        this.clusterClient.close();
-        this.clusterClient = null;
+        this.watch(null, null, null, null);
+
+        if (this.manifest != null)
+            this.manifest.save();
 
-        if (this.useEmbeddedCluster) {
-            this.embeddedCluster.close();
+        if (this.spool != null) {
+            this.spoolReplayer.close();
+            this.spool.close();
         }
+
+        if (this.thumbnailStore != null)
+            this.thumbnailStore.close();
+
+        this.photoIndex.close();
     }
 
     public String getHost() {
@@ -188,106 +498,355 @@ public class Indexor implements Closeable {
     }
 
     public IIndex metadataIndex() {
-        return this.mtdIndx;
+        return this.photoIndex.metadataIndex();
     }
 
     public IPhoto photos() {
-        return this.photos;
+        if (this.cachedPhotos != null)
+            return this.cachedPhotos;
+
+        return this.photoIndex.photos();
     }
 
-    private class MetadataIndex implements IIndex {
-        private ClusterClient clusterClient;
-        private String index;
+    /**
+     * Cache photos and aggregations read using photos(). Writes done through this indexor invalidate
+     * cache. Null settings to disable cache.
+     */
+    public Indexor setCache(CacheSettings settings) {
+        this.cachedPhotos = settings != null ? new CachedPhoto(this.photoIndex.photos(), settings) : null;
+        return this;
+    }
 
-        public MetadataIndex setConnection(ClusterClient clusterClient, String index) {
-            this.clusterClient = clusterClient;
-            this.index = index;
+    public CacheStats cacheStats() {
+        return this.cachedPhotos != null ? this.cachedPhotos.getStats() : CacheStats.EMPTY;
+    }
+
+    /**
+     * Retries and circuit breaker statistics of requests sent to cluster
+     */
+    public ResilienceStats resilienceStats() {
+        return this.photoIndex.resilienceStats();
+    }
+
+    /**
+     * Invalidate cached photo with given id (and aggregations), or whole cache if id is null
+     */
+    private void invalidateCache(String id) {
+        if (this.cachedPhotos == null)
+            return;
+
+        if (id != null)
+            this.cachedPhotos.invalidate(id);
+        else
+            this.cachedPhotos.invalidateAll();
+    }
+
+    /**
+     * Save photos failing to be indexed in a local spool, replayed in background once cluster is
+     * reachable. Spool segments are stored in local state directory (see getLocalFile()). Null settings
+     * to disable spool. Not available with local index.
+     */
+    public synchronized Indexor setSpool(SpoolSettings settings) throws IOException {
+        if (this.spool != null) {
+            this.spoolReplayer.close();
+            this.spool.close();
+            this.spool = null;
+            this.spoolReplayer = null;
+        }
+
+        if (settings == null)
+            return this;
+
+        if (this.backend == Backend.LUCENE) {
+            logger.warn("Spool ignored: photos are indexed locally");
             return this;
         }
 
-        @Override
-        public Boolean create() throws IOException {
-            return this.clusterClient.createIndex(this.index, MAPPING);
+        this.spool = new PhotoSpool(this.getLocalFile("spool"),
+                new ObjectMapper().setDateFormat(new SimpleDateFormat(DATE_FORMAT)),
+                settings.getSegmentSizeMb() * 1024L * 1024L);
+        this.spoolReplayer = new SpoolReplayer(this.spool, settings, this::isConnected, (photos, allowUpdate) -> {
+            // Bulk requests of replayer do not spool photos: rejected ones are put back in spool by replayer
+            List<BulkItemResult<PhotoMetadata>> results = this.photoIndex.photos().addAll(photos, allowUpdate);
+            results.forEach(res -> invalidateCache(res.getId()));
+            return results;
+        }).start();
+
+        return this;
+    }
+
+    /**
+     * Number of photos waiting in spool
+     */
+    public long spooledPhotos() {
+        return this.spool != null ? this.spool.size() : 0;
+    }
+
+    /**
+     * Keep thumbnails out of index, in a store kept in local state directory: photos added from now on
+     * only reference their thumbnail, to be read with thumbnail(). Null settings to disable store,
+     * thumbnails already in store being no longer available.
+     */
+    public synchronized Indexor setThumbnailStore(ThumbnailStoreSettings settings) throws IOException {
+        if (this.thumbnailStore != null) {
+            this.thumbnailStore.close();
+            this.thumbnailStore = null;
         }
 
-        @Override
-        public Boolean exists() throws IOException {
-            return this.clusterClient.isIndexExists(this.index);
+        this.thumbnailStoreSettings = settings;
+        if (settings == null)
+            return this;
+
+        this.thumbnailStore = new ThumbnailStore(this.getLocalFile("thumbnails"),
+                settings.getPackSizeMb() * 1024L * 1024L);
+        return this;
+    }
+
+    /**
+     * Thumbnail of photo, read from thumbnail store (read-only buffer, no copy) or decoded from photo
+     * metadata for photos indexed with their thumbnail. Null if photo has no thumbnail.
+     */
+    public ByteBuffer thumbnail(PhotoMetadata photo) throws IOException {
+        ThumbnailStore store = this.thumbnailStore;
+        if (store != null && photo.getThumbnailId() != null)
+            return store.get(photo.getThumbnailId());
+
+        if (photo.getThumbnail() == null)
+            return null;
+
+        try {
+            return ByteBuffer.wrap(Base64.getDecoder().decode(photo.getThumbnail()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid thumbnail for photo " + photo.getPath(), e);
         }
+    }
 
-        @Override
-        public Boolean delete() throws IOException {
-            return this.clusterClient.deleteIndex(this.index);
+    /**
+     * Reclaim space of thumbnails no longer referenced by indexed nor spooled photos (e.g. photos
+     * deleted or updated with a new thumbnail). Return number of bytes reclaimed.
+     */
+    public long compactThumbnails() throws IOException {
+        ThumbnailStore store = this.thumbnailStore;
+        ThumbnailStoreSettings settings = this.thumbnailStoreSettings;
+
+        // Nothing referenced without index: store is cleared when index is deleted
+        if (store == null || !this.metadataIndex().exists())
+            return 0;
+
+        Set<String> referenced = new HashSet<String>();
+
+        // Spool is read first: photos replayed meanwhile are then found in index
+        if (this.spool != null) {
+            for (Path segment : this.spool.segments()) {
+                try {
+                    this.spool.read(segment, SpoolSettings.DEFAULT_BATCH_SIZE, batch -> batch.forEach(record -> {
+                        if (record.getPhoto() != null && record.getPhoto().getThumbnailId() != null)
+                            referenced.add(record.getPhoto().getThumbnailId());
+                    }));
+                } catch (NoSuchFileException e) {
+                    // Segment replayed meanwhile
+                }
+            }
         }
 
-        @Override
-        public Boolean clear() throws IOException {
-            try {
-                this.delete();
-            } catch (IOException e) {
-                // Warning in case clear is invoked and index does not exist
-                logger.warn("Fail to delete index " + this.index + ": " + e.getMessage());
+        // Cache is bypassed: references must be read from index
+        IPhoto indexedPhotos = this.photoIndex.photos();
+        IndexPage<PhotoMetadata> page = indexedPhotos.search(THUMBNAIL_REFERENCES_QUERY, 0,
+                THUMBNAIL_REFERENCES_PAGE_SIZE, new String[] { "thumbnailId" }, null, PhotoMetadata.class);
+
+        while (true) {
+            page.get().forEach(photo -> referenced.add(photo.getThumbnailId()));
+            if (page.isLastPage())
+                break;
+
+            page = indexedPhotos.next(page, PhotoMetadata.class);
+        }
+
+        long reclaimed = store.compact(referenced::contains, settings.getCompactionThreshold() / 100.0,
+                settings.getCompactionGracePeriodMs());
+
+        logger.info(
+                "Thumbnail store compacted: " + reclaimed + " bytes reclaimed, " + store.size() + " thumbnail(s) left");
+        return reclaimed;
+    }
+
+    /**
+     * Move thumbnail of photo to thumbnail store (if enabled). Return a copy of photo only keeping its
+     * reference, photo itself being left untouched.
+     */
+    private PhotoMetadata storeThumbnail(PhotoMetadata photo) throws IOException {
+        ThumbnailStore store = this.thumbnailStore;
+        if (store == null || photo.getThumbnail() == null)
+            return photo;
+
+        byte[] thumbnail;
+        try {
+            thumbnail = Base64.getDecoder().decode(photo.getThumbnail());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid thumbnail for photo " + photo.getPath() + ", kept in index: " + e.getMessage());
+            return photo;
+        }
+
+        return photo.copy().setThumbnailId(store.put(thumbnail)).setThumbnail(null);
+    }
+
+    /**
+     * Bulk writer moving thumbnails of photos to thumbnail store before they are buffered
+     */
+    private IBulkWriter<PhotoMetadata> storingThumbnails(IBulkWriter<PhotoMetadata> writer) {
+        return new IBulkWriter<PhotoMetadata>() {
+            @Override
+            public void add(PhotoMetadata photo) throws IOException {
+                writer.add(storeThumbnail(photo));
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
             }
+        };
+    }
+
+    /**
+     * Non-blocking access to photos, to pipeline requests from a single thread. Number of requests in
+     * flight is bounded by transport settings.
+     */
+    public IPhotoAsync photosAsync() {
+        return this.photoIndex.photosAsync();
+    }
+
+    /**
+     * Manifest of indexed photos for incremental ingestion. Manifest file is stored in local state
+     * directory (see getLocalFile()).
+     */
+    public synchronized PhotoManifest manifest() throws IOException {
+        if (this.manifest == null)
+            this.manifest = new PhotoManifest(this.getLocalFile("manifest"));
 
-            return this.create();
+        return this.manifest;
+    }
+
+    /**
+     * Watch folder and index photos added or modified from now on, photos not recorded in manifest
+     * being indexed by first reconciliation. Replaces folder watched so far. Null settings to stop
+     * watching.
+     *
+     * @param resultListener notified with result of each indexed photo, may be null
+     */
+    public synchronized Indexor watch(String path, PhotoMetadata defaultMetadata, WatchSettings settings,
+            Consumer<BulkItemResult<PhotoMetadata>> resultListener) throws IOException {
+        if (this.libraryWatch != null) {
+            this.libraryWatch.close();
+            this.libraryWatch = null;
         }
+
+        if (settings != null)
+            this.libraryWatch = new LibraryWatch(this.photos(), this.manifest(), path, defaultMetadata, settings,
+                    resultListener);
+
+        return this;
     }
 
-    private class Photo implements IPhoto, Closeable {
-        private Document<PhotoMetadata> document;
+    /**
+     * Start a bulk load session on index: refresh, translog fsync and replicas are disabled until
+     * session is closed. Original settings are restored on next start if session is not closed.
+     */
+    public IBulkLoadSession beginBulkLoad() throws IOException {
+        // Settings can only be changed on an existing index
+        if (!this.metadataIndex().exists())
+            this.metadataIndex().create();
+
+        IBulkLoadSession session = this.photoIndex.beginBulkLoad();
+
+        // Photos loaded are only searchable once session is closed (index refreshed): aggregations cached
+        // in the meantime miss them
+        return new IBulkLoadSession() {
+            @Override
+            public boolean isActive() {
+                return session.isActive();
+            }
 
-        public Photo setConnection(ClusterClient clusterClient, String index) {
-            this.document = new Document<>(clusterClient);
+            @Override
+            public void close() throws IOException {
+                try {
+                    session.close();
+                } finally {
+                    if (cachedPhotos != null)
+                        cachedPhotos.invalidateAggregations();
+                }
+            }
+        };
+    }
 
-            // Set index and date format
-            this.document.setIndex(index).getMapper().setDateFormat(new SimpleDateFormat(DATE_FORMAT));
-            return this;
+    /**
+     * File (or directory) holding local state of index (manifest, spool, thumbnail store, bulk load
+     * marker), in a "local" directory next to cluster path home
+     */
+    private Path getLocalFile(String extension) {
+        return Paths.get(CLUSTER_PATH_HOME).toAbsolutePath().resolveSibling("local")
+                .resolve(this.host + "_" + this.port + "_" + this.index + "." + extension);
+    }
+
+    private class Context implements IPhotoIndexContext {
+
+        @Override
+        public String getMapping() {
+            return MAPPING;
         }
 
         @Override
-        public String add(PhotoMetadata photo, boolean allowUpdate) throws IOException {
-            // Compute unique photo metadata id from path
-            String id = DigestUtils.sha256Hex(photo.getPath().toString());
-
-            try {
-                return this.document.add(id, photo, allowUpdate);
-            } catch (DocumentAlreadyExistsException e) {
-                String msg = "Photo [id=" + id + ", path=" + photo.getPath() + "] already exists in index "
-                        + this.document.getIndex();
-                logger.error(msg);
-                throw new IOException(msg, e);
-            }
+        public int getMappingVersion() {
+            return Indexor.getMappingVersion();
         }
 
         @Override
-        public PhotoMetadata get(String id) throws IOException {
-            return this.document.get(id, PhotoMetadata.class);
+        public String getDateFormat() {
+            return DATE_FORMAT;
         }
 
         @Override
-        public long count() throws IOException {
-            return this.document.count();
+        public BulkSettings getBulkSettings() {
+            return bulkSettings;
         }
 
         @Override
-        public List<TermsAggregation> getAggregations(String searchTemplateId) throws IOException {
-            return this.document.getAggregations(searchTemplateId);
+        public PhotoMetadata storeThumbnail(PhotoMetadata photo) throws IOException {
+            return Indexor.this.storeThumbnail(photo);
         }
 
         @Override
-        public IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException {
-            return this.document.search(query, from, size, PhotoMetadata.class);
+        public IBulkWriter<PhotoMetadata> storingThumbnails(IBulkWriter<PhotoMetadata> writer) {
+            return Indexor.this.storingThumbnails(writer);
+        }
+
+        @Override
+        public boolean spool(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+            PhotoSpool photoSpool = spool;
+            if (photoSpool == null)
+                return false;
+
+            photoSpool.append(photo, allowUpdate);
+            return true;
         }
 
         @Override
-        public IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException {
-            return this.document.next(page, PhotoMetadata.class);
+        public void invalidateCache(String id) {
+            Indexor.this.invalidateCache(id);
         }
 
         @Override
-        public void close() throws IOException {
-            if (this.document != null)
-                this.document.close();
+        public void clear() throws IOException {
+            manifest().clear();
+            if (spool != null)
+                spool.clear();
+            if (thumbnailStore != null)
+                thumbnailStore.clear();
+            invalidateCache(null);
         }
     }
 }
@@ -24,6 +24,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,28 +34,34 @@ import org.slf4j.LoggerFactory;
 import com.drew.imaging.FileType;
 import com.drew.metadata.Metadata;
 
+import asaintsever.tinyworld.cfg.Configuration;
+import asaintsever.tinyworld.cfg.Loader;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
 import asaintsever.tinyworld.metadata.extractor.Extract;
 import asaintsever.tinyworld.metadata.extractor.Extract.Result;
 import asaintsever.tinyworld.metadata.extractor.IPhotoProcess;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
 import asaintsever.tinyworld.metadata.extractor.PhotoObject;
 import asaintsever.tinyworld.metadata.extractor.PhotoProcessException;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
 
 public class IndexorCmd {
 
     protected static Logger logger = LoggerFactory.getLogger(IndexorCmd.class);
     private static boolean clearIndex = true;
     private static boolean allowUpdate = false;
+    private static boolean incremental = false;
+    private static boolean watch = false;
 
     private static void usage() {
         System.out.println("Usage: " + IndexorCmd.class.getCanonicalName()
-                + " <full path to ingest> [<boolean to clear index if already exists, default is 'true'>] [<boolean to allow updates in index, default is 'false'>]\n");
+                + " <full path to ingest> [<boolean to clear index if already exists, default is 'true'>] [<boolean to allow updates in index, default is 'false'>] [<boolean to only ingest new or modified photos, default is 'false'>] [<boolean to keep indexing photos added to path until exit, default is 'false'>]\n");
         System.exit(1);
     }
 
     public static void main(String[] args) throws Exception {
         // Check args
-        if (args.length == 0 || args.length > 3)
+        if (args.length == 0 || args.length > 5)
             usage();
 
         String ingestionPath = args[0];
@@ -61,10 +70,20 @@ public class IndexorCmd {
             clearIndex = Boolean.valueOf(args[1]);
         if (args.length >= 3)
             allowUpdate = Boolean.valueOf(args[2]);
+        if (args.length >= 4)
+            incremental = Boolean.valueOf(args[3]);
+        if (args.length >= 5)
+            watch = Boolean.valueOf(args[4]);
+
+        // Watching relies on manifest to skip photos already ingested
+        if (watch)
+            incremental = true;
 
         System.out.println("--> current working directory: " + System.getProperty("user.dir"));
         System.out.println("--> clearIndex: " + clearIndex);
         System.out.println("--> allowUpdate: " + allowUpdate);
+        System.out.println("--> incremental: " + incremental);
+        System.out.println("--> watch: " + watch);
 
         // Create an indexor instance spawning an embedded cluster with expose set to 'true' to be able to
         // connect to it with Elasticvue tool
@@ -77,33 +96,85 @@ public class IndexorCmd {
             if (clearIndex) {
                 // Clear index (may already exists): ie delete then create with default mapping for photo metadata
                 indexor.metadataIndex().clear();
+            } else if (indexor.metadataIndex().exists()) {
+                // Upgrade index created with an older mapping before ingesting new photos
+                MigrationReport report = indexor.metadataIndex().migrate();
+                if (report.isMigrated())
+                    logger.info("Index migrated to mapping v" + report.getToVersion() + ": " + report);
             }
 
-            Result res = Extract.exploreFS(ingestionPath, Integer.MAX_VALUE, new IPhotoProcess() {
+            // Ingestion workers from configuration
+            Configuration cfg = Loader.getConfig(false);
+            int ioWorkers = cfg.indexor.ingestion.ioWorkers;
+            int cpuWorkers = cfg.indexor.ingestion.cpuWorkers;
+            Extract.setImageMagickWorkers(cfg.indexor.ingestion.magickWorkers);
+            Extract.setDecodeMemoryMb(cfg.indexor.ingestion.decodeMemoryMb);
+
+            // Photos are sent by batches: indexing failures are reported once batches are acknowledged
+            List<BulkItemResult<PhotoMetadata>> indexingErrors = Collections
+                    .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
+            Result res;
+
+            // Index settings are relaxed during ingestion and restored once all batches are acknowledged
+            // Modified photos are already in index when ingesting incrementally
+            try (IBulkLoadSession bulkLoad = indexor.beginBulkLoad();
+                    IBulkWriter<PhotoMetadata> writer = indexor.photos().bulkWriter(allowUpdate || incremental,
+                            result -> {
+                                if (!result.isOk())
+                                    indexingErrors.add(result);
+                            })) {
+                res = Extract.exploreFS(ingestionPath, Integer.MAX_VALUE, new IPhotoProcess() {
+
+                    @Override
+                    public void task(URI uri, FileType fileType, Metadata metadata) throws PhotoProcessException {
+                        try {
+                            PhotoObject photo = new PhotoObject(defaultMetadata); // Provide default metadata to be
+                                                                                  // used if not found in photos
+
+                            // Extract then insert photo metadata
+                            PhotoMetadata mtd = photo.extractMetadata(uri, fileType, metadata).getMetadata();
+                            writer.add(mtd);
+                        } catch (IOException | ParseException e) {
+                            throw new PhotoProcessException(e);
+                        }
+                    }
+                }, incremental ? indexor.manifest() : null, ioWorkers, cpuWorkers);
+            }
 
-                @Override
-                public void task(URI uri, FileType fileType, Metadata metadata) throws PhotoProcessException {
-                    try {
-                        PhotoObject photo = new PhotoObject(defaultMetadata); // Provide default metadata to be used if
-                                                                              // not found in photos
+            if (incremental) {
+                // Photos not indexed must be processed again next time
+                for (BulkItemResult<PhotoMetadata> error : indexingErrors)
+                    indexor.manifest().forget(error.getDocument().getPath().toURI());
 
-                        // Extract then insert photo metadata
-                        PhotoMetadata mtd = photo.extractMetadata(uri, fileType, metadata).getMetadata();
-                        indexor.photos().add(mtd, allowUpdate);
-                    } catch (IOException | ParseException e) {
-                        throw new PhotoProcessException(e);
-                    }
-                }
-            });
+                indexor.manifest().save();
+            }
 
-            logger.info("Number of ingested photos: " + res.getProcessed_ok());
+            logger.info("Number of ingested photos: " + (res.getProcessed_ok() - indexingErrors.size()));
             logger.info("Number of skipped files: " + res.getSkipped());
-            logger.info("Number of errors: " + res.getProcessed_nok());
+            logger.info("Number of unchanged photos: " + res.getSkipped_unchanged());
+            logger.info("Number of errors: " + (res.getProcessed_nok() + indexingErrors.size()));
 
-            if (res.getProcessed_nok() > 0) {
+            if (res.getProcessed_nok() > 0 || !indexingErrors.isEmpty()) {
                 System.out.println("\n----- ERRORS ----");
                 for (String msg : res.getErrorMsg())
                     System.out.println("Error msg: " + msg);
+                for (BulkItemResult<PhotoMetadata> error : indexingErrors)
+                    System.out.println("Error msg: " + error.getDocument().getPath() + " [" + error.getStatus() + "] "
+                            + error.getErrorMsg());
+            }
+
+            if (watch) {
+                // Watch settings from configuration
+                WatchSettings watchSettings = new WatchSettings().setDebounceMs(cfg.indexor.watch.debounce)
+                        .setReconcileIntervalMs(cfg.indexor.watch.reconcileInterval * 1000L).setIoWorkers(ioWorkers)
+                        .setCpuWorkers(cpuWorkers);
+
+                indexor.watch(ingestionPath, defaultMetadata, watchSettings, result -> {
+                    if (!result.isOk())
+                        System.out.println("Error msg: " + result.getDocument().getPath() + " [" + result.getStatus()
+                                + "] " + result.getErrorMsg());
+                });
+                logger.info("Watching " + ingestionPath + " for new or modified photos");
             }
 
             System.out.println("\n>>>>>> Press Q + <Enter> to exit <<<<<<\n");
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Report of index migration to current mapping
+ */
+@Getter
+@ToString
+public class MigrationReport {
+    private final String sourceIndex;
+    private final String targetIndex; // Same as source if index was already up to date
+    private final int fromVersion;
+    private final int toVersion;
+    private final boolean migrated;
+    private final long docs; // Documents copied into target index
+    private final long sourceSizeBytes;
+    private final long targetSizeBytes;
+    private final long sourceIndexTimeMs; // Time spent indexing into source, 0 if unknown (e.g. node restarted)
+    private final long targetIndexTimeMs; // Time spent indexing into target during migration
+    private final long durationMs;
+    private final long writeBlockedMs; // Time writes were rejected while catching up with changes made during copy
+
+    public MigrationReport(String sourceIndex, String targetIndex, int fromVersion, int toVersion, boolean migrated,
+            long docs, long sourceSizeBytes, long targetSizeBytes, long sourceIndexTimeMs, long targetIndexTimeMs,
+            long durationMs, long writeBlockedMs) {
+        this.sourceIndex = sourceIndex;
+        this.targetIndex = targetIndex;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.migrated = migrated;
+        this.docs = docs;
+        this.sourceSizeBytes = sourceSizeBytes;
+        this.targetSizeBytes = targetSizeBytes;
+        this.sourceIndexTimeMs = sourceIndexTimeMs;
+        this.targetIndexTimeMs = targetIndexTimeMs;
+        this.durationMs = durationMs;
+        this.writeBlockedMs = writeBlockedMs;
+    }
+
+    /**
+     * Report for an index already using current mapping
+     */
+    public static MigrationReport upToDate(String index, int version) {
+        return new MigrationReport(index, index, version, version, false, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Fraction of disk space saved by migration (negative if index grew)
+     */
+    public double sizeGain() {
+        return this.sourceSizeBytes == 0 ? 0 : 1 - (double) this.targetSizeBytes / this.sourceSizeBytes;
+    }
+
+    /**
+     * Fraction of indexing time saved by migration, 0 if source indexing time is unknown
+     */
+    public double indexTimeGain() {
+        return this.sourceIndexTimeMs == 0 ? 0 : 1 - (double) this.targetIndexTimeMs / this.sourceIndexTimeMs;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.bulk;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Outcome of indexing one document in a bulk request
+ */
+@Getter
+@ToString
+public class BulkItemResult<T> {
+
+    public enum Status {
+        CREATED, UPDATED, CONFLICT, // Document already exists and updates are not allowed
+        FAILED, SPOOLED // Failed but saved locally, to be indexed once cluster is reachable
+    }
+
+    private final String id;
+    @ToString.Exclude
+    private final T document;
+    private final Status status;
+    private final String errorMsg;
+    private final boolean transientFailure; // Failed but may succeed if sent again later (e.g. cluster unreachable)
+
+    public BulkItemResult(String id, T document, Status status, String errorMsg) {
+        this(id, document, status, errorMsg, false);
+    }
+
+    public BulkItemResult(String id, T document, Status status, String errorMsg, boolean transientFailure) {
+        this.id = id;
+        this.document = document;
+        this.status = status;
+        this.errorMsg = errorMsg;
+        this.transientFailure = transientFailure;
+    }
+
+    public boolean isOk() {
+        return this.status == Status.CREATED || this.status == Status.UPDATED || this.status == Status.SPOOLED;
+    }
+}
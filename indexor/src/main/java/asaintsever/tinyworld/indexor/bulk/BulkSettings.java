@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.bulk;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Bulk writer settings: buffered documents are sent as soon as one of the limits (number of
+ * documents, size, time since last flush) is reached
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class BulkSettings {
+    public final static int DEFAULT_ACTIONS = 500;
+    public final static int DEFAULT_SIZE_MB = 5;
+    public final static int DEFAULT_FLUSH_INTERVAL_SECONDS = 5;
+    public final static int DEFAULT_CONCURRENT_REQUESTS = 1;
+
+    private int actions = DEFAULT_ACTIONS;
+    private int sizeMb = DEFAULT_SIZE_MB;
+    private int flushIntervalSeconds = DEFAULT_FLUSH_INTERVAL_SECONDS;
+    private int concurrentRequests = DEFAULT_CONCURRENT_REQUESTS;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Photo cache settings: least recently used entries are evicted first once max number of entries is
+ * reached, and entries expire after their time to live
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class CacheSettings {
+    public final static int DEFAULT_MAX_ENTRIES = 1000;
+    public final static int DEFAULT_TTL_SECONDS = 300;
+    public final static int DEFAULT_REFRESH_INTERVAL_MS = 1000;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private int ttlSeconds = DEFAULT_TTL_SECONDS;
+    // Index refresh interval: photos written are only seen by aggregations once index is refreshed
+    private int refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.cache;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of cache statistics
+ */
+@Getter
+@ToString
+public class CacheStats {
+    public final static CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+    private final long hits;
+    private final long misses;
+    private final long evictions; // Entries evicted to make room for new ones
+    private final long expirations; // Entries found expired
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, long expirations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+    }
+
+    public double hitRate() {
+        long requests = this.hits + this.misses;
+        return requests == 0 ? 0 : (double) this.hits / requests;
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(this.hits + other.hits, this.misses + other.misses, this.evictions + other.evictions,
+                this.expirations + other.expirations, this.size + other.size);
+    }
+}
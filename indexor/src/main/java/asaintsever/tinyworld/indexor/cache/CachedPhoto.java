@@ -0,0 +1,236 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Photos and aggregations cached in memory. Writes going through this instance invalidate cached
+ * photos they update and all cached aggregations. Aggregations are invalidated again once writes
+ * are searchable (index refreshed). Searches are not cached.
+ *
+ * Cached photo metadata instances are shared between callers and must not be modified.
+ */
+public class CachedPhoto implements IPhoto {
+
+    private final IPhoto photos;
+    private final LruCache<String, PhotoMetadata> photoCache;
+    private final LruCache<String, List<TermsAggregation>> aggregationCache;
+    private final long refreshIntervalNanos;
+
+    // Aggregations cached before then may miss photos written but not searchable yet. Null if none.
+    private Long aggregationsStaleAt; // Guarded by this
+
+    public CachedPhoto(IPhoto photos, CacheSettings settings) {
+        this.photos = photos;
+        this.photoCache = new LruCache<String, PhotoMetadata>(settings.getMaxEntries(), settings.getTtlSeconds());
+        this.aggregationCache = new LruCache<String, List<TermsAggregation>>(settings.getMaxEntries(),
+                settings.getTtlSeconds());
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getRefreshIntervalMs());
+    }
+
+    public CacheStats getStats() {
+        return this.photoCache.getStats().plus(this.aggregationCache.getStats());
+    }
+
+    /**
+     * To be called on writes not going through this instance (e.g. index cleared)
+     */
+    public void invalidateAll() {
+        this.photoCache.invalidateAll();
+        this.invalidateAggregations();
+    }
+
+    /**
+     * To be called when a photo is written without going through this instance
+     */
+    public void invalidate(String id) {
+        this.photoCache.invalidate(id);
+        this.invalidateAggregations();
+    }
+
+    /**
+     * To be called once writes are made searchable outside of periodic refreshes (e.g. index refreshed
+     * at the end of a bulk load)
+     */
+    public void invalidateAggregations() {
+        this.aggregationCache.invalidateAll();
+
+        synchronized (this) {
+            long staleAt = System.nanoTime() + this.refreshIntervalNanos;
+            if (this.aggregationsStaleAt == null || staleAt - this.aggregationsStaleAt > 0)
+                this.aggregationsStaleAt = staleAt;
+        }
+    }
+
+    @Override
+    public String add(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+        String id = null;
+
+        try {
+            id = this.photos.add(photo, allowUpdate);
+            return id;
+        } finally {
+            // Photo may have been written even if request failed
+            if (id != null)
+                this.invalidate(id);
+            else
+                this.invalidateAll();
+        }
+    }
+
+    @Override
+    public List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+            throws IOException {
+        List<BulkItemResult<PhotoMetadata>> results = null;
+
+        try {
+            results = this.photos.addAll(photos, allowUpdate);
+            return results;
+        } finally {
+            if (results != null)
+                results.forEach(result -> this.photoCache.invalidate(result.getId()));
+            else
+                this.photoCache.invalidateAll();
+
+            this.invalidateAggregations();
+        }
+    }
+
+    @Override
+    public IBulkWriter<PhotoMetadata> bulkWriter(boolean allowUpdate,
+            Consumer<BulkItemResult<PhotoMetadata>> resultListener) {
+        // Invalidate as soon as each batch is acknowledged, before results are reported
+        IBulkWriter<PhotoMetadata> writer = this.photos.bulkWriter(allowUpdate, result -> {
+            this.invalidate(result.getId());
+            if (resultListener != null)
+                resultListener.accept(result);
+        });
+
+        return new IBulkWriter<PhotoMetadata>() {
+            @Override
+            public void add(PhotoMetadata document) throws IOException {
+                writer.add(document);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    writer.close();
+                } finally {
+                    // Aggregations computed while batches were being acknowledged may already miss some photos
+                    invalidateAggregations();
+                }
+            }
+        };
+    }
+
+    @Override
+    public PhotoMetadata get(String id) throws IOException {
+        return this.photoCache.get(id, () -> this.photos.get(id));
+    }
+
+    @Override
+    public long count() throws IOException {
+        return this.photos.count();
+    }
+
+    @Override
+    public List<TermsAggregation> getAggregations(String searchTemplateId, PhotoFilter filter, BucketSizes bucketSizes)
+            throws IOException {
+        // Same template with other parameters gives other aggregations. Key built from parameters sent to
+        // template (dates as epoch millis), not from toString() of filter (time zone dependent, no millis).
+        String key = searchTemplateId + "|" + Indexor.getTemplateParamsJson(filter, bucketSizes);
+
+        // Photos written so far are now searchable: drop aggregations computed before
+        synchronized (this) {
+            if (this.aggregationsStaleAt != null && System.nanoTime() - this.aggregationsStaleAt >= 0) {
+                this.aggregationsStaleAt = null;
+                this.aggregationCache.invalidateAll();
+            }
+        }
+
+        return this.aggregationCache.get(key, () -> this.photos.getAggregations(searchTemplateId, filter, bucketSizes));
+    }
+
+    @Override
+    public List<GeoCluster> getGeoClusters(GeoBoundingBox viewport, int zoom, PhotoFilter filter) throws IOException {
+        // Viewports hardly repeat: not cached
+        return this.photos.getGeoClusters(viewport, zoom, filter);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException {
+        return this.photos.search(query, from, size);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size, String[] includes, String[] excludes)
+            throws IOException {
+        return this.photos.search(query, from, size, includes, excludes);
+    }
+
+    @Override
+    public <R> IndexPage<R> search(String query, int from, int size, String[] includes, String[] excludes,
+            Class<R> projection) throws IOException {
+        return this.photos.search(query, from, size, includes, excludes, projection);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> searchWithPointInTime(String query, int size) throws IOException {
+        return this.photos.searchWithPointInTime(query, size);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException {
+        return this.photos.next(page);
+    }
+
+    @Override
+    public <R> IndexPage<R> next(IndexPage<R> page, Class<R> projection) throws IOException {
+        return this.photos.next(page, projection);
+    }
+
+    @Override
+    public void release(IndexPage<?> page) {
+        this.photos.release(page);
+    }
+}
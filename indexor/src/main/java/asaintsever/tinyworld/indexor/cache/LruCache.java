@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.cache;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size bounded LRU cache with per-entry time to live. Values loaded while an invalidation occurs
+ * are not cached, so that a write is never hidden by a value read before it.
+ */
+public class LruCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final long ttlNanos;
+
+    // Incremented on each invalidation
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public LruCache(int maxEntries, int ttlSeconds) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Max number of cache entries must be positive");
+
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+
+        // Access order: eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (this.size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get cached value or load it. Null values are not cached. Loader is invoked without holding the
+     * cache lock.
+     */
+    public V get(K key, Loader<V> loader) throws IOException {
+        long loadGeneration;
+
+        synchronized (this.lock) {
+            Entry<V> entry = this.entries.get(key);
+
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    this.hits++;
+                    return entry.value;
+                }
+
+                this.entries.remove(key);
+                this.expirations++;
+            }
+
+            this.misses++;
+            loadGeneration = this.generation;
+        }
+
+        V value = loader.load();
+
+        if (value != null) {
+            synchronized (this.lock) {
+                if (loadGeneration == this.generation)
+                    this.entries.put(key, new Entry<V>(value, System.nanoTime() + this.ttlNanos));
+            }
+        }
+
+        return value;
+    }
+
+    public void invalidate(K key) {
+        synchronized (this.lock) {
+            this.generation++;
+            this.entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this.lock) {
+            this.generation++;
+            this.entries.clear();
+        }
+    }
+
+    public CacheStats getStats() {
+        synchronized (this.lock) {
+            return new CacheStats(this.hits, this.misses, this.evictions, this.expirations, this.entries.size());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.opensearch.search.aggregations.bucket.geogrid.GeoTileUtils;
+
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+
+/**
+ * Documents grouped by map tile, computed from doc values of a geo_point field. Same tiles,
+ * centroids and ordering as OpenSearch geotile_grid aggregation with geo_centroid and top_hits
+ * sub-aggregations.
+ */
+class GeoTileAggregator {
+
+    private static class Tile {
+        private long count;
+        private double latSum;
+        private double lonSum;
+        private long bestSortValue = Long.MIN_VALUE;
+        private String photoId;
+    }
+
+    List<GeoCluster> aggregate(IndexSearcher searcher, Query query, String geoField, int zoom, String sortField,
+            int maxClusters) throws IOException {
+        GeoTileUtils.checkPrecisionRange(zoom);
+
+        Map<Long, Tile> tiles = new HashMap<Long, Tile>();
+        Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null)
+                continue;
+
+            SortedNumericDocValues locations = DocValues.getSortedNumeric(leaf.reader(), geoField);
+            // Numeric and date doc values keep their order when compared as longs
+            SortedNumericDocValues sortValues = DocValues.getSortedNumeric(leaf.reader(), sortField);
+            SortedDocValues ids = DocValues.getSorted(leaf.reader(), LuceneDocument.ID_FIELD);
+
+            DocIdSetIterator it = scorer.iterator();
+
+            for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                if (!locations.advanceExact(doc))
+                    continue;
+
+                long sortValue = Long.MIN_VALUE;
+                if (sortValues.advanceExact(doc))
+                    sortValue = sortValues.nextValue();
+
+                String id = null;
+
+                for (int i = 0; i < locations.docValueCount(); i++) {
+                    long encoded = locations.nextValue();
+                    double lat = GeoEncodingUtils.decodeLatitude((int) (encoded >>> 32));
+                    double lon = GeoEncodingUtils.decodeLongitude((int) (encoded & 0xFFFFFFFFL));
+
+                    Tile tile = tiles.computeIfAbsent(GeoTileUtils.longEncode(lon, lat, zoom), k -> new Tile());
+                    tile.count++;
+                    tile.latSum += lat;
+                    tile.lonSum += lon;
+
+                    if (tile.photoId == null || sortValue > tile.bestSortValue) {
+                        if (id == null && ids.advanceExact(doc))
+                            id = ids.binaryValue().utf8ToString();
+
+                        tile.bestSortValue = sortValue;
+                        tile.photoId = id;
+                    }
+                }
+            }
+        }
+
+        List<GeoCluster> clusters = new ArrayList<GeoCluster>(tiles.size());
+        tiles.forEach((hash, tile) -> clusters.add(new GeoCluster(GeoTileUtils.stringEncode(hash), tile.count,
+                tile.latSum / tile.count, tile.lonSum / tile.count, tile.photoId)));
+
+        // Most populated tiles first, then by key (as OpenSearch does)
+        clusters.sort(Comparator.comparingLong(GeoCluster::getCount).reversed().thenComparing(GeoCluster::getKey));
+        return clusters.size() > maxClusters ? new ArrayList<GeoCluster>(clusters.subList(0, maxClusters)) : clusters;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+import asaintsever.tinyworld.indexor.IIndex;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.IPhotoAsync;
+import asaintsever.tinyworld.indexor.IPhotoIndexBackend;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.opensearch.ResilienceStats;
+
+/**
+ * Photos indexed locally, in a Lucene index written and searched from within the JVM
+ */
+public class LuceneBackend implements IPhotoIndexBackend {
+
+    private final LuceneStore store;
+    private final LucenePhoto photos;
+    private final LuceneMetadataIndex mtdIndx;
+    private final LucenePhotoAsync photosAsync;
+
+    /**
+     * @param cachedPhotos photos read by asynchronous calls, through indexor's cache
+     */
+    public LuceneBackend(Path path, String index, IPhotoIndexContext context, Supplier<IPhoto> cachedPhotos)
+            throws IOException {
+        this.store = new LuceneStore(path);
+        this.photos = new LucenePhoto(this.store, index, context);
+        this.mtdIndx = new LuceneMetadataIndex(this.store, this.photos, index, context);
+        this.photosAsync = new LucenePhotoAsync(cachedPhotos);
+    }
+
+    @Override
+    public IIndex metadataIndex() {
+        return this.mtdIndx;
+    }
+
+    @Override
+    public IPhoto photos() {
+        return this.photos;
+    }
+
+    @Override
+    public IPhotoAsync photosAsync() {
+        return this.photosAsync;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.store.isOpen();
+    }
+
+    @Override
+    public void reset() {
+        // Nothing to reconnect to with local index
+    }
+
+    @Override
+    public IBulkLoadSession beginBulkLoad() {
+        return this.store.beginBulkLoad();
+    }
+
+    @Override
+    public ResilienceStats resilienceStats() {
+        return ResilienceStats.EMPTY;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.photosAsync.close();
+        this.photos.close();
+        this.store.close();
+    }
+}
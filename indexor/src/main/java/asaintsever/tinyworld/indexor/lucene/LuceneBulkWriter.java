@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+
+/**
+ * Bulk writer adding documents to a local Lucene index by batches. Batches are written in the
+ * calling thread, changes are committed when writer is closed.
+ */
+public class LuceneBulkWriter<T> implements IBulkWriter<T> {
+    protected static Logger logger = LoggerFactory.getLogger(LuceneBulkWriter.class);
+
+    private final LuceneDocument<T> document;
+    private final int actions;
+    private final boolean allowUpdate;
+    private final Function<T, String> idProvider;
+    private final Consumer<BulkItemResult<T>> resultListener;
+    private final List<Map.Entry<String, T>> buffer = new ArrayList<Map.Entry<String, T>>();
+
+    LuceneBulkWriter(LuceneDocument<T> document, int actions, boolean allowUpdate, Function<T, String> idProvider,
+            Consumer<BulkItemResult<T>> resultListener) {
+        this.document = document;
+        this.actions = actions;
+        this.allowUpdate = allowUpdate;
+        this.idProvider = idProvider;
+        this.resultListener = resultListener;
+    }
+
+    @Override
+    public synchronized void add(T doc) throws IOException {
+        this.buffer.add(new AbstractMap.SimpleImmutableEntry<String, T>(this.idProvider.apply(doc), doc));
+
+        if (this.buffer.size() >= this.actions)
+            this.flush();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (this.buffer.isEmpty())
+            return;
+
+        List<Map.Entry<String, T>> batch = new ArrayList<Map.Entry<String, T>>(this.buffer);
+        this.buffer.clear();
+
+        for (BulkItemResult<T> result : this.document.write(batch, this.allowUpdate))
+            this.report(result);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.flush();
+        this.document.commit();
+    }
+
+    private void report(BulkItemResult<T> result) {
+        if (!result.isOk())
+            logger.error("Fail to index document " + result.getId() + ": " + result.getStatus() + " "
+                    + result.getErrorMsg());
+
+        if (this.resultListener != null)
+            this.resultListener.accept(result);
+    }
+}
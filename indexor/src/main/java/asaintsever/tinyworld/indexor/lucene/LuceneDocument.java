@@ -0,0 +1,419 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import static asaintsever.tinyworld.indexor.opensearch.Document.ID_INJECTABLE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.opensearch.script.TemplateScript;
+import org.opensearch.script.mustache.MustacheScriptEngine;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.indexor.opensearch.DocumentAlreadyExistsException;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+
+/**
+ * Documents of a local Lucene index, with same semantic as their OpenSearch counterpart (see
+ * opensearch.Document): JSON source is stored as is and fields are indexed according to mapping.
+ */
+public class LuceneDocument<T> implements Closeable {
+
+    public final static String ID_FIELD = "_id";
+    public final static String SOURCE_FIELD = "_source";
+
+    // Same order as OpenSearch backend: score then document id as tiebreaker (for search_after)
+    private final static Sort SORT = new Sort(SortField.FIELD_SCORE, new SortField(ID_FIELD, SortField.Type.STRING));
+    private final static Set<String> FIELDS_TO_LOAD = Set.of(ID_FIELD, SOURCE_FIELD);
+    private final static MustacheScriptEngine TEMPLATE_ENGINE = new MustacheScriptEngine();
+
+    private final LuceneStore store;
+    private final ObjectMapper mapper;
+    private final LuceneMapping mapping;
+    private final QueryDslParser queryParser;
+    private final TermsAggregator aggregator;
+    private final GeoTileAggregator geoAggregator = new GeoTileAggregator();
+
+    // Checking if a document exists then writing it must be atomic
+    private final Object writeLock = new Object();
+
+    public LuceneDocument(LuceneStore store, String mapping) throws IOException {
+        this.store = store;
+
+        this.mapper = JsonMapper.builder().build();
+        this.mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        this.mapping = new LuceneMapping(mapping, this.mapper);
+        this.queryParser = new QueryDslParser(this.mapping, store.getAnalyzer(), this.mapper);
+        this.aggregator = new TermsAggregator(this.mapping);
+    }
+
+    public ObjectMapper getMapper() {
+        return this.mapper;
+    }
+
+    public String add(T document) throws IOException {
+        return this.add(null, document, true);
+    }
+
+    public String add(String id, T document, boolean allowUpdate) throws DocumentAlreadyExistsException, IOException {
+        BulkItemResult<T> result = this
+                .write(List.of(new AbstractMap.SimpleImmutableEntry<String, T>(id, document)), allowUpdate).get(0);
+        this.store.commit();
+
+        if (result.getStatus() == Status.CONFLICT)
+            throw new DocumentAlreadyExistsException(result.getId(), new IOException(result.getErrorMsg()));
+        if (result.getStatus() == Status.FAILED)
+            throw new IOException(result.getErrorMsg());
+
+        return result.getId();
+    }
+
+    /**
+     * Add documents (id -> document). Return result for each document, in iteration order.
+     */
+    public List<BulkItemResult<T>> addAll(Map<String, T> documents, boolean allowUpdate) throws IOException {
+        List<BulkItemResult<T>> results = this.write(new ArrayList<Map.Entry<String, T>>(documents.entrySet()),
+                allowUpdate);
+        this.store.commit();
+        return results;
+    }
+
+    /**
+     * Buffered writer adding documents by batches (only number of documents per batch is used from
+     * settings: batches are written locally and synchronously)
+     */
+    public LuceneBulkWriter<T> bulkWriter(BulkSettings settings, boolean allowUpdate, Function<T, String> idProvider,
+            Consumer<BulkItemResult<T>> resultListener) {
+        return new LuceneBulkWriter<T>(this, settings.getActions(), allowUpdate, idProvider, resultListener);
+    }
+
+    List<BulkItemResult<T>> write(List<Map.Entry<String, T>> documents, boolean allowUpdate) throws IOException {
+        List<BulkItemResult<T>> results = new ArrayList<BulkItemResult<T>>(documents.size());
+
+        synchronized (this.writeLock) {
+            IndexSearcher searcher = this.store.acquireSearcherOrCreate();
+            Set<String> written = new HashSet<String>();
+
+            try {
+                for (Map.Entry<String, T> entry : documents) {
+                    String id = entry.getKey() != null ? entry.getKey() : UUID.randomUUID().toString();
+                    T document = entry.getValue();
+
+                    boolean exists = written.contains(id) || searcher.count(new TermQuery(new Term(ID_FIELD, id))) > 0;
+
+                    // Same semantic as OpenSearch "create" operation
+                    if (exists && !allowUpdate) {
+                        results.add(new BulkItemResult<T>(id, document, Status.CONFLICT,
+                                "Document [" + id + "] already exists"));
+                        continue;
+                    }
+
+                    try {
+                        this.store.writer().updateDocument(new Term(ID_FIELD, id), this.toLuceneDocument(id, document));
+                        written.add(id);
+                        results.add(
+                                new BulkItemResult<T>(id, document, exists ? Status.UPDATED : Status.CREATED, null));
+                    } catch (IOException | IllegalArgumentException e) {
+                        results.add(new BulkItemResult<T>(id, document, Status.FAILED, e.getMessage()));
+                    }
+                }
+            } finally {
+                this.store.releaseSearcher(searcher);
+            }
+        }
+
+        return results;
+    }
+
+    void commit() throws IOException {
+        this.store.commit();
+    }
+
+    /**
+     * Index all documents again from their source, with current mapping (e.g. after mapping changed).
+     * Return number of documents reindexed.
+     */
+    public long reindex() throws IOException {
+        long docs = 0;
+
+        synchronized (this.writeLock) {
+            // Searcher is a snapshot of index: documents can be updated while iterating
+            IndexSearcher searcher = this.store.acquireSearcher();
+
+            try {
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    Bits liveDocs = leaf.reader().getLiveDocs();
+
+                    for (int i = 0; i < leaf.reader().maxDoc(); i++) {
+                        if (liveDocs != null && !liveDocs.get(i))
+                            continue;
+
+                        Document stored = leaf.reader().document(i, FIELDS_TO_LOAD);
+                        String id = stored.get(ID_FIELD);
+                        this.store.writer().updateDocument(new Term(ID_FIELD, id),
+                                this.toLuceneDocument(id, stored.getBinaryValue(SOURCE_FIELD)));
+                        docs++;
+                    }
+                }
+            } finally {
+                this.store.releaseSearcher(searcher);
+            }
+        }
+
+        this.store.forceMergeDeletes();
+        return docs;
+    }
+
+    public T get(String id, Class<T> docClass) throws IOException {
+        IndexSearcher searcher = this.store.acquireSearcher();
+
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(new Term(ID_FIELD, id)), 1);
+            if (topDocs.scoreDocs.length == 0)
+                return null;
+
+            BytesRef source = searcher.doc(topDocs.scoreDocs[0].doc, FIELDS_TO_LOAD).getBinaryValue(SOURCE_FIELD);
+            return this.mapper.readValue(source.bytes, source.offset, source.length, docClass);
+        } finally {
+            this.store.releaseSearcher(searcher);
+        }
+    }
+
+    public long count() throws IOException {
+        IndexSearcher searcher = this.store.acquireSearcher();
+
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            this.store.releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Run terms aggregations of a search template (template source, without parameters)
+     */
+    public List<TermsAggregation> getAggregations(String searchTemplate) throws IOException {
+        return this.getAggregations(searchTemplate, new HashMap<String, Object>());
+    }
+
+    /**
+     * Render search template (mustache source) with given parameters, using same engine as OpenSearch,
+     * then run its query and terms aggregations
+     */
+    public List<TermsAggregation> getAggregations(String searchTemplate, Map<String, Object> params)
+            throws IOException {
+        String rendered;
+
+        try {
+            rendered = TEMPLATE_ENGINE.compile(null, searchTemplate, TemplateScript.CONTEXT, Map.of())
+                    .newInstance(params).execute();
+        } catch (RuntimeException e) {
+            throw new IOException("Fail to render search template: " + e.getMessage(), e);
+        }
+
+        JsonNode template = this.mapper.readTree(rendered);
+        Query query = template.has("query") ? this.queryParser.parse(template.get("query")) : new MatchAllDocsQuery();
+        JsonNode aggs = template.has("aggs") ? template.get("aggs") : template.get("aggregations");
+
+        IndexSearcher searcher = this.store.acquireSearcher();
+
+        try {
+            return this.aggregator.aggregate(searcher, query, aggs);
+        } finally {
+            this.store.releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Group documents matching query by map tile, as with OpenSearch backend
+     */
+    public List<GeoCluster> getGeoClusters(String queryDSL, String geoField, int zoom, String sortField)
+            throws IOException {
+        Query query = this.queryParser.parse(queryDSL);
+        IndexSearcher searcher = this.store.acquireSearcher();
+
+        try {
+            return this.geoAggregator.aggregate(searcher, query, geoField, zoom, sortField, GeoCluster.MAX_CLUSTERS);
+        } finally {
+            this.store.releaseSearcher(searcher);
+        }
+    }
+
+    public IndexPage<T> search(String queryDSL, int from, int size, Class<T> docClass) throws IOException {
+        return this.search(queryDSL, from, size, null, null, null, docClass);
+    }
+
+    /**
+     * Search with source filtering: only included fields (wildcards allowed), minus excluded ones, are
+     * deserialized into provided class
+     */
+    public <R> IndexPage<R> search(String queryDSL, int from, int size, String[] includes, String[] excludes,
+            Class<R> docClass) throws IOException {
+        return this.search(queryDSL, from, size, includes, excludes, null, docClass);
+    }
+
+    /**
+     * Next pages are fetched using search_after, as with OpenSearch backend
+     */
+    public <R> IndexPage<R> next(IndexPage<R> page, Class<R> docClass) throws IOException {
+        return this.search(page.query(), page.from() + page.size(), page.size(), page.includes(), page.excludes(),
+                page.searchAfter(), docClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> IndexPage<R> search(String queryDSL, int from, int size, String[] includes, String[] excludes,
+            Object[] searchAfter, Class<R> docClass) throws IOException {
+        Query query = this.queryParser.parse(queryDSL);
+        int numHits = searchAfter != null ? size : from + size;
+
+        if (numHits <= 0)
+            return IndexPage.EMPTY;
+
+        FieldDoc after = null;
+        if (searchAfter != null)
+            after = new FieldDoc(Integer.MAX_VALUE, Float.NaN,
+                    new Object[] { ((Number) searchAfter[0]).floatValue(), new BytesRef(searchAfter[1].toString()) });
+
+        IndexSearcher searcher = this.store.acquireSearcher();
+
+        try {
+            TopFieldCollector collector = TopFieldCollector.create(SORT, numHits, after, Integer.MAX_VALUE);
+            searcher.search(query, collector);
+
+            TopDocs topDocs = collector.topDocs();
+            ScoreDoc[] hits = topDocs.scoreDocs;
+            int start = searchAfter != null ? 0 : from;
+
+            if (topDocs.totalHits.value == 0 || start >= hits.length)
+                return IndexPage.EMPTY;
+
+            List<R> resultList = new ArrayList<R>();
+            ObjectReader reader = this.mapper.readerFor(docClass);
+
+            for (int i = start; i < hits.length; i++) {
+                Document doc = searcher.doc(hits[i].doc, FIELDS_TO_LOAD);
+                resultList.add(
+                        this.read(reader, doc.get(ID_FIELD), doc.getBinaryValue(SOURCE_FIELD), includes, excludes));
+            }
+
+            FieldDoc last = (FieldDoc) hits[hits.length - 1];
+            Object[] lastSortValues = new Object[] { last.fields[0], ((BytesRef) last.fields[1]).utf8ToString() };
+
+            return new IndexPage<R>(resultList, queryDSL, topDocs.totalHits.value, from, size, lastSortValues, null,
+                    includes, excludes);
+        } finally {
+            this.store.releaseSearcher(searcher);
+        }
+    }
+
+    private <R> R read(ObjectReader reader, String id, BytesRef source, String[] includes, String[] excludes)
+            throws IOException {
+        // Projection classes can get document id injected, as with OpenSearch backend
+        ObjectReader idReader = reader.with(new InjectableValues.Std().addValue(ID_INJECTABLE, id));
+
+        if (includes == null && excludes == null)
+            return idReader.readValue(source.bytes, source.offset, source.length);
+
+        ObjectNode node = (ObjectNode) this.mapper.readTree(source.bytes, source.offset, source.length);
+        List<String> fieldNames = new ArrayList<String>();
+        node.fieldNames().forEachRemaining(fieldNames::add);
+
+        for (String fieldName : fieldNames) {
+            boolean keep = (includes == null || includes.length == 0 || matches(fieldName, includes))
+                    && (excludes == null || !matches(fieldName, excludes));
+            if (!keep)
+                node.remove(fieldName);
+        }
+
+        return idReader.readValue(node);
+    }
+
+    private static boolean matches(String fieldName, String[] patterns) {
+        for (String pattern : patterns) {
+            String regex = ("\\Q" + pattern + "\\E").replace("*", "\\E.*\\Q");
+            if (Pattern.matches(regex, fieldName))
+                return true;
+        }
+
+        return false;
+    }
+
+    private Document toLuceneDocument(String id, T document) throws IOException {
+        return this.toLuceneDocument(id, new BytesRef(this.mapper.writeValueAsBytes(document)));
+    }
+
+    private Document toLuceneDocument(String id, BytesRef source) throws IOException {
+        Document doc = new Document();
+        doc.add(new StringField(ID_FIELD, id, Store.YES));
+        doc.add(new SortedDocValuesField(ID_FIELD, new BytesRef(id)));
+        doc.add(new StoredField(SOURCE_FIELD, source));
+        this.mapping.index(this.mapper.readTree(source.bytes, source.offset, source.length), doc);
+        return doc;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Nothing to free: index is owned by store
+    }
+}
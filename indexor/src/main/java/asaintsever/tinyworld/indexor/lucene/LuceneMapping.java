@@ -0,0 +1,324 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Index mapping (same JSON format as OpenSearch mappings) translated into Lucene fields. Supported
+ * types: text, keyword, numbers, date and geo_point, with optional sub-fields (e.g.
+ * "country.keyword"). Fields with "index": false are only kept in source, doc values (for
+ * aggregations) are skipped for fields with "doc_values": false.
+ */
+public class LuceneMapping {
+
+    // Lucene field holding names of fields with a value in document (for "exists" queries)
+    public final static String FIELD_NAMES = "_field_names";
+
+    public enum Type {
+        TEXT, KEYWORD, LONG, FLOAT, DOUBLE, DATE, GEO_POINT
+    }
+
+    public static class Field {
+        private final String name;
+        private final Type type;
+        private final String format;
+        private final int ignoreAbove;
+        private final boolean docValues;
+
+        Field(String name, Type type, String format, int ignoreAbove, boolean docValues) {
+            this.name = name;
+            this.type = type;
+            this.format = format;
+            this.ignoreAbove = ignoreAbove;
+            this.docValues = docValues;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public String getFormat() {
+            return this.format;
+        }
+
+        public boolean hasDocValues() {
+            return this.docValues;
+        }
+    }
+
+    private final static String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    // Source field -> Lucene fields (field itself and its sub-fields)
+    private final Map<String, List<Field>> sourceFields = new LinkedHashMap<String, List<Field>>();
+    // Lucene field name -> field
+    private final Map<String, Field> fields = new HashMap<String, Field>();
+
+    public LuceneMapping(String mapping, ObjectMapper mapper) throws IOException {
+        if (mapping == null || mapping.isEmpty())
+            return;
+
+        JsonNode properties = mapper.readTree(mapping).path("properties");
+        Iterator<Map.Entry<String, JsonNode>> it = properties.fields();
+
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> property = it.next();
+            List<Field> luceneFields = new ArrayList<Field>();
+
+            Field field = toField(property.getKey(), property.getValue());
+            if (field != null)
+                luceneFields.add(field);
+
+            Iterator<Map.Entry<String, JsonNode>> subIt = property.getValue().path("fields").fields();
+            while (subIt.hasNext()) {
+                Map.Entry<String, JsonNode> subProperty = subIt.next();
+                Field subField = toField(property.getKey() + "." + subProperty.getKey(), subProperty.getValue());
+                if (subField != null)
+                    luceneFields.add(subField);
+            }
+
+            this.sourceFields.put(property.getKey(), luceneFields);
+            for (Field f : luceneFields)
+                this.fields.put(f.name, f);
+        }
+    }
+
+    public Field getField(String name) {
+        return this.fields.get(name);
+    }
+
+    public Collection<Field> getFields() {
+        return Collections.unmodifiableCollection(this.fields.values());
+    }
+
+    /**
+     * Add indexed fields of document source to Lucene document. Fields not in mapping are only kept in
+     * source.
+     */
+    public void index(JsonNode source, Document doc) throws IOException {
+        for (Map.Entry<String, List<Field>> sourceField : this.sourceFields.entrySet()) {
+            JsonNode value = source.get(sourceField.getKey());
+            if (value == null || value.isNull())
+                continue;
+
+            for (Field field : sourceField.getValue()) {
+                boolean indexed = false;
+
+                // Arrays are multi-valued fields, except geo points as [lon, lat]
+                if (value.isArray() && !(field.type == Type.GEO_POINT && value.size() > 0 && value.get(0).isNumber())) {
+                    for (JsonNode item : value)
+                        indexed |= this.index(field, item, doc);
+                } else
+                    indexed = this.index(field, value, doc);
+
+                if (indexed)
+                    doc.add(new StringField(FIELD_NAMES, field.name, Store.NO));
+            }
+        }
+    }
+
+    private boolean index(Field field, JsonNode value, Document doc) throws IOException {
+        if (value.isNull())
+            return false;
+
+        try {
+            switch (field.type) {
+            case TEXT:
+                doc.add(new TextField(field.name, value.asText(), Store.NO));
+                break;
+            case KEYWORD:
+                String keyword = value.asText();
+                if (field.ignoreAbove > 0 && keyword.length() > field.ignoreAbove)
+                    return false;
+
+                doc.add(new StringField(field.name, keyword, Store.NO));
+                if (field.docValues)
+                    doc.add(new SortedSetDocValuesField(field.name, new BytesRef(keyword)));
+                break;
+            case LONG:
+                long l = value.isNumber() ? value.asLong() : Long.parseLong(value.asText());
+                doc.add(new LongPoint(field.name, l));
+                if (field.docValues)
+                    doc.add(new SortedNumericDocValuesField(field.name, l));
+                break;
+            case FLOAT:
+                float f = value.isNumber() ? value.floatValue() : Float.parseFloat(value.asText());
+                doc.add(new FloatPoint(field.name, f));
+                if (field.docValues)
+                    doc.add(new SortedNumericDocValuesField(field.name, NumericUtils.floatToSortableInt(f)));
+                break;
+            case DOUBLE:
+                double d = value.isNumber() ? value.asDouble() : Double.parseDouble(value.asText());
+                doc.add(new DoublePoint(field.name, d));
+                if (field.docValues)
+                    doc.add(new SortedNumericDocValuesField(field.name, NumericUtils.doubleToSortableLong(d)));
+                break;
+            case DATE:
+                long millis = value.isNumber() ? value.asLong() : parseDate(value.asText(), field.format);
+                doc.add(new LongPoint(field.name, millis));
+                if (field.docValues)
+                    doc.add(new SortedNumericDocValuesField(field.name, millis));
+                break;
+            case GEO_POINT:
+                double[] latLon = parseGeoPoint(value);
+                doc.add(new LatLonPoint(field.name, latLon[0], latLon[1]));
+                if (field.docValues)
+                    doc.add(new LatLonDocValuesField(field.name, latLon[0], latLon[1]));
+                break;
+            }
+        } catch (NumberFormatException | ParseException e) {
+            throw new IOException(
+                    "Fail to parse field [" + field.name + "] of type " + field.type + ": " + e.getMessage(), e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse date using provided format(s), "||" separated as in OpenSearch mappings ("epoch_millis"
+     * supported). Dates are in UTC.
+     */
+    public static long parseDate(String value, String format) throws ParseException {
+        String formats = (format == null || format.isEmpty()) ? DEFAULT_DATE_FORMAT : format;
+        ParseException lastException = null;
+
+        for (String fmt : formats.split("\\|\\|")) {
+            if (fmt.equals("epoch_millis")) {
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    lastException = new ParseException(e.getMessage(), 0);
+                    continue;
+                }
+            }
+
+            try {
+                return newDateFormat(fmt).parse(value).getTime();
+            } catch (ParseException e) {
+                lastException = e;
+            }
+        }
+
+        throw lastException;
+    }
+
+    public static String formatDate(long millis, String format) {
+        String fmt = (format == null || format.isEmpty()) ? DEFAULT_DATE_FORMAT : format.split("\\|\\|")[0];
+        return fmt.equals("epoch_millis") ? Long.toString(millis) : newDateFormat(fmt).format(millis);
+    }
+
+    /**
+     * Parse geo point as "lat,lon" string, {"lat": lat, "lon": lon} object or [lon, lat] array. Return
+     * [lat, lon].
+     */
+    public static double[] parseGeoPoint(JsonNode value) {
+        if (value.isTextual()) {
+            String[] latLon = value.asText().split(",");
+            if (latLon.length != 2)
+                throw new NumberFormatException("Invalid geo point: " + value.asText());
+
+            return new double[] { Double.parseDouble(latLon[0].trim()), Double.parseDouble(latLon[1].trim()) };
+        }
+
+        if (value.isObject() && value.has("lat") && value.has("lon"))
+            return new double[] { value.get("lat").asDouble(), value.get("lon").asDouble() };
+
+        if (value.isArray() && value.size() == 2)
+            return new double[] { value.get(1).asDouble(), value.get(0).asDouble() };
+
+        throw new NumberFormatException("Invalid geo point: " + value.toString());
+    }
+
+    private static SimpleDateFormat newDateFormat(String format) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(format);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        dateFormat.setLenient(false);
+        return dateFormat;
+    }
+
+    private static Field toField(String name, JsonNode property) {
+        String type = property.path("type").asText("object");
+        String format = property.path("format").asText(null);
+        int ignoreAbove = property.path("ignore_above").asInt(0);
+        boolean docValues = property.path("doc_values").asBoolean(true);
+
+        // Not searchable: kept in source only
+        if (!property.path("index").asBoolean(true))
+            return null;
+
+        switch (type) {
+        case "text":
+            return new Field(name, Type.TEXT, null, 0, false);
+        case "keyword":
+        case "boolean":
+            return new Field(name, Type.KEYWORD, null, ignoreAbove, docValues);
+        case "byte":
+        case "short":
+        case "integer":
+        case "long":
+            return new Field(name, Type.LONG, null, 0, docValues);
+        case "float":
+        case "half_float":
+            return new Field(name, Type.FLOAT, null, 0, docValues);
+        case "double":
+        case "scaled_float":
+            return new Field(name, Type.DOUBLE, null, 0, docValues);
+        case "date":
+            return new Field(name, Type.DATE, format, 0, docValues);
+        case "geo_point":
+            return new Field(name, Type.GEO_POINT, null, 0, docValues);
+        default:
+            // Not indexed (kept in source only)
+            return null;
+        }
+    }
+}
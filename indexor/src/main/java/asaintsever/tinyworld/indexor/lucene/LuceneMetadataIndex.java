@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IIndex;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.MigrationReport;
+
+/**
+ * Index of photo metadata stored locally, mapping version being kept in index commit data
+ */
+public class LuceneMetadataIndex implements IIndex {
+    protected static Logger logger = LoggerFactory.getLogger(LuceneMetadataIndex.class);
+
+    private final static String MAPPING_VERSION_KEY = "mapping_version";
+
+    private final LuceneStore store;
+    private final LucenePhoto photos;
+    private final String index;
+    private final IPhotoIndexContext context;
+
+    public LuceneMetadataIndex(LuceneStore store, LucenePhoto photos, String index, IPhotoIndexContext context) {
+        this.store = store;
+        this.photos = photos;
+        this.index = index;
+        this.context = context;
+    }
+
+    @Override
+    public Boolean create() throws IOException {
+        this.store.create();
+        this.store.setCommitData(MAPPING_VERSION_KEY, Integer.toString(this.context.getMappingVersion()));
+        return true;
+    }
+
+    @Override
+    public Boolean exists() throws IOException {
+        return this.store.exists();
+    }
+
+    @Override
+    public Boolean delete() throws IOException {
+        // Local state (manifest, spool, thumbnails) is only cleared once index is gone: documents of an
+        // index failing to be deleted still reference thumbnails in store
+        Boolean deleted = this.store.delete();
+        if (deleted)
+            this.context.clear();
+        return deleted;
+    }
+
+    @Override
+    public Boolean clear() throws IOException {
+        try {
+            this.delete();
+        } catch (IOException e) {
+            if (this.exists())
+                throw e;
+
+            // Warning in case clear is invoked and index does not exist
+            logger.warn("Fail to delete index " + this.index + ": " + e.getMessage());
+            this.context.clear();
+        }
+
+        return this.create();
+    }
+
+    /**
+     * Local index has no aliases: documents are reindexed in place from their source, searches seeing
+     * either old or new version of documents meanwhile
+     */
+    @Override
+    public MigrationReport migrate() throws IOException {
+        if (!this.store.exists())
+            throw new IOException("No index in " + this.store.getPath());
+
+        int version = this.context.getMappingVersion();
+        String currentVersion = this.store.getCommitData(MAPPING_VERSION_KEY);
+        int fromVersion = currentVersion != null ? Integer.parseInt(currentVersion) : 1;
+
+        if (fromVersion >= version)
+            return MigrationReport.upToDate(this.index, fromVersion);
+
+        long start = System.nanoTime();
+        long sourceSize = this.store.sizeInBytes();
+        long docs = this.photos.reindex();
+        this.store.setCommitData(MAPPING_VERSION_KEY, Integer.toString(version));
+        long durationMs = (System.nanoTime() - start) / 1000000;
+
+        return new MigrationReport(this.index, this.index, fromVersion, version, true, docs, sourceSize,
+                this.store.sizeInBytes(), 0, durationMs, durationMs, 0);
+    }
+}
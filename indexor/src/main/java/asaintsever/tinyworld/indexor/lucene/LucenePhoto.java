@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.cfg.utils.Utils;
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.opensearch.DocumentAlreadyExistsException;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Photos indexed locally, written and searched from within the JVM
+ */
+public class LucenePhoto implements IPhoto, Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(LucenePhoto.class);
+
+    private final LuceneDocument<PhotoMetadata> document;
+    private final String index;
+    private final IPhotoIndexContext context;
+
+    public LucenePhoto(LuceneStore store, String index, IPhotoIndexContext context) throws IOException {
+        this.index = index;
+        this.context = context;
+
+        // Fields are indexed according to same mapping as with OpenSearch backend
+        this.document = new LuceneDocument<>(store, context.getMapping());
+        this.document.getMapper().setDateFormat(new SimpleDateFormat(context.getDateFormat()));
+    }
+
+    @Override
+    public String add(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+        String id = Indexor.getPhotoId(photo.getPath());
+        PhotoMetadata stored = this.context.storeThumbnail(photo);
+
+        try {
+            return this.document.add(id, stored, allowUpdate);
+        } catch (DocumentAlreadyExistsException e) {
+            String msg = "Photo [id=" + id + ", path=" + photo.getPath() + "] already exists in index " + this.index;
+            logger.error(msg);
+            throw new IOException(msg, e);
+        }
+    }
+
+    @Override
+    public List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+            throws IOException {
+        Map<String, PhotoMetadata> documents = new LinkedHashMap<String, PhotoMetadata>();
+        for (PhotoMetadata photo : photos)
+            documents.put(Indexor.getPhotoId(photo.getPath()), this.context.storeThumbnail(photo));
+
+        return this.document.addAll(documents, allowUpdate);
+    }
+
+    @Override
+    public IBulkWriter<PhotoMetadata> bulkWriter(boolean allowUpdate,
+            Consumer<BulkItemResult<PhotoMetadata>> resultListener) {
+        return this.context.storingThumbnails(this.document.bulkWriter(this.context.getBulkSettings(), allowUpdate,
+                photo -> Indexor.getPhotoId(photo.getPath()), resultListener));
+    }
+
+    @Override
+    public PhotoMetadata get(String id) throws IOException {
+        return this.document.get(id, PhotoMetadata.class);
+    }
+
+    @Override
+    public long count() throws IOException {
+        return this.document.count();
+    }
+
+    @Override
+    public List<TermsAggregation> getAggregations(String searchTemplateId, PhotoFilter filter, BucketSizes bucketSizes)
+            throws IOException {
+        // Search templates are run locally (no stored scripts without cluster)
+        String templatePath = Indexor.SEARCH_TEMPLATES.get(searchTemplateId);
+        if (templatePath == null)
+            throw new IOException("Unknown search template " + searchTemplateId);
+
+        try {
+            return this.document.getAggregations(new String(Utils.getInternalResource(templatePath)),
+                    Indexor.getTemplateParams(filter, bucketSizes));
+        } catch (URISyntaxException e) {
+            throw new IOException("Fail to load search template (" + templatePath + ")", e);
+        }
+    }
+
+    @Override
+    public List<GeoCluster> getGeoClusters(GeoBoundingBox viewport, int zoom, PhotoFilter filter) throws IOException {
+        return this.document.getGeoClusters(Indexor.getGeoQuery(viewport, filter), Indexor.GEO_FIELD, zoom,
+                Indexor.GEO_CLUSTER_SORT_FIELD);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException {
+        return this.document.search(query, from, size, PhotoMetadata.class);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size, String[] includes, String[] excludes)
+            throws IOException {
+        return this.document.search(query, from, size, includes, excludes, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> IndexPage<R> search(String query, int from, int size, String[] includes, String[] excludes,
+            Class<R> projection) throws IOException {
+        return this.document.search(query, from, size, includes, excludes, projection);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> searchWithPointInTime(String query, int size) throws IOException {
+        // No point in time with local index: pages are fetched with search_after on latest index state
+        return this.document.search(query, 0, size, PhotoMetadata.class);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException {
+        return this.document.next(page, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> IndexPage<R> next(IndexPage<R> page, Class<R> projection) throws IOException {
+        return this.document.next(page, projection);
+    }
+
+    @Override
+    public void release(IndexPage<?> page) {
+        // Nothing to release
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.document.close();
+    }
+
+    /**
+     * Reindex all photos from their source, e.g. after mapping changed. Return number of photos
+     * reindexed.
+     */
+    long reindex() throws IOException {
+        return this.document.reindex();
+    }
+}
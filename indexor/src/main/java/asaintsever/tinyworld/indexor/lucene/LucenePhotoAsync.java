@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.IPhotoAsync;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Non-blocking access to photos indexed locally: calls are run by a small pool of worker threads so
+ * that callers (e.g. UI thread) never wait for local searches and aggregations
+ */
+public class LucenePhotoAsync implements IPhotoAsync, Closeable {
+
+    public final static int DEFAULT_WORKERS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    @FunctionalInterface
+    private interface LocalCall<R> {
+        R call() throws IOException;
+    }
+
+    // Photos are read through indexor's cache, which may be enabled or disabled at any time
+    private final Supplier<IPhoto> photos;
+    private final ExecutorService executor;
+
+    public LucenePhotoAsync(Supplier<IPhoto> photos) {
+        this(photos, DEFAULT_WORKERS);
+    }
+
+    public LucenePhotoAsync(Supplier<IPhoto> photos, int workers) {
+        this.photos = photos;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "tw-lucene-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private <R> CompletableFuture<R> run(LocalCall<R> localCall) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return localCall.call();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, this.executor);
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<String> add(PhotoMetadata photo, boolean allowUpdate) {
+        return this.run(() -> this.photos.get().add(photo, allowUpdate));
+    }
+
+    @Override
+    public CompletableFuture<PhotoMetadata> get(String id) {
+        return this.run(() -> this.photos.get().get(id));
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return this.run(() -> this.photos.get().count());
+    }
+
+    @Override
+    public CompletableFuture<List<TermsAggregation>> getAggregations(String searchTemplateId, PhotoFilter filter,
+            BucketSizes bucketSizes) {
+        return this.run(() -> this.photos.get().getAggregations(searchTemplateId, filter, bucketSizes));
+    }
+
+    @Override
+    public CompletableFuture<IndexPage<PhotoMetadata>> search(String query, int from, int size) {
+        return this.run(() -> this.photos.get().search(query, from, size));
+    }
+
+    @Override
+    public <R> CompletableFuture<IndexPage<R>> search(String query, int from, int size, String[] includes,
+            String[] excludes, Class<R> projection) {
+        return this.run(() -> this.photos.get().search(query, from, size, includes, excludes, projection));
+    }
+
+    @Override
+    public CompletableFuture<IndexPage<PhotoMetadata>> next(IndexPage<PhotoMetadata> page) {
+        return this.run(() -> this.photos.get().next(page));
+    }
+
+    @Override
+    public <R> CompletableFuture<IndexPage<R>> next(IndexPage<R> page, Class<R> projection) {
+        return this.run(() -> this.photos.get().next(page, projection));
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+
+/**
+ * Local Lucene index stored in a directory, written and searched from within the JVM. Searches see
+ * all documents added so far (near real-time searcher refreshed when index has changed).
+ */
+public class LuceneStore implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(LuceneStore.class);
+
+    private final Path path;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    public LuceneStore(Path path) throws IOException {
+        this.path = path;
+        this.directory = FSDirectory.open(path);
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public Analyzer getAnalyzer() {
+        return this.analyzer;
+    }
+
+    public synchronized boolean isOpen() {
+        return this.directory != null;
+    }
+
+    public synchronized boolean exists() throws IOException {
+        return this.writer != null || DirectoryReader.indexExists(this.directory());
+    }
+
+    public synchronized boolean create() throws IOException {
+        if (this.exists())
+            throw new IOException("Index already exists in " + this.path);
+
+        this.open(OpenMode.CREATE);
+        this.writer.commit();
+        return true;
+    }
+
+    public synchronized boolean delete() throws IOException {
+        if (!this.exists())
+            throw new IOException("No index in " + this.path);
+
+        this.closeWriter();
+
+        for (String file : this.directory.listAll())
+            this.directory.deleteFile(file);
+
+        return true;
+    }
+
+    /**
+     * Writer on index. Index is created if it does not exist yet (as OpenSearch does when adding
+     * documents).
+     */
+    synchronized IndexWriter writer() throws IOException {
+        if (this.writer == null)
+            this.open(OpenMode.CREATE_OR_APPEND);
+
+        return this.writer;
+    }
+
+    /**
+     * Searcher on latest index changes. Must be released once done.
+     */
+    IndexSearcher acquireSearcher() throws IOException {
+        return this.acquireSearcher(false);
+    }
+
+    /**
+     * Searcher on latest index changes, index is created if it does not exist yet (before adding
+     * documents). Must be released once done.
+     */
+    IndexSearcher acquireSearcherOrCreate() throws IOException {
+        return this.acquireSearcher(true);
+    }
+
+    private IndexSearcher acquireSearcher(boolean create) throws IOException {
+        SearcherManager manager;
+
+        synchronized (this) {
+            if (this.writer == null) {
+                if (!create && !this.exists())
+                    throw new IOException("No index in " + this.path);
+
+                this.open(OpenMode.CREATE_OR_APPEND);
+            }
+
+            manager = this.searcherManager;
+        }
+
+        manager.maybeRefreshBlocking();
+        return manager.acquire();
+    }
+
+    void releaseSearcher(IndexSearcher searcher) throws IOException {
+        // Same as SearcherManager.release(), still valid if index has been deleted in between
+        searcher.getIndexReader().decRef();
+    }
+
+    synchronized void commit() throws IOException {
+        if (this.writer != null)
+            this.writer.commit();
+    }
+
+    /**
+     * Reclaim space of deleted (or updated) documents
+     */
+    synchronized void forceMergeDeletes() throws IOException {
+        if (this.writer != null) {
+            this.writer.forceMergeDeletes();
+            this.writer.commit();
+        }
+    }
+
+    /**
+     * Get value stored with index commits (e.g. version of mapping documents are indexed with). Null if
+     * not set.
+     */
+    public synchronized String getCommitData(String key) throws IOException {
+        if (this.writer != null) {
+            for (Map.Entry<String, String> entry : this.writer.getLiveCommitData())
+                if (entry.getKey().equals(key))
+                    return entry.getValue();
+
+            return null;
+        }
+
+        if (!DirectoryReader.indexExists(this.directory()))
+            return null;
+
+        return SegmentInfos.readLatestCommit(this.directory()).getUserData().get(key);
+    }
+
+    /**
+     * Store value with index commits and commit
+     */
+    public synchronized void setCommitData(String key, String value) throws IOException {
+        IndexWriter writer = this.writer();
+        Map<String, String> commitData = new HashMap<String, String>();
+
+        Iterable<Map.Entry<String, String>> liveCommitData = writer.getLiveCommitData();
+        if (liveCommitData != null)
+            liveCommitData.forEach(entry -> commitData.put(entry.getKey(), entry.getValue()));
+
+        commitData.put(key, value);
+        writer.setLiveCommitData(commitData.entrySet());
+        writer.commit();
+    }
+
+    /**
+     * Size of index on disk
+     */
+    public synchronized long sizeInBytes() throws IOException {
+        long size = 0;
+
+        for (String file : this.directory().listAll()) {
+            try {
+                size += this.directory().fileLength(file);
+            } catch (NoSuchFileException e) {
+                // Deleted by a merge in between
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Local index has no periodic refresh nor replicas: session only commits changes when closed
+     */
+    public IBulkLoadSession beginBulkLoad() {
+        return new IBulkLoadSession() {
+            private boolean active = true;
+
+            @Override
+            public boolean isActive() {
+                return this.active;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (this.active) {
+                    this.active = false;
+                    commit();
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closeWriter();
+
+        if (this.directory != null)
+            this.directory.close();
+        this.directory = null;
+    }
+
+    private Directory directory() throws IOException {
+        if (this.directory == null)
+            throw new IOException("Index in " + this.path + " is closed");
+
+        return this.directory;
+    }
+
+    private void open(OpenMode mode) throws IOException {
+        Files.createDirectories(this.path);
+
+        IndexWriterConfig config = new IndexWriterConfig(this.analyzer).setOpenMode(mode);
+        this.writer = new IndexWriter(this.directory(), config);
+        this.searcherManager = new SearcherManager(this.writer, null);
+        logger.debug("Opened index in " + this.path);
+    }
+
+    private void closeWriter() throws IOException {
+        if (this.searcherManager != null)
+            this.searcherManager.close();
+        this.searcherManager = null;
+
+        if (this.writer != null)
+            this.writer.close(); // commits pending changes
+        this.writer = null;
+    }
+}
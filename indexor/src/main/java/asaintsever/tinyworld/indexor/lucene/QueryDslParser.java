@@ -0,0 +1,456 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import asaintsever.tinyworld.indexor.lucene.LuceneMapping.Field;
+import asaintsever.tinyworld.indexor.lucene.LuceneMapping.Type;
+
+/**
+ * Translate OpenSearch query DSL into Lucene queries. Supported queries: match_all, match_none,
+ * ids, term, terms, prefix, wildcard, range, exists, match, match_phrase, simple_query_string,
+ * query_string, bool, constant_score, geo_bounding_box and geo_distance.
+ */
+public class QueryDslParser {
+
+    private final LuceneMapping mapping;
+    private final Analyzer analyzer;
+    private final ObjectMapper mapper;
+
+    public QueryDslParser(LuceneMapping mapping, Analyzer analyzer, ObjectMapper mapper) {
+        this.mapping = mapping;
+        this.analyzer = analyzer;
+        this.mapper = mapper;
+    }
+
+    public Query parse(String queryDSL) throws IOException {
+        if (queryDSL == null || queryDSL.isBlank())
+            return new MatchAllDocsQuery();
+
+        return this.parse(this.mapper.readTree(queryDSL));
+    }
+
+    public Query parse(JsonNode query) throws IOException {
+        if (query == null || query.isNull() || query.isEmpty())
+            return new MatchAllDocsQuery();
+
+        if (!query.isObject() || query.size() != 1)
+            throw new IOException("Query must be an object with a single query type: " + query);
+
+        Map.Entry<String, JsonNode> clause = query.fields().next();
+        JsonNode body = clause.getValue();
+
+        switch (clause.getKey()) {
+        case "match_all":
+            return new MatchAllDocsQuery();
+        case "match_none":
+            return new MatchNoDocsQuery();
+        case "ids":
+            return this.ids(body);
+        case "term":
+            return this.fieldQuery(body, "value", this::term);
+        case "terms":
+            return this.terms(body);
+        case "prefix":
+            return this.fieldQuery(body, "value", (field, value) -> new PrefixQuery(new Term(field, value.asText())));
+        case "wildcard":
+            return this.fieldQuery(body, "value", (field, value) -> new WildcardQuery(new Term(field, value.asText())));
+        case "range":
+            return this.range(body);
+        case "exists":
+            return new TermQuery(new Term(LuceneMapping.FIELD_NAMES, body.path("field").asText()));
+        case "match":
+            return this.match(body, false);
+        case "match_phrase":
+            return this.match(body, true);
+        case "simple_query_string":
+            return this.simpleQueryString(body);
+        case "query_string":
+            return this.queryString(body);
+        case "bool":
+            return this.bool(body);
+        case "constant_score":
+            return new ConstantScoreQuery(this.parse(body.path("filter")));
+        case "geo_bounding_box":
+            return this.geoBoundingBox(body);
+        case "geo_distance":
+            return this.geoDistance(body);
+        default:
+            throw new IOException("Unsupported query type for local index: " + clause.getKey());
+        }
+    }
+
+    @FunctionalInterface
+    private interface FieldQueryBuilder {
+        Query build(String field, JsonNode value) throws IOException;
+    }
+
+    /**
+     * Queries of the form {"field": value} or {"field": {"<valueKey>": value, ...}}
+     */
+    private Query fieldQuery(JsonNode body, String valueKey, FieldQueryBuilder builder) throws IOException {
+        Map.Entry<String, JsonNode> fieldClause = this.fieldClause(body);
+        JsonNode value = fieldClause.getValue().isObject() ? fieldClause.getValue().path(valueKey)
+                : fieldClause.getValue();
+        return builder.build(fieldClause.getKey(), value);
+    }
+
+    private Map.Entry<String, JsonNode> fieldClause(JsonNode body) throws IOException {
+        Iterator<Map.Entry<String, JsonNode>> it = body.fields();
+
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (!entry.getKey().equals("boost") && !entry.getKey().equals("_name"))
+                return entry;
+        }
+
+        throw new IOException("Missing field in query: " + body);
+    }
+
+    private Query ids(JsonNode body) {
+        List<BytesRef> ids = new ArrayList<BytesRef>();
+        for (JsonNode id : body.path("values"))
+            ids.add(new BytesRef(id.asText()));
+
+        return new TermInSetQuery(LuceneDocument.ID_FIELD, ids);
+    }
+
+    private Query term(String fieldName, JsonNode value) throws IOException {
+        if (fieldName.equals("_id"))
+            return new TermQuery(new Term(LuceneDocument.ID_FIELD, value.asText()));
+
+        Field field = this.mapping.getField(fieldName);
+        if (field == null)
+            return new MatchNoDocsQuery("Unknown field " + fieldName);
+
+        try {
+            switch (field.getType()) {
+            case LONG:
+                return LongPoint.newExactQuery(fieldName, Long.parseLong(value.asText()));
+            case FLOAT:
+                return FloatPoint.newExactQuery(fieldName, Float.parseFloat(value.asText()));
+            case DOUBLE:
+                return DoublePoint.newExactQuery(fieldName, Double.parseDouble(value.asText()));
+            case DATE:
+                return LongPoint.newExactQuery(fieldName, this.toMillis(value, field.getFormat()));
+            case GEO_POINT:
+                throw new IOException("Term query not supported on geo_point field " + fieldName);
+            default:
+                return new TermQuery(new Term(fieldName, value.asText()));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value for field " + fieldName + ": " + value, e);
+        }
+    }
+
+    private Query terms(JsonNode body) throws IOException {
+        Map.Entry<String, JsonNode> fieldClause = this.fieldClause(body);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+
+        for (JsonNode value : fieldClause.getValue())
+            builder.add(this.term(fieldClause.getKey(), value), Occur.SHOULD);
+
+        return new ConstantScoreQuery(builder.build());
+    }
+
+    private Query range(JsonNode body) throws IOException {
+        Map.Entry<String, JsonNode> fieldClause = this.fieldClause(body);
+        String fieldName = fieldClause.getKey();
+        JsonNode params = fieldClause.getValue();
+
+        Field field = this.mapping.getField(fieldName);
+        if (field == null)
+            return new MatchNoDocsQuery("Unknown field " + fieldName);
+
+        JsonNode lower = params.has("gt") ? params.get("gt") : params.get("gte");
+        JsonNode upper = params.has("lt") ? params.get("lt") : params.get("lte");
+        boolean includeLower = !params.has("gt");
+        boolean includeUpper = !params.has("lt");
+
+        try {
+            switch (field.getType()) {
+            case LONG: {
+                long min = Long.MIN_VALUE, max = Long.MAX_VALUE;
+                if (lower != null) {
+                    double v = Double.parseDouble(lower.asText());
+                    min = includeLower ? (long) Math.ceil(v) : (long) Math.floor(v) + 1;
+                }
+                if (upper != null) {
+                    double v = Double.parseDouble(upper.asText());
+                    max = includeUpper ? (long) Math.floor(v) : (long) Math.ceil(v) - 1;
+                }
+                return LongPoint.newRangeQuery(fieldName, min, max);
+            }
+            case FLOAT: {
+                float min = lower == null ? Float.NEGATIVE_INFINITY : Float.parseFloat(lower.asText());
+                float max = upper == null ? Float.POSITIVE_INFINITY : Float.parseFloat(upper.asText());
+                return FloatPoint.newRangeQuery(fieldName, includeLower ? min : FloatPoint.nextUp(min),
+                        includeUpper ? max : FloatPoint.nextDown(max));
+            }
+            case DOUBLE: {
+                double min = lower == null ? Double.NEGATIVE_INFINITY : Double.parseDouble(lower.asText());
+                double max = upper == null ? Double.POSITIVE_INFINITY : Double.parseDouble(upper.asText());
+                return DoublePoint.newRangeQuery(fieldName, includeLower ? min : DoublePoint.nextUp(min),
+                        includeUpper ? max : DoublePoint.nextDown(max));
+            }
+            case DATE: {
+                // Format of range values, if provided, overrides field format
+                String format = params.has("format") ? params.get("format").asText() : field.getFormat();
+                long min = lower == null ? Long.MIN_VALUE : this.toMillis(lower, format);
+                long max = upper == null ? Long.MAX_VALUE : this.toMillis(upper, format);
+                return LongPoint.newRangeQuery(fieldName, (includeLower || lower == null) ? min : min + 1,
+                        (includeUpper || upper == null) ? max : max - 1);
+            }
+            case GEO_POINT:
+                throw new IOException("Range query not supported on geo_point field " + fieldName);
+            default:
+                return TermRangeQuery.newStringRange(fieldName, lower == null ? null : lower.asText(),
+                        upper == null ? null : upper.asText(), includeLower, includeUpper);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid range for field " + fieldName + ": " + params, e);
+        }
+    }
+
+    private Query match(JsonNode body, boolean phrase) throws IOException {
+        Map.Entry<String, JsonNode> fieldClause = this.fieldClause(body);
+        String fieldName = fieldClause.getKey();
+        JsonNode params = fieldClause.getValue();
+        JsonNode value = params.isObject() ? params.path("query") : params;
+
+        Field field = this.mapping.getField(fieldName);
+        if (field == null)
+            return new MatchNoDocsQuery("Unknown field " + fieldName);
+
+        if (field.getType() != Type.TEXT)
+            return this.term(fieldName, value);
+
+        QueryBuilder builder = new QueryBuilder(this.analyzer);
+        Query query;
+
+        if (phrase)
+            query = builder.createPhraseQuery(fieldName, value.asText());
+        else
+            query = builder.createBooleanQuery(fieldName, value.asText(),
+                    params.path("operator").asText("or").equalsIgnoreCase("and") ? Occur.MUST : Occur.SHOULD);
+
+        // Analyzer may produce no token at all
+        return query != null ? query : new MatchNoDocsQuery();
+    }
+
+    private Query simpleQueryString(JsonNode body) throws IOException {
+        String queryText = body.path("query").asText();
+
+        if (queryText.isBlank() || queryText.trim().equals("*"))
+            return new MatchAllDocsQuery();
+
+        Map<String, Float> weights = new HashMap<String, Float>();
+        for (String field : this.queryFields(body))
+            weights.put(field, 1.0f);
+
+        SimpleQueryParser parser = new SimpleQueryParser(this.analyzer, weights);
+        parser.setDefaultOperator(
+                body.path("default_operator").asText("or").equalsIgnoreCase("and") ? Occur.MUST : Occur.SHOULD);
+
+        Query query = parser.parse(queryText);
+        return query != null ? query : new MatchNoDocsQuery();
+    }
+
+    private Query queryString(JsonNode body) throws IOException {
+        String queryText = body.path("query").asText();
+
+        if (queryText.isBlank() || queryText.trim().equals("*"))
+            return new MatchAllDocsQuery();
+
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(this.queryFields(body), this.analyzer);
+        parser.setDefaultOperator(
+                body.path("default_operator").asText("or").equalsIgnoreCase("and") ? MultiFieldQueryParser.Operator.AND
+                        : MultiFieldQueryParser.Operator.OR);
+        parser.setAllowLeadingWildcard(true);
+
+        try {
+            return parser.parse(queryText);
+        } catch (org.apache.lucene.queryparser.classic.ParseException e) {
+            throw new IOException("Invalid query string [" + queryText + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fields to search for full text queries: provided ones or all text and keyword fields
+     */
+    private String[] queryFields(JsonNode body) {
+        List<String> fields = new ArrayList<String>();
+
+        if (body.has("fields")) {
+            for (JsonNode field : body.get("fields"))
+                fields.add(field.asText());
+        } else if (body.has("default_field") && !body.get("default_field").asText().equals("*")) {
+            fields.add(body.get("default_field").asText());
+        } else {
+            for (Field field : this.mapping.getFields())
+                if (field.getType() == Type.TEXT || field.getType() == Type.KEYWORD)
+                    fields.add(field.getName());
+        }
+
+        return fields.toArray(new String[0]);
+    }
+
+    private Query bool(JsonNode body) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        boolean hasPositiveClause = false;
+
+        hasPositiveClause |= this.addClauses(builder, body.get("must"), Occur.MUST);
+        hasPositiveClause |= this.addClauses(builder, body.get("filter"), Occur.FILTER);
+        hasPositiveClause |= this.addClauses(builder, body.get("should"), Occur.SHOULD);
+        this.addClauses(builder, body.get("must_not"), Occur.MUST_NOT);
+
+        // Bool query with must_not clauses only matches all other documents
+        if (!hasPositiveClause)
+            builder.add(new MatchAllDocsQuery(), Occur.FILTER);
+
+        if (body.has("minimum_should_match"))
+            builder.setMinimumNumberShouldMatch(body.get("minimum_should_match").asInt());
+
+        return builder.build();
+    }
+
+    private boolean addClauses(BooleanQuery.Builder builder, JsonNode clauses, Occur occur) throws IOException {
+        if (clauses == null || clauses.isNull())
+            return false;
+
+        if (clauses.isArray()) {
+            for (JsonNode clause : clauses)
+                builder.add(this.parse(clause), occur);
+
+            return clauses.size() > 0;
+        }
+
+        builder.add(this.parse(clauses), occur);
+        return true;
+    }
+
+    private Query geoBoundingBox(JsonNode body) throws IOException {
+        Map.Entry<String, JsonNode> fieldClause = this.fieldClause(body);
+        JsonNode box = fieldClause.getValue();
+
+        double top, left, bottom, right;
+
+        if (box.has("top_left") && box.has("bottom_right")) {
+            double[] topLeft = LuceneMapping.parseGeoPoint(box.get("top_left"));
+            double[] bottomRight = LuceneMapping.parseGeoPoint(box.get("bottom_right"));
+            top = topLeft[0];
+            left = topLeft[1];
+            bottom = bottomRight[0];
+            right = bottomRight[1];
+        } else if (box.has("top") && box.has("left") && box.has("bottom") && box.has("right")) {
+            top = box.get("top").asDouble();
+            left = box.get("left").asDouble();
+            bottom = box.get("bottom").asDouble();
+            right = box.get("right").asDouble();
+        } else
+            throw new IOException("Unsupported bounding box: " + box);
+
+        // Box crossing the dateline is supported (left > right)
+        return LatLonPoint.newBoxQuery(fieldClause.getKey(), bottom, top, left, right);
+    }
+
+    private Query geoDistance(JsonNode body) throws IOException {
+        double meters = toMeters(body.path("distance").asText());
+        Iterator<Map.Entry<String, JsonNode>> it = body.fields();
+
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> entry = it.next();
+
+            switch (entry.getKey()) {
+            case "distance":
+            case "distance_type":
+            case "validation_method":
+            case "boost":
+            case "_name":
+                continue;
+            default:
+                double[] latLon = LuceneMapping.parseGeoPoint(entry.getValue());
+                return LatLonPoint.newDistanceQuery(entry.getKey(), latLon[0], latLon[1], meters);
+            }
+        }
+
+        throw new IOException("Missing field in geo_distance query: " + body);
+    }
+
+    private long toMillis(JsonNode value, String format) throws IOException {
+        if (value.isNumber())
+            return value.asLong();
+
+        try {
+            return LuceneMapping.parseDate(value.asText(), format);
+        } catch (ParseException e) {
+            throw new IOException("Invalid date [" + value.asText() + "] for format " + format, e);
+        }
+    }
+
+    private static double toMeters(String distance) throws IOException {
+        String d = distance.trim().toLowerCase();
+        String[][] units = { { "km", "1000" }, { "nmi", "1852" }, { "mi", "1609.344" }, { "yd", "0.9144" },
+                { "ft", "0.3048" }, { "cm", "0.01" }, { "mm", "0.001" }, { "m", "1" } };
+
+        try {
+            for (String[] unit : units)
+                if (d.endsWith(unit[0]))
+                    return Double.parseDouble(d.substring(0, d.length() - unit[0].length()).trim())
+                            * Double.parseDouble(unit[1]);
+
+            return Double.parseDouble(d);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid distance: " + distance, e);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.NumericUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import asaintsever.tinyworld.indexor.lucene.LuceneMapping.Field;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation.Bucket;
+
+/**
+ * Nested terms aggregations (as defined in "aggs" section of search templates) computed from doc
+ * values of keyword, numeric and date fields
+ */
+class TermsAggregator {
+
+    private final static int DEFAULT_SIZE = 10;
+
+    private static class Spec {
+        private String name;
+        private Field field;
+        private int size = DEFAULT_SIZE;
+        private boolean byKey = false;
+        private boolean ascending = false;
+        private List<Spec> subAggs = new ArrayList<Spec>();
+    }
+
+    private static class Node {
+        private long count;
+        private final Map<Spec, Map<Comparable<?>, Node>> buckets = new HashMap<Spec, Map<Comparable<?>, Node>>();
+    }
+
+    private final LuceneMapping mapping;
+
+    TermsAggregator(LuceneMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    List<TermsAggregation> aggregate(IndexSearcher searcher, Query query, JsonNode aggs) throws IOException {
+        List<Spec> specs = this.parse(aggs);
+        List<Spec> allSpecs = new ArrayList<Spec>();
+        flatten(specs, allSpecs);
+
+        Node root = new Node();
+        Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null)
+                continue;
+
+            // One doc values iterator per aggregation, all advancing in doc id order
+            Map<Spec, Object> docValues = new HashMap<Spec, Object>();
+            for (Spec spec : allSpecs) {
+                String fieldName = spec.field.getName();
+                docValues.put(spec,
+                        spec.field.getType() == LuceneMapping.Type.KEYWORD
+                                ? DocValues.getSortedSet(leaf.reader(), fieldName)
+                                : DocValues.getSortedNumeric(leaf.reader(), fieldName));
+            }
+
+            DocIdSetIterator it = scorer.iterator();
+            Map<Spec, Set<Comparable<?>>> values = new HashMap<Spec, Set<Comparable<?>>>();
+
+            for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                for (Spec spec : allSpecs)
+                    values.put(spec, this.values(spec, docValues.get(spec), doc));
+
+                collect(specs, root, values);
+            }
+        }
+
+        return this.toAggregations(specs, root);
+    }
+
+    private static void flatten(List<Spec> specs, List<Spec> allSpecs) {
+        for (Spec spec : specs) {
+            allSpecs.add(spec);
+            flatten(spec.subAggs, allSpecs);
+        }
+    }
+
+    private static void collect(List<Spec> specs, Node parent, Map<Spec, Set<Comparable<?>>> values) {
+        for (Spec spec : specs) {
+            Map<Comparable<?>, Node> buckets = parent.buckets.computeIfAbsent(spec,
+                    k -> new HashMap<Comparable<?>, Node>());
+
+            for (Comparable<?> value : values.get(spec)) {
+                Node bucket = buckets.computeIfAbsent(value, k -> new Node());
+                bucket.count++;
+                collect(spec.subAggs, bucket, values);
+            }
+        }
+    }
+
+    private Set<Comparable<?>> values(Spec spec, Object docValues, int doc) throws IOException {
+        Set<Comparable<?>> values = new LinkedHashSet<Comparable<?>>();
+
+        if (docValues instanceof SortedSetDocValues) {
+            SortedSetDocValues sortedSet = (SortedSetDocValues) docValues;
+            if (sortedSet.advanceExact(doc)) {
+                for (long ord = sortedSet.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = sortedSet.nextOrd())
+                    values.add(sortedSet.lookupOrd(ord).utf8ToString());
+            }
+        } else {
+            SortedNumericDocValues sortedNumeric = (SortedNumericDocValues) docValues;
+            if (sortedNumeric.advanceExact(doc)) {
+                for (int i = 0; i < sortedNumeric.docValueCount(); i++) {
+                    long value = sortedNumeric.nextValue();
+
+                    switch (spec.field.getType()) {
+                    case FLOAT:
+                        values.add(NumericUtils.sortableIntToFloat((int) value));
+                        break;
+                    case DOUBLE:
+                        values.add(NumericUtils.sortableLongToDouble(value));
+                        break;
+                    default:
+                        values.add(value);
+                    }
+                }
+            }
+        }
+
+        return values;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private List<TermsAggregation> toAggregations(List<Spec> specs, Node parent) {
+        List<TermsAggregation> aggregations = new ArrayList<TermsAggregation>();
+
+        for (Spec spec : specs) {
+            TermsAggregation aggregation = new TermsAggregation();
+            aggregation.setName(spec.name);
+
+            Map<Comparable<?>, Node> buckets = parent.buckets.getOrDefault(spec, new HashMap<Comparable<?>, Node>());
+            List<Map.Entry<Comparable<?>, Node>> sorted = new ArrayList<Map.Entry<Comparable<?>, Node>>(
+                    buckets.entrySet());
+
+            Comparator<Map.Entry<Comparable<?>, Node>> byKey = (e1, e2) -> ((Comparable) e1.getKey())
+                    .compareTo(e2.getKey());
+            Comparator<Map.Entry<Comparable<?>, Node>> byCount = Comparator.comparingLong(e -> e.getValue().count);
+
+            if (spec.byKey)
+                sorted.sort(spec.ascending ? byKey : byKey.reversed());
+            else
+                // Same as OpenSearch: ties on count are ordered by ascending key
+                sorted.sort((spec.ascending ? byCount : byCount.reversed()).thenComparing(byKey));
+
+            long otherCount = 0;
+
+            for (int i = 0; i < sorted.size(); i++) {
+                Map.Entry<Comparable<?>, Node> entry = sorted.get(i);
+
+                if (i >= spec.size) {
+                    otherCount += entry.getValue().count;
+                    continue;
+                }
+
+                Bucket bucket = aggregation.new Bucket();
+                bucket.setKey(this.keyAsString(spec, entry.getKey()));
+                bucket.setSubAggregations(this.toAggregations(spec.subAggs, entry.getValue()));
+                aggregation.getBuckets().add(bucket);
+            }
+
+            aggregation.setSum_other_doc_count(otherCount);
+            aggregations.add(aggregation);
+        }
+
+        return aggregations;
+    }
+
+    private String keyAsString(Spec spec, Comparable<?> key) {
+        if (spec.field.getType() == LuceneMapping.Type.DATE)
+            return LuceneMapping.formatDate((Long) key, spec.field.getFormat());
+
+        return key.toString();
+    }
+
+    private List<Spec> parse(JsonNode aggs) throws IOException {
+        List<Spec> specs = new ArrayList<Spec>();
+        if (aggs == null || aggs.isNull())
+            return specs;
+
+        Iterator<Map.Entry<String, JsonNode>> it = aggs.fields();
+
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> agg = it.next();
+            JsonNode terms = agg.getValue().get("terms");
+
+            // Only terms aggregations are supported (as with OpenSearch backend)
+            if (terms == null)
+                throw new IOException("Unsupported aggregation for local index: " + agg.getKey());
+
+            Spec spec = new Spec();
+            spec.name = agg.getKey();
+            spec.field = this.mapping.getField(terms.path("field").asText());
+            spec.size = terms.path("size").asInt(DEFAULT_SIZE);
+
+            if (spec.field == null || spec.field.getType() == LuceneMapping.Type.TEXT
+                    || spec.field.getType() == LuceneMapping.Type.GEO_POINT)
+                throw new IOException("Field " + terms.path("field").asText() + " of aggregation " + agg.getKey()
+                        + " must be a keyword, numeric or date field");
+            if (!spec.field.hasDocValues())
+                throw new IOException(
+                        "Field " + spec.field.getName() + " of aggregation " + agg.getKey() + " has no doc values");
+
+            JsonNode order = terms.get("order");
+            if (order != null && order.size() > 0) {
+                Map.Entry<String, JsonNode> orderBy = order.fields().next();
+                spec.byKey = orderBy.getKey().equals("_key") || orderBy.getKey().equals("_term");
+                spec.ascending = orderBy.getValue().asText().equalsIgnoreCase("asc");
+            }
+
+            JsonNode subAggs = agg.getValue().has("aggs") ? agg.getValue().get("aggs")
+                    : agg.getValue().get("aggregations");
+            spec.subAggs = this.parse(subAggs);
+            specs.add(spec);
+        }
+
+        return specs;
+    }
+}
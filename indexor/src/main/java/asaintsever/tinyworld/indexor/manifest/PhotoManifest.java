@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.manifest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.metadata.extractor.IPhotoManifest;
+
+/**
+ * Local manifest of indexed photos: path -> (size, last modification time, content fingerprint,
+ * document id). Used for incremental ingestion to skip photos that have not changed since they were
+ * indexed.
+ *
+ * Manifest is kept in memory and saved as a tab-separated text file, replaced atomically on save.
+ */
+public class PhotoManifest implements IPhotoManifest, Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(PhotoManifest.class);
+
+    private final static String HEADER = "# TinyWorld photo manifest v1";
+    private final static String SEPARATOR = "\t";
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private volatile boolean dirty = false;
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long fingerprint;
+        private final String docId;
+
+        Entry(long size, long lastModified, long fingerprint, String docId) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+            this.docId = docId;
+        }
+    }
+
+    public PhotoManifest(Path file) throws IOException {
+        this.file = file;
+        this.load();
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Return id of document indexed for this photo, or null if photo is not in manifest
+     */
+    public String getDocumentId(URI uri) {
+        Entry entry = this.entries.get(uri.toString());
+        return entry != null ? entry.docId : null;
+    }
+
+    @Override
+    public boolean isUnchanged(URI uri, long size, long lastModified) {
+        Entry entry = this.entries.get(uri.toString());
+        return entry != null && entry.size == size && entry.lastModified == lastModified;
+    }
+
+    @Override
+    public boolean isUnchanged(URI uri, long size, long lastModified, long fingerprint) {
+        Entry entry = this.entries.get(uri.toString());
+
+        if (entry != null && entry.size == size && entry.fingerprint == fingerprint) {
+            // Same content: record new modification time to avoid reading photo again next time
+            this.entries.put(uri.toString(), new Entry(size, lastModified, fingerprint, entry.docId));
+            this.dirty = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void processed(URI uri, long size, long lastModified, long fingerprint) {
+        try {
+            this.entries.put(uri.toString(),
+                    new Entry(size, lastModified, fingerprint, Indexor.getPhotoId(uri.toURL())));
+            this.dirty = true;
+        } catch (IOException e) {
+            logger.warn("Fail to record " + uri + " in manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove photo from manifest (e.g. photo processed but failed to be indexed)
+     */
+    public void forget(URI uri) {
+        if (this.entries.remove(uri.toString()) != null)
+            this.dirty = true;
+    }
+
+    /**
+     * Remove all entries and delete manifest file (to be called when index is cleared or deleted)
+     */
+    public synchronized void clear() throws IOException {
+        this.entries.clear();
+        this.dirty = false;
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Save manifest if modified since last load or save
+     */
+    public synchronized void save() throws IOException {
+        if (!this.dirty)
+            return;
+
+        this.dirty = false;
+
+        Files.createDirectories(this.file.getParent());
+        Path tmpFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+
+            for (Map.Entry<String, Entry> e : this.entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + SEPARATOR + entry.size + SEPARATOR + entry.lastModified + SEPARATOR
+                        + entry.fingerprint + SEPARATOR + entry.docId);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            this.dirty = true;
+            throw e;
+        }
+
+        Files.move(tmpFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Saved " + this.entries.size() + " entries in manifest " + this.file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.save();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(this.file))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split(SEPARATOR);
+
+                try {
+                    this.entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3]), fields[4]));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    logger.warn("Ignoring invalid line in manifest " + this.file + ": " + line);
+                }
+            }
+        }
+
+        logger.info("Loaded " + this.entries.size() + " entries from manifest " + this.file);
+    }
+}
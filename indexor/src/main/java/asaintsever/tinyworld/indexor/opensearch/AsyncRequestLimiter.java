@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import org.opensearch.action.ActionListener;
+
+/**
+ * Bound number of asynchronous requests in flight to cluster, so that cluster is not flooded
+ * (backpressure). Requests submitted while limit is reached are queued and sent as in flight
+ * requests complete: callers (e.g. UI thread, or HTTP client I/O threads chaining requests) never
+ * wait. Queue is bounded too: once full, requests are rejected with a
+ * TooManyPendingRequestsException (a transient failure, photos being spooled if spool is enabled).
+ */
+public class AsyncRequestLimiter {
+
+    @FunctionalInterface
+    public interface AsyncRequest<R> {
+        void send(ActionListener<R> listener) throws IOException;
+    }
+
+    private final int maxInFlightRequests;
+    private final int maxPendingRequests;
+    private final Semaphore permits;
+    private final Semaphore queueSlots;
+    private final Queue<PendingRequest<?>> pendingRequests = new ConcurrentLinkedQueue<PendingRequest<?>>();
+
+    private static class PendingRequest<R> {
+        private final AsyncRequest<R> request;
+        private final CompletableFuture<R> future = new CompletableFuture<R>();
+
+        PendingRequest(AsyncRequest<R> request) {
+            this.request = request;
+        }
+    }
+
+    public AsyncRequestLimiter(int maxInFlightRequests, int maxPendingRequests) {
+        if (maxInFlightRequests <= 0)
+            throw new IllegalArgumentException("Max number of in flight requests must be positive");
+        if (maxPendingRequests <= 0)
+            throw new IllegalArgumentException("Max number of pending requests must be positive");
+
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxPendingRequests = maxPendingRequests;
+        this.permits = new Semaphore(maxInFlightRequests);
+        this.queueSlots = new Semaphore(maxPendingRequests);
+    }
+
+    public int getMaxInFlightRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    public int getMaxPendingRequests() {
+        return this.maxPendingRequests;
+    }
+
+    public int getInFlightRequests() {
+        return this.maxInFlightRequests - this.permits.availablePermits();
+    }
+
+    /**
+     * Number of requests waiting for a permit
+     */
+    public int getPendingRequests() {
+        return this.pendingRequests.size();
+    }
+
+    /**
+     * Send request now if a permit is available, else once a request in flight completes. Permit is
+     * released when request completes. Returned future is completed from the HTTP client I/O threads:
+     * use the *Async variants of CompletableFuture to run long processing on another executor. Future
+     * fails right away if max number of pending requests is reached.
+     */
+    public <R> CompletableFuture<R> submit(AsyncRequest<R> request) {
+        PendingRequest<R> pending = new PendingRequest<R>(request);
+
+        // Every request goes through queue, even if sent right away: queue is only full while all
+        // permits are taken
+        if (!this.queueSlots.tryAcquire()) {
+            pending.future.completeExceptionally(new TooManyPendingRequestsException(
+                    "Request rejected: " + this.maxPendingRequests + " requests already waiting to be sent"));
+            return pending.future;
+        }
+
+        this.pendingRequests.add(pending);
+        this.sendPendingRequests();
+        return pending.future;
+    }
+
+    private void sendPendingRequests() {
+        // A request queued while permits are taken is sent by the thread releasing next permit (permit is
+        // always released before checking queue)
+        while (!this.pendingRequests.isEmpty() && this.permits.tryAcquire()) {
+            PendingRequest<?> pending = this.pendingRequests.poll();
+
+            if (pending == null) {
+                this.permits.release(); // Taken by another thread: check again
+            } else {
+                this.queueSlots.release();
+                this.send(pending);
+            }
+        }
+    }
+
+    private <R> void send(PendingRequest<R> pending) {
+        try {
+            pending.request.send(new ActionListener<R>() {
+                @Override
+                public void onResponse(R response) {
+                    permits.release();
+                    sendPendingRequests();
+                    pending.future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    permits.release();
+                    sendPendingRequests();
+                    pending.future.completeExceptionally(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // Request not sent: permit goes to next queued request
+            this.permits.release();
+            this.sendPendingRequests();
+            pending.future.completeExceptionally(e);
+        }
+    }
+}
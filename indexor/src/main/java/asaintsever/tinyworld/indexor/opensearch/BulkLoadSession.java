@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+
+/**
+ * Bulk load session on an index. Original settings are saved in a marker file before being relaxed,
+ * so that they can be restored on next start if process stops before session is closed. Settings
+ * not explicitly set on index are reset once session ends rather than set to their default value
+ * (e.g. an explicit refresh interval would disable search idle shards).
+ */
+public class BulkLoadSession implements IBulkLoadSession {
+    protected static Logger logger = LoggerFactory.getLogger(BulkLoadSession.class);
+
+    public final static String REFRESH_INTERVAL = "index.refresh_interval";
+    public final static String TRANSLOG_DURABILITY = "index.translog.durability";
+    public final static String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+
+    private final static Map<String, String> BULK_LOAD_SETTINGS = Map.of(REFRESH_INTERVAL, "-1", TRANSLOG_DURABILITY,
+            "async", NUMBER_OF_REPLICAS, "0");
+
+    // Marker file value of settings not explicitly set on index
+    private final static String UNSET = "";
+
+    private final ClusterClient client;
+    private final String index;
+    private final Path markerFile;
+    private boolean active = false;
+
+    public BulkLoadSession(ClusterClient client, String index, Path markerFile) {
+        this.client = client;
+        this.index = index;
+        this.markerFile = markerFile;
+    }
+
+    /**
+     * Save original settings then relax them
+     */
+    public BulkLoadSession begin() throws IOException {
+        if (Files.exists(this.markerFile))
+            throw new IOException("Bulk load already in progress on index " + this.index + " (marker file "
+                    + this.markerFile + " exists)");
+
+        Map<String, String> originalSettings = this.client.getIndexSettings(this.index, false,
+                BULK_LOAD_SETTINGS.keySet().toArray(new String[0]));
+        writeMarker(this.markerFile, originalSettings);
+
+        try {
+            this.client.updateIndexSettings(this.index, BULK_LOAD_SETTINGS);
+        } catch (IOException e) {
+            restore(this.client, this.index, this.markerFile);
+            throw e;
+        }
+
+        this.active = true;
+        logger.info("Bulk load started on index " + this.index + " (original settings: " + originalSettings + ")");
+        return this;
+    }
+
+    @Override
+    public boolean isActive() {
+        return this.active;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.active)
+            return;
+
+        this.active = false;
+        restore(this.client, this.index, this.markerFile);
+        logger.info("Bulk load ended on index " + this.index);
+    }
+
+    /**
+     * Restore settings saved in marker file, if any, then refresh index and delete marker file. Return
+     * true if settings have been restored.
+     */
+    public static boolean restore(ClusterClient client, String index, Path markerFile) throws IOException {
+        if (!Files.exists(markerFile))
+            return false;
+
+        if (client.isIndexExists(index)) {
+            client.updateIndexSettings(index, readMarker(markerFile));
+            client.refreshIndex(index);
+        }
+
+        // Marker is only removed once settings are back: a failed restore will be retried on next start
+        Files.delete(markerFile);
+        return true;
+    }
+
+    private static void writeMarker(Path markerFile, Map<String, String> settings) throws IOException {
+        Properties props = new Properties();
+        settings.forEach((name, value) -> props.setProperty(name, value != null ? value : UNSET));
+
+        Files.createDirectories(markerFile.getParent());
+        Path tmpFile = markerFile.resolveSibling(markerFile.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            props.store(writer, "TinyWorld bulk load: original index settings");
+        }
+
+        Files.move(tmpFile, markerFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Map<String, String> readMarker(Path markerFile) throws IOException {
+        Properties props = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(markerFile, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        for (String name : props.stringPropertyNames())
+            settings.put(name, UNSET.equals(props.getProperty(name)) ? null : props.getProperty(name));
+
+        return settings;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.opensearch.action.ActionListener;
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkProcessor;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.common.unit.ByteSizeUnit;
+import org.opensearch.common.unit.ByteSizeValue;
+import org.opensearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+
+/**
+ * Bulk writer relying on the high-level rest client's BulkProcessor (_bulk endpoint)
+ */
+public class BulkWriter<T> implements IBulkWriter<T> {
+    protected static Logger logger = LoggerFactory.getLogger(BulkWriter.class);
+
+    private final static long CLOSE_TIMEOUT_MINUTES = 10;
+
+    private final Document<T> document;
+    private final boolean allowUpdate;
+    private final Function<T, String> idProvider;
+    private final Consumer<BulkItemResult<T>> resultListener;
+    private final BulkProcessor processor;
+
+    // Documents sent but not acknowledged yet, by request (BulkProcessor gives back requests, not
+    // documents)
+    private final Map<DocWriteRequest<?>, T> pending = Collections
+            .synchronizedMap(new IdentityHashMap<DocWriteRequest<?>, T>());
+
+    // Whole bulk requests failing with transient errors are sent again using the resilience policy (if
+    // not processed by cluster when creating documents), whereas documents rejected by cluster (429)
+    // are retried by the bulk processor with its default backoff policy
+    BulkWriter(Document<T> document, RestHighLevelClient restHlClient, ResiliencePolicy resiliencePolicy,
+            BulkSettings settings, boolean allowUpdate, Function<T, String> idProvider,
+            Consumer<BulkItemResult<T>> resultListener) {
+        this(document, sender(restHlClient, resiliencePolicy), settings, allowUpdate, idProvider, resultListener);
+    }
+
+    // Bulk requests are sent using given consumer
+    BulkWriter(Document<T> document, BiConsumer<BulkRequest, ActionListener<BulkResponse>> bulkConsumer,
+            BulkSettings settings, boolean allowUpdate, Function<T, String> idProvider,
+            Consumer<BulkItemResult<T>> resultListener) {
+        this.document = document;
+        this.allowUpdate = allowUpdate;
+        this.idProvider = idProvider;
+        this.resultListener = resultListener;
+
+        this.processor = BulkProcessor.builder(bulkConsumer, new BulkProcessor.Listener() {
+
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request) {
+                logger.debug(
+                        "Sending bulk request #" + executionId + " with " + request.numberOfActions() + " document(s)");
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                List<DocWriteRequest<?>> requests = request.requests();
+
+                // Items are matched by document id: response items of documents sent again by the
+                // bulk processor (429) hold their position in the retry request, not in this one
+                Map<String, Deque<DocWriteRequest<?>>> requestsById = new HashMap<>();
+                for (DocWriteRequest<?> docRequest : requests)
+                    requestsById.computeIfAbsent(docRequest.id(), id -> new ArrayDeque<>()).add(docRequest);
+
+                for (BulkItemResponse item : response.getItems()) {
+                    Deque<DocWriteRequest<?>> sameId = requestsById.get(item.getId());
+                    // Ids generated by cluster are not known beforehand: fall back on position
+                    DocWriteRequest<?> docRequest = (sameId != null && !sameId.isEmpty()) ? sameId.poll()
+                            : requests.get(item.getItemId());
+                    T doc = pending.remove(docRequest);
+                    report(Document.toResult(item, doc));
+                }
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                logger.error("Bulk request #" + executionId + " failed: " + failure.getMessage());
+
+                for (DocWriteRequest<?> docRequest : request.requests()) {
+                    T doc = pending.remove(docRequest);
+                    report(new BulkItemResult<T>(docRequest.id(), doc, Status.FAILED, failure.getMessage(),
+                            ResiliencePolicy.isTransient(failure)));
+                }
+            }
+        }).setBulkActions(settings.getActions()).setBulkSize(new ByteSizeValue(settings.getSizeMb(), ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueSeconds(settings.getFlushIntervalSeconds()))
+                .setConcurrentRequests(settings.getConcurrentRequests()).build();
+    }
+
+    @Override
+    public void add(T doc) throws IOException {
+        DocWriteRequest<?> request = this.document.newIndexRequest(this.idProvider.apply(doc), doc, this.allowUpdate);
+        this.pending.put(request, doc);
+        this.processor.add(request);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.processor.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!this.processor.awaitClose(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES))
+                throw new IOException("Timeout waiting for pending bulk requests (" + this.pending.size()
+                        + " document(s) not acknowledged)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pending bulk requests");
+        }
+    }
+
+    private static BiConsumer<BulkRequest, ActionListener<BulkResponse>> sender(RestHighLevelClient restHlClient,
+            ResiliencePolicy resiliencePolicy) {
+        return (request,
+                listener) -> resiliencePolicy.<BulkResponse>executeAsync(
+                        () -> toFuture(l -> restHlClient.bulkAsync(request, RequestOptions.DEFAULT, l)),
+                        Document.isIdempotent(request)).whenComplete((response, e) -> {
+                            if (e == null)
+                                listener.onResponse(response);
+                            else
+                                listener.onFailure(e instanceof Exception ? (Exception) e : new Exception(e));
+                        });
+    }
+
+    private static <R> CompletableFuture<R> toFuture(Consumer<ActionListener<R>> request) {
+        CompletableFuture<R> future = new CompletableFuture<R>();
+        request.accept(ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future;
+    }
+
+    private void report(BulkItemResult<T> result) {
+        if (!result.isOk())
+            logger.error("Fail to index document " + result.getId() + ": " + result.getStatus() + " "
+                    + result.getErrorMsg());
+
+        if (this.resultListener != null)
+            this.resultListener.accept(result);
+    }
+}
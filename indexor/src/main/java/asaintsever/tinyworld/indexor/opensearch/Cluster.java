@@ -54,6 +54,7 @@ public class Cluster implements Closeable {
     private String pathHome; // location for index storage
     private String host;
     private int httpPort;
+    private ClusterTuning tuning = new ClusterTuning();
     private ClusterNode node;
 
     public Cluster() {
@@ -82,6 +83,11 @@ public class Cluster implements Closeable {
         return this;
     }
 
+    public Cluster setTuning(ClusterTuning tuning) {
+        this.tuning = tuning;
+        return this;
+    }
+
     public Cluster create(boolean expose) throws ClusterNodeException {
         String clusterName = "tinyworld";
         String nodeName = "node";
@@ -96,6 +102,9 @@ public class Cluster implements Closeable {
         if (expose)
             settingsBuilder.put("http.cors.enabled", "true").put("http.cors.allow-origin", "*");
 
+        // Performance settings
+        this.tuning.apply(settingsBuilder);
+
         try {
             // Create and start node all at once
             this.node = new ClusterNode(settingsBuilder.build(), Arrays.asList(Netty4Plugin.class, // Netty plugin for
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+import asaintsever.tinyworld.indexor.IIndex;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.IPhotoAsync;
+import asaintsever.tinyworld.indexor.IPhotoIndexBackend;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.opensearch.Cluster.ClusterNodeException;
+
+/**
+ * Photos indexed in an OpenSearch / Elasticsearch cluster, embedded or external
+ */
+public class ClusterBackend implements IPhotoIndexBackend {
+    protected static Logger logger = LoggerFactory.getLogger(ClusterBackend.class);
+
+    private final String host;
+    private final int port;
+    private final String index;
+    private final TransportSettings transportSettings;
+    private final Path bulkLoadMarker;
+
+    private ClusterClient clusterClient;
+    private Cluster embeddedCluster; // Null if external cluster is used
+
+    private final Photo photos;
+    private final MetadataIndex mtdIndx;
+    private final PhotoAsync photosAsync;
+
+    /**
+     * @param embeddedCluster cluster to start (null to connect to an external cluster), closed with
+     *                        backend
+     * @param indexSettings   settings applied when creating index
+     * @param bulkLoadMarker  file recording index settings relaxed by bulk load sessions
+     */
+    public ClusterBackend(String host, int port, String index, Cluster embeddedCluster, boolean exposeEmbeddedCluster,
+            TransportSettings transportSettings, String indexSettings, IPhotoIndexContext context, Path bulkLoadMarker)
+            throws ClusterNodeException {
+        this.host = host;
+        this.port = port;
+        this.index = index;
+        this.transportSettings = transportSettings;
+        this.bulkLoadMarker = bulkLoadMarker;
+
+        if (embeddedCluster != null) {
+            try {
+                this.embeddedCluster = embeddedCluster.create(exposeEmbeddedCluster);
+            } catch (ClusterNodeException e) {
+                logger.error("Fail to create and start embedded cluster: " + e.getMessage());
+                throw e;
+            }
+        }
+
+        this.clusterClient = new ClusterClient(host, port, transportSettings);
+        this.photos = new Photo(context).setConnection(this.clusterClient, index);
+        this.mtdIndx = new MetadataIndex(this.photos, indexSettings, context).setConnection(this.clusterClient, index);
+        this.photosAsync = new PhotoAsync(this.photos, context);
+
+        // Load all search templates into cluster. Templates are loaded again even if they exist as they
+        // may have changed since they were stored (e.g. new parameters).
+        Indexor.SEARCH_TEMPLATES.forEach((k, v) -> {
+            try {
+                this.clusterClient.loadSearchTemplate(k, v);
+            } catch (IOException e) {
+                logger.error("Fail to load search template " + k + " from resource " + v + ": " + e.getMessage());
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Restore index settings left relaxed by a bulk load session that did not end properly
+        try {
+            if (BulkLoadSession.restore(this.clusterClient, index, bulkLoadMarker))
+                logger.warn("Restored settings of index " + index + " after interrupted bulk load");
+        } catch (IOException e) {
+            logger.error(
+                    "Fail to restore settings of index " + index + " after interrupted bulk load: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public IIndex metadataIndex() {
+        return this.mtdIndx;
+    }
+
+    @Override
+    public IPhoto photos() {
+        return this.photos;
+    }
+
+    @Override
+    public IPhotoAsync photosAsync() {
+        return this.photosAsync;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.clusterClient.isConnected();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        this.photos.close();
+        this.clusterClient.close();
+
+        this.clusterClient = new ClusterClient(this.host, this.port, this.transportSettings);
+
+        this.mtdIndx.setConnection(this.clusterClient, this.index);
+        this.photos.setConnection(this.clusterClient, this.index);
+    }
+
+    @Override
+    public IBulkLoadSession beginBulkLoad() throws IOException {
+        return new BulkLoadSession(this.clusterClient, this.index, this.bulkLoadMarker).begin();
+    }
+
+    @Override
+    public ResilienceStats resilienceStats() {
+        return this.clusterClient.getResiliencePolicy().getStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.photos.close();
+        this.clusterClient.close();
+
+        if (this.embeddedCluster != null)
+            this.embeddedCluster.close();
+    }
+}
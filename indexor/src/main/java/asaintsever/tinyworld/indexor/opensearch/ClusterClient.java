@@ -23,12 +23,29 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import lombok.Getter;
 import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.opensearch.action.admin.indices.refresh.RefreshRequest;
+import org.opensearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.opensearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.opensearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.opensearch.action.support.master.AcknowledgedResponse;
+import org.opensearch.client.Request;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.Response;
 import org.opensearch.client.ResponseException;
 import org.opensearch.client.RestClient;
 import org.opensearch.client.RestClientBuilder;
+import org.opensearch.client.RestHighLevelClient;
 import org.opensearch.client.base.BooleanResponse;
 import org.opensearch.client.base.RestClientTransport;
 import org.opensearch.client.base.Transport;
@@ -45,15 +62,18 @@ import org.opensearch.client.opensearch.indices.CreateResponse;
 import org.opensearch.client.opensearch.indices.DeleteRequest;
 import org.opensearch.client.opensearch.indices.DeleteResponse;
 import org.opensearch.client.opensearch.indices.ExistsRequest;
+import org.opensearch.common.settings.Settings;
 import org.opensearch.rest.RestStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.json.Json;
+import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonValue;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -71,12 +91,49 @@ public class ClusterClient implements Closeable {
     private final RestClientBuilder restClientBuilder;
     private OpenSearchClient osClient;
 
+    // Used for search and templates only (new Java client search capabilities not on par compared to
+    // high-level rest client). Shares the rest client above.
+    private RestHighLevelClient restHlClient;
+
     @Getter
     private final ObjectMapper mapper;
 
+    // Shared by all asynchronous requests sent using this client
+    @Getter
+    private final AsyncRequestLimiter asyncLimiter;
+
+    // Retries and circuit breaker applied to all requests sent using this client (ping excepted)
+    @Getter
+    private final ResiliencePolicy resiliencePolicy;
+
+    private final static int REINDEX_BATCH_SIZE = 500;
+    private final static String REINDEX_SCROLL_KEEP_ALIVE = "5m";
+
     public ClusterClient(String host, int port) {
-        this.restClientBuilder = RestClient.builder(new HttpHost(host, port));
+        this(host, port, new TransportSettings());
+    }
+
+    public ClusterClient(String host, int port, TransportSettings settings) {
+        // One connection pool and I/O reactor for both the Java client and the high-level rest client
+        this.restClientBuilder = RestClient.builder(new HttpHost(host, port))
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom().setSoKeepAlive(true);
+                    if (settings.getIoThreads() > 0)
+                        ioReactorConfig.setIoThreadCount(settings.getIoThreads());
+
+                    return httpClientBuilder.setMaxConnPerRoute(settings.getMaxConnPerRoute())
+                            .setMaxConnTotal(settings.getMaxConnTotal())
+                            .setKeepAliveStrategy(
+                                    (response, context) -> TimeUnit.SECONDS.toMillis(settings.getKeepAliveSeconds()))
+                            .setDefaultIOReactorConfig(ioReactorConfig.build());
+                }).setRequestConfigCallback(
+                        requestConfigBuilder -> requestConfigBuilder.setConnectTimeout(settings.getConnectTimeoutMs())
+                                .setSocketTimeout(settings.getSocketTimeoutMs()));
         this.restClient = this.restClientBuilder.build();
+        this.restHlClient = new SharedRestHighLevelClient(this.restClient);
+        this.asyncLimiter = new AsyncRequestLimiter(settings.getMaxInFlightRequests(),
+                settings.getMaxPendingRequests());
+        this.resiliencePolicy = new ResiliencePolicy(settings);
 
         // See https://github.com/opensearch-project/opensearch-java/issues/60 and
         // https://github.com/opensearch-project/opensearch-java/pull/61
@@ -112,7 +169,54 @@ public class ClusterClient implements Closeable {
         return this.restClientBuilder;
     }
 
+    /**
+     * High-level rest client sharing this cluster client's connection pool. Must not be closed by
+     * callers.
+     */
+    public RestHighLevelClient getHighLevelClient() {
+        return this.restHlClient;
+    }
+
+    /**
+     * Run request with resilience policy: retried on transient failures, failing fast while cluster is
+     * unavailable
+     */
+    public <R> R execute(ResiliencePolicy.Call<R> call) throws IOException {
+        return this.resiliencePolicy.execute(call);
+    }
+
+    /**
+     * Same as execute(), retrying non idempotent requests only if they were not processed by cluster
+     */
+    public <R> R execute(ResiliencePolicy.Call<R> call, boolean idempotent) throws IOException {
+        return this.resiliencePolicy.execute(call, idempotent);
+    }
+
+    /**
+     * Send asynchronous request with resilience policy, once a permit is available from the async
+     * request limiter (a permit is acquired for each attempt)
+     */
+    public <R> CompletableFuture<R> submit(AsyncRequestLimiter.AsyncRequest<R> request) {
+        return this.submit(request, true);
+    }
+
+    /**
+     * Same as submit(), sending non idempotent requests again only if they were not processed by
+     * cluster
+     */
+    public <R> CompletableFuture<R> submit(AsyncRequestLimiter.AsyncRequest<R> request, boolean idempotent) {
+        return this.resiliencePolicy.executeAsync(() -> this.asyncLimiter.submit(request), idempotent);
+    }
+
     public Boolean createIndex(String index, String mapping) throws IOException {
+        return this.createIndex(index, mapping, null);
+    }
+
+    /**
+     * Create index with given mapping and settings (JSON object of index settings, e.g.
+     * {"index.sort.field": "takenDate"}). Settings such as index sorting can only be set at creation.
+     */
+    public Boolean createIndex(String index, String mapping, String settings) throws IOException {
         JsonValue mappingJson = null;
 
         if (mapping != null && !mapping.isEmpty()) {
@@ -122,23 +226,248 @@ public class ClusterClient implements Closeable {
             }
         }
 
-        CreateRequest createIndexRequest = new CreateRequest.Builder().index(index).mappings(mappingJson).build();
-        CreateResponse createIndexResponse = this.osClient.indices().create(createIndexRequest);
+        CreateRequest.Builder createIndexRequestBuilder = new CreateRequest.Builder().index(index)
+                .mappings(mappingJson);
+
+        if (settings != null && !settings.isEmpty()) {
+            StringReader settingsStr = new StringReader(settings);
+            try (JsonReader jsonreader = Json.createReader(settingsStr)) {
+                JsonObject settingsJson = jsonreader.readObject();
+                settingsJson.forEach(createIndexRequestBuilder::putSettings);
+            }
+        }
+
+        CreateRequest createIndexRequest = createIndexRequestBuilder.build();
+        CreateResponse createIndexResponse = this.execute(() -> this.osClient.indices().create(createIndexRequest));
         return createIndexResponse.acknowledged();
     }
 
     public Boolean isIndexExists(String index) throws IOException {
         ExistsRequest existsIndexRequest = new ExistsRequest.Builder().addIndex(index).build();
-        BooleanResponse boolResponse = this.osClient.indices().exists(existsIndexRequest);
+        BooleanResponse boolResponse = this.execute(() -> this.osClient.indices().exists(existsIndexRequest));
         return boolResponse.value();
     }
 
+    /**
+     * Delete index. If index is an alias (e.g. after a mapping migration), indices it points to are
+     * deleted.
+     */
     public Boolean deleteIndex(String index) throws IOException {
-        DeleteRequest deleteRequest = new DeleteRequest.Builder().index(index).build();
-        DeleteResponse deleteResponse = this.osClient.indices().delete(deleteRequest);
+        List<String> aliasedIndices = this.getAliasedIndices(index);
+        DeleteRequest deleteRequest = new DeleteRequest.Builder()
+                .index(aliasedIndices.isEmpty() ? List.of(index) : aliasedIndices).build();
+        DeleteResponse deleteResponse = this.execute(() -> this.osClient.indices().delete(deleteRequest));
         return deleteResponse.acknowledged();
     }
 
+    /**
+     * Get current values of index settings (default values are returned for settings not explicitly set
+     * on index)
+     */
+    public Map<String, String> getIndexSettings(String index, String... settings) throws IOException {
+        return this.getIndexSettings(index, true, settings);
+    }
+
+    /**
+     * Get current values of index settings. Without defaults, null is returned for settings not
+     * explicitly set on index.
+     */
+    public Map<String, String> getIndexSettings(String index, boolean includeDefaults, String... settings)
+            throws IOException {
+        GetSettingsRequest getSettingsRequest = new GetSettingsRequest().indices(index).names(settings)
+                .includeDefaults(includeDefaults);
+        GetSettingsResponse getSettingsResponse = this
+                .execute(() -> this.restHlClient.indices().getSettings(getSettingsRequest, RequestOptions.DEFAULT));
+
+        // Settings are returned by concrete index name, which differs if index is an alias
+        Iterator<String> concreteIndices = getSettingsResponse.getIndexToSettings().keysIt();
+        String concreteIndex = concreteIndices.hasNext() ? concreteIndices.next() : index;
+
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (String setting : settings)
+            values.put(setting, getSettingsResponse.getSetting(concreteIndex, setting));
+
+        return values;
+    }
+
+    /**
+     * Update index settings. Settings with null value are reset to their default value.
+     */
+    public Boolean updateIndexSettings(String index, Map<String, String> settings) throws IOException {
+        Settings.Builder settingsBuilder = Settings.builder();
+        settings.forEach(settingsBuilder::put);
+
+        UpdateSettingsRequest updateSettingsRequest = new UpdateSettingsRequest(index).settings(settingsBuilder);
+        AcknowledgedResponse updateSettingsResponse = this
+                .execute(() -> this.restHlClient.indices().putSettings(updateSettingsRequest, RequestOptions.DEFAULT));
+        return updateSettingsResponse.isAcknowledged();
+    }
+
+    public void refreshIndex(String index) throws IOException {
+        this.execute(() -> this.restHlClient.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT));
+    }
+
+    /**
+     * Get indices alias points to. Empty if there is no such alias.
+     */
+    public List<String> getAliasedIndices(String alias) throws IOException {
+        Request request = new Request("GET", "/_alias/" + alias);
+        List<String> indices = new ArrayList<String>();
+
+        try {
+            Response response = this.execute(() -> this.restClient.performRequest(request));
+            this.mapper.readTree(response.getEntity().getContent()).fieldNames().forEachRemaining(indices::add);
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() != RestStatus.NOT_FOUND.getStatus())
+                throw e;
+        }
+
+        return indices;
+    }
+
+    /**
+     * Apply alias actions (e.g. {"add": {"index": "photos_v2", "alias": "photos"}}) atomically
+     */
+    public Boolean updateAliases(List<Map<String, Object>> actions) throws IOException {
+        Request request = new Request("POST", "/_aliases");
+        request.setJsonEntity(this.mapper.writeValueAsString(Map.of("actions", actions)));
+
+        Response response = this.execute(() -> this.restClient.performRequest(request));
+        return this.mapper.readTree(response.getEntity().getContent()).path("acknowledged").asBoolean();
+    }
+
+    /**
+     * Get "_meta" section of index mapping. Empty if mapping has no such section.
+     */
+    public JsonNode getMappingMeta(String index) throws IOException {
+        Request request = new Request("GET", "/" + index + "/_mapping");
+        Response response = this.execute(() -> this.restClient.performRequest(request));
+
+        // Response is keyed by concrete index name, which differs if index is an alias
+        JsonNode indices = this.mapper.readTree(response.getEntity().getContent());
+        return indices.size() == 0 ? this.mapper.createObjectNode()
+                : indices.elements().next().path("mappings").path("_meta");
+    }
+
+    /**
+     * Get primary shards statistics of index
+     */
+    public IndexStats getIndexStats(String index) throws IOException {
+        Request request = new Request("GET", "/" + index + "/_stats/docs,store,indexing");
+        Response response = this.execute(() -> this.restClient.performRequest(request));
+
+        JsonNode primaries = this.mapper.readTree(response.getEntity().getContent()).path("_all").path("primaries");
+        return new IndexStats(primaries.path("docs").path("count").asLong(),
+                primaries.path("store").path("size_in_bytes").asLong(),
+                primaries.path("indexing").path("index_time_in_millis").asLong());
+    }
+
+    /**
+     * Sequence number documents changed from now on will be above, on all primary shards of index (ie
+     * lowest max sequence number of primary shards). -1 if index is empty.
+     */
+    public long getMaxSeqNo(String index) throws IOException {
+        Request request = new Request("GET", "/" + index + "/_stats/docs");
+        request.addParameter("level", "shards");
+        Response response = this.execute(() -> this.restClient.performRequest(request));
+
+        long maxSeqNo = Long.MAX_VALUE;
+        for (JsonNode indexStats : this.mapper.readTree(response.getEntity().getContent()).path("indices")) {
+            for (JsonNode shardCopies : indexStats.path("shards")) {
+                for (JsonNode shard : shardCopies) {
+                    if (shard.path("routing").path("primary").asBoolean())
+                        maxSeqNo = Math.min(maxSeqNo, shard.path("seq_no").path("max_seq_no").asLong(-1));
+                }
+            }
+        }
+
+        return maxSeqNo == Long.MAX_VALUE ? -1 : maxSeqNo;
+    }
+
+    /**
+     * Copy documents of source index into destination index, keeping their ids. Documents are copied
+     * with their version and only overwrite older versions in destination, so that reindexing again
+     * only catches up with changes made in source meanwhile. Only searchable documents are copied
+     * (source must be refreshed first), destination is refreshed once done. Return number of documents
+     * created or updated in destination.
+     *
+     * Documents are read by scrolling through source and written with bulk requests, as reindex module
+     * is not part of embedded cluster.
+     */
+    public long reindex(String source, String dest) throws IOException {
+        return this.reindex(source, dest, -1);
+    }
+
+    /**
+     * Same as reindex() for documents of source changed after given sequence number only (see
+     * getMaxSeqNo()), -1 to copy all documents
+     */
+    public long reindex(String source, String dest, long afterSeqNo) throws IOException {
+        Map<String, Object> search = new LinkedHashMap<String, Object>(
+                Map.of("size", REINDEX_BATCH_SIZE, "version", true, "sort", List.of("_doc")));
+        if (afterSeqNo >= 0)
+            search.put("query", Map.of("range", Map.of("_seq_no", Map.of("gt", afterSeqNo))));
+
+        Request searchRequest = new Request("POST", "/" + source + "/_search");
+        searchRequest.addParameter("scroll", REINDEX_SCROLL_KEEP_ALIVE);
+        searchRequest.setJsonEntity(this.mapper.writeValueAsString(search));
+
+        Response response = this.execute(() -> this.restClient.performRequest(searchRequest));
+        JsonNode page = this.mapper.readTree(response.getEntity().getContent());
+        String scrollId = page.path("_scroll_id").asText(null);
+        long written = 0;
+
+        try {
+            while (page.path("hits").path("hits").size() > 0) {
+                StringBuilder bulk = new StringBuilder();
+
+                for (JsonNode hit : page.path("hits").path("hits")) {
+                    bulk.append(this.mapper
+                            .writeValueAsString(Map.of("index", Map.of("_index", dest, "_id", hit.path("_id").asText(),
+                                    "version", hit.path("_version").asLong(), "version_type", "external"))));
+                    bulk.append('\n').append(this.mapper.writeValueAsString(hit.path("_source"))).append('\n');
+                }
+
+                Request bulkRequest = new Request("POST", "/_bulk");
+                bulkRequest.setJsonEntity(bulk.toString());
+                Response bulkResponse = this.execute(() -> this.restClient.performRequest(bulkRequest));
+
+                for (JsonNode item : this.mapper.readTree(bulkResponse.getEntity().getContent()).path("items")) {
+                    JsonNode result = item.path("index");
+                    int status = result.path("status").asInt();
+
+                    if (status == RestStatus.OK.getStatus() || status == RestStatus.CREATED.getStatus())
+                        written++;
+                    else if (status != RestStatus.CONFLICT.getStatus()) // Already up to date in destination
+                        throw new IOException("Fail to reindex document [" + result.path("_id").asText() + "] of "
+                                + source + " into " + dest + ": " + result.path("error"));
+                }
+
+                Request scrollRequest = new Request("POST", "/_search/scroll");
+                scrollRequest.setJsonEntity(this.mapper
+                        .writeValueAsString(Map.of("scroll", REINDEX_SCROLL_KEEP_ALIVE, "scroll_id", scrollId)));
+                Response scrollResponse = this.execute(() -> this.restClient.performRequest(scrollRequest));
+                page = this.mapper.readTree(scrollResponse.getEntity().getContent());
+                scrollId = page.path("_scroll_id").asText(scrollId);
+            }
+        } finally {
+            if (scrollId != null) {
+                Request clearScrollRequest = new Request("DELETE", "/_search/scroll");
+                clearScrollRequest.setJsonEntity(this.mapper.writeValueAsString(Map.of("scroll_id", scrollId)));
+
+                try {
+                    this.restClient.performRequest(clearScrollRequest);
+                } catch (IOException e) {
+                    // Scroll expires anyway
+                    logger.warn("Fail to clear scroll on index " + source + ": " + e.getMessage());
+                }
+            }
+        }
+
+        this.refreshIndex(dest);
+        return written;
+    }
+
     public Boolean loadSearchTemplate(String templateId, String templatePath) throws IOException {
         // Read JSON Search Template file and load it in cluster
         // See https://www.elastic.co/guide/en/elasticsearch/reference/current/search-template.html,
@@ -161,14 +490,14 @@ public class ClusterClient implements Closeable {
 
         StoredScript storedScript = new StoredScript.Builder().lang(scriptLang).source(searchTemplate).build();
         PutScriptRequest putScriptRequest = new PutScriptRequest.Builder().id(templateId).script(storedScript).build();
-        PutScriptResponse putScriptResponse = this.osClient.putScript(putScriptRequest);
+        PutScriptResponse putScriptResponse = this.execute(() -> this.osClient.putScript(putScriptRequest));
         return putScriptResponse.acknowledged();
     }
 
     public Boolean isSearchTemplateExists(String templateId) throws IOException {
         GetScriptRequest getScriptRequest = new GetScriptRequest.Builder().id(templateId).build();
         try {
-            GetScriptResponse getScriptResponse = this.osClient.getScript(getScriptRequest);
+            GetScriptResponse getScriptResponse = this.execute(() -> this.osClient.getScript(getScriptRequest));
             return getScriptResponse.found();
         } catch (ResponseException e) {
             if (e.getResponse().getStatusLine().getStatusCode() == RestStatus.NOT_FOUND.getStatus()) {
@@ -181,7 +510,7 @@ public class ClusterClient implements Closeable {
 
     public Boolean deleteSearchTemplate(String templateId) throws IOException {
         DeleteScriptRequest delScriptRequest = new DeleteScriptRequest.Builder().id(templateId).build();
-        DeleteScriptResponse delScriptResponse = this.osClient.deleteScript(delScriptRequest);
+        DeleteScriptResponse delScriptResponse = this.execute(() -> this.osClient.deleteScript(delScriptRequest));
         return delScriptResponse.acknowledged();
     }
 
@@ -190,6 +519,7 @@ public class ClusterClient implements Closeable {
         if (this.restClient != null)
             this.restClient.close();
         this.restClient = null;
+        this.restHlClient = null;
         this.osClient = null;
     }
 }
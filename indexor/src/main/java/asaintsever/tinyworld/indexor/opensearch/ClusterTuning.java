@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.util.Map;
+
+import org.opensearch.common.settings.Settings.Builder;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Performance settings of the embedded cluster node, and of indices created on it. Empty strings
+ * and zero values keep OpenSearch defaults.
+ *
+ * Built-in presets: "default" (OpenSearch defaults), "low-memory" (to share the JVM heap with the
+ * UI), "bulk-ingest" and "search-heavy".
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class ClusterTuning {
+    public final static String PRESET_DEFAULT = "default";
+    public final static String PRESET_LOW_MEMORY = "low-memory";
+    public final static String PRESET_BULK_INGEST = "bulk-ingest";
+    public final static String PRESET_SEARCH_HEAVY = "search-heavy";
+
+    public final static String STORE_TYPE_NIOFS = "niofs";
+    public final static String STORE_TYPE_MMAPFS = "mmapfs";
+    public final static String STORE_TYPE_HYBRIDFS = "hybridfs";
+
+    private String preset = PRESET_DEFAULT;
+    private String indexBufferSize = ""; // % of heap or byte size (e.g. "10%", "64mb")
+    private int writeThreads = 0;
+    private int searchThreads = 0;
+    // Store type of indices created by TinyWorld (see getIndexSettings()). "niofs" also disables
+    // memory mapped files at node level.
+    private String storeType = "";
+    private String breakerLimit = ""; // parent circuit breaker limit, % of heap (e.g. "70%")
+    private boolean singleNode = false;
+
+    public static ClusterTuning preset(String name) {
+        if (name == null || name.isEmpty() || name.equals(PRESET_DEFAULT))
+            return new ClusterTuning();
+
+        switch (name) {
+        case PRESET_LOW_MEMORY:
+            return new ClusterTuning().setPreset(name).setIndexBufferSize("5%").setWriteThreads(1).setSearchThreads(2)
+                    .setStoreType(STORE_TYPE_NIOFS).setBreakerLimit("60%").setSingleNode(true);
+        case PRESET_BULK_INGEST:
+            return new ClusterTuning().setPreset(name).setIndexBufferSize("20%").setSearchThreads(2)
+                    .setSingleNode(true);
+        case PRESET_SEARCH_HEAVY:
+            return new ClusterTuning().setPreset(name).setIndexBufferSize("5%").setWriteThreads(1)
+                    .setStoreType(STORE_TYPE_MMAPFS).setSingleNode(true);
+        default:
+            throw new IllegalArgumentException("Unknown cluster tuning preset: " + name);
+        }
+    }
+
+    /**
+     * Add tuning settings to node settings
+     */
+    public Builder apply(Builder settingsBuilder) {
+        if (this.indexBufferSize != null && !this.indexBufferSize.isEmpty())
+            settingsBuilder.put("indices.memory.index_buffer_size", this.indexBufferSize);
+
+        if (this.writeThreads > 0)
+            settingsBuilder.put("thread_pool.write.size", this.writeThreads);
+
+        if (this.searchThreads > 0)
+            settingsBuilder.put("thread_pool.search.size", this.searchThreads);
+
+        if (this.hasStoreType()) {
+            switch (this.storeType) {
+            case STORE_TYPE_NIOFS:
+                settingsBuilder.put("node.store.allow_mmap", false);
+                break;
+            case STORE_TYPE_MMAPFS:
+            case STORE_TYPE_HYBRIDFS:
+                // Memory mapped files are allowed by default: store type is applied to indices
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported store type: " + this.storeType);
+            }
+        }
+
+        if (this.breakerLimit != null && !this.breakerLimit.isEmpty())
+            settingsBuilder.put("indices.breaker.total.limit", this.breakerLimit);
+
+        if (this.singleNode)
+            settingsBuilder.put("discovery.type", "single-node");
+
+        return settingsBuilder;
+    }
+
+    /**
+     * Settings to apply when creating indices ("index.store.type" is a static setting: store type of
+     * existing indices only changes when they are created again, e.g. migrated)
+     */
+    public Map<String, String> getIndexSettings() {
+        if (!this.hasStoreType())
+            return Map.of();
+
+        return Map.of("index.store.type", this.storeType);
+    }
+
+    private boolean hasStoreType() {
+        return this.storeType != null && !this.storeType.isEmpty();
+    }
+}
@@ -23,13 +23,28 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import lombok.Getter;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.action.DocWriteRequest.OpType;
+import org.opensearch.action.DocWriteResponse;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
 import org.opensearch.action.search.SearchRequest;
 import org.opensearch.action.search.SearchResponse;
+import org.opensearch.client.Request;
 import org.opensearch.client.RequestOptions;
+import org.opensearch.client.Response;
 import org.opensearch.client.ResponseException;
+import org.opensearch.client.ResponseListener;
 import org.opensearch.client.RestHighLevelClient;
 import org.opensearch.client.opensearch._global.CountRequest;
 import org.opensearch.client.opensearch._global.CountResponse;
@@ -37,6 +52,9 @@ import org.opensearch.client.opensearch._global.GetRequest;
 import org.opensearch.client.opensearch._global.GetResponse;
 import org.opensearch.client.opensearch._global.IndexRequest;
 import org.opensearch.client.opensearch._global.IndexResponse;
+import org.opensearch.common.bytes.BytesReference;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.xcontent.XContentType;
 import org.opensearch.index.query.QueryBuilder;
 import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.rest.RestStatus;
@@ -45,15 +63,45 @@ import org.opensearch.script.mustache.SearchTemplateRequest;
 import org.opensearch.script.mustache.SearchTemplateResponse;
 import org.opensearch.search.SearchHit;
 import org.opensearch.search.SearchHits;
+import org.opensearch.search.aggregations.bucket.geogrid.GeoGrid;
+import org.opensearch.search.aggregations.bucket.geogrid.GeoTileGridAggregationBuilder;
+import org.opensearch.search.aggregations.metrics.GeoCentroid;
+import org.opensearch.search.aggregations.metrics.GeoCentroidAggregationBuilder;
+import org.opensearch.search.aggregations.metrics.TopHits;
+import org.opensearch.search.aggregations.metrics.TopHitsAggregationBuilder;
+import org.opensearch.search.builder.PointInTimeBuilder;
 import org.opensearch.search.builder.SearchSourceBuilder;
+import org.opensearch.search.sort.SortBuilders;
+import org.opensearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
 import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
 import asaintsever.tinyworld.indexor.opensearch.utils.TermsAggregationBuilder;
 import asaintsever.tinyworld.indexor.search.results.IndexPage;
 
 public class Document<T> implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(Document.class);
+
+    private final static String POINT_IN_TIME_KEEP_ALIVE = "1m";
+
+    // Reads queries to find out whether their hits are scored
+    private final static ObjectMapper QUERY_MAPPER = new ObjectMapper();
+
+    // Name of injectable value holding document id when deserializing search hits
+    public final static String ID_INJECTABLE = "_id";
+
+    public final static String ID_FIELD = "_id";
+
     // Getter to allow customization of mapper
     @Getter
     private ObjectMapper mapper;
@@ -67,8 +115,15 @@ public class Document<T> implements Closeable {
     // high-level rest client)
     // To be removed once new Java client fully supports all search expressions and search templates
     // aggregations
+    // Shared with cluster client: do not close it here
     private RestHighLevelClient restHlClient;
 
+    // Unknown until first point in time request
+    private volatile Boolean pointInTimeSupported;
+
+    // Unique field sorted on last to get a total order of hits
+    private volatile String tiebreaker = ID_FIELD;
+
     public Document(ClusterClient client) {
         this.setClient(client);
     }
@@ -77,8 +132,8 @@ public class Document<T> implements Closeable {
         this.client = client;
         this.mapper = client.getMapper();
 
-        // Create internal high-level rest client in addition (for advanced search only)
-        this.restHlClient = new RestHighLevelClient(client.getClientBuilder());
+        // High-level rest client sharing cluster client's connection pool (for advanced search only)
+        this.restHlClient = client.getHighLevelClient();
         return this;
     }
 
@@ -87,6 +142,19 @@ public class Document<T> implements Closeable {
         return this;
     }
 
+    /**
+     * Set unique field used as tiebreaker when sorting hits, required to page with search_after. Field
+     * should have doc values: sorting on document id (default) loads all ids on heap (fielddata).
+     */
+    public Document<T> setTiebreaker(String field) {
+        this.tiebreaker = field;
+        return this;
+    }
+
+    public String getTiebreaker() {
+        return this.tiebreaker;
+    }
+
     public String add(T document) throws IOException {
         return this.add(null, document, true);
     }
@@ -103,7 +171,10 @@ public class Document<T> implements Closeable {
                 .type((allowUpdate || id == null) ? "_doc" : "_create").id(id).value(document).build();
 
         try {
-            IndexResponse indexResponse = this.client.getClient().index(indexRequest);
+            // Creating a document (or letting cluster generate its id) is not idempotent: it is not sent
+            // again if it may have been processed
+            IndexResponse indexResponse = this.client.execute(() -> this.client.getClient().index(indexRequest),
+                    allowUpdate && id != null);
             return indexResponse.id();
         } catch (ResponseException e) {
             if (e.getResponse().getStatusLine().getStatusCode() == RestStatus.CONFLICT.getStatus()) {
@@ -114,76 +185,437 @@ public class Document<T> implements Closeable {
         }
     }
 
+    /**
+     * Same as add() without blocking calling thread. Future fails with DocumentAlreadyExistsException
+     * if updates are not allowed and a document with same id already exists.
+     */
+    public CompletableFuture<String> addAsync(String id, T document, boolean allowUpdate) {
+        return this.client.<org.opensearch.action.index.IndexResponse>submit(listener -> this.restHlClient
+                .indexAsync(this.newIndexRequest(id, document, allowUpdate), RequestOptions.DEFAULT, listener),
+                allowUpdate && id != null).handle((response, e) -> {
+                    if (e == null)
+                        return response.getId();
+
+                    if (e instanceof OpenSearchStatusException
+                            && ((OpenSearchStatusException) e).status() == RestStatus.CONFLICT)
+                        throw new CompletionException(new DocumentAlreadyExistsException(id, new IOException(e)));
+
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
+
+    /**
+     * Add documents (id -> document) using a single _bulk request. Return result for each document, in
+     * iteration order.
+     */
+    public List<BulkItemResult<T>> addAll(Map<String, T> documents, boolean allowUpdate) throws IOException {
+        if (documents.isEmpty())
+            return new ArrayList<BulkItemResult<T>>();
+
+        BulkRequest bulkRequest = new BulkRequest(this.index);
+        List<T> docs = new ArrayList<T>(documents.size());
+
+        for (Map.Entry<String, T> doc : documents.entrySet()) {
+            bulkRequest.add(this.newIndexRequest(doc.getKey(), doc.getValue(), allowUpdate));
+            docs.add(doc.getValue());
+        }
+
+        BulkResponse bulkResponse = this.client
+                .execute(() -> this.restHlClient.bulk(bulkRequest, RequestOptions.DEFAULT), isIdempotent(bulkRequest));
+        List<BulkItemResult<T>> results = new ArrayList<BulkItemResult<T>>(docs.size());
+
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            results.add(toResult(item, docs.get(item.getItemId())));
+        }
+
+        return results;
+    }
+
+    /**
+     * Buffered writer sending documents using _bulk requests
+     */
+    public BulkWriter<T> bulkWriter(BulkSettings settings, boolean allowUpdate, Function<T, String> idProvider,
+            Consumer<BulkItemResult<T>> resultListener) {
+        return new BulkWriter<T>(this, this.restHlClient, this.client.getResiliencePolicy(), settings, allowUpdate,
+                idProvider, resultListener);
+    }
+
+    org.opensearch.action.index.IndexRequest newIndexRequest(String id, T document, boolean allowUpdate)
+            throws IOException {
+        // Same semantic as add(): "create" operation fails if a document with same id already exists
+        return new org.opensearch.action.index.IndexRequest(this.index).id(id)
+                .opType((allowUpdate || id == null) ? OpType.INDEX : OpType.CREATE)
+                .source(this.mapper.writeValueAsBytes(document), XContentType.JSON);
+    }
+
+    /**
+     * Whether bulk request can be sent again without side effect: only documents with id, updates
+     * allowed
+     */
+    static boolean isIdempotent(BulkRequest bulkRequest) {
+        return bulkRequest.requests().stream()
+                .allMatch(request -> request.id() != null && request.opType() != OpType.CREATE);
+    }
+
+    static <T> BulkItemResult<T> toResult(BulkItemResponse item, T document) {
+        if (item.isFailed()) {
+            RestStatus failureStatus = item.getFailure().getStatus();
+            Status status = failureStatus == RestStatus.CONFLICT ? Status.CONFLICT : Status.FAILED;
+            return new BulkItemResult<T>(item.getId(), document, status, item.getFailureMessage(),
+                    failureStatus == RestStatus.TOO_MANY_REQUESTS || failureStatus == RestStatus.BAD_GATEWAY
+                            || failureStatus == RestStatus.SERVICE_UNAVAILABLE
+                            || failureStatus == RestStatus.GATEWAY_TIMEOUT);
+        }
+
+        DocWriteResponse response = item.getResponse();
+        return new BulkItemResult<T>(item.getId(), document,
+                response.getResult() == DocWriteResponse.Result.CREATED ? Status.CREATED : Status.UPDATED, null);
+    }
+
     public T get(String id, Class<T> docClass) throws IOException {
         GetRequest getRequest = new GetRequest.Builder().index(this.index).id(id).build();
-        GetResponse<T> getResponse = this.client.getClient().get(getRequest, docClass);
+        GetResponse<T> getResponse = this.client.execute(() -> this.client.getClient().get(getRequest, docClass));
         return getResponse.source();
     }
 
     public long count() throws IOException {
         CountRequest countRequest = new CountRequest.Builder().index(this.index).build();
-        CountResponse countResponse = this.client.getClient().count(countRequest);
+        CountResponse countResponse = this.client.execute(() -> this.client.getClient().count(countRequest));
         return countResponse.count().longValue();
     }
 
+    /**
+     * Same as get() without blocking calling thread. Future returns null if document does not exist.
+     */
+    public CompletableFuture<T> getAsync(String id, Class<T> docClass) {
+        return this.client.<org.opensearch.action.get.GetResponse>submit(listener -> this.restHlClient
+                .getAsync(new org.opensearch.action.get.GetRequest(this.index, id), RequestOptions.DEFAULT, listener))
+                .thenApply(response -> {
+                    if (!response.isExists() || response.isSourceEmpty())
+                        return null;
+
+                    try {
+                        return this.mapper.readValue(response.getSourceAsBytes(), docClass);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Same as count() without blocking calling thread
+     */
+    public CompletableFuture<Long> countAsync() {
+        return this.client.<org.opensearch.client.core.CountResponse>submit(listener -> this.restHlClient
+                .countAsync(new org.opensearch.client.core.CountRequest(this.index), RequestOptions.DEFAULT, listener))
+                .thenApply(response -> response.getCount());
+    }
+
     public List<TermsAggregation> getAggregations(String searchTemplateId) throws IOException {
+        return this.getAggregations(searchTemplateId, new HashMap<String, Object>());
+    }
+
+    /**
+     * Run stored search template with given parameters: filtering and aggregations are done in a single
+     * request
+     */
+    public List<TermsAggregation> getAggregations(String searchTemplateId, Map<String, Object> params)
+            throws IOException {
+        SearchResponse searchResponse = this.client.execute(() -> this.restHlClient
+                .searchTemplate(this.newSearchTemplateRequest(searchTemplateId, params), RequestOptions.DEFAULT))
+                .getResponse();
+
+        return TermsAggregationBuilder.from(searchResponse.getAggregations());
+    }
+
+    /**
+     * Same as getAggregations() without blocking calling thread
+     */
+    public CompletableFuture<List<TermsAggregation>> getAggregationsAsync(String searchTemplateId,
+            Map<String, Object> params) {
+        return this.client
+                .<SearchTemplateResponse>submit(listener -> this.restHlClient.searchTemplateAsync(
+                        this.newSearchTemplateRequest(searchTemplateId, params), RequestOptions.DEFAULT, listener))
+                .thenApply(response -> TermsAggregationBuilder.from(response.getResponse().getAggregations()));
+    }
+
+    private SearchTemplateRequest newSearchTemplateRequest(String searchTemplateId, Map<String, Object> params) {
         SearchRequest searchRequest = new SearchRequest(this.index);
         SearchTemplateRequest searchTemplateRequest = new SearchTemplateRequest(searchRequest);
         searchTemplateRequest.setScriptType(ScriptType.STORED); // We use stored Search Template (should have been
                                                                 // loaded first)
         searchTemplateRequest.setScript(searchTemplateId); // Only reference id of Search Template to invoke
-        searchTemplateRequest.setScriptParams(new HashMap<String, Object>()); // Provide no params (our aggregation
-                                                                              // templates currently had none)
+        searchTemplateRequest.setScriptParams(params);
+        return searchTemplateRequest;
+    }
 
-        SearchTemplateResponse searchTemplateResponse = this.restHlClient.searchTemplate(searchTemplateRequest,
-                RequestOptions.DEFAULT);
-        SearchResponse searchResponse = searchTemplateResponse.getResponse();
+    /**
+     * Group documents matching query by map tile (geotile_grid aggregation), tiles being computed for
+     * given zoom level (0 to 29: world split into 2^zoom x 2^zoom tiles). Each cluster gives the
+     * centroid of its documents and the id of the document with highest sortField value. Clusters are
+     * sorted by decreasing number of documents.
+     */
+    public List<GeoCluster> getGeoClusters(String queryDSL, String geoField, int zoom, String sortField)
+            throws IOException {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().size(0)
+                .query(QueryBuilders.wrapperQuery(queryDSL))
+                .aggregation(new GeoTileGridAggregationBuilder("clusters").field(geoField).precision(zoom)
+                        .size(GeoCluster.MAX_CLUSTERS)
+                        .subAggregation(new GeoCentroidAggregationBuilder("centroid").field(geoField))
+                        .subAggregation(new TopHitsAggregationBuilder("representative").size(1).fetchSource(false)
+                                .sort(SortBuilders.fieldSort(sortField).order(SortOrder.DESC))));
 
-        return TermsAggregationBuilder.from(searchResponse.getAggregations());
+        SearchResponse searchResponse = this.client.execute(() -> this.restHlClient
+                .search(new SearchRequest(this.index).source(searchSourceBuilder), RequestOptions.DEFAULT));
+        GeoGrid grid = searchResponse.getAggregations().get("clusters");
+        List<GeoCluster> clusters = new ArrayList<GeoCluster>(grid.getBuckets().size());
+
+        for (GeoGrid.Bucket bucket : grid.getBuckets()) {
+            GeoCentroid centroid = bucket.getAggregations().get("centroid");
+            SearchHit[] hits = ((TopHits) bucket.getAggregations().get("representative")).getHits().getHits();
+
+            clusters.add(new GeoCluster(bucket.getKeyAsString(), bucket.getDocCount(), centroid.centroid().getLat(),
+                    centroid.centroid().getLon(), hits.length > 0 ? hits[0].getId() : null));
+        }
+
+        return clusters;
     }
 
-    @SuppressWarnings("unchecked")
     public IndexPage<T> search(String queryDSL, int from, int size, Class<T> docClass) throws IOException {
+        return this.search(queryDSL, from, size, null, null, null, null, -1, docClass);
+    }
+
+    /**
+     * Search with source filtering: only included fields (wildcards allowed), minus excluded ones, are
+     * fetched and deserialized into provided class (full document class or lightweight projection).
+     * Projection classes can get document id injected using @JacksonInject(Document.ID_INJECTABLE).
+     */
+    public <R> IndexPage<R> search(String queryDSL, int from, int size, String[] includes, String[] excludes,
+            Class<R> docClass) throws IOException {
+        return this.search(queryDSL, from, size, includes, excludes, null, null, -1, docClass);
+    }
+
+    /**
+     * Search within a point in time (consistent view of index while paging), if supported by cluster.
+     * Point in time is released once last page is reached, or using release() when paging is stopped
+     * before.
+     */
+    public IndexPage<T> searchWithPointInTime(String queryDSL, int size, Class<T> docClass) throws IOException {
+        return this.search(queryDSL, 0, size, null, null, null, this.openPointInTime(), -1, docClass);
+    }
+
+    /**
+     * Pages are fetched using search_after (sort values of the last document of previous page) so that
+     * cost of fetching a page does not depend on its position, without index.max_result_window limit.
+     * Total number of hits is only counted for first page. See
+     * https://www.elastic.co/guide/en/elasticsearch/reference/current/paginate-search-results.html#search-after
+     */
+    public <R> IndexPage<R> next(IndexPage<R> page, Class<R> docClass) throws IOException {
+        return this.search(page.query(), page.from() + page.size(), page.size(), page.includes(), page.excludes(),
+                page.searchAfter(), page.pointInTimeId(), page.total(), docClass);
+    }
+
+    /**
+     * Same as search() without blocking calling thread
+     */
+    public <R> CompletableFuture<IndexPage<R>> searchAsync(String queryDSL, int from, int size, String[] includes,
+            String[] excludes, Class<R> docClass) {
+        return this.searchAsync(queryDSL, from, size, includes, excludes, null, null, -1, docClass);
+    }
+
+    /**
+     * Same as next() without blocking calling thread
+     */
+    public <R> CompletableFuture<IndexPage<R>> nextAsync(IndexPage<R> page, Class<R> docClass) {
+        return this.searchAsync(page.query(), page.from() + page.size(), page.size(), page.includes(), page.excludes(),
+                page.searchAfter(), page.pointInTimeId(), page.total(), docClass);
+    }
+
+    /**
+     * Release point in time of page, if any
+     */
+    public void release(IndexPage<?> page) {
+        if (page.pointInTimeId() != null)
+            this.closePointInTime(page.pointInTimeId());
+    }
+
+    // Total is negative when unknown (first page): hits are then counted
+    private <R> IndexPage<R> search(String queryDSL, int from, int size, String[] includes, String[] excludes,
+            Object[] searchAfter, String pointInTimeId, long total, Class<R> docClass) throws IOException {
+        SearchResponse searchResponse = this.client.execute(() -> this.restHlClient.search(
+                this.newSearchRequest(queryDSL, from, size, includes, excludes, searchAfter, pointInTimeId, total < 0),
+                RequestOptions.DEFAULT));
+
+        return this.toPage(searchResponse, queryDSL, from, size, includes, excludes, pointInTimeId, total, docClass);
+    }
+
+    private <R> CompletableFuture<IndexPage<R>> searchAsync(String queryDSL, int from, int size, String[] includes,
+            String[] excludes, Object[] searchAfter, String pointInTimeId, long total, Class<R> docClass) {
+        return this.client
+                .<SearchResponse>submit(
+                        listener -> this.restHlClient.searchAsync(this.newSearchRequest(queryDSL, from, size, includes,
+                                excludes, searchAfter, pointInTimeId, total < 0), RequestOptions.DEFAULT, listener))
+                .thenApply(searchResponse -> {
+                    try {
+                        return this.toPage(searchResponse, queryDSL, from, size, includes, excludes, pointInTimeId,
+                                total, docClass);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private SearchRequest newSearchRequest(String queryDSL, int from, int size, String[] includes, String[] excludes,
+            Object[] searchAfter, String pointInTimeId, boolean countHits) {
         QueryBuilder searchQuery = QueryBuilders.wrapperQuery(queryDSL);
 
-        SearchRequest searchRequest = new SearchRequest(this.index);
+        // Index must not be set when searching within a point in time
+        SearchRequest searchRequest = pointInTimeId != null ? new SearchRequest() : new SearchRequest(this.index);
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.trackTotalHits(true).from(from).size(size).query(searchQuery);
-        searchRequest.source(searchSourceBuilder);
+        searchSourceBuilder.trackTotalHits(countHits).size(size).query(searchQuery);
+
+        // Sort on unique field as tiebreaker to get a total order, required for search_after. Hits of
+        // filter queries all have same score: they are not scored, so that search can end early.
+        if (isScored(queryDSL))
+            searchSourceBuilder.sort(SortBuilders.scoreSort().order(SortOrder.DESC));
+        searchSourceBuilder.sort(SortBuilders.fieldSort(this.tiebreaker).order(SortOrder.ASC));
+
+        if (includes != null || excludes != null)
+            searchSourceBuilder.fetchSource(includes, excludes);
+
+        if (searchAfter != null)
+            searchSourceBuilder.searchAfter(searchAfter);
+        else
+            searchSourceBuilder.from(from);
 
-        SearchResponse searchResponse = this.restHlClient.search(searchRequest, RequestOptions.DEFAULT);
+        if (pointInTimeId != null)
+            searchSourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId)
+                    .setKeepAlive(TimeValue.parseTimeValue(POINT_IN_TIME_KEEP_ALIVE, "keep_alive")));
+
+        return searchRequest.source(searchSourceBuilder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> IndexPage<R> toPage(SearchResponse searchResponse, String queryDSL, int from, int size,
+            String[] includes, String[] excludes, String pointInTimeId, long total, Class<R> docClass)
+            throws IOException {
         SearchHits hits = searchResponse.getHits();
 
-        if (hits.getTotalHits().value == 0 || hits.getHits().length == 0) {
+        // Point in time id may change between requests
+        if (searchResponse.pointInTimeId() != null)
+            pointInTimeId = searchResponse.pointInTimeId();
+
+        // Hits not counted for next pages: total of first page is kept
+        if (total < 0)
+            total = hits.getTotalHits().value;
+
+        if (total == 0 || hits.getHits().length == 0) {
+            if (pointInTimeId != null)
+                this.closePointInTime(pointInTimeId);
+
             return IndexPage.EMPTY;
         }
 
         SearchHit[] searchHits = hits.getHits();
-        List<T> resultList = new ArrayList<T>();
+        List<R> resultList = new ArrayList<R>();
+        ObjectReader reader = this.mapper.readerFor(docClass);
 
         for (SearchHit hit : searchHits) {
             // Try to unserialize source to object using provided class
-            T result = this.mapper.readValue(hit.getSourceAsString(), docClass);
+            R result = reader.with(new InjectableValues.Std().addValue(ID_INJECTABLE, hit.getId()))
+                    .readValue(BytesReference.toBytes(hit.getSourceRef()));
             resultList.add(result);
         }
 
-        return new IndexPage<T>(resultList, queryDSL, hits.getTotalHits().value, searchSourceBuilder.from(),
-                searchSourceBuilder.size());
+        IndexPage<R> page = new IndexPage<R>(resultList, queryDSL, total, from, size,
+                searchHits[searchHits.length - 1].getSortValues(), pointInTimeId, includes, excludes);
+
+        if (page.isLastPage() && pointInTimeId != null)
+            this.closePointInTime(pointInTimeId);
+
+        return page;
     }
 
     /**
-     * By default, you cannot use from and size to page through more than 10,000 hits. This limit is a
-     * safeguard set by the index.max_result_window index setting. If you need to page through more than
-     * 10,000 hits, use the search_after parameter instead. See
-     * https://www.elastic.co/guide/en/elasticsearch/reference/current/paginate-search-results.html#search-after
+     * Whether hits of query are scored: queries only made of filters (match_all, constant_score, bool
+     * query with filter and must_not clauses only) give all hits same score
      */
-    public IndexPage<T> next(IndexPage<T> page, Class<T> docClass) throws IOException {
-        return this.search(page.query(), page.from() + page.size(), page.size(), docClass);
+    static boolean isScored(String queryDSL) {
+        JsonNode query;
+        try {
+            query = QUERY_MAPPER.readTree(queryDSL);
+        } catch (IOException e) {
+            return true; // Let cluster report invalid query
+        }
+
+        if (query == null || query.size() != 1)
+            return true;
+
+        String type = query.fieldNames().next();
+        if (type.equals("match_all") || type.equals("constant_score"))
+            return false;
+        if (!type.equals("bool"))
+            return true;
+
+        Iterator<String> clauses = query.get(type).fieldNames();
+        while (clauses.hasNext()) {
+            String clause = clauses.next();
+            if (!clause.equals("filter") && !clause.equals("must_not") && !clause.equals("boost"))
+                return true;
+        }
+
+        return false;
+    }
+
+    private String openPointInTime() {
+        if (Boolean.FALSE.equals(this.pointInTimeSupported))
+            return null;
+
+        try {
+            Request request = new Request("POST", "/" + this.index + "/_search/point_in_time");
+            request.addParameter("keep_alive", POINT_IN_TIME_KEEP_ALIVE);
+            Response response = this.client
+                    .execute(() -> this.restHlClient.getLowLevelClient().performRequest(request));
+
+            JsonNode pit = this.mapper.readTree(response.getEntity().getContent());
+            this.pointInTimeSupported = true;
+            return pit.get("pit_id").asText();
+        } catch (ResponseException e) {
+            // Point in time API is only available since OpenSearch 2.4
+            logger.info("Point in time not supported by cluster, paging without it: " + e.getMessage());
+            this.pointInTimeSupported = false;
+        } catch (IOException e) {
+            logger.warn("Fail to open point in time on index " + this.index + ": " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    private void closePointInTime(String pointInTimeId) {
+        // Do not wait for response: point in time may be closed from I/O threads when completing
+        // asynchronous searches. Point in time will expire anyway after its keep alive period if request
+        // fails.
+        try {
+            Request request = new Request("DELETE", "/_search/point_in_time");
+            request.setJsonEntity(this.mapper.writeValueAsString(Map.of("pit_id", List.of(pointInTimeId))));
+            this.restHlClient.getLowLevelClient().performRequestAsync(request, new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    logger.warn("Fail to close point in time: " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Fail to close point in time: " + e.getMessage());
+        }
     }
 
     @Override
     public void close() throws IOException {
-        if (this.restHlClient != null)
-            this.restHlClient.close(); // do not forget to free the internal high-level rest client
+        // Nothing to free: connection pool is owned by cluster client
+        this.restHlClient = null;
     }
 }
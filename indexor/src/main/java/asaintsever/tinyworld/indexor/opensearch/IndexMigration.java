@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.MigrationReport;
+
+/**
+ * Migrate index to a new mapping without downtime. Documents are copied into a new versioned index
+ * ("<index>_v<version>") while source keeps serving reads and writes. Writes are then blocked on
+ * source while catching up with changes made during the copy, and index name is atomically switched
+ * to an alias on the new index (source being deleted). Documents deleted from source during the
+ * copy are not deleted from the new index.
+ */
+public class IndexMigration {
+
+    protected static Logger logger = LoggerFactory.getLogger(IndexMigration.class);
+
+    private final static String VERSION_META = "version";
+    private final static String WRITE_BLOCK_SETTING = "index.blocks.write";
+
+    private final ClusterClient client;
+    private final String index;
+
+    public IndexMigration(ClusterClient client, String index) {
+        this.client = client;
+        this.index = index;
+    }
+
+    /**
+     * Version of mapping currently used by index ("version" in mapping "_meta" section, 1 if none)
+     */
+    public int getCurrentVersion() throws IOException {
+        return this.client.getMappingMeta(this.index).path(VERSION_META).asInt(1);
+    }
+
+    /**
+     * Migrate index to given mapping and settings if its mapping version is older
+     */
+    public MigrationReport run(String mapping, String settings, int version) throws IOException {
+        long start = System.nanoTime();
+
+        List<String> aliasedIndices = this.client.getAliasedIndices(this.index);
+        if (aliasedIndices.size() > 1)
+            throw new IOException("Alias " + this.index + " points to several indices: " + aliasedIndices);
+
+        boolean isAlias = !aliasedIndices.isEmpty();
+        String source = isAlias ? aliasedIndices.get(0) : this.index;
+        int fromVersion = this.getCurrentVersion();
+
+        if (fromVersion >= version)
+            return MigrationReport.upToDate(source, fromVersion);
+
+        String target = this.index + "_v" + version;
+        if (target.equals(source))
+            throw new IOException("Index " + source + " cannot be migrated into itself");
+
+        if (this.client.isIndexExists(target)) {
+            logger.warn("Deleting index " + target + " left by an interrupted migration");
+            this.client.deleteIndex(target);
+        }
+
+        logger.info("Migrating index " + this.index + " from mapping v" + fromVersion + " to v" + version + " ("
+                + source + " -> " + target + ")");
+
+        this.client.createIndex(target, mapping, settings);
+        IndexStats sourceStats = this.client.getIndexStats(source);
+        boolean writeBlocked = false;
+        long writeBlockedMs;
+
+        try {
+            // Bulk copy, source still serving reads and writes. Source is refreshed first as only searchable
+            // documents are copied. Documents changed from now on are above recorded sequence number.
+            long copiedSeqNo = this.client.getMaxSeqNo(source);
+            this.client.refreshIndex(source);
+            this.client.reindex(source, target);
+
+            // Catch up with changes made during bulk copy only: writes are rejected meanwhile
+            long blockStart = System.nanoTime();
+            this.client.updateIndexSettings(source, Map.of(WRITE_BLOCK_SETTING, "true"));
+            writeBlocked = true;
+            this.client.refreshIndex(source);
+            this.client.reindex(source, target, copiedSeqNo);
+
+            // Switch index name to new index and delete source in one atomic step
+            List<Map<String, Object>> actions = new ArrayList<Map<String, Object>>();
+            if (isAlias)
+                actions.add(Map.of("remove", Map.of("index", source, "alias", this.index)));
+            actions.add(Map.of("add", Map.of("index", target, "alias", this.index)));
+            actions.add(Map.of("remove_index", Map.of("index", source)));
+            this.client.updateAliases(actions);
+            writeBlockedMs = (System.nanoTime() - blockStart) / 1000000;
+        } catch (IOException e) {
+            // Source is left as it was: drop partial copy
+            try {
+                if (writeBlocked)
+                    this.client.updateIndexSettings(source, Map.of(WRITE_BLOCK_SETTING, "false"));
+                this.client.deleteIndex(target);
+            } catch (IOException ex) {
+                logger.error("Fail to clean up after failed migration of index " + this.index + ": " + ex.getMessage());
+            }
+
+            throw e;
+        }
+
+        IndexStats targetStats = this.client.getIndexStats(target);
+        MigrationReport report = new MigrationReport(source, target, fromVersion, version, true, targetStats.getDocs(),
+                sourceStats.getSizeBytes(), targetStats.getSizeBytes(), sourceStats.getIndexTimeMs(),
+                targetStats.getIndexTimeMs(), (System.nanoTime() - start) / 1000000, writeBlockedMs);
+
+        logger.info("Migrated index " + this.index + ": " + report);
+        return report;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of index statistics (primary shards only)
+ */
+@Getter
+@ToString
+public class IndexStats {
+    private final long docs;
+    private final long sizeBytes; // Size on disk
+    private final long indexTimeMs; // Time spent indexing documents since node started
+
+    public IndexStats(long docs, long sizeBytes, long indexTimeMs) {
+        this.docs = docs;
+        this.sizeBytes = sizeBytes;
+        this.indexTimeMs = indexTimeMs;
+    }
+}
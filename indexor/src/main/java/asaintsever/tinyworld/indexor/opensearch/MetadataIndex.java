@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IIndex;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.MigrationReport;
+
+/**
+ * Index of photo metadata stored in cluster
+ */
+public class MetadataIndex implements IIndex {
+    protected static Logger logger = LoggerFactory.getLogger(MetadataIndex.class);
+
+    private final Photo photos;
+    private final String indexSettings;
+    private final IPhotoIndexContext context;
+    private ClusterClient clusterClient;
+    private String index;
+
+    public MetadataIndex(Photo photos, String indexSettings, IPhotoIndexContext context) {
+        this.photos = photos;
+        this.indexSettings = indexSettings;
+        this.context = context;
+    }
+
+    public MetadataIndex setConnection(ClusterClient clusterClient, String index) {
+        this.clusterClient = clusterClient;
+        this.index = index;
+        return this;
+    }
+
+    @Override
+    public Boolean create() throws IOException {
+        Boolean created = this.clusterClient.createIndex(this.index, this.context.getMapping(), this.indexSettings);
+        this.photos.setMappingVersion(this.context.getMappingVersion());
+        return created;
+    }
+
+    @Override
+    public Boolean exists() throws IOException {
+        return this.clusterClient.isIndexExists(this.index);
+    }
+
+    @Override
+    public Boolean delete() throws IOException {
+        // Local state (manifest, spool, thumbnails) is only cleared once index is gone: documents of an
+        // index failing to be deleted still reference thumbnails in store
+        Boolean deleted = this.clusterClient.deleteIndex(this.index);
+        if (deleted)
+            this.context.clear();
+        return deleted;
+    }
+
+    @Override
+    public Boolean clear() throws IOException {
+        try {
+            this.delete();
+        } catch (IOException e) {
+            if (this.exists())
+                throw e;
+
+            // Warning in case clear is invoked and index does not exist
+            logger.warn("Fail to delete index " + this.index + ": " + e.getMessage());
+            this.context.clear();
+        }
+
+        return this.create();
+    }
+
+    @Override
+    public MigrationReport migrate() throws IOException {
+        MigrationReport report = new IndexMigration(this.clusterClient, this.index).run(this.context.getMapping(),
+                this.indexSettings, this.context.getMappingVersion());
+        this.photos.setMappingVersion(report.getToVersion());
+        return report;
+    }
+}
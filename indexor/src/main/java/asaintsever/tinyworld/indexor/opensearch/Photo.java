@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Photos indexed in cluster. Photos failing to be indexed with transient errors are spooled (if
+ * spool is enabled).
+ */
+public class Photo implements IPhoto, Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(Photo.class);
+
+    // Unique field sorted on to page through photos, with doc values since mapping v3
+    private final static String SORT_TIEBREAKER_FIELD = "path";
+    private final static int SORT_TIEBREAKER_MAPPING_VERSION = 3;
+
+    private final IPhotoIndexContext context;
+    Document<PhotoMetadata> document;
+
+    public Photo(IPhotoIndexContext context) {
+        this.context = context;
+    }
+
+    public Photo setConnection(ClusterClient clusterClient, String index) {
+        this.document = new Document<>(clusterClient);
+
+        // Set index and date format
+        this.document.setIndex(index).getMapper().setDateFormat(new SimpleDateFormat(this.context.getDateFormat()));
+
+        // Index created by a previous version may not be migrated yet
+        try {
+            if (clusterClient.isIndexExists(index))
+                this.setMappingVersion(new IndexMigration(clusterClient, index).getCurrentVersion());
+        } catch (IOException e) {
+            logger.warn("Fail to get mapping version of index " + index + ": " + e.getMessage());
+        }
+
+        return this;
+    }
+
+    /**
+     * Sort on path to page through photos if index mapping has doc values on it, on document id
+     * otherwise
+     */
+    public void setMappingVersion(int mappingVersion) {
+        this.document.setTiebreaker(
+                mappingVersion >= SORT_TIEBREAKER_MAPPING_VERSION ? SORT_TIEBREAKER_FIELD : Document.ID_FIELD);
+    }
+
+    @Override
+    public String add(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+        String id = Indexor.getPhotoId(photo.getPath());
+        PhotoMetadata stored = this.context.storeThumbnail(photo);
+
+        try {
+            return this.document.add(id, stored, allowUpdate);
+        } catch (DocumentAlreadyExistsException e) {
+            String msg = "Photo [id=" + id + ", path=" + photo.getPath() + "] already exists in index "
+                    + this.document.getIndex();
+            logger.error(msg);
+            throw new IOException(msg, e);
+        } catch (IOException e) {
+            if (!this.spool(stored, allowUpdate, e))
+                throw e;
+
+            return id;
+        }
+    }
+
+    @Override
+    public List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+            throws IOException {
+        Map<String, PhotoMetadata> documents = new LinkedHashMap<String, PhotoMetadata>();
+        for (PhotoMetadata photo : photos)
+            documents.put(Indexor.getPhotoId(photo.getPath()), this.context.storeThumbnail(photo));
+
+        return this.document.addAll(documents, allowUpdate);
+    }
+
+    @Override
+    public IBulkWriter<PhotoMetadata> bulkWriter(boolean allowUpdate,
+            Consumer<BulkItemResult<PhotoMetadata>> resultListener) {
+        return this.context.storingThumbnails(this.document.bulkWriter(this.context.getBulkSettings(), allowUpdate,
+                photo -> Indexor.getPhotoId(photo.getPath()), res -> {
+                    // Photos of failed requests are spooled, to be indexed when spool is replayed
+                    if (res.getStatus() == Status.FAILED && res.isTransientFailure() && res.getDocument() != null) {
+                        try {
+                            if (this.context.spool(res.getDocument(), allowUpdate))
+                                res = new BulkItemResult<PhotoMetadata>(res.getId(), res.getDocument(), Status.SPOOLED,
+                                        res.getErrorMsg());
+                        } catch (IOException e) {
+                            logger.error("Fail to spool photo " + res.getDocument().getPath() + ": " + e.getMessage());
+                        }
+                    }
+
+                    if (resultListener != null)
+                        resultListener.accept(res);
+                }));
+    }
+
+    @Override
+    public PhotoMetadata get(String id) throws IOException {
+        return this.document.get(id, PhotoMetadata.class);
+    }
+
+    @Override
+    public long count() throws IOException {
+        return this.document.count();
+    }
+
+    @Override
+    public List<TermsAggregation> getAggregations(String searchTemplateId, PhotoFilter filter, BucketSizes bucketSizes)
+            throws IOException {
+        return this.document.getAggregations(searchTemplateId, Indexor.getTemplateParams(filter, bucketSizes));
+    }
+
+    @Override
+    public List<GeoCluster> getGeoClusters(GeoBoundingBox viewport, int zoom, PhotoFilter filter) throws IOException {
+        return this.document.getGeoClusters(Indexor.getGeoQuery(viewport, filter), Indexor.GEO_FIELD, zoom,
+                Indexor.GEO_CLUSTER_SORT_FIELD);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException {
+        return this.document.search(query, from, size, PhotoMetadata.class);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> search(String query, int from, int size, String[] includes, String[] excludes)
+            throws IOException {
+        return this.document.search(query, from, size, includes, excludes, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> IndexPage<R> search(String query, int from, int size, String[] includes, String[] excludes,
+            Class<R> projection) throws IOException {
+        return this.document.search(query, from, size, includes, excludes, projection);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> searchWithPointInTime(String query, int size) throws IOException {
+        return this.document.searchWithPointInTime(query, size, PhotoMetadata.class);
+    }
+
+    @Override
+    public IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException {
+        return this.document.next(page, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> IndexPage<R> next(IndexPage<R> page, Class<R> projection) throws IOException {
+        return this.document.next(page, projection);
+    }
+
+    @Override
+    public void release(IndexPage<?> page) {
+        this.document.release(page);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.document != null)
+            this.document.close();
+    }
+
+    /**
+     * Spool photo failing to be indexed if failure is transient (e.g. cluster unreachable). Return
+     * false if photo is not spooled: spool disabled or photo rejected by cluster.
+     */
+    boolean spool(PhotoMetadata photo, boolean allowUpdate, Throwable failure) throws IOException {
+        if (!ResiliencePolicy.isTransient(failure) || !this.context.spool(photo, allowUpdate))
+            return false;
+
+        logger.warn("Fail to index photo " + photo.getPath() + ", photo spooled: " + failure.getMessage());
+        return true;
+    }
+}
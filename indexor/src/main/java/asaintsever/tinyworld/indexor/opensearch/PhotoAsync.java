@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IPhotoAsync;
+import asaintsever.tinyworld.indexor.IPhotoIndexContext;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Non-blocking access to photos indexed in cluster
+ */
+public class PhotoAsync implements IPhotoAsync {
+    protected static Logger logger = LoggerFactory.getLogger(PhotoAsync.class);
+
+    // Document of photos is renewed when indexor is reset
+    private final Photo photos;
+    private final IPhotoIndexContext context;
+
+    public PhotoAsync(Photo photos, IPhotoIndexContext context) {
+        this.photos = photos;
+        this.context = context;
+    }
+
+    @Override
+    public CompletableFuture<String> add(PhotoMetadata photo, boolean allowUpdate) {
+        String id = Indexor.getPhotoId(photo.getPath());
+
+        PhotoMetadata stored;
+        try {
+            stored = this.context.storeThumbnail(photo);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Photo may have been written even if request failed
+        return this.photos.document.addAsync(id, stored, allowUpdate)
+                .whenComplete((res, e) -> this.context.invalidateCache(e == null ? res : null)).exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+
+                    if (cause instanceof DocumentAlreadyExistsException) {
+                        String msg = "Photo [id=" + id + ", path=" + photo.getPath() + "] already exists in index "
+                                + this.photos.document.getIndex();
+                        logger.error(msg);
+                        throw new CompletionException(new IOException(msg, cause));
+                    }
+
+                    // Same as synchronous add: photo will be indexed when spool is replayed
+                    try {
+                        if (this.photos.spool(stored, allowUpdate, cause))
+                            return id;
+                    } catch (IOException spoolError) {
+                        cause.addSuppressed(spoolError);
+                    }
+
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
+
+    @Override
+    public CompletableFuture<PhotoMetadata> get(String id) {
+        return this.photos.document.getAsync(id, PhotoMetadata.class);
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return this.photos.document.countAsync();
+    }
+
+    @Override
+    public CompletableFuture<List<TermsAggregation>> getAggregations(String searchTemplateId, PhotoFilter filter,
+            BucketSizes bucketSizes) {
+        return this.photos.document.getAggregationsAsync(searchTemplateId,
+                Indexor.getTemplateParams(filter, bucketSizes));
+    }
+
+    @Override
+    public CompletableFuture<IndexPage<PhotoMetadata>> search(String query, int from, int size) {
+        return this.photos.document.searchAsync(query, from, size, null, null, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> CompletableFuture<IndexPage<R>> search(String query, int from, int size, String[] includes,
+            String[] excludes, Class<R> projection) {
+        return this.photos.document.searchAsync(query, from, size, includes, excludes, projection);
+    }
+
+    @Override
+    public CompletableFuture<IndexPage<PhotoMetadata>> next(IndexPage<PhotoMetadata> page) {
+        return this.photos.document.nextAsync(page, PhotoMetadata.class);
+    }
+
+    @Override
+    public <R> CompletableFuture<IndexPage<R>> next(IndexPage<R> page, Class<R> projection) {
+        return this.photos.document.nextAsync(page, projection);
+    }
+}
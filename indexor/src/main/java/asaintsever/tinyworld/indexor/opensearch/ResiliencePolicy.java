@@ -0,0 +1,371 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.client.ResponseException;
+import org.opensearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resilience policy applied to requests sent to cluster:
+ * <ul>
+ * <li>requests failing with a transient error (transport error, 429, 502, 503, 504) are retried
+ * with jittered exponential backoff. Non idempotent requests (e.g. creating documents) are only
+ * retried if they were not processed by cluster (connection failure, 429, 503): they may have been
+ * processed if cluster did not answer in time, and sending them again would then fail (409).</li>
+ * <li>a circuit breaker opens after consecutive failures showing cluster is unavailable (transport
+ * error, 502, 503, 504): requests then fail fast with ClusterUnavailableException. Once open time
+ * has elapsed, one trial request is let through: circuit closes if it succeeds and opens again if
+ * it fails.</li>
+ * </ul>
+ */
+public class ResiliencePolicy {
+    protected static Logger logger = LoggerFactory.getLogger(ResiliencePolicy.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @FunctionalInterface
+    public interface Call<R> {
+        R call() throws IOException;
+    }
+
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long retryMaxBackoffMs;
+    private final int circuitBreakerThreshold; // 0 to disable circuit breaker
+    private final long circuitBreakerOpenMs;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong circuitOpenings = new AtomicLong();
+
+    // Circuit breaker state, guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long openCircuitMs;
+    private boolean trialInFlight;
+
+    public ResiliencePolicy(TransportSettings settings) {
+        this.maxRetries = Math.max(0, settings.getMaxRetries());
+        this.retryBackoffMs = Math.max(1, settings.getRetryBackoffMs());
+        this.retryMaxBackoffMs = Math.max(this.retryBackoffMs, settings.getRetryMaxBackoffMs());
+        this.circuitBreakerThreshold = Math.max(0, settings.getCircuitBreakerThreshold());
+        this.circuitBreakerOpenMs = Math.max(0, settings.getCircuitBreakerOpenMs());
+    }
+
+    /**
+     * Run idempotent request, retrying it on transient failures
+     */
+    public <R> R execute(Call<R> call) throws IOException {
+        return this.execute(call, true);
+    }
+
+    /**
+     * Run request, retrying it on transient failures (only if it was not processed by cluster when not
+     * idempotent)
+     */
+    public <R> R execute(Call<R> call, boolean idempotent) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            this.acquire();
+
+            try {
+                R response = call.call();
+                this.onResponse();
+                return response;
+            } catch (IOException | RuntimeException e) {
+                if (!this.onFailure(e, attempt, idempotent))
+                    throw e;
+            }
+
+            try {
+                Thread.sleep(this.getBackoffMs(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry request");
+            }
+        }
+    }
+
+    /**
+     * Send idempotent asynchronous request, sending it again on transient failures. Future fails with
+     * the last failure (not wrapped in a CompletionException).
+     */
+    public <R> CompletableFuture<R> executeAsync(Supplier<CompletableFuture<R>> call) {
+        return this.executeAsync(call, true);
+    }
+
+    /**
+     * Send asynchronous request, sending it again on transient failures (only if it was not processed
+     * by cluster when not idempotent)
+     */
+    public <R> CompletableFuture<R> executeAsync(Supplier<CompletableFuture<R>> call, boolean idempotent) {
+        CompletableFuture<R> result = new CompletableFuture<R>();
+        this.attemptAsync(call, idempotent, 0, result);
+        return result;
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    public synchronized ResilienceStats getStats() {
+        long openMs = this.openCircuitMs;
+        if (this.state != State.CLOSED)
+            openMs += System.currentTimeMillis() - this.openedAt;
+
+        return new ResilienceStats(this.retries.get(), this.failures.get(), this.rejections.get(),
+                this.circuitOpenings.get(), openMs, this.state);
+    }
+
+    private <R> void attemptAsync(Supplier<CompletableFuture<R>> call, boolean idempotent, int attempt,
+            CompletableFuture<R> result) {
+        try {
+            this.acquire();
+        } catch (ClusterUnavailableException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        CompletableFuture<R> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((response, e) -> {
+            if (e == null) {
+                this.onResponse();
+                result.complete(response);
+                return;
+            }
+
+            Throwable failure = unwrap(e);
+            if (!this.onFailure(failure, attempt, idempotent)) {
+                result.completeExceptionally(failure);
+                return;
+            }
+
+            CompletableFuture.delayedExecutor(this.getBackoffMs(attempt), TimeUnit.MILLISECONDS)
+                    .execute(() -> this.attemptAsync(call, idempotent, attempt + 1, result));
+        });
+    }
+
+    /**
+     * Update circuit breaker with failure
+     *
+     * @return true if request must be sent again
+     */
+    private boolean onFailure(Throwable e, int attempt, boolean idempotent) {
+        int status = getStatus(e);
+        boolean unavailable = isUnavailable(e, status);
+
+        if (unavailable)
+            this.onUnavailable(e);
+        else if (status > 0)
+            this.onResponse(); // Cluster answered
+        else
+            this.releaseTrial(); // Request failed before reaching cluster
+
+        boolean retriable = idempotent ? unavailable || status == RestStatus.TOO_MANY_REQUESTS.getStatus()
+                : isNotProcessed(e, status);
+        boolean retry = retriable && attempt < this.maxRetries && this.getState() != State.OPEN;
+
+        if (retry) {
+            this.retries.incrementAndGet();
+            logger.debug("Retrying request (attempt " + (attempt + 1) + "/" + this.maxRetries + ") after failure: "
+                    + e.getMessage());
+        } else {
+            this.failures.incrementAndGet();
+        }
+
+        return retry;
+    }
+
+    private synchronized void acquire() throws ClusterUnavailableException {
+        if (this.state == State.CLOSED)
+            return;
+
+        if (this.state == State.OPEN && System.currentTimeMillis() - this.openedAt >= this.circuitBreakerOpenMs) {
+            this.state = State.HALF_OPEN;
+            this.trialInFlight = false;
+        }
+
+        if (this.state == State.HALF_OPEN && !this.trialInFlight) {
+            this.trialInFlight = true;
+            return;
+        }
+
+        this.rejections.incrementAndGet();
+        throw new ClusterUnavailableException("Cluster unavailable: request not sent, circuit open since "
+                + (System.currentTimeMillis() - this.openedAt) + " ms");
+    }
+
+    private synchronized void releaseTrial() {
+        this.trialInFlight = false;
+    }
+
+    private synchronized void onResponse() {
+        this.consecutiveFailures = 0;
+
+        if (this.state != State.CLOSED) {
+            this.openCircuitMs += System.currentTimeMillis() - this.openedAt;
+            this.state = State.CLOSED;
+            this.trialInFlight = false;
+            logger.info("Cluster available again: circuit closed");
+        }
+    }
+
+    private synchronized void onUnavailable(Throwable e) {
+        if (this.circuitBreakerThreshold == 0)
+            return;
+
+        this.consecutiveFailures++;
+
+        if (this.state == State.HALF_OPEN) {
+            // Trial request failed: open again for a whole period (time already spent open is kept)
+            this.openCircuitMs += System.currentTimeMillis() - this.openedAt;
+            this.open(e);
+        } else if (this.state == State.CLOSED && this.consecutiveFailures >= this.circuitBreakerThreshold) {
+            this.circuitOpenings.incrementAndGet();
+            this.open(e);
+        }
+    }
+
+    private void open(Throwable e) {
+        this.state = State.OPEN;
+        this.openedAt = System.currentTimeMillis();
+        this.trialInFlight = false;
+        logger.warn("Cluster unavailable after " + this.consecutiveFailures + " consecutive failures (" + e.getMessage()
+                + "): circuit open for " + this.circuitBreakerOpenMs + " ms");
+    }
+
+    /**
+     * Exponential backoff with jitter: between half and full exponential delay, so that concurrent
+     * requests do not retry all at once
+     */
+    private long getBackoffMs(int attempt) {
+        long backoff = Math.min(this.retryMaxBackoffMs, this.retryBackoffMs << Math.min(attempt, 30));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * HTTP status of failure, or -1 if cluster did not answer
+     */
+    static int getStatus(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ResponseException)
+                return ((ResponseException) t).getResponse().getStatusLine().getStatusCode();
+            if (t instanceof OpenSearchStatusException)
+                return ((OpenSearchStatusException) t).status().getStatus();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Failures showing cluster is unreachable or unable to serve requests
+     */
+    static boolean isUnavailable(Throwable e, int status) {
+        if (status > 0)
+            return status == RestStatus.BAD_GATEWAY.getStatus() || status == RestStatus.SERVICE_UNAVAILABLE.getStatus()
+                    || status == RestStatus.GATEWAY_TIMEOUT.getStatus();
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ClusterUnavailableException)
+                return false; // Request not sent
+            if (t instanceof SocketException || t instanceof SocketTimeoutException
+                    || t instanceof ConnectTimeoutException || t instanceof ConnectionClosedException
+                    || t instanceof NoHttpResponseException)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Failures showing request was not processed by cluster: connection could not be established,
+     * request rejected (429) or cluster unable to serve it (503)
+     */
+    static boolean isNotProcessed(Throwable e, int status) {
+        if (status > 0)
+            return status == RestStatus.TOO_MANY_REQUESTS.getStatus()
+                    || status == RestStatus.SERVICE_UNAVAILABLE.getStatus();
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException || t instanceof NoRouteToHostException
+                    || t instanceof ConnectTimeoutException || t instanceof UnknownHostException)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Failures worth sending request again later: cluster unreachable, unable to serve requests,
+     * overloaded (429), failing fast while circuit breaker is open or too many requests waiting to be
+     * sent. Other failures (e.g. document rejected with a 4xx error) would fail again.
+     */
+    public static boolean isTransient(Throwable e) {
+        e = unwrap(e);
+        int status = getStatus(e);
+
+        if (status == RestStatus.TOO_MANY_REQUESTS.getStatus())
+            return true;
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ClusterUnavailableException || t instanceof TooManyPendingRequestsException)
+                return true;
+        }
+
+        return isUnavailable(e, status);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null)
+            e = e.getCause();
+
+        return e;
+    }
+}
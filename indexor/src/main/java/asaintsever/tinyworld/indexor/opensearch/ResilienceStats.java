@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of resilience policy statistics
+ */
+@Getter
+@ToString
+public class ResilienceStats {
+    public final static ResilienceStats EMPTY = new ResilienceStats(0, 0, 0, 0, 0, ResiliencePolicy.State.CLOSED);
+
+    private final long retries; // Requests sent again after a transient failure
+    private final long failures; // Requests failed after all retries (or not retryable)
+    private final long rejections; // Requests failed fast while circuit was open
+    private final long circuitOpenings;
+    private final long openCircuitMs; // Total time spent with circuit open
+    private final ResiliencePolicy.State state;
+
+    public ResilienceStats(long retries, long failures, long rejections, long circuitOpenings, long openCircuitMs,
+            ResiliencePolicy.State state) {
+        this.retries = retries;
+        this.failures = failures;
+        this.rejections = rejections;
+        this.circuitOpenings = circuitOpenings;
+        this.openCircuitMs = openCircuitMs;
+        this.state = state;
+    }
+}
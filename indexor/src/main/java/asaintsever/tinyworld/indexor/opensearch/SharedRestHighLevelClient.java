@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import java.util.Collections;
+
+import org.opensearch.client.RestClient;
+import org.opensearch.client.RestHighLevelClient;
+
+/**
+ * High-level rest client reusing the low-level rest client (and its connection pool) of a
+ * ClusterClient. Closing it does not close the underlying rest client, which is owned by the
+ * ClusterClient.
+ */
+class SharedRestHighLevelClient extends RestHighLevelClient {
+
+    SharedRestHighLevelClient(RestClient restClient) {
+        super(restClient, client -> {
+        }, Collections.emptyList());
+    }
+}
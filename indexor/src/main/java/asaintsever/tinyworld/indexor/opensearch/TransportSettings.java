@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Settings of the HTTP transport shared by all clients of a cluster connection, including the
+ * resilience policy applied to all requests (retries and circuit breaker)
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class TransportSettings {
+    public final static int DEFAULT_MAX_CONN_PER_ROUTE = 10;
+    public final static int DEFAULT_MAX_CONN_TOTAL = 30;
+    public final static int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    public final static int DEFAULT_IO_THREADS = 0; // 0 to use the number of available cores
+    public final static int DEFAULT_CONNECT_TIMEOUT_MS = 1000;
+    public final static int DEFAULT_SOCKET_TIMEOUT_MS = 30000;
+    public final static int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+    public final static int DEFAULT_MAX_PENDING_REQUESTS = 1024;
+    public final static int DEFAULT_MAX_RETRIES = 3;
+    public final static long DEFAULT_RETRY_BACKOFF_MS = 200;
+    public final static long DEFAULT_RETRY_MAX_BACKOFF_MS = 5000;
+    public final static int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5; // 0 to disable circuit breaker
+    public final static long DEFAULT_CIRCUIT_BREAKER_OPEN_MS = 10000;
+
+    private int maxConnPerRoute = DEFAULT_MAX_CONN_PER_ROUTE;
+    private int maxConnTotal = DEFAULT_MAX_CONN_TOTAL;
+    private int keepAliveSeconds = DEFAULT_KEEP_ALIVE_SECONDS;
+    private int ioThreads = DEFAULT_IO_THREADS;
+    private int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private int socketTimeoutMs = DEFAULT_SOCKET_TIMEOUT_MS;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS; // Queued async requests, rejected beyond
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryBackoffMs = DEFAULT_RETRY_BACKOFF_MS; // Doubled after each retry
+    private long retryMaxBackoffMs = DEFAULT_RETRY_MAX_BACKOFF_MS;
+    private int circuitBreakerThreshold = DEFAULT_CIRCUIT_BREAKER_THRESHOLD; // Consecutive failures opening circuit
+    private long circuitBreakerOpenMs = DEFAULT_CIRCUIT_BREAKER_OPEN_MS; // Time before trying again
+}
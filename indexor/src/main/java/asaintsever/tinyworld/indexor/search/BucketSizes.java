@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Max number of buckets returned by search template aggregations. Unset (null) sizes keep template
+ * defaults.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class BucketSizes {
+    private Integer countries;
+    private Integer years;
+    private Integer months;
+
+    /**
+     * Search template parameters
+     */
+    public Map<String, Object> toParams() {
+        Map<String, Object> params = new HashMap<String, Object>();
+
+        if (this.countries != null)
+            params.put("country_size", this.countries);
+        if (this.years != null)
+            params.put("year_size", this.years);
+        if (this.months != null)
+            params.put("month_size", this.months);
+
+        return params;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.search;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Area of the globe, in degrees. Left longitude may be greater than right one when area crosses the
+ * antimeridian.
+ */
+@Getter
+@ToString
+public class GeoBoundingBox {
+    public final static GeoBoundingBox WORLD = new GeoBoundingBox(90, -180, -90, 180);
+
+    private final double top;
+    private final double left;
+    private final double bottom;
+    private final double right;
+
+    public GeoBoundingBox(double top, double left, double bottom, double right) {
+        if (top < bottom || top > 90 || bottom < -90)
+            throw new IllegalArgumentException("Invalid latitudes [top=" + top + ", bottom=" + bottom + "]");
+        if (left < -180 || left > 180 || right < -180 || right > 180)
+            throw new IllegalArgumentException("Invalid longitudes [left=" + left + ", right=" + right + "]");
+
+        this.top = top;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+    }
+}
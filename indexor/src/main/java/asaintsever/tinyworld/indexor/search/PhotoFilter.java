@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.search;
+
+import java.util.Date;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Optional criteria photos must match. Unset (null) criteria are ignored.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class PhotoFilter {
+    private Date takenFrom; // Inclusive
+    private Date takenTo; // Exclusive
+    private Integer year;
+    private Integer month; // 1 to 12
+    private GeoBoundingBox area;
+    private List<String> countries; // Photos taken in any of the countries
+    private List<String> tags; // Photos with any of the tags
+    private String cameraModel;
+
+    public PhotoFilter() {
+    }
+
+    /**
+     * Copy of filter, to be narrowed with additional criteria
+     */
+    public PhotoFilter(PhotoFilter filter) {
+        if (filter == null)
+            return;
+
+        this.takenFrom = filter.takenFrom;
+        this.takenTo = filter.takenTo;
+        this.year = filter.year;
+        this.month = filter.month;
+        this.area = filter.area;
+        this.countries = filter.countries;
+        this.tags = filter.tags;
+        this.cameraModel = filter.cameraModel;
+    }
+
+    public boolean isEmpty() {
+        return this.takenFrom == null && this.takenTo == null && this.year == null && this.month == null
+                && this.area == null && (this.countries == null || this.countries.isEmpty())
+                && (this.tags == null || this.tags.isEmpty()) && this.cameraModel == null;
+    }
+}
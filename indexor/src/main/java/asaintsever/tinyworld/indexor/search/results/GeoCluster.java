@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.search.results;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Photos located in same map tile, to be drawn as a single marker
+ */
+@Getter
+@ToString
+public class GeoCluster {
+
+    // Max number of clusters returned (default size of geotile_grid aggregation)
+    public final static int MAX_CLUSTERS = 10000;
+
+    // Tile key, "zoom/x/y" format
+    private final String key;
+    private final long count;
+
+    // Centroid of photo locations in tile
+    private final double latitude;
+    private final double longitude;
+
+    // Id of most recent photo in tile
+    private final String photoId;
+
+    public GeoCluster(String key, long count, double latitude, double longitude, String photoId) {
+        this.key = key;
+        this.count = count;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.photoId = photoId;
+    }
+}
@@ -41,13 +41,36 @@ public class IndexPage<T> {
     private final String query;
     private final List<T> documents;
 
+    // Cursor to next page: sort values of last document in page (search_after) and point in time id, if
+    // any
+    private final Object[] searchAfter;
+    private final String pointInTimeId;
+
+    // Source filtering of documents, kept to fetch next pages
+    private final String[] includes;
+    private final String[] excludes;
+
     public IndexPage(List<T> products, String query, long total, int from, int size) {
+        this(products, query, total, from, size, null, null);
+    }
+
+    public IndexPage(List<T> products, String query, long total, int from, int size, Object[] searchAfter,
+            String pointInTimeId) {
+        this(products, query, total, from, size, searchAfter, pointInTimeId, null, null);
+    }
+
+    public IndexPage(List<T> products, String query, long total, int from, int size, Object[] searchAfter,
+            String pointInTimeId, String[] includes, String[] excludes) {
         this.documents = products;
         this.query = query;
         this.total = total;
         this.from = from;
         this.size = size;
         this.lastPage = (from + size) >= total;
+        this.searchAfter = searchAfter;
+        this.pointInTimeId = pointInTimeId;
+        this.includes = includes;
+        this.excludes = excludes;
     }
 
     public List<T> get() {
@@ -69,4 +92,20 @@ public class IndexPage<T> {
     public int size() {
         return this.size;
     }
+
+    public Object[] searchAfter() {
+        return this.searchAfter;
+    }
+
+    public String pointInTimeId() {
+        return this.pointInTimeId;
+    }
+
+    public String[] includes() {
+        return this.includes;
+    }
+
+    public String[] excludes() {
+        return this.excludes;
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.search.results;
+
+import java.net.URL;
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import asaintsever.tinyworld.indexor.opensearch.Document;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Lightweight projection of photo metadata to place photos on the globe or build the photo tree,
+ * without fetching thumbnails nor descriptive metadata
+ */
+@Getter
+@Setter
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PhotoLocation {
+
+    // Fields to fetch from index
+    public final static String[] FIELDS = { "path", "takenDate", "takenYear", "takenMonth", "gpsLatLong" };
+
+    @JacksonInject(Document.ID_INJECTABLE)
+    private String id;
+
+    private URL path;
+    private Date takenDate;
+    private Short takenYear;
+    private Short takenMonth;
+
+    // "lat,lon" format
+    private String gpsLatLong;
+
+    public Double getLatitude() {
+        return this.getCoordinate(0);
+    }
+
+    public Double getLongitude() {
+        return this.getCoordinate(1);
+    }
+
+    private Double getCoordinate(int idx) {
+        if (this.gpsLatLong == null)
+            return null;
+
+        String[] latLong = this.gpsLatLong.split(",");
+        return latLong.length == 2 ? Double.valueOf(latLong[idx].trim()) : null;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.spool;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Durable local spool of photos waiting to be indexed. Photos are appended as JSON lines to segment
+ * files in the spool directory. Once full, the current segment is sealed and a new one is started.
+ * Sealed segments are replayed oldest first, then deleted.
+ *
+ * Each photo is written to the file system as it is appended, so it survives a crash of the
+ * process. Segments are synced to disk when they are sealed.
+ *
+ * A line partially written before a crash is skipped when the segment is read.
+ */
+public class PhotoSpool implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(PhotoSpool.class);
+
+    private final static String SEGMENT_PREFIX = "segment-";
+    private final static String SEGMENT_EXTENSION = ".spool";
+
+    private final Path directory;
+    private final ObjectMapper mapper;
+    private final long maxSegmentBytes;
+    private final AtomicLong size = new AtomicLong();
+
+    private FileChannel current; // Null until next append
+    private Path currentSegment;
+    private long currentBytes;
+    private long nextSequence;
+
+    /**
+     * Spooled photo
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    @ToString
+    public static class Record {
+        private int attempts; // Number of replays that failed
+        private boolean allowUpdate;
+        @ToString.Exclude
+        private PhotoMetadata photo;
+    }
+
+    public interface RecordConsumer {
+        void accept(List<Record> batch) throws IOException;
+    }
+
+    public PhotoSpool(Path directory, ObjectMapper mapper, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.mapper = mapper;
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        Files.createDirectories(directory);
+
+        // Resume after last segment left by previous runs
+        for (Path segment : this.listSegments()) {
+            this.nextSequence = Math.max(this.nextSequence, getSequence(segment) + 1);
+
+            try (Stream<String> lines = Files.lines(segment, StandardCharsets.UTF_8)) {
+                this.size.addAndGet(lines.filter(line -> !line.isBlank()).count());
+            }
+        }
+
+        if (this.size.get() > 0)
+            logger.info(this.size.get() + " photo(s) waiting in spool " + directory);
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Number of spooled photos
+     */
+    public long size() {
+        return this.size.get();
+    }
+
+    public boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    public void append(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+        this.append(new Record().setPhoto(photo).setAllowUpdate(allowUpdate));
+    }
+
+    public synchronized void append(Record record) throws IOException {
+        byte[] line;
+        try {
+            line = (this.mapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IOException("Fail to serialize photo " + record.getPhoto().getPath(), e);
+        }
+
+        if (this.current == null) {
+            this.currentSegment = this.directory
+                    .resolve(String.format("%s%016d%s", SEGMENT_PREFIX, this.nextSequence++, SEGMENT_EXTENSION));
+            this.current = FileChannel.open(this.currentSegment, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.currentBytes = 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining())
+            this.current.write(buffer);
+
+        this.currentBytes += line.length;
+        this.size.incrementAndGet();
+
+        if (this.currentBytes >= this.maxSegmentBytes)
+            this.seal();
+    }
+
+    /**
+     * Seal current segment (if any) and return all sealed segments, oldest first. Photos appended from
+     * now on go to a new segment.
+     */
+    public synchronized List<Path> segments() throws IOException {
+        this.seal();
+        return this.listSegments();
+    }
+
+    /**
+     * Read photos of sealed segment by batches
+     */
+    public void read(Path segment, int batchSize, RecordConsumer consumer) throws IOException {
+        List<Record> batch = new ArrayList<Record>(batchSize);
+
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+
+                try {
+                    batch.add(this.mapper.readValue(line, Record.class));
+                } catch (JsonProcessingException e) {
+                    logger.warn("Skip corrupted record in spool segment " + segment + ": " + e.getMessage());
+                    continue;
+                }
+
+                if (batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<Record>(batchSize);
+                }
+            }
+        }
+
+        if (!batch.isEmpty())
+            consumer.accept(batch);
+    }
+
+    /**
+     * Delete replayed segment
+     */
+    public void remove(Path segment) throws IOException {
+        long records;
+        try (Stream<String> lines = Files.lines(segment, StandardCharsets.UTF_8)) {
+            records = lines.filter(line -> !line.isBlank()).count();
+        }
+
+        Files.delete(segment);
+        this.size.addAndGet(-records);
+    }
+
+    /**
+     * Delete all segments
+     */
+    public synchronized void clear() throws IOException {
+        this.seal();
+
+        for (Path segment : this.listSegments())
+            Files.delete(segment);
+
+        this.size.set(0);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.seal();
+    }
+
+    private void seal() throws IOException {
+        if (this.current == null)
+            return;
+
+        try {
+            this.current.force(true);
+            this.current.close();
+        } finally {
+            this.current = null;
+        }
+
+        logger.debug("Sealed spool segment " + this.currentSegment + " (" + this.currentBytes + " bytes)");
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(PhotoSpool::isSegment).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION);
+    }
+
+    private static long getSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
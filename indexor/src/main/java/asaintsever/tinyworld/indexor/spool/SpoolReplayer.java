@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+/**
+ * Background task draining spool into index with bulk requests. Replay is attempted when cluster is
+ * connected, with exponential backoff while cluster is unavailable or photos are rejected.
+ */
+public class SpoolReplayer implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(SpoolReplayer.class);
+
+    private final static long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Bulk indexing of photos (must not spool photos itself)
+     */
+    public interface Target {
+        List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+                throws IOException;
+    }
+
+    private final PhotoSpool spool;
+    private final SpoolSettings settings;
+    private final BooleanSupplier connected;
+    private final Target target;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long backoffMs;
+
+    public SpoolReplayer(PhotoSpool spool, SpoolSettings settings, BooleanSupplier connected, Target target) {
+        this.spool = spool;
+        this.settings = settings;
+        this.connected = connected;
+        this.target = target;
+        this.backoffMs = settings.getInitialBackoffMs();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tw-spool-replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SpoolReplayer start() {
+        this.schedule(0);
+        return this;
+    }
+
+    /**
+     * Number of spooled photos indexed
+     */
+    public long getReplayed() {
+        return this.replayed.get();
+    }
+
+    /**
+     * Number of spooled photos dropped after too many rejections
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Replay all sealed segments. Photos rejected by index go back to spool.
+     *
+     * @return number of photos spooled again
+     * @throws IOException if bulk requests fail: segment being replayed is kept and will be replayed
+     *                     again
+     */
+    public synchronized int replay() throws IOException {
+        int retries = 0;
+
+        for (Path segment : this.spool.segments()) {
+            List<PhotoSpool.Record> rejected = new ArrayList<PhotoSpool.Record>();
+            this.spool.read(segment, this.settings.getBatchSize(), batch -> this.replay(batch, rejected));
+
+            // Segment fully acknowledged: rejected photos go to a new segment
+            for (PhotoSpool.Record record : rejected)
+                this.spool.append(record);
+
+            this.spool.remove(segment);
+            retries += rejected.size();
+        }
+
+        return retries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdownNow();
+
+        try {
+            if (!this.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                logger.warn("Timeout waiting for spool replay to stop");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replay(List<PhotoSpool.Record> batch, List<PhotoSpool.Record> rejected) throws IOException {
+        for (boolean allowUpdate : new boolean[] { false, true }) {
+            Map<PhotoMetadata, PhotoSpool.Record> records = new IdentityHashMap<PhotoMetadata, PhotoSpool.Record>();
+            for (PhotoSpool.Record record : batch) {
+                if (record.isAllowUpdate() == allowUpdate && record.getPhoto() != null)
+                    records.put(record.getPhoto(), record);
+            }
+
+            if (records.isEmpty())
+                continue;
+
+            for (BulkItemResult<PhotoMetadata> result : this.target.addAll(records.keySet(), allowUpdate)) {
+                PhotoSpool.Record record = records.get(result.getDocument());
+
+                switch (result.getStatus()) {
+                case CREATED:
+                case UPDATED:
+                    this.replayed.incrementAndGet();
+                    break;
+                case CONFLICT:
+                    // Already indexed (e.g. request timed out after photo was indexed)
+                    break;
+                default:
+                    if (record == null)
+                        break;
+
+                    record.setAttempts(record.getAttempts() + 1);
+                    if (record.getAttempts() < this.settings.getMaxAttempts()) {
+                        rejected.add(record);
+                    } else {
+                        this.dropped.incrementAndGet();
+                        logger.error("Drop spooled photo " + record.getPhoto().getPath() + " after "
+                                + record.getAttempts() + " failed attempts: " + result.getErrorMsg());
+                    }
+                }
+            }
+        }
+    }
+
+    private void run() {
+        if (this.spool.isEmpty()) {
+            this.schedule(this.settings.getInitialBackoffMs());
+            return;
+        }
+
+        boolean done = false;
+
+        if (this.connected.getAsBoolean()) {
+            try {
+                done = this.replay() == 0;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Fail to replay spool " + this.spool.getDirectory() + ": " + e.getMessage());
+            }
+        }
+
+        if (done) {
+            this.backoffMs = this.settings.getInitialBackoffMs();
+            this.schedule(this.spool.isEmpty() ? this.backoffMs : 0);
+        } else {
+            long delay = this.backoffMs;
+            this.backoffMs = Math.min(this.backoffMs * 2, this.settings.getMaxBackoffMs());
+
+            logger.info(this.spool.size() + " photo(s) waiting in spool, next replay in " + delay + " ms");
+            this.schedule(delay);
+        }
+    }
+
+    private void schedule(long delayMs) {
+        try {
+            this.executor.schedule(this::run, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Replayer closed
+        }
+    }
+}
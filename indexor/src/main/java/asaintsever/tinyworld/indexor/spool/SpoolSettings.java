@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.spool;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Spool settings: photos failing to be indexed are appended to segment files, replayed by batches
+ * once cluster is reachable again. Delay between replay attempts doubles after each failure, up to
+ * max backoff.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class SpoolSettings {
+    public final static int DEFAULT_SEGMENT_SIZE_MB = 64;
+    public final static int DEFAULT_BATCH_SIZE = 500;
+    public final static long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public final static long DEFAULT_MAX_BACKOFF_MS = 300000;
+    public final static int DEFAULT_MAX_ATTEMPTS = 10;
+
+    private int segmentSizeMb = DEFAULT_SEGMENT_SIZE_MB;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+    private long maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS; // Photos rejected this many times are dropped
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.thumbnail;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local store of thumbnails, out of the search index. Thumbnails are addressed by the SHA-256 of
+ * their content (a thumbnail is stored once) and appended to pack files in the store directory.
+ * Each pack file comes with an index file giving the position of its thumbnails, loaded in memory
+ * when store is opened. Once full, current pack is sealed and a new one is started.
+ *
+ * Thumbnails are read from memory-mapped pack files, without copy. Records partially written before
+ * a crash are dropped when store is opened, records missing from index files are recovered.
+ *
+ * Pack record: SHA-256 (32 bytes), thumbnail length (4 bytes), thumbnail. Index entry: SHA-256 (32
+ * bytes), position of thumbnail in pack (8 bytes), thumbnail length (4 bytes).
+ */
+public class ThumbnailStore implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(ThumbnailStore.class);
+
+    private final static String PACK_PREFIX = "pack-";
+    private final static String PACK_EXTENSION = ".pack";
+    private final static String INDEX_EXTENSION = ".idx";
+
+    private final static int HASH_BYTES = 32;
+    private final static int RECORD_HEADER_BYTES = HASH_BYTES + Integer.BYTES;
+    private final static int INDEX_ENTRY_BYTES = HASH_BYTES + Long.BYTES + Integer.BYTES;
+
+    private static class Location {
+        private final long pack;
+        private final long position;
+        private final int length;
+
+        Location(long pack, long position, int length) {
+            this.pack = pack;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private final Path directory;
+    private final long maxPackBytes;
+    private final Map<String, Location> locations = new ConcurrentHashMap<String, Location>();
+
+    // Time of last put of thumbnails already stored: new photos may reference them from an old pack
+    private final Map<String, Long> reused = new ConcurrentHashMap<String, Long>();
+
+    // Read-only mappings of pack files, remapped when reading past their end (pack has grown since)
+    private final Map<Long, MappedByteBuffer> mappings = new HashMap<Long, MappedByteBuffer>();
+
+    private FileChannel currentPack; // Null until next put
+    private FileChannel currentIndex;
+    private long currentSequence;
+    private long currentBytes;
+    private long nextSequence;
+    private long resumeSequence = -1; // Last pack left by previous runs, appended to if not full
+
+    public ThumbnailStore(Path directory, long maxPackBytes) throws IOException {
+        // Packs are mapped as a whole, in a single buffer
+        if (maxPackBytes <= RECORD_HEADER_BYTES || maxPackBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    "Pack size must be between " + (RECORD_HEADER_BYTES + 1) + " and " + Integer.MAX_VALUE + " bytes");
+
+        this.directory = directory;
+        this.maxPackBytes = maxPackBytes;
+
+        Files.createDirectories(directory);
+
+        // Packs are loaded oldest first: thumbnails copied by an interrupted compaction resolve to their
+        // latest copy
+        for (Path pack : this.listPacks()) {
+            long sequence = getSequence(pack);
+            this.load(sequence);
+            this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+            this.resumeSequence = Files.size(pack) < maxPackBytes ? sequence : -1;
+        }
+
+        if (!this.locations.isEmpty())
+            logger.info(this.locations.size() + " thumbnail(s) in store " + directory);
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Number of stored thumbnails
+     */
+    public int size() {
+        return this.locations.size();
+    }
+
+    public boolean contains(String id) {
+        return this.locations.containsKey(id);
+    }
+
+    /**
+     * Size of pack files on disk
+     */
+    public long sizeInBytes() throws IOException {
+        long size = 0;
+
+        for (Path pack : this.listPacks()) {
+            try {
+                size += Files.size(pack);
+            } catch (NoSuchFileException e) {
+                // Deleted by a compaction in between
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Store thumbnail, unless already stored. Return its id (SHA-256 of thumbnail, as hex string).
+     */
+    public String put(byte[] thumbnail) throws IOException {
+        byte[] hash = DigestUtils.sha256(thumbnail);
+        String id = Hex.encodeHexString(hash);
+
+        // Reuse is recorded under store lock: a running compaction would otherwise not see it and could
+        // delete the pack of thumbnail being referenced
+        synchronized (this) {
+            if (this.locations.containsKey(id))
+                this.reused.put(id, System.currentTimeMillis());
+            else
+                this.append(hash, ByteBuffer.wrap(thumbnail));
+        }
+
+        return id;
+    }
+
+    /**
+     * Thumbnail with given id, null if not in store. Returned buffer is a read-only view on the
+     * memory-mapped pack file (no copy), still valid if thumbnail is moved by a compaction.
+     */
+    public ByteBuffer get(String id) throws IOException {
+        while (true) {
+            Location location = this.locations.get(id);
+            if (location == null)
+                return null;
+
+            try {
+                return this.mapping(location.pack, location.position + location.length).slice((int) location.position,
+                        location.length);
+            } catch (NoSuchFileException e) {
+                // Pack deleted by a compaction meanwhile: look for new location of thumbnail
+                if (this.locations.get(id) == location)
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * Copy of thumbnail with given id, null if not in store
+     */
+    public byte[] getBytes(String id) throws IOException {
+        ByteBuffer thumbnail = this.get(id);
+        if (thumbnail == null)
+            return null;
+
+        byte[] bytes = new byte[thumbnail.remaining()];
+        thumbnail.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Rewrite pack files whose share of unreferenced thumbnails reaches threshold (between 0 and 1):
+     * referenced thumbnails are moved to current pack, then pack file is deleted. Current pack and
+     * packs modified during grace period are left alone, and thumbnails put during grace period are
+     * kept. Return number of bytes reclaimed.
+     */
+    public synchronized long compact(Predicate<String> referenced, double threshold, long gracePeriodMs)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        long reclaimed = 0;
+
+        this.reused.values().removeIf(time -> now - time >= gracePeriodMs);
+        Predicate<String> kept = referenced.or(this.reused::containsKey);
+
+        Map<Long, List<String>> packIds = new HashMap<Long, List<String>>();
+        this.locations.forEach(
+                (id, location) -> packIds.computeIfAbsent(location.pack, pack -> new ArrayList<String>()).add(id));
+
+        for (Path pack : this.listPacks()) {
+            long sequence = getSequence(pack);
+            if ((this.currentPack != null && sequence == this.currentSequence) || sequence == this.resumeSequence
+                    || now - Files.getLastModifiedTime(pack).toMillis() < gracePeriodMs)
+                continue;
+
+            long size = Files.size(pack);
+            List<String> ids = packIds.getOrDefault(sequence, List.of());
+            List<String> liveIds = ids.stream().filter(kept).collect(Collectors.toList());
+            long liveBytes = liveIds.stream().mapToLong(id -> RECORD_HEADER_BYTES + this.locations.get(id).length)
+                    .sum();
+
+            if (size > 0 && (double) (size - liveBytes) / size < threshold)
+                continue;
+
+            // Move referenced thumbnails, hash being read from their record
+            ByteBuffer packBuffer = size > 0 ? this.mapping(sequence, size) : null;
+            for (String id : liveIds) {
+                Location location = this.locations.get(id);
+                byte[] hash = new byte[HASH_BYTES];
+                packBuffer.get((int) location.position - RECORD_HEADER_BYTES, hash);
+                this.append(hash, packBuffer.slice((int) location.position, location.length));
+            }
+
+            // Moved thumbnails must be on disk before pack is deleted
+            if (this.currentPack != null) {
+                this.currentPack.force(true);
+                this.currentIndex.force(true);
+            }
+
+            for (String id : ids) {
+                Location location = this.locations.get(id);
+                if (location != null && location.pack == sequence)
+                    this.locations.remove(id);
+            }
+
+            synchronized (this.mappings) {
+                this.mappings.remove(sequence);
+            }
+
+            try {
+                Files.delete(pack);
+                Files.deleteIfExists(this.indexPath(sequence));
+            } catch (IOException e) {
+                // Pack still mapped (e.g. on Windows): its thumbnails are only garbage from now on
+                logger.warn("Fail to delete compacted thumbnail pack " + pack + ": " + e.getMessage());
+            }
+
+            reclaimed += size - liveBytes;
+            logger.debug("Compacted thumbnail pack " + pack + " (" + liveIds.size() + "/" + ids.size()
+                    + " thumbnails kept)");
+        }
+
+        return reclaimed;
+    }
+
+    /**
+     * Delete all thumbnails
+     */
+    public synchronized void clear() throws IOException {
+        this.seal();
+
+        synchronized (this.mappings) {
+            this.mappings.clear();
+        }
+
+        for (Path pack : this.listPacks()) {
+            Files.delete(pack);
+            Files.deleteIfExists(this.indexPath(getSequence(pack)));
+        }
+
+        this.locations.clear();
+        this.reused.clear();
+        this.resumeSequence = -1;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.seal();
+
+        synchronized (this.mappings) {
+            this.mappings.clear();
+        }
+    }
+
+    private void append(byte[] hash, ByteBuffer thumbnail) throws IOException {
+        int length = thumbnail.remaining();
+        if (RECORD_HEADER_BYTES + (long) length > this.maxPackBytes)
+            throw new IOException("Thumbnail of " + length + " bytes does not fit in a pack");
+
+        if (this.currentPack != null && this.currentBytes + RECORD_HEADER_BYTES + length > this.maxPackBytes)
+            this.seal();
+
+        if (this.currentPack == null)
+            this.openPack();
+
+        long position = this.currentBytes + RECORD_HEADER_BYTES;
+
+        try {
+            writeFully(this.currentPack, ByteBuffer.allocate(RECORD_HEADER_BYTES).put(hash).putInt(length).flip(),
+                    thumbnail);
+            writeFully(this.currentIndex, indexEntry(hash, position, length));
+        } catch (IOException e) {
+            // Drop partial record, next thumbnails going to a new pack
+            try {
+                this.currentPack.truncate(this.currentBytes);
+            } catch (IOException ex) {
+                logger.warn("Fail to truncate thumbnail pack " + this.packPath(this.currentSequence) + ": "
+                        + ex.getMessage());
+            }
+
+            this.seal();
+            throw e;
+        }
+
+        this.currentBytes = position + length;
+        this.locations.put(Hex.encodeHexString(hash), new Location(this.currentSequence, position, length));
+    }
+
+    private void openPack() throws IOException {
+        if (this.resumeSequence >= 0) {
+            this.currentSequence = this.resumeSequence;
+            this.resumeSequence = -1;
+        } else
+            this.currentSequence = this.nextSequence++;
+
+        this.currentPack = FileChannel.open(this.packPath(this.currentSequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.currentIndex = FileChannel.open(this.indexPath(this.currentSequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.currentBytes = this.currentPack.size();
+    }
+
+    private void seal() throws IOException {
+        if (this.currentPack == null)
+            return;
+
+        try {
+            this.currentPack.force(true);
+            this.currentIndex.force(true);
+        } finally {
+            this.currentPack.close();
+            this.currentIndex.close();
+            this.currentPack = null;
+            this.currentIndex = null;
+        }
+
+        logger.debug(
+                "Sealed thumbnail pack " + this.packPath(this.currentSequence) + " (" + this.currentBytes + " bytes)");
+    }
+
+    /**
+     * Load index of pack, recovering records written to pack but not to index (crash in between) and
+     * dropping partially written ones
+     */
+    private void load(long sequence) throws IOException {
+        Path pack = this.packPath(sequence);
+        Path index = this.indexPath(sequence);
+
+        try (FileChannel packChannel = FileChannel.open(pack, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            long packSize = packChannel.size();
+            long indexSize = indexChannel.size() - indexChannel.size() % INDEX_ENTRY_BYTES;
+            long end = 0; // End of last indexed record
+
+            ByteBuffer entries = ByteBuffer.allocate((int) indexSize);
+            readFully(indexChannel, entries, 0);
+            entries.flip();
+
+            while (entries.hasRemaining()) {
+                byte[] hash = new byte[HASH_BYTES];
+                entries.get(hash);
+                long position = entries.getLong();
+                int length = entries.getInt();
+
+                if (position + length > packSize) {
+                    // Pack truncated after index was written: remaining records are recovered from pack
+                    indexSize = entries.position() - INDEX_ENTRY_BYTES;
+                    break;
+                }
+
+                this.locations.put(Hex.encodeHexString(hash), new Location(sequence, position, length));
+                end = position + length;
+            }
+
+            indexChannel.truncate(indexSize);
+            indexChannel.position(indexSize);
+
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            long position = end;
+            int recovered = 0;
+
+            while (position + RECORD_HEADER_BYTES <= packSize) {
+                header.clear();
+                readFully(packChannel, header, position);
+                header.flip();
+
+                byte[] hash = new byte[HASH_BYTES];
+                header.get(hash);
+                int length = header.getInt();
+                long thumbnailPosition = position + RECORD_HEADER_BYTES;
+
+                if (length < 0 || thumbnailPosition + length > packSize)
+                    break;
+
+                ByteBuffer thumbnail = ByteBuffer.allocate(length);
+                readFully(packChannel, thumbnail, thumbnailPosition);
+                if (!Arrays.equals(hash, DigestUtils.sha256(thumbnail.array())))
+                    break;
+
+                writeFully(indexChannel, indexEntry(hash, thumbnailPosition, length));
+                this.locations.put(Hex.encodeHexString(hash), new Location(sequence, thumbnailPosition, length));
+                position = thumbnailPosition + length;
+                recovered++;
+            }
+
+            if (recovered > 0)
+                logger.warn("Recovered " + recovered + " thumbnail(s) missing from index of pack " + pack);
+
+            if (position < packSize) {
+                logger.warn("Drop " + (packSize - position) + " byte(s) partially written at end of pack " + pack);
+                packChannel.truncate(position);
+            }
+        }
+    }
+
+    private ByteBuffer mapping(long pack, long end) throws IOException {
+        synchronized (this.mappings) {
+            MappedByteBuffer mapping = this.mappings.get(pack);
+
+            if (mapping == null || mapping.capacity() < end) {
+                try (FileChannel channel = FileChannel.open(this.packPath(pack), StandardOpenOption.READ)) {
+                    mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                }
+
+                this.mappings.put(pack, mapping);
+            }
+
+            return mapping;
+        }
+    }
+
+    private static ByteBuffer indexEntry(byte[] hash, long position, int length) {
+        return ByteBuffer.allocate(INDEX_ENTRY_BYTES).put(hash).putLong(position).putInt(length).flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("Unexpected end of file at position " + position);
+
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        while (Arrays.stream(buffers).anyMatch(Buffer::hasRemaining))
+            channel.write(buffers);
+    }
+
+    private Path packPath(long sequence) {
+        return this.directory.resolve(String.format("%s%016d%s", PACK_PREFIX, sequence, PACK_EXTENSION));
+    }
+
+    private Path indexPath(long sequence) {
+        return this.directory.resolve(String.format("%s%016d%s", PACK_PREFIX, sequence, INDEX_EXTENSION));
+    }
+
+    private List<Path> listPacks() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(ThumbnailStore::isPack).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isPack(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PACK_PREFIX) && name.endsWith(PACK_EXTENSION);
+    }
+
+    private static long getSequence(Path pack) {
+        String name = pack.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PACK_PREFIX.length(), name.length() - PACK_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.thumbnail;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Thumbnail store settings: thumbnails are appended to pack files of limited size. Pack files with
+ * a high enough share of unreferenced thumbnails are rewritten when store is compacted. Pack files
+ * written recently are left alone, as photos referencing their thumbnails may still be on their way
+ * to index.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class ThumbnailStoreSettings {
+    public final static int DEFAULT_PACK_SIZE_MB = 64;
+    public final static int DEFAULT_COMPACTION_THRESHOLD = 50;
+    public final static long DEFAULT_COMPACTION_GRACE_PERIOD_MS = 3600000;
+
+    private int packSizeMb = DEFAULT_PACK_SIZE_MB;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD; // Percentage of unreferenced bytes in pack
+    private long compactionGracePeriodMs = DEFAULT_COMPACTION_GRACE_PERIOD_MS;
+}
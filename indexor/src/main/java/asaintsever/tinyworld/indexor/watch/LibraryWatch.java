@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.watch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.manifest.PhotoManifest;
+import asaintsever.tinyworld.metadata.extractor.Extract;
+import asaintsever.tinyworld.metadata.extractor.FolderWatcher;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import asaintsever.tinyworld.metadata.extractor.PhotoObject;
+import asaintsever.tinyworld.metadata.extractor.PhotoProcessException;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
+
+/**
+ * Index photos added to or modified in a watched folder, by batches. Manifest is saved after each
+ * batch, photos failing to be indexed being removed from it to be processed again by next
+ * reconciliation. Photos removed from folder stay in index.
+ */
+public class LibraryWatch implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(LibraryWatch.class);
+
+    private final PhotoManifest manifest;
+    private final IBulkWriter<PhotoMetadata> writer;
+    private final FolderWatcher watcher;
+    private final List<BulkItemResult<PhotoMetadata>> indexingErrors = Collections
+            .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
+
+    /**
+     * @param defaultMetadata metadata to use if not found in photos
+     * @param resultListener  notified with result of each indexed photo, may be null
+     */
+    public LibraryWatch(IPhoto photos, PhotoManifest manifest, String path, PhotoMetadata defaultMetadata,
+            WatchSettings settings, Consumer<BulkItemResult<PhotoMetadata>> resultListener) throws IOException {
+        this.manifest = manifest;
+
+        // Modified photos are already in index
+        this.writer = photos.bulkWriter(true, result -> {
+            if (!result.isOk())
+                this.indexingErrors.add(result);
+            if (resultListener != null)
+                resultListener.accept(result);
+        });
+
+        this.watcher = new FolderWatcher(path, (uri, fileType, metadata) -> {
+            try {
+                this.writer
+                        .add(new PhotoObject(defaultMetadata).extractMetadata(uri, fileType, metadata).getMetadata());
+            } catch (IOException | ParseException e) {
+                throw new PhotoProcessException(e);
+            }
+        }, manifest, settings, this::commit);
+
+        try {
+            this.watcher.start();
+        } catch (IOException e) {
+            this.writer.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.watcher.close();
+        } finally {
+            // Wait for results of photos sent so far
+            this.writer.close();
+            this.forgetFailedPhotos();
+            this.manifest.save();
+        }
+    }
+
+    private void commit(Extract.Result result) {
+        logger.info("Changed photos in watched folder: " + result.getProcessed_ok() + " indexed, "
+                + result.getSkipped_unchanged() + " unchanged, " + result.getProcessed_nok() + " error(s)");
+        for (String msg : result.getErrorMsg())
+            logger.warn(msg);
+
+        try {
+            this.writer.flush();
+            this.forgetFailedPhotos();
+            this.manifest.save();
+        } catch (IOException e) {
+            logger.warn("Fail to save manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Photos not indexed must be processed again
+     */
+    private void forgetFailedPhotos() {
+        List<BulkItemResult<PhotoMetadata>> errors;
+
+        synchronized (this.indexingErrors) {
+            errors = new ArrayList<BulkItemResult<PhotoMetadata>>(this.indexingErrors);
+            this.indexingErrors.clear();
+        }
+
+        for (BulkItemResult<PhotoMetadata> error : errors) {
+            try {
+                this.manifest.forget(error.getDocument().getPath().toURI());
+            } catch (URISyntaxException e) {
+                logger.warn("Fail to remove " + error.getDocument().getPath() + " from manifest: " + e.getMessage());
+            }
+        }
+    }
+}
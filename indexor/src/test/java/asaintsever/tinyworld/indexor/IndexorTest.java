@@ -21,13 +21,23 @@ package asaintsever.tinyworld.indexor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.net.URL;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import org.jeasy.random.EasyRandom;
 import org.jeasy.random.EasyRandomParameters;
@@ -40,7 +50,16 @@ import org.junit.jupiter.api.Test;
 import org.opensearch.client.ResponseException;
 import org.opensearch.rest.RestStatus;
 
+import asaintsever.tinyworld.cfg.utils.Utils;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.opensearch.ClusterClient;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
 import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.PhotoLocation;
 import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
 
@@ -201,4 +220,303 @@ public class IndexorTest {
         assertTrue(aggr.size() > 0);
     }
 
+    @Test
+    void bulkInsertMetadata() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 50).collect(Collectors.toList());
+
+        List<BulkItemResult<PhotoMetadata>> results = indexor.photos().addAll(photos, false);
+        assertEquals(50, results.size());
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == Status.CREATED));
+
+        // Same photos again without updates allowed: conflicts expected for all of them
+        results = indexor.photos().addAll(photos.subList(0, 10), false);
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == Status.CONFLICT));
+        assertEquals(photos.get(0).getPath(), results.get(0).getDocument().getPath());
+
+        // Now with updates allowed
+        results = indexor.photos().addAll(photos.subList(0, 10), true);
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == Status.UPDATED));
+
+        // Pause before asking # of photos in index
+        Thread.sleep(2000);
+        assertEquals(indexor.photos().count(), 50);
+    }
+
+    @Test
+    void bulkWriteMetadata() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<BulkItemResult<PhotoMetadata>> results = Collections
+                .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
+
+        try (IBulkWriter<PhotoMetadata> writer = indexor.photos().bulkWriter(false, results::add)) {
+            for (int i = 0; i < 1200; i++)
+                writer.add(easyRandom.nextObject(PhotoMetadata.class));
+        }
+
+        assertEquals(1200, results.size());
+        assertTrue(results.stream().allMatch(BulkItemResult::isOk));
+
+        // Pause before asking # of photos in index
+        Thread.sleep(2000);
+        assertEquals(indexor.photos().count(), 1200);
+    }
+
+    @Test
+    void bulkLoadMetadata() throws IOException {
+        List<BulkItemResult<PhotoMetadata>> results = Collections
+                .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
+
+        // Index is created with our mapping when bulk load session starts
+        try (IBulkLoadSession bulkLoad = indexor.beginBulkLoad();
+                IBulkWriter<PhotoMetadata> writer = indexor.photos().bulkWriter(false, results::add)) {
+            assertTrue(bulkLoad.isActive());
+            assertTrue(indexor.metadataIndex().exists());
+
+            // Only one session at a time
+            assertThrows(IOException.class, () -> {
+                indexor.beginBulkLoad();
+            });
+
+            for (int i = 0; i < 300; i++)
+                writer.add(easyRandom.nextObject(PhotoMetadata.class));
+        }
+
+        assertEquals(300, results.size());
+        assertTrue(results.stream().allMatch(BulkItemResult::isOk));
+
+        // Index is refreshed when session ends: no need to wait
+        assertEquals(indexor.photos().count(), 300);
+    }
+
+    @Test
+    void insertThenPageThroughMetadata() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 25).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Pause before searching
+        Thread.sleep(2000);
+
+        String query = "{\"simple_query_string\": {\"query\": \"*\"}}";
+
+        for (IndexPage<PhotoMetadata> page : List.of(indexor.photos().search(query, 0, 10),
+                indexor.photos().searchWithPointInTime(query, 10))) {
+            Set<URL> paths = new HashSet<URL>();
+            int pages = 0;
+
+            while (true) {
+                assertNotNull(page.searchAfter());
+                page.get().forEach(p -> paths.add(p.getPath()));
+                pages++;
+
+                if (page.isLastPage())
+                    break;
+
+                page = indexor.photos().next(page);
+            }
+
+            assertEquals(3, pages);
+            assertEquals(25, paths.size());
+        }
+    }
+
+    @Test
+    void insertThenSearchWithSourceFiltering() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 15).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Pause before searching
+        Thread.sleep(2000);
+
+        String query = "{\"simple_query_string\": {\"query\": \"*\"}}";
+
+        // Full metadata without thumbnails
+        IndexPage<PhotoMetadata> mtdList = indexor.photos().search(query, 0, 10, null, new String[] { "thumbnail" });
+        assertEquals(10, mtdList.get().size());
+        assertTrue(mtdList.get().stream().allMatch(p -> p.getThumbnail() == null && p.getPath() != null));
+
+        // Location projection
+        IndexPage<PhotoLocation> locList = indexor.photos().search(query, 0, 10, PhotoLocation.FIELDS, null,
+                PhotoLocation.class);
+        assertEquals(10, locList.get().size());
+        assertTrue(locList.get().stream().allMatch(l -> l.getId() != null && l.getLatitude() != null
+                && l.getLongitude() != null && l.getTakenDate() != null));
+
+        locList = indexor.photos().next(locList, PhotoLocation.class);
+        assertEquals(5, locList.get().size());
+        assertTrue(locList.isLastPage());
+    }
+
+    @Test
+    void pipelineMetadataAsync() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 50).collect(Collectors.toList());
+
+        // Send all requests from this thread without waiting for responses
+        List<CompletableFuture<String>> ids = photos.stream().map(p -> indexor.photosAsync().add(p, false))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(ids.toArray(new CompletableFuture[0])).join();
+        assertTrue(ids.stream().allMatch(id -> !id.join().isEmpty()));
+
+        // Same photo without updates allowed
+        CompletionException e = assertThrows(CompletionException.class, () -> {
+            indexor.photosAsync().add(photos.get(0), false).join();
+        });
+        assertTrue(e.getCause() instanceof IOException);
+
+        // Pause before asking # of photos in index
+        Thread.sleep(2000);
+        assertEquals(50, indexor.photosAsync().count().join());
+        assertEquals(photos.get(0).getPath(), indexor.photosAsync().get(ids.get(0).join()).join().getPath());
+
+        IndexPage<PhotoMetadata> page = indexor.photosAsync().search("{\"match_all\": {}}", 0, 30)
+                .thenCompose(first -> {
+                    assertEquals(30, first.get().size());
+                    return indexor.photosAsync().next(first);
+                }).join();
+        assertEquals(20, page.get().size());
+        assertTrue(page.isLastPage());
+
+        assertTrue(indexor.photosAsync().getAggregations("year_month").join().size() > 0);
+    }
+
+    @Test
+    void insertThenClusterMetadata() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 100).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Pause before searching
+        Thread.sleep(2000);
+
+        // Whole world in a single tile
+        List<GeoCluster> clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 0, null);
+        assertEquals(1, clusters.size());
+        assertEquals("0/0/0", clusters.get(0).getKey());
+        assertEquals(100, clusters.get(0).getCount());
+
+        // Most recent photo represents cluster
+        PhotoMetadata latest = photos.stream().max((p1, p2) -> p1.getTakenDate().compareTo(p2.getTakenDate())).get();
+        assertEquals(Indexor.getPhotoId(latest.getPath()), clusters.get(0).getPhotoId());
+
+        clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 3, null);
+        assertEquals(100, clusters.stream().mapToLong(GeoCluster::getCount).sum());
+        assertTrue(clusters.stream().allMatch(c -> c.getKey().startsWith("3/") && c.getPhotoId() != null));
+
+        // South hemisphere only
+        long expected = photos.stream().filter(p -> Double.parseDouble(p.getGpsLatLong().split(",")[0]) < 0).count();
+        clusters = indexor.photos().getGeoClusters(new GeoBoundingBox(0, -180, -90, 180), 3, null);
+        assertEquals(expected, clusters.stream().mapToLong(GeoCluster::getCount).sum());
+        assertTrue(clusters.stream().allMatch(c -> c.getLatitude() <= 0));
+
+        // Filtered on year
+        Short year = photos.get(0).getTakenYear();
+        expected = photos.stream().filter(p -> year.equals(p.getTakenYear())).count();
+        clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 0, new PhotoFilter().setYear(year.intValue()));
+        assertEquals(expected, clusters.get(0).getCount());
+    }
+
+    @Test
+    void insertThenAggregateFilteredMetadata() throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 100).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Pause before aggregating
+        Thread.sleep(2000);
+
+        // Filtering and aggregations in one request
+        Short year = photos.get(0).getTakenYear();
+        List<TermsAggregation> aggr = indexor.photos().getAggregations("year_month",
+                new PhotoFilter().setYear(year.intValue()), new BucketSizes().setMonths(1));
+        System.out.println(aggr);
+
+        assertEquals(1, aggr.get(0).getBuckets().size());
+        assertEquals(year.toString(), aggr.get(0).getBuckets().get(0).getKey());
+        assertEquals(1, aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().size());
+
+        // Nothing taken in the future
+        aggr = indexor.photos().getAggregations("country_year_month",
+                new PhotoFilter().setTakenFrom(new Date(System.currentTimeMillis() + 86400000L)), null);
+        assertTrue(aggr.stream().allMatch(a -> a.getBuckets().isEmpty()));
+
+        // Countries filter
+        String country = photos.get(0).getCountry();
+        aggr = indexor.photos().getAggregations("country_year_month",
+                new PhotoFilter().setCountries(List.of(country)).setArea(GeoBoundingBox.WORLD), null);
+        assertEquals(1, aggr.get(0).getBuckets().size());
+        assertEquals(country, aggr.get(0).getBuckets().get(0).getKey());
+
+        // Narrowing on year and month, then searching photos with the same filter
+        Short month = photos.get(0).getTakenMonth();
+        PhotoFilter yearMonth = new PhotoFilter(new PhotoFilter().setYear(year.intValue())).setMonth(month.intValue());
+        aggr = indexor.photos().getAggregations("year_month", yearMonth, null);
+        assertEquals(1, aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().size());
+        assertEquals(month.toString(),
+                aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().get(0).getKey());
+
+        IndexPage<PhotoLocation> locList = indexor.photos().search(Indexor.getFilterQuery(yearMonth), 0, 100,
+                PhotoLocation.FIELDS, null, PhotoLocation.class);
+        assertTrue(locList.get().size() > 0);
+        assertTrue(locList.get().stream()
+                .allMatch(loc -> year.equals(loc.getTakenYear()) && month.equals(loc.getTakenMonth())));
+    }
+
+    @Test
+    void migrateLegacyMetadataIndex() throws Exception {
+        // Index created with mapping v1 (no "_meta" version)
+        try (ClusterClient client = new ClusterClient(indexor.getHost(), indexor.getPort())) {
+            assertTrue(client.createIndex(indexor.getIndex(),
+                    new String(Utils.getInternalResource("mapping/tinyworld_photo_v1.json"))));
+        }
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 20).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        MigrationReport report = indexor.metadataIndex().migrate();
+        System.out.println(report);
+
+        assertTrue(report.isMigrated());
+        assertEquals(1, report.getFromVersion());
+        assertEquals(3, report.getToVersion());
+        assertEquals(indexor.getIndex() + "_v3", report.getTargetIndex());
+        assertEquals(20, report.getDocs());
+        assertTrue(report.getTargetSizeBytes() > 0);
+        assertTrue(report.getWriteBlockedMs() <= report.getDurationMs());
+
+        // Index name now an alias on migrated index
+        assertTrue(indexor.metadataIndex().exists());
+        assertEquals(20, indexor.photos().count());
+        assertEquals(photos.get(0).getPath(),
+                indexor.photos().get(Indexor.getPhotoId(photos.get(0).getPath())).getPath());
+
+        // Exact path lookups with keyword path
+        IndexPage<PhotoMetadata> mtdList = indexor.photos()
+                .search("{\"term\": {\"path\": \"" + photos.get(0).getPath() + "\"}}", 0, 10);
+        assertEquals(1, mtdList.total());
+
+        // Writes go to migrated index
+        assertNotNull(indexor.photos().add(easyRandom.nextObject(PhotoMetadata.class), false));
+        Thread.sleep(2000);
+        assertEquals(21, indexor.photos().count());
+
+        // Nothing to do once migrated
+        report = indexor.metadataIndex().migrate();
+        assertFalse(report.isMigrated());
+        assertEquals(3, report.getFromVersion());
+
+        // Deleting index through its alias
+        assertTrue(indexor.metadataIndex().delete());
+        assertFalse(indexor.metadataIndex().exists());
+        assertTrue(indexor.metadataIndex().create());
+    }
 }
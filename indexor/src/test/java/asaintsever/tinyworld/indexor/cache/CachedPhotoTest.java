@@ -0,0 +1,307 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.jeasy.random.EasyRandom;
+import org.jeasy.random.EasyRandomParameters;
+import org.jeasy.random.FieldPredicates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.IPhoto;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.UrlGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+public class CachedPhotoTest {
+
+    private EasyRandom easyRandom;
+    private InMemoryPhoto photos;
+
+    // Counts calls reaching the index
+    static class InMemoryPhoto implements IPhoto {
+        final Map<String, PhotoMetadata> index = new HashMap<String, PhotoMetadata>();
+        int gets;
+        int aggregations;
+        int searchable; // Number of photos seen by aggregations, updated on refresh
+
+        void refresh() {
+            this.searchable = this.index.size();
+        }
+
+        @Override
+        public String add(PhotoMetadata photo, boolean allowUpdate) throws IOException {
+            String id = Indexor.getPhotoId(photo.getPath());
+            this.index.put(id, photo);
+            return id;
+        }
+
+        @Override
+        public List<BulkItemResult<PhotoMetadata>> addAll(Collection<PhotoMetadata> photos, boolean allowUpdate)
+                throws IOException {
+            List<BulkItemResult<PhotoMetadata>> results = new ArrayList<BulkItemResult<PhotoMetadata>>();
+            for (PhotoMetadata photo : photos)
+                results.add(
+                        new BulkItemResult<PhotoMetadata>(this.add(photo, allowUpdate), photo, Status.UPDATED, null));
+            return results;
+        }
+
+        @Override
+        public IBulkWriter<PhotoMetadata> bulkWriter(boolean allowUpdate,
+                Consumer<BulkItemResult<PhotoMetadata>> resultListener) {
+            return new IBulkWriter<PhotoMetadata>() {
+                @Override
+                public void add(PhotoMetadata document) throws IOException {
+                    String id = InMemoryPhoto.this.add(document, allowUpdate);
+                    resultListener.accept(new BulkItemResult<PhotoMetadata>(id, document, Status.UPDATED, null));
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public PhotoMetadata get(String id) throws IOException {
+            this.gets++;
+            return this.index.get(id);
+        }
+
+        @Override
+        public long count() throws IOException {
+            return this.index.size();
+        }
+
+        @Override
+        public List<TermsAggregation> getAggregations(String searchTemplateId, PhotoFilter filter,
+                BucketSizes bucketSizes) throws IOException {
+            this.aggregations++;
+
+            TermsAggregation photos = new TermsAggregation();
+            photos.setSum_other_doc_count(this.searchable);
+            return List.of(photos);
+        }
+
+        @Override
+        public List<GeoCluster> getGeoClusters(GeoBoundingBox viewport, int zoom, PhotoFilter filter)
+                throws IOException {
+            return new ArrayList<GeoCluster>();
+        }
+
+        @Override
+        public IndexPage<PhotoMetadata> search(String query, int from, int size) throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public IndexPage<PhotoMetadata> search(String query, int from, int size, String[] includes, String[] excludes)
+                throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public <R> IndexPage<R> search(String query, int from, int size, String[] includes, String[] excludes,
+                Class<R> projection) throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public IndexPage<PhotoMetadata> searchWithPointInTime(String query, int size) throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public IndexPage<PhotoMetadata> next(IndexPage<PhotoMetadata> page) throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public <R> IndexPage<R> next(IndexPage<R> page, Class<R> projection) throws IOException {
+            return emptyPage();
+        }
+
+        @Override
+        public void release(IndexPage<?> page) {
+        }
+
+        private static <T> IndexPage<T> emptyPage() {
+            return new IndexPage<T>(new ArrayList<T>(), null, 0, 0, 0);
+        }
+    }
+
+    @BeforeEach
+    void setupTest() {
+        EasyRandomParameters parameters = new EasyRandomParameters().randomize(FieldPredicates.named("path"),
+                new UrlGenerator());
+
+        this.easyRandom = new EasyRandom(parameters);
+        this.photos = new InMemoryPhoto();
+    }
+
+    @Test
+    void cacheThenInvalidateOnWrites() throws IOException {
+        CachedPhoto cache = new CachedPhoto(this.photos, new CacheSettings());
+
+        PhotoMetadata mtd = this.easyRandom.nextObject(PhotoMetadata.class);
+        String id = cache.add(mtd, false);
+
+        assertSame(mtd, cache.get(id));
+        assertSame(mtd, cache.get(id));
+        cache.getAggregations("year_month");
+        cache.getAggregations("year_month");
+        assertEquals(1, this.photos.gets);
+        assertEquals(1, this.photos.aggregations);
+        assertEquals(2, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getMisses());
+
+        // Update through cache
+        PhotoMetadata updated = this.easyRandom.nextObject(PhotoMetadata.class).setPath(mtd.getPath());
+        cache.add(updated, true);
+        assertSame(updated, cache.get(id));
+        cache.getAggregations("year_month");
+        assertEquals(2, this.photos.gets);
+        assertEquals(2, this.photos.aggregations);
+
+        // Other parameters, other entry
+        cache.getAggregations("year_month", new PhotoFilter().setYear(2021), null);
+        cache.getAggregations("year_month", new PhotoFilter().setYear(2021), null);
+        assertEquals(3, this.photos.aggregations);
+
+        // Dates only differing by milliseconds, other entries
+        cache.getAggregations("year_month", new PhotoFilter().setTakenFrom(new Date(1000)), null);
+        cache.getAggregations("year_month", new PhotoFilter().setTakenFrom(new Date(1001)), null);
+        cache.getAggregations("year_month", new PhotoFilter().setTakenFrom(new Date(1001)), null);
+        assertEquals(5, this.photos.aggregations);
+
+        // Update through bulk writer
+        PhotoMetadata bulkUpdated = this.easyRandom.nextObject(PhotoMetadata.class).setPath(mtd.getPath());
+        try (IBulkWriter<PhotoMetadata> writer = cache.bulkWriter(true, result -> {
+        })) {
+            writer.add(bulkUpdated);
+        }
+        assertSame(bulkUpdated, cache.get(id));
+
+        // Update through bulk request
+        PhotoMetadata allUpdated = this.easyRandom.nextObject(PhotoMetadata.class).setPath(mtd.getPath());
+        cache.addAll(List.of(allUpdated), true);
+        assertSame(allUpdated, cache.get(id));
+        assertEquals(4, this.photos.gets);
+
+        // Write not going through cache
+        cache.invalidateAll();
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    void invalidateAggregationsOnceWritesAreSearchable() throws IOException, InterruptedException {
+        CachedPhoto cache = new CachedPhoto(this.photos, new CacheSettings().setRefreshIntervalMs(100));
+
+        // Photo written but not searchable yet
+        cache.add(this.easyRandom.nextObject(PhotoMetadata.class), false);
+        assertEquals(0, cache.getAggregations("year_month").get(0).getSum_other_doc_count());
+
+        // Periodic refresh
+        this.photos.refresh();
+        Thread.sleep(150);
+        assertEquals(1, cache.getAggregations("year_month").get(0).getSum_other_doc_count());
+        assertEquals(2, this.photos.aggregations);
+
+        // No periodic refresh during bulk loads: index refreshed when session is closed
+        try (IBulkWriter<PhotoMetadata> writer = cache.bulkWriter(false, null)) {
+            writer.add(this.easyRandom.nextObject(PhotoMetadata.class));
+        }
+        Thread.sleep(150);
+        assertEquals(1, cache.getAggregations("year_month").get(0).getSum_other_doc_count());
+        assertEquals(1, cache.getAggregations("year_month").get(0).getSum_other_doc_count());
+
+        this.photos.refresh();
+        cache.invalidateAggregations();
+        assertEquals(2, cache.getAggregations("year_month").get(0).getSum_other_doc_count());
+        assertEquals(4, this.photos.aggregations);
+    }
+
+    @Test
+    void evictLeastRecentlyUsedPhotos() throws IOException {
+        CachedPhoto cache = new CachedPhoto(this.photos, new CacheSettings().setMaxEntries(2));
+
+        List<String> ids = new ArrayList<String>();
+        for (PhotoMetadata mtd : this.easyRandom.objects(PhotoMetadata.class, 3).toArray(PhotoMetadata[]::new))
+            ids.add(this.photos.add(mtd, false));
+
+        cache.get(ids.get(0));
+        cache.get(ids.get(1));
+        cache.get(ids.get(0)); // Most recently used
+        cache.get(ids.get(2)); // Evicts second one
+
+        assertEquals(2, cache.getStats().getSize());
+        assertEquals(1, cache.getStats().getEvictions());
+
+        cache.get(ids.get(0));
+        assertEquals(3, this.photos.gets);
+        cache.get(ids.get(1));
+        assertEquals(4, this.photos.gets);
+    }
+
+    @Test
+    void expireEntries() throws IOException, InterruptedException {
+        CachedPhoto cache = new CachedPhoto(this.photos, new CacheSettings().setTtlSeconds(1));
+
+        String id = this.photos.add(this.easyRandom.nextObject(PhotoMetadata.class), false);
+        PhotoMetadata mtd = cache.get(id);
+
+        Thread.sleep(1100);
+
+        // Same photo fetched again from index
+        assertSame(mtd, cache.get(id));
+        assertEquals(2, this.photos.gets);
+        assertEquals(1, cache.getStats().getExpirations());
+
+        // Missing photos are not cached
+        cache.get("unknown");
+        cache.get("unknown");
+        assertEquals(4, this.photos.gets);
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.lucene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
+
+import org.jeasy.random.EasyRandom;
+import org.jeasy.random.EasyRandomParameters;
+import org.jeasy.random.FieldPredicates;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+import asaintsever.tinyworld.indexor.IBulkWriter;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.LatLongGenerator;
+import asaintsever.tinyworld.indexor.MigrationReport;
+import asaintsever.tinyworld.indexor.UrlGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.indexor.cache.CacheSettings;
+import asaintsever.tinyworld.indexor.search.BucketSizes;
+import asaintsever.tinyworld.indexor.search.GeoBoundingBox;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.GeoCluster;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.PhotoLocation;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
+import asaintsever.tinyworld.indexor.thumbnail.ThumbnailStoreSettings;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
+
+public class LuceneIndexorTest {
+
+    private static Indexor indexor;
+    private static EasyRandom easyRandom;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        // Change defaults for our tests
+        Indexor.setClusterPathHome("target/index");
+
+        // Create indexor on local index: no cluster started
+        indexor = new Indexor("indexor.lucene.test", Indexor.Backend.LUCENE);
+    }
+
+    @AfterAll
+    public static void teardown() throws IOException {
+        indexor.close();
+    }
+
+    @BeforeEach
+    void setupTest() {
+        EasyRandomParameters parameters = new EasyRandomParameters().seed(new Random().nextLong())
+                .dateRange(LocalDate.of(2021, 12, 1), LocalDate.of(2022, 1, 10))
+                .randomize(FieldPredicates.named("path"), new UrlGenerator())
+                .randomize(FieldPredicates.named("gpsLatLong"), new LatLongGenerator());
+
+        easyRandom = new EasyRandom(parameters);
+    }
+
+    @AfterEach
+    void teardownTest() throws IOException {
+        if (indexor.metadataIndex().exists())
+            indexor.metadataIndex().delete();
+    }
+
+    @Test
+    void createThenClearMetadataIndex() throws IOException {
+        assertTrue(indexor.isConnected());
+        assertFalse(indexor.metadataIndex().exists());
+        assertTrue(indexor.metadataIndex().create());
+        assertTrue(indexor.metadataIndex().exists());
+        assertTrue(indexor.metadataIndex().clear());
+
+        assertThrows(IOException.class, () -> {
+            indexor.metadataIndex().create();
+        });
+    }
+
+    @Test
+    void addCountGetMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        PhotoMetadata mtd = easyRandom.nextObject(PhotoMetadata.class);
+
+        String id = indexor.photos().add(mtd, false);
+        assertTrue((id != null) && !id.isEmpty());
+
+        // Changes are visible right away: no refresh interval with local index
+        assertEquals(indexor.photos().count(), 1);
+        assertEquals(mtd.getPath(), indexor.photos().get(id).getPath());
+
+        // Same photo without updates allowed
+        assertThrows(IOException.class, () -> {
+            indexor.photos().add(mtd, false);
+        });
+        assertEquals(id, indexor.photos().add(mtd, true));
+        assertEquals(indexor.photos().count(), 1);
+    }
+
+    @Test
+    void insertThenSearchMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 20).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Search all photos
+        IndexPage<PhotoMetadata> mtdList = indexor.photos().search("{\"simple_query_string\": {\"query\": \"*\"}}", 0,
+                10);
+        assertEquals(20, mtdList.total());
+        assertEquals(10, mtdList.size());
+
+        // Search for photos with takenDate date before 2022
+        String queryDSL = "{\"range\": {\"takenDate\": {\"lt\": \"2022-01-01\", \"format\": \"yyyy-MM-dd\"}}}";
+        long expected = photos.stream()
+                .filter(p -> p.getTakenDate().toInstant().isBefore(java.time.Instant.parse("2022-01-01T00:00:00Z")))
+                .count();
+
+        mtdList = indexor.photos().search(queryDSL, 0, 20);
+        assertEquals(expected, mtdList.total());
+
+        // Search for photos in south hemisphere
+        queryDSL = "{\"geo_bounding_box\": {\"gpsLatLong\": {\"top_left\": \"0,-180\", \"bottom_right\": \"-90,180\"}}}";
+
+        mtdList = indexor.photos().search(queryDSL, 0, 20);
+        assertTrue(mtdList.get().stream().allMatch(p -> Double.parseDouble(p.getGpsLatLong().split(",")[0]) <= 0));
+
+        // Search for photos within given distance (5000km radius from Paris, France)
+        queryDSL = "{\"geo_distance\": {\"distance\": \"5000km\", \"gpsLatLong\": \"48.85,2.35\"}}";
+
+        mtdList = indexor.photos().search(queryDSL, 0, 20);
+        System.out.println(
+                "Total=" + mtdList.total() + ", Size=" + mtdList.size() + ", Result=" + mtdList.get().toString());
+
+        // Unsupported query
+        assertThrows(IOException.class, () -> {
+            indexor.photos().search("{\"more_like_this\": {\"like\": \"paris\"}}", 0, 5);
+        });
+    }
+
+    @Test
+    void insertThenAggregateMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 100).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        List<TermsAggregation> aggr = indexor.photos().getAggregations("year_month");
+        System.out.println(aggr);
+
+        assertTrue(aggr.size() > 0);
+
+        assertThrows(IOException.class, () -> {
+            indexor.photos().getAggregations("unknown");
+        });
+
+        // Same results using non-blocking API
+        assertEquals(aggr.size(), indexor.photosAsync().getAggregations("year_month").join().size());
+        assertEquals(100, indexor.photosAsync().count().join());
+    }
+
+    @Test
+    void bulkWriteMetadata() throws IOException {
+        List<BulkItemResult<PhotoMetadata>> results = Collections
+                .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
+
+        // Index is created when bulk load session starts
+        try (IBulkLoadSession bulkLoad = indexor.beginBulkLoad();
+                IBulkWriter<PhotoMetadata> writer = indexor.photos().bulkWriter(false, results::add)) {
+            assertTrue(bulkLoad.isActive());
+            assertTrue(indexor.metadataIndex().exists());
+
+            for (int i = 0; i < 1200; i++)
+                writer.add(easyRandom.nextObject(PhotoMetadata.class));
+        }
+
+        assertEquals(1200, results.size());
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == Status.CREATED));
+        assertEquals(indexor.photos().count(), 1200);
+    }
+
+    @Test
+    void insertThenPageThroughMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 25).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        String query = "{\"simple_query_string\": {\"query\": \"*\"}}";
+
+        for (IndexPage<PhotoMetadata> page : List.of(indexor.photos().search(query, 0, 10),
+                indexor.photos().searchWithPointInTime(query, 10))) {
+            Set<URL> paths = new HashSet<URL>();
+            int pages = 0;
+
+            while (true) {
+                page.get().forEach(p -> paths.add(p.getPath()));
+                pages++;
+
+                if (page.isLastPage())
+                    break;
+
+                page = indexor.photos().next(page);
+            }
+
+            assertEquals(3, pages);
+            assertEquals(25, paths.size());
+        }
+    }
+
+    @Test
+    void insertThenSearchWithSourceFiltering() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 15).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        String query = "{\"match_all\": {}}";
+
+        // Full metadata without thumbnails
+        IndexPage<PhotoMetadata> mtdList = indexor.photos().search(query, 0, 10, null, new String[] { "thumbnail" });
+        assertEquals(10, mtdList.get().size());
+        assertTrue(mtdList.get().stream().allMatch(p -> p.getThumbnail() == null && p.getPath() != null));
+
+        // Location projection
+        IndexPage<PhotoLocation> locList = indexor.photos().search(query, 0, 10, PhotoLocation.FIELDS, null,
+                PhotoLocation.class);
+        assertEquals(10, locList.get().size());
+        assertTrue(locList.get().stream().allMatch(l -> l.getId() != null && l.getLatitude() != null
+                && l.getLongitude() != null && l.getTakenDate() != null));
+
+        locList = indexor.photos().next(locList, PhotoLocation.class);
+        assertEquals(5, locList.get().size());
+        assertTrue(locList.isLastPage());
+    }
+
+    @Test
+    void cacheThenClearMetadataIndex() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+        indexor.setCache(new CacheSettings());
+
+        try {
+            String id = indexor.photos().add(easyRandom.nextObject(PhotoMetadata.class), false);
+            PhotoMetadata mtd = indexor.photos().get(id);
+            assertTrue(mtd == indexor.photos().get(id));
+            assertEquals(1, indexor.cacheStats().getHits());
+
+            // Cleared index must not be served from cache
+            assertTrue(indexor.metadataIndex().clear());
+            assertNull(indexor.photos().get(id));
+            assertEquals(0, indexor.cacheStats().getSize());
+        } finally {
+            indexor.setCache(null);
+        }
+    }
+
+    @Test
+    void insertThenReadThumbnails() throws IOException {
+        assertTrue(indexor.metadataIndex().create());
+
+        byte[] thumbnail = new byte[1024];
+        new Random().nextBytes(thumbnail);
+        String encodedThumbnail = Base64.getEncoder().encodeToString(thumbnail);
+
+        // Without thumbnail store, thumbnails are embedded in index
+        PhotoMetadata photo = easyRandom.nextObject(PhotoMetadata.class).setThumbnail(encodedThumbnail)
+                .setThumbnailId(null);
+        PhotoMetadata mtd = indexor.photos().get(indexor.photos().add(photo, false));
+        assertEquals(encodedThumbnail, mtd.getThumbnail());
+        assertEquals(ByteBuffer.wrap(thumbnail), indexor.thumbnail(mtd));
+
+        indexor.setThumbnailStore(new ThumbnailStoreSettings());
+
+        try {
+            List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 10).collect(Collectors.toList());
+            photos.forEach(p -> p.setThumbnail(encodedThumbnail).setThumbnailId(null));
+            assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+            // Index only holds reference to thumbnail, stored once
+            mtd = indexor.photos().get(Indexor.getPhotoId(photos.get(0).getPath()));
+            assertNull(mtd.getThumbnail());
+            assertNotNull(mtd.getThumbnailId());
+            assertEquals(ByteBuffer.wrap(thumbnail), indexor.thumbnail(mtd));
+            assertEquals(10, indexor.photos()
+                    .search("{\"term\": {\"thumbnailId\": \"" + mtd.getThumbnailId() + "\"}}", 0, 10).total());
+
+            // Thumbnails embedded before store was enabled are still available
+            assertEquals(ByteBuffer.wrap(thumbnail),
+                    indexor.thumbnail(indexor.photos().get(Indexor.getPhotoId(photo.getPath()))));
+
+            // Photos given to add are left untouched
+            PhotoMetadata other = easyRandom.nextObject(PhotoMetadata.class).setThumbnail(encodedThumbnail)
+                    .setThumbnailId(null);
+            mtd = indexor.photos().get(indexor.photos().add(other, false));
+            assertEquals(encodedThumbnail, other.getThumbnail());
+            assertNull(other.getThumbnailId());
+            assertNull(mtd.getThumbnail());
+            assertNotNull(mtd.getThumbnailId());
+            photos.forEach(p -> assertEquals(encodedThumbnail, p.getThumbnail()));
+
+            // Thumbnail referenced (and recently stored): nothing to reclaim
+            assertEquals(0, indexor.compactThumbnails());
+        } finally {
+            // Deleting index clears thumbnail store
+            indexor.metadataIndex().delete();
+            indexor.setThumbnailStore(null);
+        }
+    }
+
+    @Test
+    void insertThenClusterMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 100).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Whole world in a single tile
+        List<GeoCluster> clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 0, null);
+        assertEquals(1, clusters.size());
+        assertEquals("0/0/0", clusters.get(0).getKey());
+        assertEquals(100, clusters.get(0).getCount());
+
+        // Most recent photo represents cluster
+        PhotoMetadata latest = photos.stream().max((p1, p2) -> p1.getTakenDate().compareTo(p2.getTakenDate())).get();
+        assertEquals(Indexor.getPhotoId(latest.getPath()), clusters.get(0).getPhotoId());
+
+        clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 3, null);
+        assertEquals(100, clusters.stream().mapToLong(GeoCluster::getCount).sum());
+        assertTrue(clusters.stream().allMatch(c -> c.getKey().startsWith("3/") && c.getPhotoId() != null));
+
+        // South hemisphere only
+        long expected = photos.stream().filter(p -> Double.parseDouble(p.getGpsLatLong().split(",")[0]) < 0).count();
+        clusters = indexor.photos().getGeoClusters(new GeoBoundingBox(0, -180, -90, 180), 3, null);
+        assertEquals(expected, clusters.stream().mapToLong(GeoCluster::getCount).sum());
+        assertTrue(clusters.stream().allMatch(c -> c.getLatitude() <= 0));
+
+        // Filtered on year
+        Short year = photos.get(0).getTakenYear();
+        expected = photos.stream().filter(p -> year.equals(p.getTakenYear())).count();
+        clusters = indexor.photos().getGeoClusters(GeoBoundingBox.WORLD, 0, new PhotoFilter().setYear(year.intValue()));
+        assertEquals(expected, clusters.get(0).getCount());
+    }
+
+    @Test
+    void insertThenAggregateFilteredMetadata() throws IOException {
+        assertTrue(indexor.metadataIndex().create()); // Index must be explicitly created as our mapping is set here
+
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 100).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        // Filtering and aggregations in one request
+        Short year = photos.get(0).getTakenYear();
+        List<TermsAggregation> aggr = indexor.photos().getAggregations("year_month",
+                new PhotoFilter().setYear(year.intValue()), new BucketSizes().setMonths(1));
+        System.out.println(aggr);
+
+        assertEquals(1, aggr.get(0).getBuckets().size());
+        assertEquals(year.toString(), aggr.get(0).getBuckets().get(0).getKey());
+        assertEquals(1, aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().size());
+
+        // Nothing taken in the future
+        aggr = indexor.photos().getAggregations("country_year_month",
+                new PhotoFilter().setTakenFrom(new Date(System.currentTimeMillis() + 86400000L)), null);
+        assertTrue(aggr.stream().allMatch(a -> a.getBuckets().isEmpty()));
+
+        // Countries filter
+        String country = photos.get(0).getCountry();
+        aggr = indexor.photos().getAggregations("country_year_month",
+                new PhotoFilter().setCountries(List.of(country)).setArea(GeoBoundingBox.WORLD), null);
+        assertEquals(1, aggr.get(0).getBuckets().size());
+        assertEquals(country, aggr.get(0).getBuckets().get(0).getKey());
+
+        // Narrowing on year and month, then searching photos with the same filter
+        Short month = photos.get(0).getTakenMonth();
+        PhotoFilter yearMonth = new PhotoFilter(new PhotoFilter().setYear(year.intValue())).setMonth(month.intValue());
+        aggr = indexor.photos().getAggregations("year_month", yearMonth, null);
+        assertEquals(1, aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().size());
+        assertEquals(month.toString(),
+                aggr.get(0).getBuckets().get(0).getSubAggregations().get(0).getBuckets().get(0).getKey());
+
+        IndexPage<PhotoLocation> locList = indexor.photos().search(Indexor.getFilterQuery(yearMonth), 0, 100,
+                PhotoLocation.FIELDS, null, PhotoLocation.class);
+        assertTrue(locList.get().size() > 0);
+        assertTrue(locList.get().stream()
+                .allMatch(loc -> year.equals(loc.getTakenYear()) && month.equals(loc.getTakenMonth())));
+    }
+
+    @Test
+    void migrateMetadataIndex() throws IOException {
+        // Index created by adding photos: no mapping version recorded, as with indices of previous versions
+        List<PhotoMetadata> photos = easyRandom.objects(PhotoMetadata.class, 20).collect(Collectors.toList());
+        assertTrue(indexor.photos().addAll(photos, false).stream().allMatch(BulkItemResult::isOk));
+
+        MigrationReport report = indexor.metadataIndex().migrate();
+        System.out.println(report);
+
+        assertTrue(report.isMigrated());
+        assertEquals(1, report.getFromVersion());
+        assertEquals(3, report.getToVersion());
+        assertEquals(20, report.getDocs());
+        assertEquals(20, indexor.photos().count());
+
+        // Exact path lookups with keyword path
+        IndexPage<PhotoMetadata> mtdList = indexor.photos()
+                .search("{\"term\": {\"path\": \"" + photos.get(0).getPath() + "\"}}", 0, 10);
+        assertEquals(1, mtdList.total());
+        assertEquals(photos.get(0).getPath(), mtdList.get().get(0).getPath());
+
+        // Nothing to do once migrated, nor for new indices
+        assertFalse(indexor.metadataIndex().migrate().isMigrated());
+        assertTrue(indexor.metadataIndex().clear());
+        assertFalse(indexor.metadataIndex().migrate().isMigrated());
+    }
+
+    @Test
+    void watchFolderThenIndexAddedPhotos(@TempDir Path dir) throws IOException, InterruptedException {
+        assertTrue(indexor.metadataIndex().create());
+        indexor.manifest().clear();
+
+        PhotoMetadata defaultMetadata = new PhotoMetadata().setCountry("_Unknown_").setCountryCode("XXX")
+                .setGpsLatLong("25.0,-71.0");
+        CountDownLatch latch = new CountDownLatch(2);
+
+        indexor.watch(dir.toString(), defaultMetadata, new WatchSettings().setDebounceMs(200).setReconcileIntervalMs(0),
+                result -> {
+                    if (result.isOk())
+                        latch.countDown();
+                });
+
+        try {
+            BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+            ImageIO.write(image, "jpg", dir.resolve("added.jpg").toFile());
+            ImageIO.write(image, "jpg", Files.createDirectory(dir.resolve("sub")).resolve("nested.jpg").toFile());
+
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } finally {
+            indexor.watch(null, null, null, null);
+        }
+
+        assertEquals(indexor.photos().count(), 2);
+        assertNotNull(indexor.manifest().getDocumentId(dir.resolve("added.jpg").toUri()));
+        assertNotNull(indexor.manifest().getDocumentId(dir.resolve("sub").resolve("nested.jpg").toUri()));
+        indexor.manifest().clear();
+    }
+}
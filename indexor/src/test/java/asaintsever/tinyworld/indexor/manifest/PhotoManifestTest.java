@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PhotoManifestTest {
+
+    private final static Path MANIFEST_FILE = Paths.get("target/manifest/test.manifest");
+    private final static URI PHOTO = Paths.get("target/photos/photo.jpg").toAbsolutePath().toUri();
+
+    @BeforeEach
+    void setupTest() throws IOException {
+        Files.deleteIfExists(MANIFEST_FILE);
+    }
+
+    @Test
+    void recordThenCheckPhoto() throws IOException {
+        PhotoManifest manifest = new PhotoManifest(MANIFEST_FILE);
+        assertFalse(manifest.isUnchanged(PHOTO, 1000, 1));
+
+        manifest.processed(PHOTO, 1000, 1, 42);
+        assertNotNull(manifest.getDocumentId(PHOTO));
+        assertTrue(manifest.isUnchanged(PHOTO, 1000, 1));
+        assertFalse(manifest.isUnchanged(PHOTO, 1000, 2));
+        assertFalse(manifest.isUnchanged(PHOTO, 1001, 1));
+
+        // Touched photo: same content, new modification time
+        assertTrue(manifest.isUnchanged(PHOTO, 1000, 2, 42));
+        assertTrue(manifest.isUnchanged(PHOTO, 1000, 2));
+
+        // Modified photo
+        assertFalse(manifest.isUnchanged(PHOTO, 1000, 3, 43));
+    }
+
+    @Test
+    void saveThenLoadManifest() throws IOException {
+        PhotoManifest manifest = new PhotoManifest(MANIFEST_FILE);
+        manifest.processed(PHOTO, 1000, 1, 42);
+        manifest.save();
+        assertTrue(Files.exists(MANIFEST_FILE));
+
+        PhotoManifest loadedManifest = new PhotoManifest(MANIFEST_FILE);
+        assertEquals(1, loadedManifest.size());
+        assertTrue(loadedManifest.isUnchanged(PHOTO, 1000, 1));
+        assertEquals(manifest.getDocumentId(PHOTO), loadedManifest.getDocumentId(PHOTO));
+
+        loadedManifest.clear();
+        assertFalse(Files.exists(MANIFEST_FILE));
+        assertNull(loadedManifest.getDocumentId(PHOTO));
+    }
+}
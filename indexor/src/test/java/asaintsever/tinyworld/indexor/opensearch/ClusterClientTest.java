@@ -21,12 +21,21 @@ package asaintsever.tinyworld.indexor.opensearch;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,12 +47,26 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.opensearch.action.ActionListener;
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.DocWriteRequest.OpType;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.index.IndexResponse;
+import org.opensearch.client.RequestOptions;
 import org.opensearch.client.ResponseException;
+import org.opensearch.client.core.CountRequest;
+import org.opensearch.client.core.CountResponse;
+import org.opensearch.common.util.concurrent.OpenSearchRejectedExecutionException;
+import org.opensearch.index.shard.ShardId;
 import org.opensearch.rest.RestStatus;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import asaintsever.tinyworld.indexor.LatLongGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
 import asaintsever.tinyworld.indexor.opensearch.Cluster.ClusterNodeException;
 import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
 import asaintsever.tinyworld.indexor.search.results.IndexPage;
@@ -250,6 +273,7 @@ public class ClusterClientTest {
             docObjList = doc.next(docObjList, DocObject.class); // Get remaining documents
             System.out.println(docObjList);
             assertTrue(docObjList.isLastPage());
+            assertEquals(15, docObjList.total()); // Counted on first page only
 
             // Search for documents with creationDate date before 2022
             String queryDSL = "{\"range\": {\"creationDate\": {\"lt\": \"2022-01-01\", \"format\": \"yyyy-MM-dd\"}}}";
@@ -329,4 +353,230 @@ public class ClusterClientTest {
 
         assertTrue(client.deleteSearchTemplate(TEST_SEARCH_TEMPLATE_ID));
     }
+
+    @SuppressWarnings("resource")
+    @Test
+    void restoreSettingsAfterInterruptedBulkLoad() throws IOException {
+        assertTrue(client.createIndex("test.index", null));
+
+        Path markerFile = Paths.get("target", "bulkload", "test.index.bulkload");
+        Files.deleteIfExists(markerFile);
+
+        Map<String, String> originalSettings = client.getIndexSettings("test.index", BulkLoadSession.REFRESH_INTERVAL,
+                BulkLoadSession.TRANSLOG_DURABILITY, BulkLoadSession.NUMBER_OF_REPLICAS);
+
+        // Session is not closed, as if process had stopped during bulk load
+        new BulkLoadSession(client, "test.index", markerFile).begin();
+        assertTrue(Files.exists(markerFile));
+
+        Map<String, String> bulkLoadSettings = client.getIndexSettings("test.index", BulkLoadSession.REFRESH_INTERVAL,
+                BulkLoadSession.TRANSLOG_DURABILITY, BulkLoadSession.NUMBER_OF_REPLICAS);
+        assertEquals("-1", bulkLoadSettings.get(BulkLoadSession.REFRESH_INTERVAL));
+        assertEquals("async", bulkLoadSettings.get(BulkLoadSession.TRANSLOG_DURABILITY));
+        assertEquals("0", bulkLoadSettings.get(BulkLoadSession.NUMBER_OF_REPLICAS));
+
+        // Settings saved in marker file are restored on next start
+        assertTrue(BulkLoadSession.restore(client, "test.index", markerFile));
+        assertFalse(Files.exists(markerFile));
+        assertEquals(originalSettings, client.getIndexSettings("test.index", BulkLoadSession.REFRESH_INTERVAL,
+                BulkLoadSession.TRANSLOG_DURABILITY, BulkLoadSession.NUMBER_OF_REPLICAS));
+        // Settings not set before bulk load are not set explicitly once restored
+        assertNull(client.getIndexSettings("test.index", false, BulkLoadSession.REFRESH_INTERVAL)
+                .get(BulkLoadSession.REFRESH_INTERVAL));
+
+        // Nothing left to restore
+        assertFalse(BulkLoadSession.restore(client, "test.index", markerFile));
+    }
+
+    @Test
+    void reindexChangesAfterSequenceNumber() throws IOException {
+        assertTrue(client.createIndex("test.source", null));
+        assertTrue(client.createIndex("test.dest", null));
+        assertEquals(-1, client.getMaxSeqNo("test.source"));
+
+        try (Document<DocObject> doc = new Document<>(client)) {
+            doc.setIndex("test.source").getMapper().setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+            EasyRandom easyRandom = new EasyRandom(new EasyRandomParameters().seed(seed));
+
+            for (int i = 0; i < 5; i++)
+                doc.add("doc" + i, easyRandom.nextObject(DocObject.class), true);
+            client.refreshIndex("test.source");
+            assertEquals(5, client.reindex("test.source", "test.dest"));
+
+            // Only documents changed after copy are copied again
+            long copiedSeqNo = client.getMaxSeqNo("test.source");
+            assertTrue(copiedSeqNo >= 4);
+            doc.add("doc0", easyRandom.nextObject(DocObject.class), true);
+            doc.add("doc5", easyRandom.nextObject(DocObject.class), true);
+            client.refreshIndex("test.source");
+
+            assertEquals(2, client.reindex("test.source", "test.dest", copiedSeqNo));
+            assertEquals(6, client.getIndexStats("test.dest").getDocs());
+        }
+    }
+
+    @Test
+    void boundAsyncRequestsInFlight() throws IOException {
+        try (ClusterClient limitedClient = new ClusterClient("localhost", 9299,
+                new TransportSettings().setMaxInFlightRequests(2))) {
+            AsyncRequestLimiter limiter = limitedClient.getAsyncLimiter();
+            AtomicInteger maxInFlight = new AtomicInteger();
+            List<CompletableFuture<CountResponse>> responses = new ArrayList<CompletableFuture<CountResponse>>();
+
+            for (int i = 0; i < 20; i++)
+                responses.add(limiter.<CountResponse>submit(listener -> {
+                    maxInFlight.accumulateAndGet(limiter.getInFlightRequests(), Math::max);
+                    limitedClient.getHighLevelClient().countAsync(new CountRequest(), RequestOptions.DEFAULT, listener);
+                }));
+
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+
+            assertTrue(maxInFlight.get() <= 2);
+            assertEquals(0, limiter.getInFlightRequests());
+            assertTrue(responses.stream().allMatch(r -> r.join().getCount() >= 0));
+        }
+    }
+
+    @Test
+    void matchBulkItemsSentAgainAfterRejection() throws IOException {
+        List<BulkItemResult<DocObject>> results = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger bulks = new AtomicInteger();
+
+        // Cluster rejects some documents of first bulk request (429): bulk processor sends them again in
+        // a smaller request
+        BiConsumer<BulkRequest, ActionListener<BulkResponse>> overloadedCluster = (request, listener) -> {
+            boolean first = bulks.incrementAndGet() == 1;
+            List<DocWriteRequest<?>> requests = request.requests();
+            BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+
+            for (int i = 0; i < items.length; i++) {
+                String id = requests.get(i).id();
+                items[i] = (first && (id.equals("doc1") || id.equals("doc3")))
+                        ? new BulkItemResponse(i, OpType.CREATE,
+                                new BulkItemResponse.Failure("test.index", "_doc", id,
+                                        new OpenSearchRejectedExecutionException("rejected execution"),
+                                        RestStatus.TOO_MANY_REQUESTS))
+                        : new BulkItemResponse(i, OpType.CREATE,
+                                new IndexResponse(new ShardId("test.index", "_na_", 0), "_doc", id, 1, 1, 1, true));
+            }
+
+            listener.onResponse(new BulkResponse(items, 1));
+        };
+
+        try (Document<DocObject> doc = new Document<>(client)) {
+            doc.setIndex("test.index");
+            EasyRandom easyRandom = new EasyRandom(new EasyRandomParameters().seed(seed));
+
+            try (BulkWriter<DocObject> writer = new BulkWriter<>(doc, overloadedCluster, new BulkSettings(), false,
+                    obj -> obj.attr1, results::add)) {
+                for (int i = 0; i < 5; i++) {
+                    DocObject obj = easyRandom.nextObject(DocObject.class);
+                    obj.attr1 = "doc" + i;
+                    writer.add(obj);
+                }
+            }
+        }
+
+        // Each document is reported once, with its own result
+        assertEquals(2, bulks.get());
+        assertEquals(5, results.size());
+        for (BulkItemResult<DocObject> result : results) {
+            assertEquals(BulkItemResult.Status.CREATED, result.getStatus());
+            assertEquals(result.getId(), result.getDocument().attr1);
+        }
+    }
+
+    @Test
+    void sortFilterQueriesWithoutScore() {
+        assertFalse(Document.isScored("{\"match_all\": {}}"));
+        assertFalse(Document.isScored("{\"bool\": {\"filter\": [{\"term\": {\"takenYear\": 2021}}]}}"));
+        assertFalse(Document.isScored(
+                "{\"bool\": {\"filter\": [], \"must_not\": [{\"term\": {\"country.keyword\": \"France\"}}]}}"));
+        assertTrue(Document.isScored("{\"simple_query_string\": {\"query\": \"*\"}}"));
+        assertTrue(Document.isScored("{\"bool\": {\"must\": [{\"match\": {\"tags\": \"beach\"}}]}}"));
+    }
+
+    @Test
+    void queueAsyncRequestsWithoutBlocking() {
+        AsyncRequestLimiter limiter = new AsyncRequestLimiter(1, 2);
+        List<ActionListener<String>> listeners = new ArrayList<ActionListener<String>>();
+
+        // Second request is queued, not sent, and caller does not wait
+        CompletableFuture<String> first = limiter.<String>submit(listeners::add);
+        CompletableFuture<String> second = limiter.<String>submit(listeners::add);
+        assertEquals(1, listeners.size());
+        assertEquals(1, limiter.getInFlightRequests());
+        assertEquals(1, limiter.getPendingRequests());
+
+        // Queued request is sent once first one completes
+        listeners.get(0).onResponse("first");
+        assertEquals("first", first.join());
+        assertEquals(2, listeners.size());
+        assertEquals(0, limiter.getPendingRequests());
+
+        listeners.get(1).onFailure(new IOException("second"));
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, limiter.getInFlightRequests());
+
+        // Request failing before being sent (e.g. serialization error) gives its permit to queued requests
+        CompletableFuture<String> third = limiter.<String>submit(listeners::add);
+        CompletableFuture<String> failing = limiter.<String>submit(listener -> {
+            throw new IOException("not serializable");
+        });
+        CompletableFuture<String> fourth = limiter.<String>submit(listeners::add);
+        assertEquals(2, limiter.getPendingRequests());
+
+        listeners.get(2).onResponse("third");
+        assertEquals("third", third.join());
+        assertTrue(failing.isCompletedExceptionally());
+        assertEquals(4, listeners.size());
+        assertEquals(0, limiter.getPendingRequests());
+
+        listeners.get(3).onResponse("fourth");
+        assertEquals("fourth", fourth.join());
+        assertEquals(0, limiter.getInFlightRequests());
+
+        // Requests over max number of pending requests are rejected without being sent
+        CompletableFuture<String> fifth = limiter.<String>submit(listeners::add);
+        limiter.<String>submit(listeners::add);
+        limiter.<String>submit(listeners::add);
+        CompletableFuture<String> rejected = limiter.<String>submit(listeners::add);
+        assertEquals(2, limiter.getPendingRequests());
+        assertEquals(5, listeners.size());
+        CompletionException e = assertThrows(CompletionException.class, () -> rejected.join());
+        assertTrue(e.getCause() instanceof TooManyPendingRequestsException);
+        assertTrue(ResiliencePolicy.isTransient(e));
+
+        listeners.get(4).onResponse("fifth");
+        assertEquals("fifth", fifth.join());
+        assertEquals(1, limiter.getPendingRequests());
+    }
+
+    @Test
+    void failFastWhileClusterUnreachable() throws IOException, InterruptedException {
+        // Nothing listening on this port
+        try (ClusterClient unreachable = new ClusterClient("localhost", 9298, new TransportSettings().setMaxRetries(2)
+                .setRetryBackoffMs(10).setCircuitBreakerThreshold(3).setCircuitBreakerOpenMs(200))) {
+            ResiliencePolicy policy = unreachable.getResiliencePolicy();
+
+            // Retried then circuit opens on third consecutive failure
+            assertThrows(IOException.class, () -> unreachable.isIndexExists("test.index"));
+            assertEquals(2, policy.getStats().getRetries());
+            assertEquals(ResiliencePolicy.State.OPEN, policy.getState());
+
+            // Fail fast, for synchronous and asynchronous requests
+            assertThrows(ClusterUnavailableException.class, () -> unreachable.isIndexExists("test.index"));
+            CompletableFuture<CountResponse> count = unreachable.<CountResponse>submit(listener -> unreachable
+                    .getHighLevelClient().countAsync(new CountRequest(), RequestOptions.DEFAULT, listener));
+            assertTrue(assertThrows(Exception.class, count::join).getCause() instanceof ClusterUnavailableException);
+            assertEquals(2, policy.getStats().getRejections());
+
+            // Trial request once open time has elapsed: still unreachable, circuit opens again
+            Thread.sleep(300);
+            assertThrows(IOException.class, () -> unreachable.isIndexExists("test.index"));
+            assertEquals(ResiliencePolicy.State.OPEN, policy.getState());
+            assertEquals(1, policy.getStats().getCircuitOpenings());
+            assertTrue(policy.getStats().getOpenCircuitMs() >= 300);
+        }
+    }
 }
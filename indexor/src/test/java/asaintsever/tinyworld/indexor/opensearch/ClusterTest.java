@@ -19,10 +19,16 @@
  */
 package asaintsever.tinyworld.indexor.opensearch;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.io.IOException;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import asaintsever.tinyworld.indexor.opensearch.Cluster.ClusterNodeException;
 
 public class ClusterTest {
@@ -39,4 +45,32 @@ public class ClusterTest {
             e.printStackTrace();
         }
     }
+
+    @SuppressWarnings("resource")
+    @Test
+    void startStopSingleNodeClusterWithPreset() throws ClusterNodeException, IOException {
+        ClusterTuning tuning = ClusterTuning.preset(ClusterTuning.PRESET_LOW_MEMORY);
+
+        try (Cluster cluster = new Cluster().setPathHome("target/index").setTuning(tuning).create(false);
+                ClusterClient client = new ClusterClient("localhost", 9200)) {
+            assertTrue(client.isConnected());
+
+            // Store type is applied to indices at creation
+            if (client.isIndexExists("tuned"))
+                client.deleteIndex("tuned");
+            assertTrue(client.createIndex("tuned", "{}",
+                    new ObjectMapper().writeValueAsString(tuning.getIndexSettings())));
+            assertEquals(ClusterTuning.STORE_TYPE_NIOFS,
+                    client.getIndexSettings("tuned", "index.store.type").get("index.store.type"));
+            client.deleteIndex("tuned");
+        }
+
+        assertEquals(ClusterTuning.STORE_TYPE_MMAPFS,
+                ClusterTuning.preset(ClusterTuning.PRESET_SEARCH_HEAVY).getIndexSettings().get("index.store.type"));
+        assertTrue(ClusterTuning.preset(ClusterTuning.PRESET_DEFAULT).getIndexSettings().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            ClusterTuning.preset("unknown");
+        });
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeasy.random.EasyRandom;
+import org.jeasy.random.EasyRandomParameters;
+import org.jeasy.random.FieldPredicates;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import asaintsever.tinyworld.indexor.LatLongGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.indexor.opensearch.Cluster.ClusterNodeException;
+import lombok.ToString;
+
+/**
+ * Compare embedded cluster presets on a synthetic corpus. Excluded from default build, run with
+ * 'mvn test -P benchmark' (corpus size can be set with -Dbenchmark.docs=<number of documents>).
+ */
+@Tag("benchmark")
+public class ClusterTuningBenchmarkTest {
+
+    private final static int PORT = 9297;
+    private final static String INDEX = "benchmark";
+    private final static int DOCS = Integer.getInteger("benchmark.docs", 20000);
+    private final static int SEARCHES = 500;
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+
+    private final static String MAPPING = "{\"properties\": {\"attr1\": {\"type\": \"keyword\"},"
+            + "\"attr2\": {\"type\": \"text\"}, \"attr3\": {\"type\": \"float\"},"
+            + "\"latlong\": {\"type\": \"geo_point\"}}}";
+
+    @ToString
+    static class BenchObject {
+        public String attr1;
+        public String attr2;
+        public Float attr3;
+        public String latlong;
+    }
+
+    @ToString
+    static class BenchResult {
+        String preset;
+        long ingestMs;
+        long searchMs;
+        long heapUsedMb;
+    }
+
+    @Test
+    void comparePresets() throws Exception {
+        // Warm up JVM so that first preset is not penalized
+        this.run(ClusterTuning.PRESET_DEFAULT);
+
+        List<BenchResult> results = new ArrayList<BenchResult>();
+
+        for (String preset : new String[] { ClusterTuning.PRESET_DEFAULT, ClusterTuning.PRESET_LOW_MEMORY,
+                ClusterTuning.PRESET_BULK_INGEST, ClusterTuning.PRESET_SEARCH_HEAVY })
+            results.add(this.run(preset));
+
+        System.out.println("\n----- Cluster presets (" + DOCS + " documents, " + SEARCHES + " searches) -----");
+        System.out.println(String.format("%-14s %12s %12s %14s %12s", "preset", "ingest (ms)", "docs/s",
+                "avg search (ms)", "heap (MB)"));
+        for (BenchResult res : results)
+            System.out.println(String.format("%-14s %12d %12d %14.2f %12d", res.preset, res.ingestMs,
+                    DOCS * 1000L / Math.max(res.ingestMs, 1), (double) res.searchMs / SEARCHES, res.heapUsedMb));
+    }
+
+    @SuppressWarnings("resource")
+    private BenchResult run(String preset) throws ClusterNodeException, IOException {
+        BenchResult result = new BenchResult();
+        result.preset = preset;
+
+        EasyRandom easyRandom = new EasyRandom(new EasyRandomParameters().seed(42).stringLengthRange(5, 30)
+                .randomize(FieldPredicates.named("attr1"), () -> "cat" + new Random().nextInt(50))
+                .randomize(FieldPredicates.named("latlong"), new LatLongGenerator()));
+
+        ClusterTuning tuning = ClusterTuning.preset(preset);
+
+        try (Cluster cluster = new Cluster().setHttpPort(PORT).setPathHome("target/benchmark/" + preset)
+                .setTuning(tuning).create(false);
+                ClusterClient client = new ClusterClient("localhost", PORT);
+                Document<BenchObject> doc = new Document<>(client)) {
+            if (client.isIndexExists(INDEX))
+                client.deleteIndex(INDEX);
+            assertTrue(client.createIndex(INDEX, MAPPING, MAPPER.writeValueAsString(tuning.getIndexSettings())));
+            doc.setIndex(INDEX);
+
+            // Ingest
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+
+            try (BulkWriter<BenchObject> writer = doc.bulkWriter(new BulkSettings(), false,
+                    obj -> UUID.randomUUID().toString(), res -> {
+                        if (!res.isOk())
+                            failures.incrementAndGet();
+                    })) {
+                for (int i = 0; i < DOCS; i++)
+                    writer.add(easyRandom.nextObject(BenchObject.class));
+            }
+
+            client.refreshIndex(INDEX);
+            result.ingestMs = (System.nanoTime() - start) / 1000000;
+            assertEquals(0, failures.get());
+            assertEquals(DOCS, doc.count());
+
+            // Search: mix of term, range and geo queries
+            Random random = new Random(42);
+            start = System.nanoTime();
+
+            for (int i = 0; i < SEARCHES; i++) {
+                String query;
+
+                switch (i % 3) {
+                case 0:
+                    query = "{\"term\": {\"attr1\": \"cat" + random.nextInt(50) + "\"}}";
+                    break;
+                case 1:
+                    query = "{\"range\": {\"attr3\": {\"gte\": " + random.nextFloat() + "}}}";
+                    break;
+                default:
+                    query = "{\"geo_distance\": {\"distance\": \"2000km\", \"latlong\": \"" + (random.nextInt(180) - 90)
+                            + "," + (random.nextInt(360) - 180) + "\"}}";
+                }
+
+                doc.search(query, 0, 20, BenchObject.class);
+            }
+
+            result.searchMs = (System.nanoTime() - start) / 1000000;
+
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            result.heapUsedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+
+            client.deleteIndex(INDEX);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeasy.random.EasyRandom;
+import org.jeasy.random.EasyRandomParameters;
+import org.jeasy.random.FieldPredicates;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import asaintsever.tinyworld.cfg.utils.Utils;
+import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.LatLongGenerator;
+import asaintsever.tinyworld.indexor.MigrationReport;
+import asaintsever.tinyworld.indexor.UrlGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkSettings;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+import lombok.ToString;
+
+/**
+ * Compare photo mapping v1 (analyzed thumbnail and path) with current mapping on a synthetic
+ * corpus, then migrate v1 index. Excluded from default build, run with 'mvn test -P benchmark'
+ * (corpus size can be set with -Dbenchmark.docs=<number of documents>).
+ */
+@Tag("benchmark")
+public class IndexMappingBenchmarkTest {
+
+    private final static int PORT = 9296;
+    private final static int DOCS = Integer.getInteger("benchmark.docs", 20000);
+    private final static int THUMBNAIL_BYTES = 8 * 1024; // Close to size of 160x160 JPEG thumbnails
+
+    @ToString
+    static class BenchResult {
+        String mapping;
+        long ingestMs;
+        long indexTimeMs;
+        long sizeMb;
+    }
+
+    @Test
+    void compareMappings() throws Exception {
+        String mappingV1 = new String(Utils.getInternalResource("mapping/tinyworld_photo_v1.json"));
+        String mappingV2 = new String(Utils.getInternalResource("mapping/tinyworld_photo.json"));
+        String settingsV2 = new String(Utils.getInternalResource("mapping/tinyworld_photo_settings.json"));
+
+        try (Cluster cluster = new Cluster().setHttpPort(PORT).setPathHome("target/benchmark/mapping").create(false);
+                ClusterClient client = new ClusterClient("localhost", PORT)) {
+            // Warm up JVM and cluster so that first mapping is not penalized
+            this.run(client, "warmup", mappingV1, null);
+            client.deleteIndex("warmup");
+
+            List<BenchResult> results = new ArrayList<BenchResult>();
+            results.add(this.run(client, "photos_v1", mappingV1, null));
+            results.add(this.run(client, "photos_v2", mappingV2, settingsV2));
+
+            System.out.println("\n----- Photo mappings (" + DOCS + " documents) -----");
+            System.out.println(String.format("%-10s %12s %12s %16s %10s", "mapping", "ingest (ms)", "docs/s",
+                    "index time (ms)", "size (MB)"));
+            for (BenchResult res : results)
+                System.out.println(String.format("%-10s %12d %12d %16d %10d", res.mapping, res.ingestMs,
+                        DOCS * 1000L / Math.max(res.ingestMs, 1), res.indexTimeMs, res.sizeMb));
+
+            // Migrate v1 index (index name becoming an alias on migrated index)
+            MigrationReport report = new IndexMigration(client, "photos_v1").run(mappingV2, settingsV2, 2);
+            System.out.println(String.format("\nMigration of v1 index: %d documents in %d ms, size gain %.1f%%",
+                    report.getDocs(), report.getDurationMs(), report.sizeGain() * 100));
+            assertEquals(DOCS, report.getDocs());
+
+            client.deleteIndex("photos_v1");
+            client.deleteIndex("photos_v2");
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private BenchResult run(ClusterClient client, String index, String mapping, String settings) throws IOException {
+        BenchResult result = new BenchResult();
+        result.mapping = index;
+
+        Random random = new Random(42);
+        EasyRandom easyRandom = new EasyRandom(
+                new EasyRandomParameters().seed(42).dateRange(LocalDate.of(2000, 1, 1), LocalDate.of(2022, 1, 1))
+                        .randomize(FieldPredicates.named("path"), new UrlGenerator())
+                        .randomize(FieldPredicates.named("gpsLatLong"), new LatLongGenerator())
+                        .randomize(FieldPredicates.named("thumbnail"), () -> {
+                            byte[] thumbnail = new byte[THUMBNAIL_BYTES];
+                            random.nextBytes(thumbnail);
+                            return Base64.getEncoder().encodeToString(thumbnail);
+                        }));
+
+        if (client.isIndexExists(index))
+            client.deleteIndex(index);
+        assertTrue(client.createIndex(index, mapping, settings));
+
+        try (Document<PhotoMetadata> doc = new Document<>(client)) {
+            doc.setIndex(index).getMapper().setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+
+            try (BulkWriter<PhotoMetadata> writer = doc.bulkWriter(new BulkSettings(), false,
+                    photo -> Indexor.getPhotoId(photo.getPath()), res -> {
+                        if (!res.isOk())
+                            failures.incrementAndGet();
+                    })) {
+                for (int i = 0; i < DOCS; i++)
+                    writer.add(easyRandom.nextObject(PhotoMetadata.class));
+            }
+
+            client.refreshIndex(index);
+            result.ingestMs = (System.nanoTime() - start) / 1000000;
+            assertEquals(0, failures.get());
+        }
+
+        IndexStats stats = client.getIndexStats(index);
+        result.indexTimeMs = stats.getIndexTimeMs();
+        result.sizeMb = stats.getSizeBytes() / (1024 * 1024);
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.opensearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.NoHttpResponseException;
+import org.junit.jupiter.api.Test;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.rest.RestStatus;
+
+public class ResiliencePolicyTest {
+
+    private final static TransportSettings SETTINGS = new TransportSettings().setMaxRetries(3).setRetryBackoffMs(5)
+            .setCircuitBreakerThreshold(2).setCircuitBreakerOpenMs(100);
+
+    @Test
+    void retryTransientFailures() throws IOException {
+        ResiliencePolicy policy = new ResiliencePolicy(SETTINGS);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Cluster overloaded: retried, circuit stays closed
+        assertEquals("ok", policy.execute(() -> {
+            if (calls.incrementAndGet() < 3)
+                throw new OpenSearchStatusException("rejected execution", RestStatus.TOO_MANY_REQUESTS);
+            return "ok";
+        }));
+        assertEquals(3, calls.get());
+        assertEquals(2, policy.getStats().getRetries());
+        assertEquals(ResiliencePolicy.State.CLOSED, policy.getState());
+
+        // Not transient: not retried
+        calls.set(0);
+        assertThrows(OpenSearchStatusException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new OpenSearchStatusException("bad request", RestStatus.BAD_REQUEST);
+        }));
+        assertEquals(1, calls.get());
+
+        // Gives up after max retries
+        calls.set(0);
+        assertThrows(OpenSearchStatusException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new OpenSearchStatusException("rejected execution", RestStatus.TOO_MANY_REQUESTS);
+        }));
+        assertEquals(4, calls.get());
+        assertEquals(2, policy.getStats().getFailures());
+    }
+
+    @Test
+    void retryAsynchronousRequests() {
+        ResiliencePolicy policy = new ResiliencePolicy(SETTINGS);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> response = policy.executeAsync(() -> calls.incrementAndGet() < 2
+                ? CompletableFuture
+                        .failedFuture(new OpenSearchStatusException("unavailable", RestStatus.SERVICE_UNAVAILABLE))
+                : CompletableFuture.completedFuture("ok"));
+
+        assertEquals("ok", response.join());
+        assertEquals(2, calls.get());
+        assertEquals(1, policy.getStats().getRetries());
+    }
+
+    @Test
+    void closeCircuitOnceClusterIsBack() throws IOException, InterruptedException {
+        ResiliencePolicy policy = new ResiliencePolicy(SETTINGS);
+
+        assertThrows(ConnectException.class, () -> policy.execute(() -> {
+            throw new ConnectException("Connection refused");
+        }));
+        assertEquals(ResiliencePolicy.State.OPEN, policy.getState());
+        assertThrows(ClusterUnavailableException.class, () -> policy.execute(() -> "ok"));
+
+        Thread.sleep(150);
+        assertEquals("ok", policy.execute(() -> "ok"));
+        assertEquals(ResiliencePolicy.State.CLOSED, policy.getState());
+        assertEquals(1, policy.getStats().getCircuitOpenings());
+        assertEquals(1, policy.getStats().getRejections());
+    }
+
+    @Test
+    void retryNonIdempotentRequestsOnlyIfNotProcessed() throws IOException {
+        // Circuit breaker disabled so that timeouts do not open it
+        ResiliencePolicy policy = new ResiliencePolicy(
+                new TransportSettings().setMaxRetries(3).setRetryBackoffMs(5).setCircuitBreakerThreshold(0));
+        AtomicInteger calls = new AtomicInteger();
+
+        // Cluster may have processed request before timing out: not sent again
+        assertThrows(SocketTimeoutException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new SocketTimeoutException("Read timed out");
+        }, false));
+        assertEquals(1, calls.get());
+
+        calls.set(0);
+        CompletableFuture<String> response = policy.executeAsync(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new NoHttpResponseException("localhost:9200 failed to respond"));
+        }, false);
+        assertThrows(CompletionException.class, () -> response.join());
+        assertEquals(1, calls.get());
+
+        // Request not processed: sent again
+        calls.set(0);
+        assertEquals("ok", policy.execute(() -> {
+            if (calls.incrementAndGet() == 1)
+                throw new ConnectException("Connection refused");
+            if (calls.get() == 2)
+                throw new OpenSearchStatusException("unavailable", RestStatus.SERVICE_UNAVAILABLE);
+            return "ok";
+        }, false));
+        assertEquals(3, calls.get());
+
+        // Idempotent request is sent again after timeout
+        calls.set(0);
+        assertEquals("ok", policy.execute(() -> {
+            if (calls.incrementAndGet() == 1)
+                throw new SocketTimeoutException("Read timed out");
+            return "ok";
+        }));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void classifyTransientFailures() {
+        // Worth sending again later
+        assertTrue(ResiliencePolicy.isTransient(new ConnectException("Connection refused")));
+        assertTrue(ResiliencePolicy.isTransient(new ClusterUnavailableException("circuit open")));
+        assertTrue(ResiliencePolicy.isTransient(new CompletionException(
+                new OpenSearchStatusException("rejected execution", RestStatus.TOO_MANY_REQUESTS))));
+        assertTrue(ResiliencePolicy
+                .isTransient(new OpenSearchStatusException("unavailable", RestStatus.SERVICE_UNAVAILABLE)));
+
+        // Rejected by cluster: would fail again
+        assertFalse(ResiliencePolicy
+                .isTransient(new OpenSearchStatusException("mapper_parsing_exception", RestStatus.BAD_REQUEST)));
+        assertFalse(ResiliencePolicy.isTransient(new IOException("Unexpected response")));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.spool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jeasy.random.EasyRandom;
+import org.jeasy.random.EasyRandomParameters;
+import org.jeasy.random.FieldPredicates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import asaintsever.tinyworld.indexor.UrlGenerator;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult.Status;
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
+
+public class PhotoSpoolTest {
+
+    private final static Path SPOOL_DIR = Paths.get("target/spool/test");
+    private final static ObjectMapper MAPPER = new ObjectMapper()
+            .setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+
+    private EasyRandom easyRandom;
+
+    @BeforeEach
+    void setupTest() throws IOException {
+        if (Files.exists(SPOOL_DIR)) {
+            try (Stream<Path> files = Files.walk(SPOOL_DIR)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+
+        EasyRandomParameters parameters = new EasyRandomParameters().randomize(FieldPredicates.named("path"),
+                new UrlGenerator());
+        this.easyRandom = new EasyRandom(parameters);
+    }
+
+    @Test
+    void appendThenReopenSpool() throws IOException {
+        List<PhotoMetadata> photos = this.easyRandom.objects(PhotoMetadata.class, 50).collect(Collectors.toList());
+
+        // Small segments to get several of them
+        try (PhotoSpool spool = new PhotoSpool(SPOOL_DIR, MAPPER, 4096)) {
+            for (PhotoMetadata photo : photos)
+                spool.append(photo, false);
+
+            assertEquals(50, spool.size());
+            assertTrue(spool.segments().size() > 1);
+        }
+
+        // Photos survive restart, in order, and a torn line does not prevent reading the others
+        try (PhotoSpool spool = new PhotoSpool(SPOOL_DIR, MAPPER, 4096)) {
+            assertEquals(50, spool.size());
+
+            List<Path> segments = spool.segments();
+            Files.write(segments.get(segments.size() - 1), "{\"attempts\":0,\"allowUp".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+            List<PhotoMetadata> read = new ArrayList<PhotoMetadata>();
+            for (Path segment : segments)
+                spool.read(segment, 7, batch -> batch.forEach(record -> read.add(record.getPhoto())));
+
+            assertEquals(photos.stream().map(PhotoMetadata::getPath).collect(Collectors.toList()),
+                    read.stream().map(PhotoMetadata::getPath).collect(Collectors.toList()));
+
+            spool.clear();
+            assertTrue(spool.isEmpty());
+            assertTrue(spool.segments().isEmpty());
+        }
+    }
+
+    @Test
+    void replaySpool() throws IOException {
+        List<PhotoMetadata> photos = this.easyRandom.objects(PhotoMetadata.class, 20).collect(Collectors.toList());
+        PhotoMetadata rejected = photos.get(3);
+        SpoolSettings settings = new SpoolSettings().setBatchSize(8).setMaxAttempts(2);
+        List<PhotoMetadata> indexed = new ArrayList<PhotoMetadata>();
+        boolean[] reachable = { false };
+
+        try (PhotoSpool spool = new PhotoSpool(SPOOL_DIR, MAPPER, 4096);
+                SpoolReplayer replayer = new SpoolReplayer(spool, settings, () -> true, (batch, allowUpdate) -> {
+                    if (!reachable[0])
+                        throw new IOException("Connection refused");
+
+                    List<BulkItemResult<PhotoMetadata>> results = new ArrayList<BulkItemResult<PhotoMetadata>>();
+                    for (PhotoMetadata photo : batch) {
+                        boolean ok = !photo.getPath().equals(rejected.getPath());
+                        if (ok)
+                            indexed.add(photo);
+                        results.add(new BulkItemResult<PhotoMetadata>(photo.getPath().toString(), photo,
+                                ok ? Status.CREATED : Status.FAILED, ok ? null : "Rejected"));
+                    }
+                    return results;
+                })) {
+            for (PhotoMetadata photo : photos)
+                spool.append(photo, true);
+
+            // Cluster unreachable: spool is kept as is
+            assertThrows(IOException.class, () -> replayer.replay());
+            assertEquals(20, spool.size());
+
+            // Rejected photo goes back to spool until max attempts are reached
+            reachable[0] = true;
+            assertEquals(1, replayer.replay());
+            assertEquals(1, spool.size());
+            assertEquals(19, indexed.size());
+            assertEquals(19, replayer.getReplayed());
+
+            assertEquals(0, replayer.replay());
+            assertTrue(spool.isEmpty());
+            assertEquals(1, replayer.getDropped());
+        }
+    }
+}
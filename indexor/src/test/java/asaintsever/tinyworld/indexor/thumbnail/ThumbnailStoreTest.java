@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.indexor.thumbnail;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ThumbnailStoreTest {
+
+    private final static Path STORE_DIR = Paths.get("target/thumbnails/test");
+    private final static int PACK_BYTES = 16 * 1024;
+
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void setupTest() throws IOException {
+        if (Files.exists(STORE_DIR)) {
+            try (Stream<Path> files = Files.walk(STORE_DIR)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void putThenReopenStore() throws IOException {
+        List<byte[]> thumbnails = this.thumbnails(20);
+        List<String> ids = new ArrayList<String>();
+
+        // Small packs to get several of them
+        try (ThumbnailStore store = new ThumbnailStore(STORE_DIR, PACK_BYTES)) {
+            for (byte[] thumbnail : thumbnails)
+                ids.add(store.put(thumbnail));
+
+            // Same thumbnail is stored once
+            long size = store.sizeInBytes();
+            assertEquals(ids.get(0), store.put(thumbnails.get(0).clone()));
+            assertEquals(size, store.sizeInBytes());
+
+            assertEquals(20, store.size());
+            assertTrue(this.packs().size() > 1);
+
+            ByteBuffer thumbnail = store.get(ids.get(5));
+            assertTrue(thumbnail.isReadOnly());
+            assertEquals(ByteBuffer.wrap(thumbnails.get(5)), thumbnail);
+            assertNull(store.get("unknown"));
+        }
+
+        // Simulate crash: record written without its index entry, then a partially written record
+        Path lastPack = this.packs().get(this.packs().size() - 1);
+        Path lastIndex = Paths.get(lastPack.toString().replace(".pack", ".idx"));
+        Files.write(lastIndex, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+        Files.write(lastPack, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        // Thumbnails survive restart and new ones are appended after recovered records
+        try (ThumbnailStore store = new ThumbnailStore(STORE_DIR, PACK_BYTES)) {
+            assertEquals(20, store.size());
+            for (int i = 0; i < thumbnails.size(); i++)
+                assertArrayEquals(thumbnails.get(i), store.getBytes(ids.get(i)));
+
+            byte[] newThumbnail = this.thumbnails(1).get(0);
+            String newId = store.put(newThumbnail);
+            assertArrayEquals(newThumbnail, store.getBytes(newId));
+
+            store.clear();
+            assertEquals(0, store.size());
+            assertFalse(store.contains(newId));
+            assertTrue(this.packs().isEmpty());
+        }
+    }
+
+    @Test
+    void compactStore() throws IOException {
+        List<byte[]> thumbnails = this.thumbnails(20);
+        List<String> ids = new ArrayList<String>();
+
+        try (ThumbnailStore store = new ThumbnailStore(STORE_DIR, PACK_BYTES)) {
+            for (byte[] thumbnail : thumbnails)
+                ids.add(store.put(thumbnail));
+
+            List<Path> packs = this.packs();
+            long size = store.sizeInBytes();
+
+            // Packs written during grace period are left alone
+            assertEquals(0, store.compact(id -> false, 0.5, 3600000));
+            assertEquals(20, store.size());
+
+            // One thumbnail out of four still referenced
+            Set<String> referenced = Set.of(ids.get(0), ids.get(4), ids.get(8), ids.get(12), ids.get(16));
+            long reclaimed = store.compact(referenced::contains, 0.5, 0);
+
+            assertTrue(reclaimed > 0);
+            assertTrue(store.sizeInBytes() < size);
+            assertFalse(Files.exists(packs.get(0)));
+            for (int i = 0; i < ids.size(); i++) {
+                if (referenced.contains(ids.get(i)))
+                    assertArrayEquals(thumbnails.get(i), store.getBytes(ids.get(i)));
+            }
+        }
+
+        // Compacted store is consistent after restart
+        try (ThumbnailStore store = new ThumbnailStore(STORE_DIR, PACK_BYTES)) {
+            assertArrayEquals(thumbnails.get(0), store.getBytes(ids.get(0)));
+            assertArrayEquals(thumbnails.get(16), store.getBytes(ids.get(16)));
+        }
+    }
+
+    private List<byte[]> thumbnails(int count) {
+        List<byte[]> thumbnails = new ArrayList<byte[]>();
+
+        for (int i = 0; i < count; i++) {
+            byte[] thumbnail = new byte[2048 + this.random.nextInt(2048)];
+            this.random.nextBytes(thumbnail);
+            thumbnails.add(thumbnail);
+        }
+
+        return thumbnails;
+    }
+
+    private List<Path> packs() throws IOException {
+        try (Stream<Path> files = Files.list(STORE_DIR)) {
+            return files.filter(file -> file.toString().endsWith(".pack")).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bound memory used by concurrent image decodes (or by photo contents read in memory): decodes wait
+ * until their estimated memory fits in budget. A decode needing more than the whole budget runs
+ * alone.
+ */
+class DecodeMemoryBudget {
+    private static final int UNIT_BYTES = 1024; // Budget is accounted by KB
+
+    private final int units;
+    private final Semaphore permits;
+
+    DecodeMemoryBudget(long budgetBytes) {
+        if (budgetBytes < UNIT_BYTES)
+            throw new IllegalArgumentException("Decode memory budget must be at least " + UNIT_BYTES + " bytes");
+
+        this.units = (int) Math.min(Integer.MAX_VALUE, budgetBytes / UNIT_BYTES);
+        // Fair: large decodes are not starved by a flow of small ones
+        this.permits = new Semaphore(this.units, true);
+    }
+
+    long getBudgetBytes() {
+        return (long) this.units * UNIT_BYTES;
+    }
+
+    long getAvailableBytes() {
+        return (long) this.permits.availablePermits() * UNIT_BYTES;
+    }
+
+    /**
+     * Wait until memory is available. Return reservation to give back using release().
+     */
+    int acquire(long bytes) throws InterruptedIOException {
+        int reservation = this.reservation(bytes);
+
+        try {
+            this.permits.acquire(reservation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decode memory");
+        }
+
+        return reservation;
+    }
+
+    void release(int reservation) {
+        this.permits.release(reservation);
+    }
+
+    /**
+     * Reservation acquire() makes for given memory
+     */
+    int reservation(long bytes) {
+        return (int) Math.max(1, Math.min(this.units, (bytes + UNIT_BYTES - 1) / UNIT_BYTES));
+    }
+}
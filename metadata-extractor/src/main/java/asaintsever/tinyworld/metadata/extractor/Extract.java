@@ -22,20 +22,29 @@ package asaintsever.tinyworld.metadata.extractor;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,12 +55,14 @@ import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
 import com.drew.imaging.jpeg.JpegMetadataReader;
 import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
-import com.drew.imaging.jpeg.JpegSegmentType;
-import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Metadata;
-import com.drew.metadata.MetadataException;
 import com.drew.metadata.exif.ExifReader;
-import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.file.FileSystemDirectory;
+import com.drew.metadata.file.FileSystemMetadataReader;
+import com.drew.metadata.file.FileTypeDirectory;
+import com.drew.metadata.iptc.IptcReader;
+import com.drew.metadata.jpeg.JpegDnlReader;
+import com.drew.metadata.jpeg.JpegReader;
 
 import lombok.Getter;
 import lombok.ToString;
@@ -64,19 +75,167 @@ public class Extract {
         private final int processed_ok;
         private final int processed_nok;
         private final int skipped;
+        private final int skipped_unchanged;
         private final List<String> errorMsg;
 
         public Result(int ok, int nok, int skip, List<String> errors) {
+            this(ok, nok, skip, 0, errors);
+        }
+
+        public Result(int ok, int nok, int skip, int skipUnchanged, List<String> errors) {
             this.processed_ok = ok;
             this.processed_nok = nok;
             this.skipped = skip;
+            this.skipped_unchanged = skipUnchanged;
             this.errorMsg = errors;
         }
     }
 
+    /**
+     * Thread-safe accumulator for processing results
+     */
+    private static class ResultCollector {
+        private final AtomicInteger processed_ok = new AtomicInteger();
+        private final AtomicInteger processed_nok = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger skipped_unchanged = new AtomicInteger();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+        void error(Exception e) {
+            this.processed_nok.incrementAndGet();
+            this.errors.add(e.getMessage());
+            logger.error(e.getMessage());
+        }
+
+        Result toResult() {
+            return new Result(this.processed_ok.get(), this.processed_nok.get(), this.skipped.get(),
+                    this.skipped_unchanged.get(), new ArrayList<String>(this.errors));
+        }
+    }
+
+    /**
+     * Supported photo file with its metadata, ready to be processed
+     */
+    private static class PhotoFile {
+        private final URI uri;
+        private final FileType fileType;
+        private final Metadata metadata;
+        private final ByteBuffer content;
+        private final FileAttributes attributes;
+
+        PhotoFile(URI uri, FileType fileType, Metadata metadata, ByteBuffer content, FileAttributes attributes) {
+            this.uri = uri;
+            this.fileType = fileType;
+            this.metadata = metadata;
+            this.content = content;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * File attributes recorded in photo manifest
+     */
+    private static class FileAttributes {
+        private final long size;
+        private final long lastModified;
+        private long fingerprint;
+
+        FileAttributes(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
     protected static Logger logger = LoggerFactory.getLogger(Extract.class);
     protected final static List<FileType> supportedFileTypes = List.of(FileType.Jpeg, FileType.Png, FileType.Heif);
     protected final static String imageMagickCommand = "magick";
+    // Bytes read from files to detect their type
+    private final static int FILE_HEADER_SIZE = 4096;
+
+    /**
+     * Let exploreFS size worker pools from the number of available cores
+     */
+    public final static int AUTO_WORKERS = 0;
+
+    /**
+     * Default number of long-lived ImageMagick processes generating HEIC thumbnails
+     */
+    public final static int DEFAULT_IMAGE_MAGICK_WORKERS = 2;
+
+    private static int imageMagickWorkers = DEFAULT_IMAGE_MAGICK_WORKERS;
+    private static ImageMagickPool imageMagickPool;
+
+    /**
+     * Set number of long-lived ImageMagick processes generating thumbnails of HEIC photos without
+     * embedded JPEG thumbnail. 0 to start one ImageMagick process per photo.
+     */
+    public static synchronized void setImageMagickWorkers(int workers) {
+        if (workers == imageMagickWorkers)
+            return;
+
+        imageMagickWorkers = workers;
+
+        if (imageMagickPool != null) {
+            imageMagickPool.close();
+            imageMagickPool = null;
+        }
+    }
+
+    /**
+     * Pool of ImageMagick workers, started on first use. Null if disabled or if workers cannot be
+     * started.
+     */
+    static synchronized ImageMagickPool imageMagickPool() {
+        if (imageMagickPool == null && imageMagickWorkers > 0)
+            imageMagickPool = new ImageMagickPool(imageMagickCommand, imageMagickWorkers);
+
+        return imageMagickPool != null && imageMagickPool.isAvailable() ? imageMagickPool : null;
+    }
+
+    /**
+     * Let decoding of photos without embedded thumbnail use up to a quarter of max heap size
+     */
+    public final static int AUTO_DECODE_MEMORY = 0;
+
+    private static DecodeMemoryBudget decodeMemoryBudget = new DecodeMemoryBudget(autoDecodeMemory());
+
+    /**
+     * Set memory (in MB) shared by concurrent decodes of JPEG/PNG photos without embedded thumbnail.
+     * AUTO_DECODE_MEMORY to use a quarter of max heap size. Decodes in progress keep previous budget.
+     */
+    public static synchronized void setDecodeMemoryMb(int memoryMb) {
+        long budget = memoryMb > AUTO_DECODE_MEMORY ? memoryMb * 1024L * 1024L : autoDecodeMemory();
+
+        if (budget != decodeMemoryBudget.getBudgetBytes())
+            decodeMemoryBudget = new DecodeMemoryBudget(budget);
+    }
+
+    static synchronized DecodeMemoryBudget decodeMemoryBudget() {
+        return decodeMemoryBudget;
+    }
+
+    private static long autoDecodeMemory() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Memory shared by contents of photos in flight (read, waiting for or under processing): a quarter
+     * of max heap size
+     */
+    private static long autoContentMemory() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private static volatile boolean readAllMetadata = false;
+
+    /**
+     * By default, only JPEG metadata used by PhotoObject are parsed by exploreFS (EXIF without maker
+     * notes, IPTC, dimensions, embedded thumbnail). Set to true to get all metadata (XMP, ICC profile,
+     * maker notes, ...).
+     */
+    public static void setReadAllMetadata(boolean readAll) {
+        readAllMetadata = readAll;
+    }
 
     public static boolean checkPrerequisites() {
         boolean isWindows = File.pathSeparator.equals(";");
@@ -97,64 +256,334 @@ public class Extract {
         return true;
     }
 
+    /**
+     * Explore file system and process photos one at a time in the calling thread
+     */
     public static Result exploreFS(String rootDir, int depth, IPhotoProcess photoProcess) {
-        int nb_processed_ok = 0;
-        int nb_processed_error = 0;
-        int nb_skipped = 0;
-        List<String> errors = new ArrayList<String>();
+        return exploreFS(rootDir, depth, photoProcess, 1, 1);
+    }
+
+    /**
+     * Explore file system and process photos using a pipeline of two bounded worker pools: I/O workers
+     * detect file type and read metadata from photo files, CPU workers then run the photo process task
+     * (thumbnail decoding, indexing). Setting both worker counts to 1 processes photos one at a time in
+     * the calling thread.
+     *
+     * @param ioWorkers  number of I/O workers, or AUTO_WORKERS to use twice the number of available
+     *                   cores
+     * @param cpuWorkers number of CPU workers, or AUTO_WORKERS to use the number of available cores
+     */
+    public static Result exploreFS(String rootDir, int depth, IPhotoProcess photoProcess, int ioWorkers,
+            int cpuWorkers) {
+        return exploreFS(rootDir, depth, photoProcess, null, ioWorkers, cpuWorkers);
+    }
+
+    /**
+     * Explore file system and process new or modified photos only: photos recorded as unchanged in
+     * manifest are skipped before any metadata parsing. Successfully processed photos are recorded in
+     * manifest.
+     *
+     * @param manifest manifest of already processed photos, or null to process all photos
+     */
+    public static Result exploreFS(String rootDir, int depth, IPhotoProcess photoProcess, IPhotoManifest manifest,
+            int ioWorkers, int cpuWorkers) {
+        // Photos are processed as soon as they are discovered: a walker thread feeds a bounded queue so
+        // that the whole tree never has to be listed in memory first
+        return process(new FileWalker(() -> listFilesUsingFileWalk(rootDir, depth)), photoProcess, manifest, ioWorkers,
+                cpuWorkers);
+    }
+
+    /**
+     * Process given files (e.g. files reported as changed by FolderWatcher) through the same pipeline
+     * as exploreFS. Files no longer existing when their turn comes are ignored.
+     *
+     * @param manifest manifest of already processed photos, or null to process all given files
+     */
+    public static Result processFiles(Collection<URI> files, IPhotoProcess photoProcess, IPhotoManifest manifest,
+            int ioWorkers, int cpuWorkers) {
+        return process(new FileWalker(() -> files.stream().filter(file -> {
+            Path path = Paths.get(file);
+            return Files.isRegularFile(path) && !isIgnoredFile(path);
+        })), photoProcess, manifest, ioWorkers, cpuWorkers);
+    }
+
+    private static Result process(FileWalker walker, IPhotoProcess photoProcess, IPhotoManifest manifest, int ioWorkers,
+            int cpuWorkers) {
+        ResultCollector collector = new ResultCollector();
 
         if (photoProcess != null) {
+            walker.start();
+
             try {
-                Set<URI> photos = listFilesUsingFileWalk(rootDir, depth);
-
-                for (URI photo : photos) {
-                    File photoFile = new File(photo);
-                    try (InputStream photoStream = new FileInputStream(photoFile)) {
-                        try (FilterInputStream photoFltStream = new BufferedInputStream(photoStream)) {
-                            // Check this is a supported media
-                            FileType fileType = FileTypeDetector.detectFileType(photoFltStream);
-
-                            if (supportedFileTypes.contains(fileType)) {
-                                Metadata metadata = ImageMetadataReader.readMetadata(photoFile); // Use File here, not
-                                                                                                 // stream, to get
-                                                                                                 // FileSystemDirectory
-                                                                                                 // info
-                                                                                                 // (photo name and
-                                                                                                 // size)
-                                photoProcess.task(photo, fileType, metadata);
-                                nb_processed_ok++;
-                            } else {
-                                logger.warn(
-                                        "Skipping " + photo + ": unsupported media type (" + fileType.getName() + ")");
-                                nb_skipped++;
-                            }
-                        } catch (ImageProcessingException | PhotoProcessException e) {
-                            nb_processed_error++;
-                            errors.add(e.getMessage());
-                            logger.error(e.getMessage());
+                if (ioWorkers == 1 && cpuWorkers == 1) {
+                    PhotoBufferPool bufferPool = new PhotoBufferPool(1, autoContentMemory());
+                    URI photo;
+                    while ((photo = walker.next()) != null) {
+                        PhotoFile photoFile = readPhoto(photo, manifest, bufferPool, collector);
+                        if (photoFile != null)
+                            processPhoto(photoFile, photoProcess, manifest, bufferPool, collector);
+                    }
+                } else {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    processPhotosInParallel(walker, photoProcess, manifest, ioWorkers > 0 ? ioWorkers : 2 * cores,
+                            cpuWorkers > 0 ? cpuWorkers : cores, collector);
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Photo processing interrupted");
+                Thread.currentThread().interrupt();
+            } finally {
+                walker.stop();
+            }
+        }
+
+        return collector.toResult();
+    }
+
+    private static void processPhotosInParallel(FileWalker walker, IPhotoProcess photoProcess, IPhotoManifest manifest,
+            int ioWorkers, int cpuWorkers, ResultCollector collector) throws InterruptedException {
+        logger.info("Processing photos with " + ioWorkers + " I/O worker(s) and " + cpuWorkers + " CPU worker(s)");
+
+        ExecutorService ioPool = Executors.newFixedThreadPool(ioWorkers, workerThreadFactory("tw-extract-io"));
+        ExecutorService cpuPool = Executors.newFixedThreadPool(cpuWorkers, workerThreadFactory("tw-extract-cpu"));
+
+        // Bound the number of photos in flight (being read or waiting for/under processing) so that
+        // metadata of the whole tree is never held in memory at once
+        final int maxInFlight = ioWorkers + 2 * cpuWorkers;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        PhotoBufferPool bufferPool = new PhotoBufferPool(maxInFlight, autoContentMemory());
+
+        try {
+            URI photo;
+            while ((photo = walker.next()) != null) {
+                final URI discoveredPhoto = photo;
+                inFlight.acquire();
+
+                ioPool.execute(() -> {
+                    boolean handedOver = false;
+
+                    try {
+                        PhotoFile photoFile = readPhoto(discoveredPhoto, manifest, bufferPool, collector);
+
+                        if (photoFile != null) {
+                            cpuPool.execute(() -> {
+                                try {
+                                    processPhoto(photoFile, photoProcess, manifest, bufferPool, collector);
+                                } finally {
+                                    inFlight.release();
+                                }
+                            });
+                            handedOver = true;
                         }
-                    } catch (IOException e) {
-                        logger.error(e.getMessage());
-                        e.printStackTrace();
+                    } finally {
+                        if (!handedOver)
+                            inFlight.release();
                     }
+                });
+            }
+
+            // All permits are back once every photo has been processed
+            inFlight.acquire(maxInFlight);
+            ioPool.shutdown();
+            cpuPool.shutdown();
+        } catch (InterruptedException e) {
+            ioPool.shutdownNow();
+            cpuPool.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * Read file content, detect file type and read metadata. Return null if file is not a supported
+     * photo or cannot be read.
+     */
+    private static PhotoFile readPhoto(URI photo, IPhotoManifest manifest, PhotoBufferPool bufferPool,
+            ResultCollector collector) {
+        File photoFile = new File(photo);
+        ByteBuffer content = null;
+
+        try {
+            FileAttributes attributes = null;
+
+            if (manifest != null) {
+                BasicFileAttributes fileAttributes = Files.readAttributes(photoFile.toPath(),
+                        BasicFileAttributes.class);
+                attributes = new FileAttributes(fileAttributes.size(), fileAttributes.lastModifiedTime().toMillis());
+
+                if (manifest.isUnchanged(photo, attributes.size, attributes.lastModified)) {
+                    logger.debug("Skipping " + photo + ": unchanged since last processing");
+                    collector.skipped_unchanged.incrementAndGet();
+                    return null;
                 }
-            } catch (IOException e) {
-                logger.error(e.getMessage());
-                e.printStackTrace();
             }
+
+            // Check this is a supported media from file header only: content of other files (e.g. videos)
+            // is never read
+            FileType fileType;
+            try (BufferedInputStream header = new BufferedInputStream(new FileInputStream(photoFile),
+                    FILE_HEADER_SIZE)) {
+                fileType = FileTypeDetector.detectFileType(header);
+            }
+
+            if (!supportedFileTypes.contains(fileType)) {
+                logger.warn("Skipping " + photo + ": unsupported media type (" + fileType.getName() + ")");
+                collector.skipped.incrementAndGet();
+                return null;
+            }
+
+            // Read photo only once: metadata parsing and thumbnail generation both work from the in-memory
+            // content
+            content = bufferPool.read(photoFile);
+
+            if (manifest != null) {
+                CRC32C crc = new CRC32C();
+                crc.update(content.duplicate());
+                attributes.fingerprint = crc.getValue();
+
+                if (manifest.isUnchanged(photo, attributes.size, attributes.lastModified, attributes.fingerprint)) {
+                    logger.debug("Skipping " + photo + ": content unchanged since last processing");
+                    collector.skipped_unchanged.incrementAndGet();
+                    return null;
+                }
+            }
+
+            Metadata metadata;
+            if (fileType == FileType.Jpeg && !readAllMetadata) {
+                metadata = JpegMetadataReader.readMetadata(PhotoBufferPool.newInputStream(content), PHOTO_READERS);
+                metadata.addDirectory(new FileTypeDirectory(fileType));
+            } else
+                metadata = ImageMetadataReader.readMetadata(PhotoBufferPool.newInputStream(content),
+                        content.remaining(), fileType);
+
+            // Photo name and size are not available when reading from a stream: get them from file
+            // attributes
+            new FileSystemMetadataReader().read(photoFile, metadata);
+            metadata.getFirstDirectoryOfType(FileSystemDirectory.class).setObject(TAG_FILE_CONTENT, content);
+
+            PhotoFile photoFileWithMetadata = new PhotoFile(photo, fileType, metadata, content, attributes);
+            content = null; // Buffer is now owned by the photo file
+            return photoFileWithMetadata;
+        } catch (ImageProcessingException | RuntimeException e) {
+            // Runtime exceptions (e.g. thrown by metadata readers on malformed files) would be swallowed by
+            // I/O workers
+            collector.error(e);
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (content != null)
+                bufferPool.release(content);
         }
 
-        return new Result(nb_processed_ok, nb_processed_error, nb_skipped, errors);
+        return null;
     }
 
-    private static Set<URI> listFilesUsingFileWalk(String dir, int depth) throws IOException {
-        try (Stream<Path> stream = Files.walk(Paths.get(dir), depth, FileVisitOption.FOLLOW_LINKS)) {
-            return stream.filter(file -> !Files.isDirectory(file)) // Exclude directories
-                    .filter(file -> {
-                        String fileName = file.getFileName().toString();
-                        return !fileName.equals(".DS_Store") && !fileName.equalsIgnoreCase("desktop.ini");
-                    }) // Exclude .DS_Store (macOS) and desktop.ini (Windows) files
-                    .map(Path::toUri).collect(Collectors.toSet());
+    private static void processPhoto(PhotoFile photoFile, IPhotoProcess photoProcess, IPhotoManifest manifest,
+            PhotoBufferPool bufferPool, ResultCollector collector) {
+        try {
+            photoProcess.task(photoFile.uri, photoFile.fileType, photoFile.metadata);
+            collector.processed_ok.incrementAndGet();
+
+            if (manifest != null)
+                manifest.processed(photoFile.uri, photoFile.attributes.size, photoFile.attributes.lastModified,
+                        photoFile.attributes.fingerprint);
+        } catch (PhotoProcessException | RuntimeException e) {
+            collector.error(e);
+        } finally {
+            // Buffer is about to be reused: do not let metadata expose it anymore
+            photoFile.metadata.getFirstDirectoryOfType(FileSystemDirectory.class).setObject(TAG_FILE_CONTENT,
+                    ByteBuffer.allocate(0));
+            bufferPool.release(photoFile.content);
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Stream<URI> listFilesUsingFileWalk(String dir, int depth) throws IOException {
+        return Files.walk(Paths.get(dir), depth, FileVisitOption.FOLLOW_LINKS).filter(file -> !Files.isDirectory(file)) // Exclude
+                                                                                                                        // directories
+                .filter(file -> !isIgnoredFile(file)).map(Path::toUri);
+    }
+
+    /**
+     * Exclude .DS_Store (macOS) and desktop.ini (Windows) files
+     */
+    static boolean isIgnoredFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.equals(".DS_Store") || fileName.equalsIgnoreCase("desktop.ini");
+    }
+
+    /**
+     * Files to walk through (listed lazily)
+     */
+    private interface FileSource {
+        Stream<URI> list() throws IOException;
+    }
+
+    /**
+     * Walk file system in a background thread and hand over discovered files through a bounded queue
+     */
+    private static class FileWalker implements Runnable {
+        private static final int QUEUE_CAPACITY = 1024;
+        private static final URI END_OF_WALK = URI.create("tinyworld:end-of-walk");
+
+        private final FileSource source;
+        private final BlockingQueue<URI> discovered = new ArrayBlockingQueue<URI>(QUEUE_CAPACITY);
+        private final Thread thread;
+
+        FileWalker(FileSource source) {
+            this.source = source;
+            this.thread = new Thread(this, "tw-extract-walker");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            this.thread.start();
+        }
+
+        void stop() {
+            this.thread.interrupt();
+        }
+
+        /**
+         * Wait for next discovered file. Return null once the walk is over.
+         */
+        URI next() throws InterruptedException {
+            URI file = this.discovered.take();
+            return file == END_OF_WALK ? null : file;
+        }
+
+        @Override
+        public void run() {
+            boolean interrupted = false;
+
+            try (Stream<URI> files = this.source.list()) {
+                Iterator<URI> it = files.iterator();
+                while (it.hasNext())
+                    this.discovered.put(it.next());
+            } catch (InterruptedException e) {
+                // Consumer is gone, nobody is waiting for the end of the walk
+                interrupted = true;
+            } catch (IOException | RuntimeException e) {
+                logger.error(e.getMessage());
+                e.printStackTrace();
+            } finally {
+                // Whatever the failure, consumer must not wait forever for next file
+                if (!interrupted) {
+                    try {
+                        this.discovered.put(END_OF_WALK);
+                    } catch (InterruptedException e) {
+                        // Consumer is gone
+                    }
+                }
+            }
         }
     }
 
@@ -166,6 +595,11 @@ public class Extract {
     // ImageMetadataReader.readMetadata)
     public static final int TAG_THUMBNAIL_DATA = 0x10000;
 
+    // Content of the photo file (ByteBuffer), stored in FileSystemDirectory by exploreFS so that photo
+    // processing does not have to read the file again. Only valid while the photo process task is
+    // running.
+    public static final int TAG_FILE_CONTENT = 0x10001;
+
     static {
         List<JpegSegmentMetadataReader> allReaders = (List<JpegSegmentMetadataReader>) JpegMetadataReader.ALL_READERS;
         for (int n = 0, cnt = allReaders.size(); n < cnt; n++) {
@@ -173,41 +607,16 @@ public class Extract {
                 continue;
             }
 
-            allReaders.set(n, new ExifReader() {
-                @Override
-                public void readJpegSegments(@NotNull final Iterable<byte[]> segments, @NotNull final Metadata metadata,
-                        @NotNull final JpegSegmentType segmentType) {
-                    super.readJpegSegments(segments, metadata, segmentType);
-
-                    for (byte[] segmentBytes : segments) {
-                        // Filter any segments containing unexpected preambles
-                        if (!startsWithJpegExifPreamble(segmentBytes)) {
-                            continue;
-                        }
-
-                        // Extract the thumbnail
-                        try {
-                            ExifThumbnailDirectory tnDirectory = metadata
-                                    .getFirstDirectoryOfType(ExifThumbnailDirectory.class);
-                            if (tnDirectory != null
-                                    && tnDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET)) {
-                                int offset = tnDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET);
-                                int length = tnDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH);
-
-                                byte[] tnData = new byte[length];
-                                System.arraycopy(segmentBytes, JPEG_SEGMENT_PREAMBLE.length() + offset, tnData, 0,
-                                        length);
-                                tnDirectory.setObject(TAG_THUMBNAIL_DATA, tnData);
-                            }
-                        } catch (MetadataException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            });
+            allReaders.set(n, new ThumbnailExifReader(false));
             break;
         }
     }
+
+    // JPEG segment readers for the directories PhotoObject uses: frame header (dimensions), EXIF
+    // (without maker notes nor embedded XMP/ICC/Photoshop data), IPTC. Other segments are skipped
+    // without being parsed.
+    static final List<JpegSegmentMetadataReader> PHOTO_READERS = List.of(new JpegReader(), new JpegDnlReader(),
+            new ThumbnailExifReader(true), new IptcReader(), new PhotoshopIptcReader());
     // =======================================================================================================================
 
 }
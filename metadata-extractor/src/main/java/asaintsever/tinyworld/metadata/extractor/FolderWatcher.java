@@ -0,0 +1,325 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watch a photo folder and process new or modified photos through Extract pipeline, using a
+ * manifest to skip photos already processed.
+ *
+ * File system events are coalesced per file and processed by batches once the folder has been quiet
+ * for debounce delay (a camera import is processed as one batch, each photo once). Watching thread
+ * blocks on file system events: no CPU is used while folder is unchanged. Events may not be
+ * reported (network mounts) or be lost (event queue overflow): folder is then reconciled, ie
+ * explored for photos changed since last recorded in manifest. Photo removals are not handled.
+ */
+public class FolderWatcher implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(FolderWatcher.class);
+
+    private final Path rootDir;
+    private final IPhotoProcess photoProcess;
+    private final IPhotoManifest manifest;
+    private final WatchSettings settings;
+    private final Consumer<Extract.Result> batchListener;
+
+    // Batches and reconciliations run one at a time in scheduler thread
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<WatchKey, Path>();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    // Files changed since last batch (guarded by this)
+    private final Set<Path> changed = new LinkedHashSet<Path>();
+    private long firstChangeNanos;
+    private long lastChangeNanos;
+    private boolean batchScheduled;
+    private boolean reconciliationScheduled;
+
+    private volatile boolean closed;
+
+    /**
+     * @param manifest      manifest of already processed photos
+     * @param batchListener notified with result of each batch and reconciliation (from scheduler
+     *                      thread), may be null
+     */
+    public FolderWatcher(String rootDir, IPhotoProcess photoProcess, IPhotoManifest manifest, WatchSettings settings,
+            Consumer<Extract.Result> batchListener) {
+        this.rootDir = Paths.get(rootDir).toAbsolutePath().normalize();
+        this.photoProcess = photoProcess;
+        this.manifest = manifest;
+        this.settings = settings;
+        this.batchListener = batchListener;
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "tw-watch-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Pending changes are left to next exploration once closed
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Start watching folder (and sub folders). Photos changed before are not processed, except by
+     * reconciliation.
+     */
+    public synchronized FolderWatcher start() throws IOException {
+        if (!Files.isDirectory(this.rootDir))
+            throw new IOException("Not a folder: " + this.rootDir);
+
+        if (this.settings.isWatchEvents()) {
+            try {
+                this.watchService = FileSystems.getDefault().newWatchService();
+                this.register(this.rootDir, false);
+
+                this.watchThread = new Thread(this::watch, "tw-watch");
+                this.watchThread.setDaemon(true);
+                this.watchThread.start();
+            } catch (IOException e) {
+                logger.warn(
+                        "Cannot watch " + this.rootDir + " (changes found by reconciliation only): " + e.getMessage());
+                this.stopWatching();
+            }
+        }
+
+        if (this.settings.getReconcileIntervalMs() > 0)
+            this.scheduler.scheduleWithFixedDelay(this::reconcile, this.settings.getReconcileIntervalMs(),
+                    this.settings.getReconcileIntervalMs(), TimeUnit.MILLISECONDS);
+
+        logger.info("Watching " + this.rootDir + " (" + this.watchedDirs.size() + " folder(s) registered)");
+        return this;
+    }
+
+    /**
+     * Number of folders watched for events
+     */
+    public int watchedFolders() {
+        return this.watchedDirs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.stopWatching();
+
+        // Let batch in progress complete
+        this.scheduler.shutdown();
+        try {
+            if (!this.scheduler.awaitTermination(1, TimeUnit.MINUTES))
+                logger.warn("Timeout waiting for photos being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stopWatching() throws IOException {
+        if (this.watchService != null)
+            this.watchService.close();
+        this.watchedDirs.clear();
+    }
+
+    private void watch() {
+        try {
+            while (!this.closed) {
+                WatchKey key = this.watchService.take();
+                Path dir = this.watchedDirs.get(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        logger.warn("Changes lost in " + this.rootDir + ": reconciling");
+                        this.scheduleReconciliation();
+                    } else if (dir != null) {
+                        this.changed(dir.resolve((Path) event.context()), event.kind());
+                    }
+                }
+
+                if (!key.reset())
+                    this.watchedDirs.remove(key); // Folder removed
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Watcher closed
+        }
+    }
+
+    private void changed(Path path, WatchEvent.Kind<?> kind) {
+        if (kind == ENTRY_DELETE) {
+            // Created then removed before being processed
+            synchronized (this) {
+                this.changed.remove(path);
+            }
+        } else if (kind == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            // Files may have been added before folder is registered: process all of them
+            try {
+                this.register(path, true);
+            } catch (IOException e) {
+                logger.warn("Cannot watch " + path + ": " + e.getMessage());
+                this.scheduleReconciliation();
+            }
+        } else if (!Extract.isIgnoredFile(path)) {
+            this.addChanged(path);
+        }
+    }
+
+    /**
+     * Register folder and its sub folders
+     *
+     * @param addFiles true to also consider files in folders as changed
+     */
+    private void register(Path dir, boolean addFiles) throws IOException {
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs)
+                            throws IOException {
+                        WatchKey key = subDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                        watchedDirs.put(key, subDir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (addFiles && attrs.isRegularFile() && !Extract.isIgnoredFile(file))
+                            addChanged(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private synchronized void addChanged(Path file) {
+        long now = System.nanoTime();
+
+        if (this.changed.isEmpty())
+            this.firstChangeNanos = now;
+        this.lastChangeNanos = now;
+        this.changed.add(file);
+
+        if (!this.batchScheduled && !this.closed) {
+            this.batchScheduled = true;
+            this.scheduler.schedule(this::processChanged, this.settings.getDebounceMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void processChanged() {
+        List<URI> batch;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long quietMs = TimeUnit.NANOSECONDS.toMillis(now - this.lastChangeNanos);
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(now - this.firstChangeNanos);
+
+            if (this.closed)
+                return;
+
+            // Changes still coming in: wait for the end of the burst
+            if (quietMs < this.settings.getDebounceMs() && waitedMs < this.settings.getMaxDelayMs()) {
+                this.scheduler.schedule(this::processChanged, this.settings.getDebounceMs() - quietMs,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            batch = new ArrayList<URI>(this.changed.size());
+            for (Path file : this.changed)
+                batch.add(file.toUri());
+            this.changed.clear();
+            this.batchScheduled = false;
+        }
+
+        if (batch.isEmpty())
+            return;
+
+        logger.info("Processing " + batch.size() + " changed file(s) in " + this.rootDir);
+
+        try {
+            this.notify(Extract.processFiles(batch, this.photoProcess, this.manifest, this.settings.getIoWorkers(),
+                    this.settings.getCpuWorkers()));
+        } catch (RuntimeException e) {
+            // Photos of batch not recorded in manifest are processed by next reconciliation
+            logger.error("Error while processing changed files in " + this.rootDir, e);
+        }
+    }
+
+    private synchronized void scheduleReconciliation() {
+        if (!this.reconciliationScheduled && !this.closed) {
+            this.reconciliationScheduled = true;
+            this.scheduler.execute(this::reconcile);
+        }
+    }
+
+    private void reconcile() {
+        synchronized (this) {
+            this.reconciliationScheduled = false;
+        }
+
+        logger.debug("Reconciling " + this.rootDir);
+
+        try {
+            this.notify(Extract.exploreFS(this.rootDir.toString(), Integer.MAX_VALUE, this.photoProcess, this.manifest,
+                    this.settings.getIoWorkers(), this.settings.getCpuWorkers()));
+        } catch (RuntimeException e) {
+            // Scheduler would stop running periodic reconciliations
+            logger.error("Error while reconciling " + this.rootDir, e);
+        }
+    }
+
+    private void notify(Extract.Result result) {
+        if (this.batchListener != null && result.getProcessed_ok() + result.getProcessed_nok() > 0) {
+            try {
+                this.batchListener.accept(result);
+            } catch (RuntimeException e) {
+                // Scheduler would stop running reconciliations
+                logger.error("Error while handling batch result", e);
+            }
+        }
+    }
+}
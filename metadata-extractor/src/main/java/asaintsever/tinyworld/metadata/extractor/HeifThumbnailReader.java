@@ -0,0 +1,330 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read JPEG thumbnail embedded in HEIF content, without decoding photo: either a JPEG-coded
+ * thumbnail item of primary image, or JPEG thumbnail of Exif item (IFD1). HEVC-coded thumbnails (as
+ * written by iPhones) cannot be used without a decoder and are ignored.
+ *
+ * Only boxes locating items are parsed (ISO/IEC 14496-12 and 23008-12): meta, pitm, iinf/infe,
+ * iref, iloc and idat.
+ */
+class HeifThumbnailReader {
+    protected static Logger logger = LoggerFactory.getLogger(HeifThumbnailReader.class);
+
+    private static class Item {
+        private String type;
+        private int constructionMethod; // 0: file offsets, 1: offsets in idat box
+        private final List<long[]> extents = new ArrayList<long[]>(); // Offset and length (0 for up to end)
+    }
+
+    @FunctionalInterface
+    private interface BoxVisitor {
+        void visit(String type, int start, int end);
+    }
+
+    private final ByteBuffer content;
+    private final Map<Integer, Item> items = new HashMap<Integer, Item>();
+    private final Map<Integer, List<Integer>> thumbnailItems = new HashMap<Integer, List<Integer>>();
+    private int primaryItemId = -1;
+    private int idatStart = -1;
+    private int idatEnd = -1;
+
+    private HeifThumbnailReader(ByteBuffer content) {
+        this.content = content.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * JPEG thumbnail embedded in HEIF content (content's position is left unchanged), null if none.
+     * Offset and length of Exif thumbnail (relative to TIFF header, as reported in Exif thumbnail
+     * directory) may be null.
+     */
+    static byte[] read(ByteBuffer content, Integer exifThumbnailOffset, Integer exifThumbnailLength) {
+        try {
+            HeifThumbnailReader reader = new HeifThumbnailReader(content);
+            reader.boxes(0, reader.content.limit(), (type, start, end) -> {
+                if (type.equals("meta"))
+                    reader.parseMeta(start + 4, end); // Full box: skip version and flags
+            });
+
+            byte[] thumbnail = reader.thumbnailItem();
+            if (thumbnail == null && exifThumbnailOffset != null && exifThumbnailLength != null)
+                thumbnail = reader.exifThumbnail(exifThumbnailOffset, exifThumbnailLength);
+
+            return thumbnail;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.debug("Malformed HEIF content: " + e);
+            return null;
+        }
+    }
+
+    private byte[] thumbnailItem() {
+        for (int id : this.thumbnailItems.getOrDefault(this.primaryItemId, List.of())) {
+            Item item = this.items.get(id);
+
+            if (item != null && "jpeg".equals(item.type)) {
+                byte[] data = this.data(item);
+                if (isJpeg(data))
+                    return data;
+            }
+        }
+
+        return null;
+    }
+
+    private byte[] exifThumbnail(int offset, int length) {
+        for (Item item : this.items.values()) {
+            if (!"Exif".equals(item.type))
+                continue;
+
+            // Exif item starts with offset of TIFF header
+            byte[] data = this.data(item);
+            if (data == null || data.length < 4)
+                continue;
+
+            int start = 4 + ByteBuffer.wrap(data).getInt() + offset;
+            if (start < 4 || length <= 0 || start + length > data.length)
+                continue;
+
+            byte[] thumbnail = new byte[length];
+            System.arraycopy(data, start, thumbnail, 0, length);
+            if (isJpeg(thumbnail))
+                return thumbnail;
+        }
+
+        return null;
+    }
+
+    private void parseMeta(int start, int end) {
+        this.boxes(start, end, (type, boxStart, boxEnd) -> {
+            int version = this.u8(boxStart);
+
+            switch (type) {
+            case "pitm":
+                this.primaryItemId = version == 0 ? this.u16(boxStart + 4) : this.int32(boxStart + 4);
+                break;
+            case "iinf":
+                this.parseItemInfo(boxStart + 4 + (version == 0 ? 2 : 4), boxEnd);
+                break;
+            case "iref":
+                this.parseItemReferences(version, boxStart + 4, boxEnd);
+                break;
+            case "iloc":
+                this.parseItemLocations(version, boxStart + 4);
+                break;
+            case "idat":
+                this.idatStart = boxStart;
+                this.idatEnd = boxEnd;
+                break;
+            default:
+                break;
+            }
+        });
+    }
+
+    private void parseItemInfo(int start, int end) {
+        this.boxes(start, end, (type, boxStart, boxEnd) -> {
+            int version = this.u8(boxStart);
+
+            // Item type is only given from version 2
+            if (type.equals("infe") && version >= 2) {
+                int id = version == 2 ? this.u16(boxStart + 4) : this.int32(boxStart + 4);
+                int typeOffset = boxStart + 4 + (version == 2 ? 2 : 4) + 2; // Skip protection index
+                this.item(id).type = this.fourCC(typeOffset);
+            }
+        });
+    }
+
+    private void parseItemReferences(int version, int start, int end) {
+        int idSize = version == 0 ? 2 : 4;
+
+        this.boxes(start, end, (type, boxStart, boxEnd) -> {
+            if (!type.equals("thmb"))
+                return;
+
+            int fromId = this.id(boxStart, idSize);
+            int count = this.u16(boxStart + idSize);
+
+            for (int i = 0; i < count; i++) {
+                int toId = this.id(boxStart + idSize + 2 + i * idSize, idSize);
+                this.thumbnailItems.computeIfAbsent(toId, id -> new ArrayList<Integer>()).add(fromId);
+            }
+        });
+    }
+
+    private void parseItemLocations(int version, int start) {
+        int position = start;
+        int offsetSize = this.u8(position) >> 4;
+        int lengthSize = this.u8(position) & 0xF;
+        int baseOffsetSize = this.u8(position + 1) >> 4;
+        int indexSize = version == 1 || version == 2 ? this.u8(position + 1) & 0xF : 0;
+        position += 2;
+
+        int itemCount = version < 2 ? this.u16(position) : this.int32(position);
+        position += version < 2 ? 2 : 4;
+
+        for (int i = 0; i < itemCount; i++) {
+            Item item = this.item(version < 2 ? this.u16(position) : this.int32(position));
+            position += version < 2 ? 2 : 4;
+
+            if (version == 1 || version == 2) {
+                item.constructionMethod = this.u16(position) & 0xF;
+                position += 2;
+            }
+
+            position += 2; // Data reference index
+            long baseOffset = this.uint(position, baseOffsetSize);
+            position += baseOffsetSize;
+
+            int extentCount = this.u16(position);
+            position += 2;
+
+            for (int j = 0; j < extentCount; j++) {
+                position += indexSize;
+                long offset = this.uint(position, offsetSize);
+                position += offsetSize;
+                long length = this.uint(position, lengthSize);
+                position += lengthSize;
+
+                item.extents.add(new long[] { baseOffset + offset, length });
+            }
+        }
+    }
+
+    /**
+     * Item data, concatenating its extents. Null if item is not stored in file nor idat box.
+     */
+    private byte[] data(Item item) {
+        int origin;
+        int end;
+
+        if (item.constructionMethod == 0) {
+            origin = 0;
+            end = this.content.limit();
+        } else if (item.constructionMethod == 1 && this.idatStart >= 0) {
+            origin = this.idatStart;
+            end = this.idatEnd;
+        } else
+            return null;
+
+        long size = 0;
+        for (long[] extent : item.extents)
+            size += extent[1] > 0 ? extent[1] : end - origin - extent[0];
+
+        if (item.extents.isEmpty() || size <= 0 || size > end - origin)
+            return null;
+
+        byte[] data = new byte[(int) size];
+        int position = 0;
+
+        for (long[] extent : item.extents) {
+            long start = origin + extent[0];
+            long length = extent[1] > 0 ? extent[1] : end - start;
+            if (start < origin || start + length > end)
+                return null;
+
+            this.content.get((int) start, data, position, (int) length);
+            position += (int) length;
+        }
+
+        return data;
+    }
+
+    /**
+     * Visit boxes found in [start, end): type, start of payload and end of box
+     */
+    private void boxes(int start, int end, BoxVisitor visitor) {
+        long position = start;
+
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(this.content.getInt((int) position));
+            String type = this.fourCC((int) position + 4);
+            int headerSize = 8;
+
+            if (size == 1) {
+                size = this.content.getLong((int) position + 8);
+                headerSize = 16;
+            } else if (size == 0)
+                size = end - position; // Box extends to end of file
+
+            if (size < headerSize || position + size > end)
+                break;
+
+            visitor.visit(type, (int) position + headerSize, (int) (position + size));
+            position += size;
+        }
+    }
+
+    private Item item(int id) {
+        return this.items.computeIfAbsent(id, key -> new Item());
+    }
+
+    private static boolean isJpeg(byte[] data) {
+        return data != null && data.length > 4 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+
+    private String fourCC(int position) {
+        byte[] bytes = new byte[4];
+        this.content.get(position, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private int u8(int position) {
+        return this.content.get(position) & 0xFF;
+    }
+
+    private int u16(int position) {
+        return this.content.getShort(position) & 0xFFFF;
+    }
+
+    private int int32(int position) {
+        return this.content.getInt(position);
+    }
+
+    private int id(int position, int size) {
+        return size == 2 ? this.u16(position) : this.int32(position);
+    }
+
+    private long uint(int position, int size) {
+        switch (size) {
+        case 0:
+            return 0;
+        case 4:
+            return Integer.toUnsignedLong(this.content.getInt(position));
+        case 8:
+            return this.content.getLong(position);
+        default:
+            throw new IllegalArgumentException("Unsupported field size: " + size);
+        }
+    }
+}
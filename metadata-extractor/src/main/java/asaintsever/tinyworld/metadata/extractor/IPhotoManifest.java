@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.net.URI;
+
+/**
+ * Record of already processed photos, used by Extract.exploreFS to skip unchanged photos before any
+ * metadata parsing. Implementations must be thread-safe.
+ */
+public interface IPhotoManifest {
+    /**
+     * Cheap check done before reading the photo: true if photo has already been processed with same
+     * size and last modification time
+     */
+    boolean isUnchanged(URI uri, long size, long lastModified);
+
+    /**
+     * Check done once photo content has been read: true if photo has already been processed with same
+     * content fingerprint (e.g. file only touched or copied back). Implementations should then record
+     * the new size and last modification time.
+     */
+    boolean isUnchanged(URI uri, long size, long lastModified, long fingerprint);
+
+    /**
+     * Record photo as successfully processed
+     */
+    void processed(URI uri, long size, long lastModified, long fingerprint);
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of long-lived ImageMagick processes generating JPEG thumbnails, so that no process is
+ * started per photo. Each worker runs ImageMagick in script mode, reading commands from its
+ * standard input: for each photo, thumbnail is written as JPEG on standard output followed by an
+ * end marker, and JPEG bytes are returned as is (no decoding).
+ *
+ * A worker failing to answer (crash, timeout) is killed and started again on next request. Pool is
+ * disabled if workers cannot be started at all (e.g. ImageMagick not installed, or without script
+ * mode): callers then fall back to one ImageMagick process per photo.
+ */
+class ImageMagickPool implements Closeable {
+    protected static Logger logger = LoggerFactory.getLogger(ImageMagickPool.class);
+
+    private static final long STARTUP_TIMEOUT_MS = 10000;
+    private static final long THUMBNAIL_TIMEOUT_MS = 60000;
+    private static final String END_MARKER_PREFIX = "tinyworld-end-";
+
+    // Standard output is made unbuffered by first image written to it (blob stream buffer size), so
+    // that end markers are not held back: startup probe writes a 1x1 image before its marker
+    private static final String STARTUP_SCRIPT = "-define stream:buffer-size=0 -size 1x1 xc:white -write jpg:- +delete ";
+
+    private final String command;
+    private final BlockingQueue<Worker> idleWorkers;
+    private final ScheduledExecutorService watchdog;
+    private volatile boolean available = true;
+
+    ImageMagickPool(String command, int workers) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("Number of ImageMagick workers must be positive");
+
+        this.command = command;
+        this.idleWorkers = new ArrayBlockingQueue<Worker>(workers);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tw-magick-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Processes are started on first request
+        for (int i = 1; i <= workers; i++)
+            this.idleWorkers.add(new Worker("tw-magick-" + i));
+    }
+
+    boolean isAvailable() {
+        return this.available;
+    }
+
+    /**
+     * JPEG thumbnail of photo file, resized to fit in width x height while keeping aspect ratio
+     */
+    byte[] thumbnail(File photo, int width, int height) throws IOException {
+        if (!this.available)
+            throw new IOException("ImageMagick worker pool is disabled");
+
+        // Script tokens are quoted: keep away paths that would need escaping
+        String path = photo.getAbsolutePath();
+        if (path.indexOf('\'') >= 0 || path.indexOf('\\') >= 0 && File.separatorChar != '\\' || path.indexOf('\n') >= 0
+                || path.indexOf('\r') >= 0)
+            throw new IOException("Path not supported by ImageMagick workers: " + path);
+
+        Worker worker;
+        try {
+            worker = this.idleWorkers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an ImageMagick worker");
+        }
+
+        try {
+            return worker.thumbnail(path.replace('\\', '/'), width, height);
+        } finally {
+            // Pool closed meanwhile
+            if (!this.available)
+                worker.stop();
+
+            this.idleWorkers.offer(worker);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.available = false;
+        this.idleWorkers.forEach(Worker::stop);
+        this.watchdog.shutdownNow();
+    }
+
+    private class Worker {
+        private final String name;
+        private Process process;
+        private OutputStream script;
+        private InputStream output;
+        private long requests;
+
+        Worker(String name) {
+            this.name = name;
+        }
+
+        byte[] thumbnail(String path, int width, int height) throws IOException {
+            if (this.process == null || !this.process.isAlive())
+                this.start();
+
+            String marker = END_MARKER_PREFIX + this.name + "-" + (++this.requests);
+            String command = "-read '" + path + "[0]' -thumbnail " + width + "x" + height + " -write jpg:- -print '"
+                    + marker + "\\n' +delete\n";
+
+            byte[] thumbnail;
+            try {
+                thumbnail = this.run(command, marker, THUMBNAIL_TIMEOUT_MS);
+            } catch (IOException e) {
+                this.stop();
+                throw e;
+            }
+
+            // Errors (e.g. unreadable photo) are reported on standard error, marker being printed anyway
+            if (thumbnail.length == 0)
+                throw new IOException("ImageMagick generated no thumbnail for " + path);
+
+            return thumbnail;
+        }
+
+        private void start() throws IOException {
+            this.stop();
+
+            try {
+                this.process = new ProcessBuilder(command, "-script", "-").start();
+                this.script = this.process.getOutputStream();
+                this.output = this.process.getInputStream();
+
+                // Drain standard error so that worker never blocks on it
+                InputStream errors = this.process.getErrorStream();
+                Thread errorReader = new Thread(() -> {
+                    try {
+                        byte[] buffer = new byte[4096];
+                        int read;
+                        while ((read = errors.read(buffer)) >= 0)
+                            logger.debug(this.name + ": " + new String(buffer, 0, read, StandardCharsets.UTF_8).trim());
+                    } catch (IOException e) {
+                        // Worker stopped
+                    }
+                }, this.name + "-stderr");
+                errorReader.setDaemon(true);
+                errorReader.start();
+
+                String marker = END_MARKER_PREFIX + this.name + "-ready";
+                this.run(STARTUP_SCRIPT + "-print '" + marker + "\\n'\n", marker, STARTUP_TIMEOUT_MS);
+                logger.debug("Started ImageMagick worker " + this.name);
+            } catch (IOException e) {
+                this.stop();
+                available = false;
+                logger.warn(
+                        "Fail to start ImageMagick worker, falling back to one process per photo: " + e.getMessage());
+                throw e;
+            }
+        }
+
+        /**
+         * Send script command then read output until end marker, killing worker on timeout
+         */
+        private byte[] run(String command, String marker, long timeoutMs) throws IOException {
+            byte[] end = (marker + "\n").getBytes(StandardCharsets.UTF_8);
+            Process process = this.process;
+            ScheduledFuture<?> timeout = watchdog.schedule(process::destroyForcibly, timeoutMs, TimeUnit.MILLISECONDS);
+
+            try {
+                this.script.write(command.getBytes(StandardCharsets.UTF_8));
+                this.script.flush();
+
+                // Output read directly in a growable buffer, so that marker is checked in place
+                byte[] output = new byte[16 * 1024];
+                int size = 0;
+
+                while (true) {
+                    if (size == output.length)
+                        output = Arrays.copyOf(output, output.length * 2);
+
+                    int read = this.output.read(output, size, output.length - size);
+                    if (read < 0)
+                        throw new IOException(
+                                "ImageMagick worker " + this.name + " exited" + (timeout.isDone() ? " (timeout)" : ""));
+
+                    size += read;
+
+                    // Marker is the last output of command
+                    if (size >= end.length && Arrays.equals(output, size - end.length, size, end, 0, end.length))
+                        return Arrays.copyOf(output, size - end.length);
+                }
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+
+        private void stop() {
+            if (this.process == null)
+                return;
+
+            // Closing standard input ends script
+            try {
+                this.script.close();
+            } catch (IOException e) {
+                // Worker already gone
+            }
+
+            this.process.destroy();
+            this.process = null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of reusable byte arrays to read photo files in memory, so that each photo is read from disk
+ * only once whatever the number of steps working on its content. Memory of buffers in use is
+ * bounded: reads wait until their buffer fits in budget, a file larger than the whole budget being
+ * read alone.
+ */
+class PhotoBufferPool {
+    // Buffers are allocated by 1MB steps so that they can be reused for photos of similar sizes
+    private static final int ALLOCATION_STEP = 1024 * 1024;
+    // Do not keep oversized buffers (panoramas, large PNGs, ...) around
+    private static final int MAX_POOLED_BUFFER_SIZE = 32 * ALLOCATION_STEP;
+
+    private final int maxPooledBuffers;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+    private final DecodeMemoryBudget budget;
+
+    PhotoBufferPool(int maxPooledBuffers, long budgetBytes) {
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.budget = new DecodeMemoryBudget(budgetBytes);
+    }
+
+    /**
+     * Read whole file content into a pooled buffer, waiting for memory budget. Returned buffer's
+     * position is 0 and its limit is the file size. Buffer must be given back using release() once
+     * done.
+     */
+    ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - ALLOCATION_STEP)
+                throw new IOException("File " + file + " is too large (" + size + " bytes)");
+
+            ByteBuffer content = ByteBuffer.wrap(this.acquire((int) size), 0, (int) size);
+
+            try {
+                while (content.hasRemaining()) {
+                    if (channel.read(content) < 0)
+                        break; // File has been truncated since size was read
+                }
+            } catch (IOException | RuntimeException e) {
+                this.release(content);
+                throw e;
+            }
+
+            content.flip();
+            return content;
+        }
+    }
+
+    /**
+     * Memory left in budget for buffers in use
+     */
+    long getAvailableBytes() {
+        return this.budget.getAvailableBytes();
+    }
+
+    /**
+     * Stream over buffer's remaining content
+     */
+    static InputStream newInputStream(ByteBuffer content) {
+        return new ByteArrayInputStream(content.array(), content.arrayOffset() + content.position(),
+                content.remaining());
+    }
+
+    void release(ByteBuffer content) {
+        byte[] buffer = content.array();
+        this.budget.release(this.budget.reservation(buffer.length));
+
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE && this.pooledBuffers.incrementAndGet() <= this.maxPooledBuffers)
+            this.buffers.offer(buffer);
+        else
+            this.pooledBuffers.decrementAndGet();
+    }
+
+    private byte[] acquire(int size) throws InterruptedIOException {
+        byte[] buffer = this.buffers.poll();
+
+        if (buffer != null) {
+            this.pooledBuffers.decrementAndGet();
+
+            // Too small buffer is dropped
+            if (buffer.length < size)
+                buffer = null;
+        }
+
+        // Memory is reserved before allocating: no pooled buffer or too small one, a new buffer is
+        // allocated
+        int length = buffer != null ? buffer.length : (size / ALLOCATION_STEP + 1) * ALLOCATION_STEP;
+        this.budget.acquire(length);
+        return buffer != null ? buffer : new byte[length];
+    }
+}
@@ -20,8 +20,20 @@
 package asaintsever.tinyworld.metadata.extractor;
 
 import java.net.URL;
-import java.util.Calendar;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.Date;
+import java.util.Locale;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -41,6 +53,9 @@ public class PhotoMetadata {
 
     protected static String EXIF_DATE_PATTERN; // Pattern for dates encoded in EXIF metadata
     protected static String JSON_DATE_PATTERN; // Pattern for dates in PhotoMetadata objects
+    // Formatters for above patterns (immutable and thread-safe, dates in UTC)
+    protected static DateTimeFormatter EXIF_DATE_FORMATTER;
+    protected static DateTimeFormatter JSON_DATE_FORMATTER;
 
     @Getter
     public enum HoursFormat {
@@ -57,6 +72,39 @@ public class PhotoMetadata {
     public static void setHoursFormat(HoursFormat format) {
         EXIF_DATE_PATTERN = "yyyy:MM:dd " + format.getValue() + ":mm:ss";
         JSON_DATE_PATTERN = "yyyy-MM-dd " + format.getValue() + ":mm:ss";
+        EXIF_DATE_FORMATTER = formatter("uuuu:MM:dd " + format.getValue() + ":mm:ss", format);
+        JSON_DATE_FORMATTER = formatter("uuuu-MM-dd " + format.getValue() + ":mm:ss", format);
+    }
+
+    private static DateTimeFormatter formatter(String pattern, HoursFormat format) {
+        DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().appendPattern(pattern);
+        if (format == HoursFormat._12HOURS)
+            builder.parseDefaulting(ChronoField.AMPM_OF_DAY, 0); // No AM/PM marker: morning hours
+
+        return builder.toFormatter(Locale.ROOT).withResolverStyle(ResolverStyle.STRICT).withZone(ZoneOffset.UTC);
+    }
+
+    /**
+     * Parse EXIF date (UTC). As with SimpleDateFormat, text after the date is ignored.
+     */
+    static Date parseExifDate(String text) throws ParseException {
+        if (text == null)
+            return null;
+
+        ParsePosition position = new ParsePosition(0);
+        try {
+            TemporalAccessor parsed = EXIF_DATE_FORMATTER.parse(text, position);
+            return Date.from(LocalDateTime.from(parsed).toInstant(ZoneOffset.UTC));
+        } catch (DateTimeException e) {
+            throw new ParseException("Unparseable date: \"" + text + "\"", Math.max(position.getErrorIndex(), 0));
+        }
+    }
+
+    /**
+     * Format date (UTC) as in PhotoMetadata JSON documents
+     */
+    static String formatJsonDate(Date date) {
+        return JSON_DATE_FORMATTER.format(date.toInstant());
     }
 
     static {
@@ -88,6 +136,11 @@ public class PhotoMetadata {
      */
     private String thumbnail;
 
+    /**
+     * Reference (content hash) of thumbnail kept in thumbnail store, instead of thumbnail itself
+     */
+    private String thumbnailId;
+
     /**
      * Model (Manufacturer)
      */
@@ -134,6 +187,36 @@ public class PhotoMetadata {
         return this;
     }
 
+    /**
+     * Shallow copy (fields copied as is, bypassing setters with data extraction or validation)
+     */
+    public PhotoMetadata copy() {
+        PhotoMetadata copy = new PhotoMetadata();
+        copy.path = this.path;
+        copy.fileName = this.fileName;
+        copy.sizeMb = this.sizeMb;
+        copy.takenDate = this.takenDate;
+        copy.takenYear = this.takenYear;
+        copy.takenMonth = this.takenMonth;
+        copy.timeZoneOffset = this.timeZoneOffset;
+        copy.thumbnail = this.thumbnail;
+        copy.thumbnailId = this.thumbnailId;
+        copy.camModelMake = this.camModelMake;
+        copy.pixelRes = this.pixelRes;
+        copy.countryCode = this.countryCode;
+        copy.country = this.country;
+        copy.stateOrProvince = this.stateOrProvince;
+        copy.city = this.city;
+        copy.sublocation = this.sublocation;
+        copy.caption = this.caption;
+        copy.title = this.title;
+        copy.headline = this.headline;
+        copy.gpsDatum = this.gpsDatum;
+        copy.gpsLatLong = this.gpsLatLong;
+        copy.tags = this.tags;
+        return copy;
+    }
+
     /**
      * Setters with data extraction
      */
@@ -142,10 +225,8 @@ public class PhotoMetadata {
 
         // Extract year and month
         if (this.takenDate != null) {
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(this.takenDate);
-            return this.setTakenYear((short) calendar.get(Calendar.YEAR))
-                    .setTakenMonth((short) (calendar.get(Calendar.MONTH) + 1));
+            LocalDate date = LocalDate.ofInstant(this.takenDate.toInstant(), ZoneId.systemDefault());
+            return this.setTakenYear((short) date.getYear()).setTakenMonth((short) date.getMonthValue());
         } else {
             return this;
         }
@@ -19,40 +19,36 @@
  */
 package asaintsever.tinyworld.metadata.extractor;
 
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Base64;
-import java.util.TimeZone;
-
-import javax.imageio.ImageIO;
 
 import org.im4java.core.IM4JavaException;
 import org.im4java.core.IMOperation;
 import org.im4java.core.ImageCommand;
-import org.im4java.core.Stream2BufferedImage;
+import org.im4java.process.Pipe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.drew.imaging.FileType;
+import com.drew.lang.GeoLocation;
 import com.drew.metadata.Metadata;
-import com.drew.metadata.exif.ExifIFD0Descriptor;
 import com.drew.metadata.exif.ExifIFD0Directory;
-import com.drew.metadata.exif.ExifSubIFDDescriptor;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.drew.metadata.exif.ExifThumbnailDirectory;
-import com.drew.metadata.exif.GpsDescriptor;
 import com.drew.metadata.exif.GpsDirectory;
-import com.drew.metadata.file.FileSystemDescriptor;
 import com.drew.metadata.file.FileSystemDirectory;
 import com.drew.metadata.heif.HeifDirectory;
-import com.drew.metadata.iptc.IptcDescriptor;
 import com.drew.metadata.iptc.IptcDirectory;
 import com.drew.metadata.jpeg.JpegDirectory;
 import com.drew.metadata.png.PngDirectory;
@@ -66,6 +62,12 @@ public class PhotoObject {
     protected static Logger logger = LoggerFactory.getLogger(PhotoObject.class);
     protected static final int THUMBNAIL_WIDTH = 160;
     protected static final int THUMBNAIL_HEIGHT = 160;
+    // Embedded HEIF thumbnails above this size are resized
+    protected static final int MAX_EMBEDDED_THUMBNAIL_BYTES = 32 * 1024;
+    // Base64 encoding of thumbnails up to this size reuses a per-thread buffer
+    private static final int MAX_BASE64_BUFFER_BYTES = 64 * 1024;
+    private static final ThreadLocal<byte[]> base64Buffer = ThreadLocal
+            .withInitial(() -> new byte[MAX_BASE64_BUFFER_BYTES]);
     private static final ObjectMapper mapper;
     private final PhotoMetadata metadata;
 
@@ -99,17 +101,17 @@ public class PhotoObject {
 
         this.metadata.setPath(uri.toURL());
 
+        // Tags are read directly from directories: descriptors of tags below only return tag values as
+        // strings
         ExifSubIFDDirectory exfSubDir = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
         if (exfSubDir != null) {
-            ExifSubIFDDescriptor exfSubDesc = new ExifSubIFDDescriptor(exfSubDir);
+            String takenDate = exfSubDir.getString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
 
-            logger.debug("taken Date: " + exfSubDesc.getDescription(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL));
+            if (logger.isDebugEnabled())
+                logger.debug("taken Date: " + takenDate);
 
-            SimpleDateFormat df = new SimpleDateFormat(PhotoMetadata.EXIF_DATE_PATTERN);
-            df.setTimeZone(TimeZone.getTimeZone("UTC"));
-            df.setLenient(false);
-            this.metadata.setTakenDate(df.parse(exfSubDesc.getDescription(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL)))
-                    .setTimeZoneOffset(exfSubDesc.getDescription(ExifSubIFDDirectory.TAG_TIME_ZONE_OFFSET_TIFF_EP));
+            this.metadata.setTakenDate(PhotoMetadata.parseExifDate(takenDate))
+                    .setTimeZoneOffset(exfSubDir.getString(ExifSubIFDDirectory.TAG_TIME_ZONE_OFFSET_TIFF_EP));
 
             // Get width and height from TAG_EXIF_IMAGE_WIDTH and TAG_EXIF_IMAGE_HEIGHT
             // If no values in EXIF: get from TAG_IMAGE_WIDTH and TAG_IMAGE_HEIGHT
@@ -142,29 +144,27 @@ public class PhotoObject {
 
         IptcDirectory iptcDir = metadata.getFirstDirectoryOfType(IptcDirectory.class);
         if (iptcDir != null) {
-            IptcDescriptor iptcDesc = new IptcDescriptor(iptcDir);
-            this.metadata.setCountryCode(iptcDesc.getDescription(IptcDirectory.TAG_COUNTRY_OR_PRIMARY_LOCATION_CODE))
-                    .setCountry(iptcDesc.getCountryOrPrimaryLocationDescription())
-                    .setStateOrProvince(iptcDesc.getProvinceOrStateDescription()).setCity(iptcDesc.getCityDescription())
-                    .setSublocation(iptcDesc.getDescription(IptcDirectory.TAG_SUB_LOCATION))
-                    .setCaption(iptcDesc.getCaptionDescription()).setTitle(iptcDesc.getObjectNameDescription())
-                    .setHeadline(iptcDesc.getHeadlineDescription());
-
-            if (iptcDesc.getKeywordsDescription() != null) {
-                // IPTC keywords have been concatenated with ";" as separator
-                String[] keywords = iptcDesc.getKeywordsDescription().split(";");
+            this.metadata.setCountryCode(iptcDir.getString(IptcDirectory.TAG_COUNTRY_OR_PRIMARY_LOCATION_CODE))
+                    .setCountry(iptcDir.getString(IptcDirectory.TAG_COUNTRY_OR_PRIMARY_LOCATION_NAME))
+                    .setStateOrProvince(iptcDir.getString(IptcDirectory.TAG_PROVINCE_OR_STATE))
+                    .setCity(iptcDir.getString(IptcDirectory.TAG_CITY))
+                    .setSublocation(iptcDir.getString(IptcDirectory.TAG_SUB_LOCATION))
+                    .setCaption(iptcDir.getString(IptcDirectory.TAG_CAPTION))
+                    .setTitle(iptcDir.getString(IptcDirectory.TAG_OBJECT_NAME))
+                    .setHeadline(iptcDir.getString(IptcDirectory.TAG_HEADLINE));
+
+            // IPTC keywords as stored in photo (no need to join then split them)
+            String[] keywords = iptcDir.getStringArray(IptcDirectory.TAG_KEYWORDS);
+            if (keywords != null)
                 this.metadata.setTags(keywords);
-            }
         }
 
         GpsDirectory gpsDir = metadata.getFirstDirectoryOfType(GpsDirectory.class);
         if (gpsDir != null) {
-            this.metadata.setGpsLatLong(gpsDir.getGeoLocation() != null
-                    ? gpsDir.getGeoLocation().getLatitude() + "," + gpsDir.getGeoLocation().getLongitude()
-                    : null);
-
-            GpsDescriptor gpsDesc = new GpsDescriptor(gpsDir);
-            this.metadata.setGpsDatum(gpsDesc.getDescription(GpsDirectory.TAG_MAP_DATUM));
+            GeoLocation location = gpsDir.getGeoLocation(); // Computed from rationals on each call
+            this.metadata
+                    .setGpsLatLong(location != null ? location.getLatitude() + "," + location.getLongitude() : null);
+            this.metadata.setGpsDatum(gpsDir.getString(GpsDirectory.TAG_MAP_DATUM));
         }
 
         FileSystemDirectory fsDir = metadata.getFirstDirectoryOfType(FileSystemDirectory.class);
@@ -172,15 +172,13 @@ public class PhotoObject {
             Long photoSize = fsDir.getLongObject(FileSystemDirectory.TAG_FILE_SIZE);
             this.metadata.setSizeMb(photoSize != null ? photoSize / (1024.0f * 1024.0f) : null);
 
-            FileSystemDescriptor fsDesc = new FileSystemDescriptor(fsDir);
-            this.metadata.setFileName(fsDesc.getDescription(FileSystemDirectory.TAG_FILE_NAME));
+            this.metadata.setFileName(fsDir.getString(FileSystemDirectory.TAG_FILE_NAME));
         }
 
         ExifIFD0Directory exfDir = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
         if (exfDir != null) {
-            ExifIFD0Descriptor exfDesc = new ExifIFD0Descriptor(exfDir);
-            this.metadata.setCamModelMake(exfDesc.getDescription(ExifIFD0Directory.TAG_MODEL) + " ("
-                    + exfDesc.getDescription(ExifIFD0Directory.TAG_MAKE) + ")");
+            this.metadata.setCamModelMake(exfDir.getString(ExifIFD0Directory.TAG_MODEL) + " ("
+                    + exfDir.getString(ExifIFD0Directory.TAG_MAKE) + ")");
         }
 
         // Get thumbnail
@@ -200,10 +198,8 @@ public class PhotoObject {
             logger.info("Extracting thumbnail from " + uri);
 
             FileSystemDirectory fsDir = metadata.getFirstDirectoryOfType(FileSystemDirectory.class);
-            if (fsDir != null) {
-                FileSystemDescriptor fsDesc = new FileSystemDescriptor(fsDir);
-                filename = fsDesc.getDescription(FileSystemDirectory.TAG_FILE_NAME);
-            }
+            if (fsDir != null)
+                filename = fsDir.getString(FileSystemDirectory.TAG_FILE_NAME);
         }
 
         byte[] thumbnail = null;
@@ -214,43 +210,39 @@ public class PhotoObject {
         if (thumbnail == null || thumbnail.length == 0) {
             logger.warn("No thumbnail found in metadata for " + uri + " -> generating thumbnail from photo");
 
-            // Test if HEIF format: Java Image I/O API does not support it
-            // Make use of ImageMagick to generate a thumbnail (JPG format)
-            if (fileType == FileType.Heif) {
-                ImageCommand cmd = new ImageCommand(Extract.imageMagickCommand);
-                Stream2BufferedImage s2b = new Stream2BufferedImage();
-                cmd.setOutputConsumer(s2b);
-
-                IMOperation op = new IMOperation();
-                op.addImage(uri.toString());
-                op.thumbnail(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT).addImage("jpg:-"); // Generate thumbnail on stdout (jpg
-                                                                                   // format)
-
-                try {
-                    cmd.run(op);
-                } catch (IOException | InterruptedException | IM4JavaException e) {
-                    throw new IOException(e);
-                }
-
-                BufferedImage img = s2b.getImage();
+            // Use photo content already read by Extract.exploreFS if available, to avoid reading file again
+            ByteBuffer content = null;
+            FileSystemDirectory fsDir = metadata.getFirstDirectoryOfType(FileSystemDirectory.class);
+            if (fsDir != null && fsDir.getObject(Extract.TAG_FILE_CONTENT) instanceof ByteBuffer)
+                content = (ByteBuffer) fsDir.getObject(Extract.TAG_FILE_CONTENT);
+            if (content != null && !content.hasRemaining())
+                content = null;
 
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    ImageIO.write(img, "jpg", baos);
-                    thumbnail = baos.toByteArray();
-                }
+            if (fileType == FileType.Heif) {
+                thumbnail = this.extractHeifThumbnail(uri, content, metadata);
             } else {
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    // Create thumbnail from photo, resized to a maximum dimension of THUMBNAIL_WIDTH x
-                    // THUMBNAIL_HEIGHT, maintaining the aspect ratio of the original image
-                    Thumbnails.of(uri.toURL()).size(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT).toOutputStream(baos);
-                    thumbnail = baos.toByteArray();
-                }
+                // Create thumbnail from photo, resized to a maximum dimension of THUMBNAIL_WIDTH x
+                // THUMBNAIL_HEIGHT, maintaining the aspect ratio of the original image. Photo is decoded
+                // subsampled, not at full resolution.
+                ExifIFD0Directory exfIFD0Dir = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+                Integer orientation = exfIFD0Dir != null ? exfIFD0Dir.getInteger(ExifIFD0Directory.TAG_ORIENTATION)
+                        : null;
+                String format = fileType == FileType.Png ? "png" : "jpg";
+
+                if (content != null)
+                    thumbnail = SubsampledThumbnailReader.read(content, format, orientation, THUMBNAIL_WIDTH,
+                            THUMBNAIL_HEIGHT, Extract.decodeMemoryBudget());
+                else
+                    try (InputStream photo = uri.toURL().openStream()) {
+                        thumbnail = SubsampledThumbnailReader.read(photo, format, orientation, THUMBNAIL_WIDTH,
+                                THUMBNAIL_HEIGHT, Extract.decodeMemoryBudget());
+                    }
             }
         }
 
         if (thumbnail != null && thumbnail.length > 0) {
             // Base64-encoded thumbnail
-            this.metadata.setThumbnail(Base64.getEncoder().encodeToString(thumbnail));
+            this.metadata.setThumbnail(encodeBase64(thumbnail));
 
             if (dumpPath != null) {
                 File outputFile = new File(dumpPath + File.separator + filename + "_thumbnail."
@@ -262,4 +254,79 @@ public class PhotoObject {
         return this;
     }
 
+    /**
+     * Base64 encoding without intermediate byte array: thumbnail is encoded in per-thread buffer, then
+     * copied once in string (Latin-1 compact string)
+     */
+    static String encodeBase64(byte[] data) {
+        int encodedLength = 4 * ((data.length + 2) / 3);
+        if (encodedLength > MAX_BASE64_BUFFER_BYTES)
+            return Base64.getEncoder().encodeToString(data);
+
+        byte[] buffer = base64Buffer.get();
+        int length = Base64.getEncoder().encode(data, buffer);
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Thumbnail of HEIF photo: JPEG thumbnail embedded in photo if any, else generated by ImageMagick
+     * (Java Image I/O API does not support HEIF). JPEG output of ImageMagick is kept as is.
+     */
+    private byte[] extractHeifThumbnail(URI uri, ByteBuffer content, Metadata metadata) throws IOException {
+        boolean isFile = "file".equals(uri.getScheme());
+        ByteBuffer heif = content != null ? content
+                : isFile ? ByteBuffer.wrap(Files.readAllBytes(Paths.get(uri))) : null;
+
+        if (heif != null) {
+            ExifThumbnailDirectory exfThumbDir = metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+            byte[] thumbnail = HeifThumbnailReader.read(heif,
+                    exfThumbDir != null ? exfThumbDir.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET) : null,
+                    exfThumbDir != null ? exfThumbDir.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH) : null);
+
+            if (thumbnail != null) {
+                logger.debug("Using JPEG thumbnail embedded in " + uri);
+
+                // Embedded thumbnails may be larger than ours: JPEG can be resized without ImageMagick
+                if (thumbnail.length <= MAX_EMBEDDED_THUMBNAIL_BYTES)
+                    return thumbnail;
+
+                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                    Thumbnails.of(new ByteArrayInputStream(thumbnail)).size(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT)
+                            .outputFormat("jpg").toOutputStream(baos);
+                    return baos.toByteArray();
+                }
+            }
+        }
+
+        // Long-lived ImageMagick workers read photo file by themselves
+        ImageMagickPool pool = Extract.imageMagickPool();
+        if (pool != null && isFile) {
+            try {
+                return pool.thumbnail(new File(uri), THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+            } catch (IOException e) {
+                logger.warn("ImageMagick worker failed on " + uri + ", running a dedicated process: " + e.getMessage());
+            }
+        }
+
+        ImageCommand cmd = new ImageCommand(Extract.imageMagickCommand);
+        ByteArrayOutputStream thumbnail = new ByteArrayOutputStream();
+        cmd.setOutputConsumer(new Pipe(null, thumbnail));
+
+        IMOperation op = new IMOperation();
+        if (content != null) {
+            // Feed photo content on stdin
+            cmd.setInputProvider(new Pipe(PhotoBufferPool.newInputStream(content), null));
+            op.addImage("heic:-");
+        } else
+            op.addImage(uri.toString());
+        op.thumbnail(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT).addImage("jpg:-"); // Generate thumbnail on stdout (jpg format)
+
+        try {
+            cmd.run(op);
+        } catch (IOException | InterruptedException | IM4JavaException e) {
+            throw new IOException(e);
+        }
+
+        return thumbnail.toByteArray();
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.lang.SequentialByteArrayReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.iptc.IptcReader;
+
+/**
+ * Read IPTC data stored in Photoshop resources of JPEG APP13 segments, other resources (XMP, ICC
+ * profile, thumbnails, ...) being skipped.
+ */
+class PhotoshopIptcReader implements JpegSegmentMetadataReader {
+    private static final byte[] PREAMBLE = "Photoshop 3.0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int IPTC_RESOURCE_ID = 0x0404;
+
+    @Override
+    public @NotNull Iterable<JpegSegmentType> getSegmentTypes() {
+        return Collections.singletonList(JpegSegmentType.APPD);
+    }
+
+    @Override
+    public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata,
+            @NotNull JpegSegmentType segmentType) {
+        for (byte[] segment : segments) {
+            if (startsWithPreamble(segment))
+                this.extract(segment, metadata);
+        }
+    }
+
+    private void extract(byte[] segment, Metadata metadata) {
+        ByteBuffer resources = ByteBuffer.wrap(segment);
+        int position = PREAMBLE.length;
+
+        // Resource: signature (4 bytes), id (2 bytes), Pascal name padded to even size, data size (4
+        // bytes), data padded to even size
+        while (position + 12 <= segment.length) {
+            int id = resources.getShort(position + 4) & 0xFFFF;
+            int nameSize = 1 + (resources.get(position + 6) & 0xFF);
+            position += 6 + nameSize + (nameSize % 2);
+
+            if (position + 4 > segment.length)
+                return;
+
+            int size = resources.getInt(position);
+            position += 4;
+
+            if (size < 0 || size > segment.length - position)
+                return;
+
+            if (id == IPTC_RESOURCE_ID)
+                new IptcReader().extract(new SequentialByteArrayReader(segment, position), metadata, size);
+
+            position += size + (size % 2);
+        }
+    }
+
+    private static boolean startsWithPreamble(byte[] segment) {
+        if (segment.length < PREAMBLE.length)
+            return false;
+
+        for (int i = 0; i < PREAMBLE.length; i++) {
+            if (segment[i] != PREAMBLE[i])
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+
+/**
+ * Generate thumbnails of JPEG and PNG photos without decoding them at full resolution: rows are
+ * subsampled while being decoded (Image I/O source subsampling), so that decoded image is about
+ * twice the thumbnail size whatever the photo size. Decoded image is then resized to thumbnail
+ * size.
+ *
+ * Image I/O JPEG reader offers no DCT scaling: photo is still fully entropy-decoded, but not held
+ * in memory at full resolution. Progressive JPEGs and interlaced PNGs are exceptions, decoders
+ * buffering them whole: concurrent decodes are bounded by a memory budget accounting for them.
+ */
+class SubsampledThumbnailReader {
+    // Decoded image is at least this many times larger than thumbnail, for resizing quality
+    private static final int OVERSAMPLING = 2;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * Thumbnail of photo in memory (content's position is left unchanged)
+     *
+     * @param format      output format ("jpg" or "png")
+     * @param orientation EXIF orientation of photo, null if unknown
+     */
+    static byte[] read(ByteBuffer content, String format, Integer orientation, int width, int height,
+            DecodeMemoryBudget budget) throws IOException {
+        try (ImageInputStream input = new ByteBufferImageInputStream(content)) {
+            return read(input, isFullyBuffered(content), format, orientation, width, height, budget);
+        }
+    }
+
+    /**
+     * Thumbnail of photo read from stream. Encoding of photo being unknown, it is assumed to be
+     * buffered whole by decoder.
+     */
+    static byte[] read(InputStream photo, String format, Integer orientation, int width, int height,
+            DecodeMemoryBudget budget) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(photo)) {
+            return read(input, true, format, orientation, width, height, budget);
+        }
+    }
+
+    /**
+     * Subsampling factor keeping decoded image at least OVERSAMPLING times larger than thumbnail
+     */
+    static int subsampling(int photoWidth, int photoHeight, int width, int height) {
+        double scale = Math.max((double) photoWidth / width, (double) photoHeight / height);
+        return Math.max(1, (int) (scale / OVERSAMPLING));
+    }
+
+    /**
+     * Whether decoder needs whole photo in memory: progressive JPEG or interlaced PNG (or unknown
+     * encoding)
+     */
+    static boolean isFullyBuffered(ByteBuffer content) {
+        ByteBuffer photo = content.slice();
+
+        // PNG: interlace method in IHDR chunk, first after signature
+        if (photo.limit() > 28 && (photo.get(0) & 0xFF) == 0x89 && photo.get(1) == 'P' && photo.get(2) == 'N'
+                && photo.get(3) == 'G')
+            return photo.get(28) != 0;
+
+        if (photo.limit() < 4 || (photo.get(0) & 0xFF) != 0xFF || (photo.get(1) & 0xFF) != 0xD8)
+            return true;
+
+        // JPEG: walk segments up to frame header
+        int position = 2;
+        while (position + 4 <= photo.limit()) {
+            if ((photo.get(position) & 0xFF) != 0xFF)
+                return true;
+
+            int marker = photo.get(position + 1) & 0xFF;
+            if (marker == 0xFF) {
+                position++; // Fill byte
+                continue;
+            }
+
+            // Start of frame, except DHT, JPG and DAC markers
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC)
+                return marker == 0xC2 || marker == 0xC6 || marker == 0xCA || marker == 0xCE;
+
+            if (marker == 0xDA)
+                return true; // Scan without frame header
+
+            position += 2 + (photo.getShort(position + 2) & 0xFFFF);
+        }
+
+        return true;
+    }
+
+    private static byte[] read(ImageInputStream input, boolean fullyBuffered, String format, Integer orientation,
+            int width, int height, DecodeMemoryBudget budget) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext())
+            throw new IOException("No image reader for photo");
+
+        ImageReader reader = readers.next();
+        BufferedImage image;
+
+        try {
+            // Metadata is not needed: only image header is read before decoding
+            reader.setInput(input, true, true);
+            int photoWidth = reader.getWidth(0);
+            int photoHeight = reader.getHeight(0);
+            int subsampling = subsampling(photoWidth, photoHeight, width, height);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+            long decodedPixels = (long) ((photoWidth + subsampling - 1) / subsampling)
+                    * ((photoHeight + subsampling - 1) / subsampling);
+            long memory = (fullyBuffered ? (long) photoWidth * photoHeight + decodedPixels : decodedPixels)
+                    * BYTES_PER_PIXEL;
+
+            int reservation = budget.acquire(memory);
+            try {
+                image = reader.read(0, param);
+            } finally {
+                budget.release(reservation);
+            }
+        } finally {
+            reader.dispose();
+        }
+
+        Thumbnails.Builder<BufferedImage> thumbnail = Thumbnails.of(image).size(width, height).outputFormat(format);
+        if (orientation != null && orientation > 1 && Orientation.typeOf(orientation) != null)
+            thumbnail.addFilter(ExifFilterUtils.getFilterForOrientation(Orientation.typeOf(orientation)));
+
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            thumbnail.toOutputStream(baos);
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * Image input stream over photo in memory, without copy
+     */
+    private static class ByteBufferImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer content;
+
+        ByteBufferImageInputStream(ByteBuffer content) {
+            this.content = content.slice();
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.checkClosed();
+            this.bitOffset = 0;
+
+            if (this.streamPos >= this.content.limit())
+                return -1;
+
+            return this.content.get((int) this.streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            this.checkClosed();
+            this.bitOffset = 0;
+
+            if (len == 0)
+                return 0;
+
+            long remaining = this.content.limit() - this.streamPos;
+            if (remaining <= 0)
+                return -1;
+
+            int read = (int) Math.min(len, remaining);
+            this.content.get((int) this.streamPos, b, off, read);
+            this.streamPos += read;
+            return read;
+        }
+
+        @Override
+        public long length() {
+            return this.content.limit();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.imaging.tiff.TiffProcessingException;
+import com.drew.imaging.tiff.TiffReader;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataException;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.ExifTiffHandler;
+
+/**
+ * EXIF reader also keeping thumbnail data (stored in ExifThumbnailDirectory with
+ * Extract.TAG_THUMBNAIL_DATA tag):
+ * https://github.com/drewnoakes/metadata-extractor/issues/276#issuecomment-677767368
+ *
+ * When restricted, tags embedding other metadata formats (maker notes, XMP, ICC profile, Photoshop
+ * resources, PrintIM) are skipped instead of being decoded.
+ */
+class ThumbnailExifReader extends ExifReader {
+    private static final Set<Integer> SKIPPED_TAGS = Set.of(0x927C, // Maker note
+            0x02BC, // XMP
+            0x8773, // ICC profile
+            0x8649, // Photoshop resources
+            0xC4A5 // PrintIM
+    );
+
+    private final boolean restricted;
+
+    ThumbnailExifReader(boolean restricted) {
+        this.restricted = restricted;
+    }
+
+    @Override
+    public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata, int readerOffset,
+            Directory parentDirectory) {
+        if (!this.restricted) {
+            super.extract(reader, metadata, readerOffset, parentDirectory);
+            return;
+        }
+
+        ExifTiffHandler handler = new ExifTiffHandler(metadata, parentDirectory, readerOffset) {
+            @Override
+            public boolean customProcessTag(int tagOffset, Set<Integer> processedIfdOffsets, int tiffHeaderOffset,
+                    RandomAccessReader reader, int tagId, int byteCount) throws IOException {
+                // Tag considered as processed: its value is not even stored
+                if (SKIPPED_TAGS.contains(tagId))
+                    return true;
+
+                return super.customProcessTag(tagOffset, processedIfdOffsets, tiffHeaderOffset, reader, tagId,
+                        byteCount);
+            }
+        };
+
+        try {
+            new TiffReader().processTiff(reader, handler, readerOffset);
+        } catch (TiffProcessingException | IOException e) {
+            handler.error("Exception processing TIFF data: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void readJpegSegments(@NotNull final Iterable<byte[]> segments, @NotNull final Metadata metadata,
+            @NotNull final JpegSegmentType segmentType) {
+        super.readJpegSegments(segments, metadata, segmentType);
+
+        for (byte[] segmentBytes : segments) {
+            // Filter any segments containing unexpected preambles
+            if (!startsWithJpegExifPreamble(segmentBytes)) {
+                continue;
+            }
+
+            // Extract the thumbnail
+            try {
+                ExifThumbnailDirectory tnDirectory = metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+                if (tnDirectory != null && tnDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET)) {
+                    int offset = tnDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET);
+                    int length = tnDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH);
+
+                    byte[] tnData = new byte[length];
+                    System.arraycopy(segmentBytes, JPEG_SEGMENT_PREAMBLE.length() + offset, tnData, 0, length);
+                    tnDirectory.setObject(Extract.TAG_THUMBNAIL_DATA, tnData);
+                }
+            } catch (MetadataException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Folder watching settings: changed photos are processed once no change has been reported for
+ * debounce delay (or max delay after first change, for folders never quiet). Folder is reconciled
+ * periodically for changes not reported by file system (e.g. network mounts).
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@ToString
+public class WatchSettings {
+    public final static long DEFAULT_DEBOUNCE_MS = 2000;
+    public final static long DEFAULT_MAX_DELAY_MS = 30000;
+    public final static long DEFAULT_RECONCILE_INTERVAL_MS = 900000;
+
+    private boolean watchEvents = true; // False to only rely on reconciliation
+    private long debounceMs = DEFAULT_DEBOUNCE_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private long reconcileIntervalMs = DEFAULT_RECONCILE_INTERVAL_MS; // 0 to disable reconciliation
+    private int ioWorkers = Extract.AUTO_WORKERS;
+    private int cpuWorkers = Extract.AUTO_WORKERS;
+}
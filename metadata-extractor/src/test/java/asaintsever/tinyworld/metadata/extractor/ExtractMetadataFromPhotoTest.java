@@ -20,15 +20,28 @@
 package asaintsever.tinyworld.metadata.extractor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import com.drew.imaging.FileType;
+import com.drew.imaging.jpeg.JpegMetadataReader;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.Tag;
@@ -84,6 +97,102 @@ public class ExtractMetadataFromPhotoTest {
         System.out.println("\n====\nResult=" + res.toString());
     }
 
+    @Test
+    void getAllPhotoMetadataInParallel() {
+        IPhotoProcess countDirectories = new IPhotoProcess() {
+
+            @Override
+            public void task(URI uri, FileType fileType, Metadata metadata) throws PhotoProcessException {
+                assertTrue(metadata.getDirectoryCount() > 0);
+            }
+        };
+
+        Result seqRes = Extract.exploreFS("src/test/resources/photos", Integer.MAX_VALUE, countDirectories);
+        Result parRes = Extract.exploreFS("src/test/resources/photos", Integer.MAX_VALUE, countDirectories, 4, 2);
+
+        assertEquals(seqRes.getProcessed_ok(), parRes.getProcessed_ok());
+        assertEquals(seqRes.getSkipped(), parRes.getSkipped());
+        assertEquals(seqRes.getProcessed_nok(), parRes.getProcessed_nok());
+        System.out.println("\n====\nResult=" + parRes.toString());
+    }
+
+    @Test
+    void skipUnchangedPhotos() {
+        // In-memory manifest
+        Map<URI, Long> processed = new ConcurrentHashMap<URI, Long>();
+        IPhotoManifest manifest = new IPhotoManifest() {
+
+            @Override
+            public boolean isUnchanged(URI uri, long size, long lastModified) {
+                return processed.containsKey(uri);
+            }
+
+            @Override
+            public boolean isUnchanged(URI uri, long size, long lastModified, long fingerprint) {
+                return processed.containsKey(uri);
+            }
+
+            @Override
+            public void processed(URI uri, long size, long lastModified, long fingerprint) {
+                processed.put(uri, fingerprint);
+            }
+        };
+
+        IPhotoProcess noop = (uri, fileType, metadata) -> {
+        };
+
+        Result firstRes = Extract.exploreFS("src/test/resources/photos", Integer.MAX_VALUE, noop, manifest, 1, 1);
+        assertEquals(0, firstRes.getSkipped_unchanged());
+        assertEquals(firstRes.getProcessed_ok(), processed.size());
+
+        Result secondRes = Extract.exploreFS("src/test/resources/photos", Integer.MAX_VALUE, noop, manifest, 2, 2);
+        assertEquals(0, secondRes.getProcessed_ok());
+        assertEquals(firstRes.getProcessed_ok(), secondRes.getSkipped_unchanged());
+        assertEquals(firstRes.getSkipped(), secondRes.getSkipped());
+        System.out.println("\n====\nResult=" + secondRes.toString());
+    }
+
+    @Test
+    void reportRuntimeExceptionsWhileReading() {
+        IPhotoManifest failingManifest = new IPhotoManifest() {
+
+            @Override
+            public boolean isUnchanged(URI uri, long size, long lastModified) {
+                throw new IllegalStateException("Manifest failure for " + uri);
+            }
+
+            @Override
+            public boolean isUnchanged(URI uri, long size, long lastModified, long fingerprint) {
+                return false;
+            }
+
+            @Override
+            public void processed(URI uri, long size, long lastModified, long fingerprint) {
+            }
+        };
+        IPhotoProcess noop = (uri, fileType, metadata) -> {
+        };
+
+        // Every file fails while being read, in I/O workers: all failures are reported
+        Result res = Extract.processFiles(
+                List.of(Paths.get("src/test/resources/photos/070 - Venise - Pont du Rialto.JPG").toUri()), noop,
+                failingManifest, 2, 2);
+        assertEquals(0, res.getProcessed_ok());
+        assertEquals(1, res.getProcessed_nok());
+        assertTrue(res.getErrorMsg().get(0).startsWith("Manifest failure"));
+    }
+
+    @Test
+    void endWalkOnListingFailure() {
+        IPhotoProcess noop = (uri, fileType, metadata) -> {
+        };
+
+        // Listing fails with a runtime exception (no file system for http URIs): processing must still end
+        Result res = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> Extract.processFiles(List.of(URI.create("http://localhost/photo.jpg")), noop, null, 2, 2));
+        assertEquals(0, res.getProcessed_ok());
+    }
+
     @Test
     void getTinyWorldPhotoMetadata() {
         // Using 1 to indicate that only first level should be visited.
@@ -164,4 +273,31 @@ public class ExtractMetadataFromPhotoTest {
         System.out.println("\n====\nResult=" + res.toString());
     }
 
+    @Test
+    void readOnlyMetadataUsedByPhotoObject() throws Exception {
+        List<Path> jpegs;
+        try (Stream<Path> files = Files.walk(Paths.get("src/test/resources/photos"))) {
+            jpegs = files.filter(f -> f.toString().toLowerCase().endsWith(".jpg") && f.toFile().length() > 0)
+                    .collect(Collectors.toList());
+        }
+        assertTrue(jpegs.size() > 0);
+
+        for (Path jpeg : jpegs) {
+            Metadata all = JpegMetadataReader.readMetadata(jpeg.toFile());
+            Metadata restricted = JpegMetadataReader.readMetadata(jpeg.toFile(), Extract.PHOTO_READERS);
+
+            // Less directories parsed, no XMP nor maker notes
+            assertTrue(restricted.getDirectoryCount() <= all.getDirectoryCount());
+            assertFalse(restricted.containsDirectoryOfType(XmpDirectory.class));
+            for (Directory directory : restricted.getDirectories())
+                assertFalse(directory.getClass().getPackageName().endsWith("makernotes"), jpeg + ": " + directory);
+
+            // Same photo metadata and thumbnail
+            URI uri = jpeg.toUri();
+            assertEquals(new PhotoObject().extractMetadata(uri, FileType.Jpeg, all).getMetadata().toString(),
+                    new PhotoObject().extractMetadata(uri, FileType.Jpeg, restricted).getMetadata().toString(),
+                    jpeg.toString());
+        }
+    }
+
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FolderWatcherTest {
+
+    private final static Path PHOTO = Paths.get("src/test/resources/photos/070 - Venise - Pont du Rialto.JPG");
+
+    // In-memory manifest
+    private final Map<URI, Long> processed = new ConcurrentHashMap<URI, Long>();
+    private final IPhotoManifest manifest = new IPhotoManifest() {
+
+        @Override
+        public boolean isUnchanged(URI uri, long size, long lastModified) {
+            return processed.containsKey(uri);
+        }
+
+        @Override
+        public boolean isUnchanged(URI uri, long size, long lastModified, long fingerprint) {
+            return processed.containsKey(uri);
+        }
+
+        @Override
+        public void processed(URI uri, long size, long lastModified, long fingerprint) {
+            processed.put(uri, fingerprint);
+        }
+    };
+
+    @Test
+    void processChangedPhotosOnce(@TempDir Path dir) throws IOException, InterruptedException {
+        Files.copy(PHOTO, dir.resolve("existing.jpg"));
+
+        Map<URI, AtomicInteger> tasks = new ConcurrentHashMap<URI, AtomicInteger>();
+        CountDownLatch latch = new CountDownLatch(2);
+        IPhotoProcess process = (uri, fileType, metadata) -> {
+            tasks.computeIfAbsent(uri, k -> new AtomicInteger()).incrementAndGet();
+            latch.countDown();
+        };
+
+        WatchSettings settings = new WatchSettings().setDebounceMs(200).setReconcileIntervalMs(0);
+
+        try (FolderWatcher watcher = new FolderWatcher(dir.toString(), process, this.manifest, settings, null)
+                .start()) {
+            // Photo written twice and photo in new folder
+            Path added = dir.resolve("added.jpg");
+            Files.copy(PHOTO, added);
+            Files.copy(PHOTO, added, StandardCopyOption.REPLACE_EXISTING);
+            Path subDir = Files.createDirectory(dir.resolve("sub"));
+            Files.copy(PHOTO, subDir.resolve("nested.jpg"));
+            Files.writeString(dir.resolve(".DS_Store"), "ignored");
+
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+            Thread.sleep(1000); // Make sure no more tasks are coming
+        }
+
+        assertEquals(2, tasks.size());
+        assertEquals(1, tasks.get(dir.resolve("added.jpg").toUri()).get());
+        assertEquals(1, tasks.get(dir.resolve("sub").resolve("nested.jpg").toUri()).get());
+    }
+
+    @Test
+    void reconcileWithoutEvents(@TempDir Path dir) throws IOException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        IPhotoProcess process = (uri, fileType, metadata) -> latch.countDown();
+
+        WatchSettings settings = new WatchSettings().setWatchEvents(false).setReconcileIntervalMs(200);
+
+        try (FolderWatcher watcher = new FolderWatcher(dir.toString(), process, this.manifest, settings, null)
+                .start()) {
+            assertEquals(0, watcher.watchedFolders());
+
+            Files.copy(PHOTO, dir.resolve("added.jpg"));
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, this.processed.size());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+public class HeifThumbnailReaderTest {
+
+    @Test
+    void readJpegThumbnailItem() throws IOException {
+        byte[] jpeg = jpeg();
+        byte[] image = new byte[64]; // Stands for HEVC-coded primary image
+
+        // Items are located in mdat box, right after ftyp and meta boxes
+        int metaSize = meta(0, 0, 0).length;
+        int imageOffset = ftyp().length + metaSize + 8;
+        byte[] heif = concat(ftyp(), meta(imageOffset, image.length, jpeg.length), box("mdat", image, jpeg));
+
+        assertArrayEquals(jpeg, HeifThumbnailReader.read(ByteBuffer.wrap(heif), null, null));
+
+        // Content starting after position 0
+        byte[] shifted = concat(new byte[16], heif);
+        assertArrayEquals(jpeg, HeifThumbnailReader.read(ByteBuffer.wrap(shifted).position(16), null, null));
+    }
+
+    @Test
+    void readExifThumbnail() throws IOException {
+        byte[] jpeg = jpeg();
+
+        // Exif item stored in idat box: offset of TIFF header, Exif preamble, TIFF header then thumbnail
+        byte[] tiff = new byte[] { 'M', 'M', 0, 42, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 0 };
+        byte[] exif = concat(new byte[] { 0, 0, 0, 6 }, "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1), tiff, jpeg);
+
+        byte[] heif = concat(ftyp(), fullBox("meta", 0, fullBox("pitm", 0, u16(1)),
+                fullBox("iinf", 0, u16(2), infe(1, "hvc1"), infe(2, "Exif")), fullBox("iloc", 1, new byte[] { 0x44, 0 },
+                        u16(1), u16(2), u16(1), u16(0), u16(1), u32(0), u32(exif.length)),
+                box("idat", exif)));
+
+        assertArrayEquals(jpeg, HeifThumbnailReader.read(ByteBuffer.wrap(heif), tiff.length, jpeg.length));
+        assertNull(HeifThumbnailReader.read(ByteBuffer.wrap(heif), null, null));
+    }
+
+    @Test
+    void ignoreHevcThumbnails() throws IOException {
+        // Thumbnail items of these photos are HEVC-coded
+        for (String photo : new String[] { "20220426_074256.heic", "20220508_172732.heic" }) {
+            byte[] heif = Files.readAllBytes(Paths.get("src/test/resources/photos", photo));
+            assertNull(HeifThumbnailReader.read(ByteBuffer.wrap(heif), null, null));
+        }
+
+        // Not a HEIF content
+        assertNull(
+                HeifThumbnailReader.read(ByteBuffer.wrap(new byte[] { 0, 0, 0, 42, 'm', 'e', 't', 'a' }), null, null));
+    }
+
+    private static byte[] meta(int imageOffset, int imageLength, int jpegLength) throws IOException {
+        return fullBox("meta", 0, fullBox("pitm", 0, u16(1)),
+                fullBox("iinf", 0, u16(2), infe(1, "hvc1"), infe(2, "jpeg")),
+                fullBox("iref", 0, box("thmb", u16(2), u16(1), u16(1))),
+                fullBox("iloc", 1, new byte[] { 0x44, 0 }, u16(2), u16(1), u16(0), u16(0), u16(1), u32(imageOffset),
+                        u32(imageLength), u16(2), u16(0), u16(0), u16(1), u32(imageOffset + imageLength),
+                        u32(jpegLength)));
+    }
+
+    private static byte[] ftyp() throws IOException {
+        return box("ftyp", "heic".getBytes(StandardCharsets.ISO_8859_1), u32(0),
+                "mif1heic".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static byte[] infe(int id, String type) throws IOException {
+        return fullBox("infe", 2, u16(id), u16(0), type.getBytes(StandardCharsets.ISO_8859_1), new byte[] { 0 });
+    }
+
+    private static byte[] jpeg() throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            ImageIO.write(new BufferedImage(16, 12, BufferedImage.TYPE_INT_RGB), "jpg", baos);
+            return baos.toByteArray();
+        }
+    }
+
+    private static byte[] box(String type, byte[]... payloads) throws IOException {
+        byte[] payload = concat(payloads);
+        return concat(u32(8 + payload.length), type.getBytes(StandardCharsets.ISO_8859_1), payload);
+    }
+
+    private static byte[] fullBox(String type, int version, byte[]... payloads) throws IOException {
+        return box(type, concat(u32(version << 24), concat(payloads)));
+    }
+
+    private static byte[] u16(int value) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new DataOutputStream(baos).writeShort(value);
+        return baos.toByteArray();
+    }
+
+    private static byte[] u32(int value) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new DataOutputStream(baos).writeInt(value);
+        return baos.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... arrays) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] array : arrays)
+            baos.write(array);
+        return baos.toByteArray();
+    }
+}
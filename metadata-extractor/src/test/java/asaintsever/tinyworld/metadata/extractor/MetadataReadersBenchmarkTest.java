@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+
+import lombok.ToString;
+
+/**
+ * Compare parsing of sample JPEG photos with all metadata readers and with readers restricted to
+ * metadata used by PhotoObject. Excluded from default build, run with 'mvn test -P benchmark'
+ * (number of passes over sample photos can be set with -Dbenchmark.passes=<number of passes>).
+ */
+@Tag("benchmark")
+public class MetadataReadersBenchmarkTest {
+
+    private final static int PASSES = Integer.getInteger("benchmark.passes", 500);
+
+    @ToString
+    static class BenchResult {
+        String readers;
+        long parseUs; // Per photo
+        long allocatedKb; // Per photo
+        int directories; // Per pass
+    }
+
+    @Test
+    void compareReaders() throws Exception {
+        List<byte[]> photos;
+        try (Stream<Path> files = Files.walk(Paths.get("src/test/resources/photos"))) {
+            photos = files.filter(f -> f.toString().toLowerCase().endsWith(".jpg") && f.toFile().length() > 0)
+                    .map(f -> {
+                        try {
+                            return Files.readAllBytes(f);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }).collect(Collectors.toList());
+        }
+
+        // Warm up JVM so that first reader set is not penalized
+        this.run("warmup", JpegMetadataReader.ALL_READERS, photos);
+        this.run("warmup", Extract.PHOTO_READERS, photos);
+
+        BenchResult all = this.run("all", JpegMetadataReader.ALL_READERS, photos);
+        BenchResult restricted = this.run("photo", Extract.PHOTO_READERS, photos);
+
+        System.out
+                .println("\n----- JPEG metadata readers (" + photos.size() + " photos x " + PASSES + " passes) -----");
+        System.out.println(
+                String.format("%-8s %14s %18s %12s", "readers", "parse (us)", "allocated (KB)", "directories"));
+        for (BenchResult res : List.of(all, restricted))
+            System.out.println(
+                    String.format("%-8s %14d %18d %12d", res.readers, res.parseUs, res.allocatedKb, res.directories));
+
+        assertTrue(restricted.directories < all.directories);
+    }
+
+    @SuppressWarnings("restriction")
+    private BenchResult run(String name, Iterable<JpegSegmentMetadataReader> readers, List<byte[]> photos)
+            throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BenchResult result = new BenchResult();
+        result.readers = name;
+
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            int directories = 0;
+            for (byte[] photo : photos)
+                directories += JpegMetadataReader.readMetadata(new ByteArrayInputStream(photo), readers)
+                        .getDirectoryCount();
+            result.directories = directories;
+        }
+
+        long parses = (long) PASSES * photos.size();
+        result.parseUs = (System.nanoTime() - start) / 1000 / parses;
+        result.allocatedKb = (threads.getCurrentThreadAllocatedBytes() - allocated) / 1024 / parses;
+        return result;
+    }
+}
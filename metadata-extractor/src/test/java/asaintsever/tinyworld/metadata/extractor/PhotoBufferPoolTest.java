@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PhotoBufferPoolTest {
+
+    private final static int MB = 1024 * 1024;
+
+    @Test
+    void reuseReleasedBuffers(@TempDir Path dir) throws IOException {
+        PhotoBufferPool pool = new PhotoBufferPool(2, 64 * MB);
+        byte[] photo = new byte[] { 1, 2, 3, 4, 5 };
+        Path file = Files.write(dir.resolve("photo.jpg"), photo);
+
+        ByteBuffer content = pool.read(file.toFile());
+        assertEquals(0, content.position());
+        assertEquals(photo.length, content.remaining());
+        assertArrayEquals(photo, PhotoBufferPool.newInputStream(content).readAllBytes());
+        assertEquals(63 * MB, pool.getAvailableBytes());
+
+        pool.release(content);
+        assertEquals(64 * MB, pool.getAvailableBytes());
+
+        // Released buffer is read into again
+        ByteBuffer next = pool.read(file.toFile());
+        assertSame(content.array(), next.array());
+        pool.release(next);
+    }
+
+    @Test
+    void dropOversizedBuffers(@TempDir Path dir) throws IOException {
+        PhotoBufferPool pool = new PhotoBufferPool(2, 64 * MB);
+        Path panorama = sparseFile(dir.resolve("panorama.png"), 40L * MB);
+        Path photo = Files.write(dir.resolve("photo.jpg"), new byte[] { 1, 2, 3 });
+
+        ByteBuffer content = pool.read(panorama.toFile());
+        assertEquals(40 * MB, content.remaining());
+        pool.release(content);
+
+        ByteBuffer next = pool.read(photo.toFile());
+        assertNotSame(content.array(), next.array());
+        assertEquals(MB, next.array().length);
+        pool.release(next);
+        assertEquals(64 * MB, pool.getAvailableBytes());
+    }
+
+    @Test
+    void rejectTooLargeFiles(@TempDir Path dir) throws IOException {
+        PhotoBufferPool pool = new PhotoBufferPool(2, 64 * MB);
+        Path video = sparseFile(dir.resolve("video.mov"), Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> pool.read(video.toFile()));
+        assertEquals(64 * MB, pool.getAvailableBytes());
+    }
+
+    @Test
+    void waitForMemoryBudget(@TempDir Path dir) throws Exception {
+        PhotoBufferPool pool = new PhotoBufferPool(2, 2 * MB);
+        Path photo = sparseFile(dir.resolve("photo.jpg"), MB + 1);
+
+        ByteBuffer content = pool.read(photo.toFile());
+        CompletableFuture<ByteBuffer> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.read(photo.toFile());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Second buffer does not fit in budget until first one is released
+        Thread.sleep(200);
+        assertFalse(next.isDone());
+
+        pool.release(content);
+        pool.release(next.get(5, TimeUnit.SECONDS));
+        assertEquals(2 * MB, pool.getAvailableBytes());
+    }
+
+    private static Path sparseFile(Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+        }
+
+        return path;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import asaintsever.tinyworld.metadata.extractor.PhotoMetadata.HoursFormat;
+
+public class PhotoMetadataTest {
+
+    @AfterEach
+    void restoreHoursFormat() {
+        PhotoMetadata.setHoursFormat(HoursFormat._24HOURS);
+    }
+
+    @Test
+    void parseAndFormatDates() throws ParseException {
+        for (HoursFormat format : HoursFormat.values()) {
+            PhotoMetadata.setHoursFormat(format);
+
+            for (String exifDate : new String[] { "2022:04:26 07:42:56", "1999:12:31 12:00:00", "2020:02:29 11:59:59",
+                    "2019:08:12 10:30:00 trailing text" }) {
+                // Same dates as with SimpleDateFormat
+                Date date = PhotoMetadata.parseExifDate(exifDate);
+                assertEquals(simpleDateFormat(PhotoMetadata.EXIF_DATE_PATTERN).parse(exifDate), date);
+                assertEquals(simpleDateFormat(PhotoMetadata.JSON_DATE_PATTERN).format(date),
+                        PhotoMetadata.formatJsonDate(date));
+            }
+
+            for (String invalidDate : new String[] { "0000:00:00 00:00:00", "2021:02:29 10:00:00", "2021:13:01", "" })
+                assertThrows(ParseException.class, () -> PhotoMetadata.parseExifDate(invalidDate), invalidDate);
+        }
+
+        assertNull(PhotoMetadata.parseExifDate(null));
+
+        PhotoMetadata metadata = new PhotoMetadata().setTakenDate(PhotoMetadata.parseExifDate("2022:04:26 07:42:56"));
+        assertEquals((short) 2022, metadata.getTakenYear());
+        assertEquals((short) 4, metadata.getTakenMonth());
+    }
+
+    @Test
+    void encodeThumbnails() {
+        Random random = new Random(42);
+
+        for (int size : new int[] { 0, 1, 2, 3, 8 * 1024, 48 * 1024, 100 * 1024 }) {
+            byte[] thumbnail = new byte[size];
+            random.nextBytes(thumbnail);
+            assertEquals(Base64.getEncoder().encodeToString(thumbnail), PhotoObject.encodeBase64(thumbnail));
+        }
+    }
+
+    private static SimpleDateFormat simpleDateFormat(String pattern) {
+        SimpleDateFormat df = new SimpleDateFormat(pattern);
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        df.setLenient(false);
+        return df;
+    }
+}
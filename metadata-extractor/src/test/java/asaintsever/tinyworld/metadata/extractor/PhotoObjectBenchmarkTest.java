@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.FileTypeDetector;
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.file.FileSystemDirectory;
+import com.drew.metadata.file.FileSystemMetadataReader;
+
+/**
+ * JMH benchmark of PhotoObject.extractMetadata on JPEG, PNG and HEIC sample photos: time and bytes
+ * allocated per photo (gc.alloc.rate.norm). Metadata is read once: only the work done by
+ * PhotoObject is measured. Excluded from default build, run with 'mvn test -P benchmark'.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoObjectBenchmarkTest {
+
+    @Param({ "J22.067.AUS - Sydney - Sydney Tower Eye.jpg", "Example.png", "20220426_074256.heic" })
+    public String photo;
+
+    private URI uri;
+    private FileType fileType;
+    private Metadata metadata;
+
+    @Setup
+    public void setup() throws Exception {
+        Configurator.setRootLevel(Level.WARN);
+
+        File file = new File("src/test/resources/photos", this.photo);
+        byte[] content = Files.readAllBytes(file.toPath());
+        this.uri = file.toURI();
+        this.fileType = FileTypeDetector.detectFileType(PhotoBufferPool.newInputStream(ByteBuffer.wrap(content)));
+        this.metadata = ImageMetadataReader.readMetadata(file);
+        new FileSystemMetadataReader().read(file, this.metadata);
+        this.metadata.getFirstDirectoryOfType(FileSystemDirectory.class).setObject(Extract.TAG_FILE_CONTENT,
+                ByteBuffer.wrap(content));
+
+        // Photos without embedded thumbnail get one of typical size: thumbnail generation is not measured
+        ExifThumbnailDirectory thumbnailDir = this.metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+        if (thumbnailDir == null) {
+            thumbnailDir = new ExifThumbnailDirectory(0);
+            this.metadata.addDirectory(thumbnailDir);
+        }
+        if (thumbnailDir.getObject(Extract.TAG_THUMBNAIL_DATA) == null)
+            thumbnailDir.setObject(Extract.TAG_THUMBNAIL_DATA, new byte[8 * 1024]);
+    }
+
+    @Benchmark
+    public PhotoMetadata extractMetadata() throws Exception {
+        return new PhotoObject().extractMetadata(this.uri, this.fileType, this.metadata).getMetadata();
+    }
+
+    @Test
+    void run() throws Exception {
+        Collection<RunResult> results = new Runner(
+                new OptionsBuilder().include(PhotoObjectBenchmarkTest.class.getName() + ".extractMetadata")
+                        .forks(Integer.getInteger("benchmark.forks", 1)).addProfiler(GCProfiler.class).build())
+                .run();
+
+        System.out.println("\n----- PhotoObject.extractMetadata -----");
+        System.out.println(String.format("%-48s %12s %16s", "photo", "time (ns)", "allocated (B)"));
+        for (RunResult result : results)
+            System.out.println(String.format("%-48s %12.0f %16.0f", result.getParams().getParam("photo"),
+                    result.getPrimaryResult().getScore(),
+                    result.getSecondaryResults().get("gc.alloc.rate.norm").getScore()));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021-2025 A. Saint-Sever
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://github.com/asaintsever/tinyworld
+ */
+package asaintsever.tinyworld.metadata.extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class SubsampledThumbnailReaderTest {
+
+    @Test
+    void readThumbnailOfLargePhoto() throws IOException {
+        DecodeMemoryBudget budget = new DecodeMemoryBudget(64 * 1024 * 1024);
+        byte[] jpeg = jpeg(4000, 3000, false);
+
+        // Decoded image stays about twice the thumbnail size
+        assertEquals(12, SubsampledThumbnailReader.subsampling(4000, 3000, 160, 160));
+        assertEquals(1, SubsampledThumbnailReader.subsampling(200, 100, 160, 160));
+
+        // Content starting after position 0, left unchanged
+        ByteBuffer content = ByteBuffer.allocate(jpeg.length + 16).position(16).put(jpeg).position(16);
+        BufferedImage thumbnail = image(SubsampledThumbnailReader.read(content, "jpg", null, 160, 160, budget));
+        assertEquals(160, thumbnail.getWidth());
+        assertEquals(120, thumbnail.getHeight());
+        assertEquals(16, content.position());
+
+        // Same thumbnail when reading from stream
+        thumbnail = image(
+                SubsampledThumbnailReader.read(new ByteArrayInputStream(jpeg), "jpg", null, 160, 160, budget));
+        assertEquals(160, thumbnail.getWidth());
+        assertEquals(120, thumbnail.getHeight());
+
+        // Rotated photo (EXIF orientation 6: rotate 90° clockwise)
+        thumbnail = image(SubsampledThumbnailReader.read(ByteBuffer.wrap(jpeg), "png", 6, 160, 160, budget));
+        assertEquals(120, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+
+        // Memory given back once decoded
+        assertEquals(budget.getBudgetBytes(), budget.getAvailableBytes());
+    }
+
+    @Test
+    void detectFullyBufferedPhotos() throws IOException {
+        assertFalse(SubsampledThumbnailReader.isFullyBuffered(ByteBuffer.wrap(jpeg(64, 48, false))));
+        assertTrue(SubsampledThumbnailReader.isFullyBuffered(ByteBuffer.wrap(jpeg(64, 48, true))));
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", png);
+        assertFalse(SubsampledThumbnailReader.isFullyBuffered(ByteBuffer.wrap(png.toByteArray())));
+
+        // Unknown encoding
+        assertTrue(SubsampledThumbnailReader.isFullyBuffered(ByteBuffer.wrap(new byte[64])));
+    }
+
+    @Test
+    void decodeLargerThanBudget() throws IOException {
+        DecodeMemoryBudget budget = new DecodeMemoryBudget(1024 * 1024);
+
+        // Decode needing more than the whole budget runs alone
+        int reservation = budget.acquire(16 * 1024 * 1024);
+        assertEquals(0, budget.getAvailableBytes());
+        budget.release(reservation);
+
+        BufferedImage thumbnail = image(
+                SubsampledThumbnailReader.read(ByteBuffer.wrap(jpeg(4000, 3000, true)), "jpg", null, 160, 160, budget));
+        assertEquals(160, thumbnail.getWidth());
+        assertEquals(budget.getBudgetBytes(), budget.getAvailableBytes());
+    }
+
+    private static byte[] jpeg(int width, int height, boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive)
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), null, null),
+                    param);
+        } finally {
+            writer.dispose();
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static BufferedImage image(byte[] content) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(content));
+    }
+}
@@ -46,6 +46,7 @@ import asaintsever.tinyworld.cfg.Configuration;
 import asaintsever.tinyworld.cfg.Env;
 import asaintsever.tinyworld.cfg.Loader;
 import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.MigrationReport;
 import asaintsever.tinyworld.ui.component.SplashScreen;
 
 /**
@@ -145,7 +146,33 @@ public class UI {
         protected Indexor doInBackground() throws Exception {
             // Store index in user's home directory
             Indexor.setClusterPathHome(Paths.get(Env.TINYWORLD_USER_HOME_PATH.toString(), "index").toString());
-            return new Indexor(this.indexorCfg);
+            Indexor indexor = new Indexor(this.indexorCfg);
+
+            // Upgrade index created by a previous version (index stays available while migrating)
+            try {
+                if (indexor.isConnected() && indexor.metadataIndex().exists()) {
+                    MigrationReport report = indexor.metadataIndex().migrate();
+                    if (report.isMigrated())
+                        logger.info("Index migrated to mapping v" + report.getToVersion() + ": " + report);
+                }
+            } catch (IOException e) {
+                logger.error("Fail to migrate index", e);
+            }
+
+            // Reclaim space of thumbnails no longer referenced, without delaying availability of index
+            if (indexor.isConnected()) {
+                Thread compaction = new Thread(() -> {
+                    try {
+                        indexor.compactThumbnails();
+                    } catch (IOException e) {
+                        logger.warn("Fail to compact thumbnail store: " + e.getMessage());
+                    }
+                }, "thumbnail-compaction");
+                compaction.setDaemon(true);
+                compaction.start();
+            }
+
+            return indexor;
         }
 
         @Override
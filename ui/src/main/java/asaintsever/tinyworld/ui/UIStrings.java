@@ -61,5 +61,10 @@ public interface UIStrings {
 
     final String BROWSE_BUTTON_LABEL = "Browse...";
     final String ALLOW_UPDATE_CHECKBOX_LABEL = "Allow update";
+    final String INCREMENTAL_CHECKBOX_LABEL = "New or modified only";
     final String START_INGEST_BUTTON_LABEL = "Start Ingest";
+
+    final String PHOTOTREE_TITLE = "Photos";
+    final String PHOTOTREE_LOADING_LABEL = "Loading...";
+    final String PHOTOTREE_MORE_LABEL = "More...";
 }
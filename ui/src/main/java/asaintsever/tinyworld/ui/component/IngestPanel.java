@@ -20,11 +20,15 @@
 package asaintsever.tinyworld.ui.component;
 
 import asaintsever.tinyworld.cfg.Configuration;
+import asaintsever.tinyworld.indexor.IBulkLoadSession;
+import asaintsever.tinyworld.indexor.IBulkWriter;
 import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.bulk.BulkItemResult;
 import asaintsever.tinyworld.metadata.extractor.Extract;
 import asaintsever.tinyworld.metadata.extractor.PhotoMetadata;
 import asaintsever.tinyworld.metadata.extractor.PhotoObject;
 import asaintsever.tinyworld.metadata.extractor.PhotoProcessException;
+import asaintsever.tinyworld.metadata.extractor.WatchSettings;
 import asaintsever.tinyworld.ui.MainFrame;
 import asaintsever.tinyworld.ui.UIStrings;
 import asaintsever.tinyworld.ui.event.IndexorListener;
@@ -38,6 +42,8 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @SuppressWarnings("serial")
@@ -51,6 +57,7 @@ public class IngestPanel extends JPanel implements IndexorListener {
     private final JButton browseButton = new JButton(UIStrings.BROWSE_BUTTON_LABEL);
     private final JLabel selectedDirectoryLabel = new JLabel();
     private final JCheckBox allowUpdateCheckBox = new JCheckBox(UIStrings.ALLOW_UPDATE_CHECKBOX_LABEL);
+    private final JCheckBox incrementalCheckBox = new JCheckBox(UIStrings.INCREMENTAL_CHECKBOX_LABEL);
     private final JProgressBar progressBar = new JProgressBar();
     private final JTextArea logArea = new JTextArea(10, 40);
     private final JButton startButton = new JButton(UIStrings.START_INGEST_BUTTON_LABEL);
@@ -75,7 +82,10 @@ public class IngestPanel extends JPanel implements IndexorListener {
         JPanel topPanel = new JPanel(new BorderLayout(10, 10));
         topPanel.add(browseButton, BorderLayout.WEST);
         topPanel.add(selectedDirectoryLabel, BorderLayout.CENTER);
-        topPanel.add(allowUpdateCheckBox, BorderLayout.EAST);
+        JPanel optionsPanel = new JPanel(new GridLayout(2, 1));
+        optionsPanel.add(allowUpdateCheckBox);
+        optionsPanel.add(incrementalCheckBox);
+        topPanel.add(optionsPanel, BorderLayout.EAST);
 
         // Center panel for logging
         logArea.setEditable(false);
@@ -121,7 +131,7 @@ public class IngestPanel extends JPanel implements IndexorListener {
         this.logArea.setText("");
 
         IngestionWorker worker = new IngestionWorker(this.frame.getCfg(), this.selectedDirectory.getAbsolutePath(),
-                this.allowUpdateCheckBox.isSelected());
+                this.allowUpdateCheckBox.isSelected(), this.incrementalCheckBox.isSelected());
         worker.execute();
     }
 
@@ -130,33 +140,89 @@ public class IngestPanel extends JPanel implements IndexorListener {
         private final Configuration cfg;
         private final String path;
         private final boolean allowUpdate;
+        private final boolean incremental;
+        private final boolean watch;
+        private final List<BulkItemResult<PhotoMetadata>> indexingErrors = Collections
+                .synchronizedList(new ArrayList<BulkItemResult<PhotoMetadata>>());
 
-        public IngestionWorker(Configuration cfg, String path, boolean allowUpdate) {
+        public IngestionWorker(Configuration cfg, String path, boolean allowUpdate, boolean incremental) {
             this.cfg = cfg;
             this.path = path;
-            this.allowUpdate = allowUpdate;
+            this.watch = cfg.indexor.watch.enabled;
+            // Watching relies on manifest to skip photos already ingested
+            this.incremental = incremental || this.watch;
+            // Modified photos are already in index when ingesting incrementally
+            this.allowUpdate = allowUpdate || this.incremental;
         }
 
         @Override
         protected Extract.Result doInBackground() throws Exception {
             PhotoMetadata defaultMetadata = new PhotoMetadata().from(this.cfg.indexor.photo.defaultMetadata);
+            int ioWorkers = this.cfg.indexor.ingestion.ioWorkers;
+            int cpuWorkers = this.cfg.indexor.ingestion.cpuWorkers;
+            Extract.setImageMagickWorkers(this.cfg.indexor.ingestion.magickWorkers);
+            Extract.setDecodeMemoryMb(this.cfg.indexor.ingestion.decodeMemoryMb);
 
-            return Extract.exploreFS(this.path, Integer.MAX_VALUE, (uri, fileType, metadata) -> {
-                try {
-                    PhotoObject photo = new PhotoObject(defaultMetadata);
-                    PhotoMetadata mtd = photo.extractMetadata(uri, fileType, metadata).getMetadata();
-                    indexor.photos().add(mtd, allowUpdate);
-                    publish(uri.toString());
-                } catch (IOException | ParseException e) {
-                    throw new PhotoProcessException(e);
-                }
-            });
+            Extract.Result result;
+
+            // Photos are sent by batches: indexing failures are reported once batches are acknowledged.
+            // Index settings are relaxed during ingestion and restored once all batches are acknowledged.
+            try (IBulkLoadSession bulkLoad = indexor.beginBulkLoad();
+                    IBulkWriter<PhotoMetadata> writer = indexor.photos().bulkWriter(this.allowUpdate, res -> {
+                        if (!res.isOk()) {
+                            this.indexingErrors.add(res);
+                            publish("Indexing error: " + res.getDocument().getPath() + " [" + res.getStatus() + "] "
+                                    + res.getErrorMsg());
+                        } else if (res.getStatus() == BulkItemResult.Status.SPOOLED) {
+                            publish("Spooled (will be indexed once cluster is reachable): "
+                                    + res.getDocument().getPath());
+                        }
+                    })) {
+                result = Extract.exploreFS(this.path, Integer.MAX_VALUE, (uri, fileType, metadata) -> {
+                    try {
+                        PhotoObject photo = new PhotoObject(defaultMetadata);
+                        PhotoMetadata mtd = photo.extractMetadata(uri, fileType, metadata).getMetadata();
+                        writer.add(mtd);
+                        publish("Processing: " + uri.toString());
+                    } catch (IOException | ParseException e) {
+                        throw new PhotoProcessException(e);
+                    }
+                }, this.incremental ? indexor.manifest() : null, ioWorkers, cpuWorkers);
+            }
+
+            if (this.incremental) {
+                // Photos not indexed must be processed again next time
+                for (BulkItemResult<PhotoMetadata> error : this.indexingErrors)
+                    indexor.manifest().forget(error.getDocument().getPath().toURI());
+
+                indexor.manifest().save();
+            }
+
+            if (this.watch) {
+                // Keep indexing photos added to ingested directory (replaces directory watched so far)
+                indexor.watch(this.path, defaultMetadata,
+                        new WatchSettings().setDebounceMs(this.cfg.indexor.watch.debounce)
+                                .setReconcileIntervalMs(this.cfg.indexor.watch.reconcileInterval * 1000L)
+                                .setIoWorkers(ioWorkers).setCpuWorkers(cpuWorkers),
+                        res -> {
+                            if (!res.isOk())
+                                SwingUtilities.invokeLater(
+                                        () -> logArea.append("Indexing error: " + res.getDocument().getPath() + " ["
+                                                + res.getStatus() + "] " + res.getErrorMsg() + "\n"));
+                            else
+                                SwingUtilities.invokeLater(
+                                        () -> logArea.append("Indexed: " + res.getDocument().getPath() + "\n"));
+                        });
+                publish("Watching " + this.path + " for new or modified photos");
+            }
+
+            return result;
         }
 
         @Override
         protected void process(List<String> chunks) {
-            for (String uri : chunks) {
-                logArea.append("Processing: " + uri + "\n");
+            for (String msg : chunks) {
+                logArea.append(msg + "\n");
             }
         }
 
@@ -165,9 +231,11 @@ public class IngestPanel extends JPanel implements IndexorListener {
             try {
                 Extract.Result result = get();
                 logArea.append("\n--- Ingestion complete ---\n");
-                logArea.append("Successfully ingested: " + result.getProcessed_ok() + "\n");
+                logArea.append(
+                        "Successfully ingested: " + (result.getProcessed_ok() - this.indexingErrors.size()) + "\n");
                 logArea.append("Skipped: " + result.getSkipped() + "\n");
-                logArea.append("Errors: " + result.getProcessed_nok() + "\n");
+                logArea.append("Unchanged: " + result.getSkipped_unchanged() + "\n");
+                logArea.append("Errors: " + (result.getProcessed_nok() + this.indexingErrors.size()) + "\n");
                 if (result.getProcessed_nok() > 0) {
                     logArea.append("\n--- Errors ---\n");
                     for (String error : result.getErrorMsg()) {
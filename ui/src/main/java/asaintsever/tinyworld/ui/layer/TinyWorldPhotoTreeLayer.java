@@ -21,12 +21,26 @@ package asaintsever.tinyworld.ui.layer;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import asaintsever.tinyworld.cfg.Configuration;
 import asaintsever.tinyworld.indexor.Indexor;
+import asaintsever.tinyworld.indexor.search.PhotoFilter;
+import asaintsever.tinyworld.indexor.search.results.IndexPage;
+import asaintsever.tinyworld.indexor.search.results.PhotoLocation;
+import asaintsever.tinyworld.indexor.search.results.TermsAggregation;
 import asaintsever.tinyworld.ui.MainFrame;
+import asaintsever.tinyworld.ui.UIStrings;
 import asaintsever.tinyworld.ui.event.IndexorListener;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.event.SelectEvent;
@@ -40,10 +54,14 @@ import gov.nasa.worldwind.util.tree.BasicTreeAttributes;
 import gov.nasa.worldwind.util.tree.BasicTreeLayout;
 import gov.nasa.worldwind.util.tree.BasicTreeModel;
 import gov.nasa.worldwind.util.tree.BasicTreeNode;
+import gov.nasa.worldwind.util.tree.TreeNode;
+import gov.nasa.worldwind.util.tree.TreePath;
 
 /**
- *
- *
+ * Photo tree built lazily: only top-level buckets of the configured search template are loaded at
+ * startup. Children of a node are fetched asynchronously when the node is expanded, either from an
+ * aggregation narrowed on the node's buckets or, at last level, from a search returning pages of
+ * photos.
  */
 public class TinyWorldPhotoTreeLayer extends RenderableLayer implements SelectListener, IndexorListener {
 
@@ -52,10 +70,24 @@ public class TinyWorldPhotoTreeLayer extends RenderableLayer implements SelectLi
     protected final static String LAYER_NAME = "TinyWorld Photo Tree";
     protected final static String ICON_PATH = "icon/tinyworldicon.jpg";
 
+    protected final static String DEFAULT_SEARCH_TEMPLATE = "year_month";
+    protected final static int DEFAULT_PAGE_SIZE = 100;
+
+    // Key of photo id in photo nodes
+    public final static String PHOTO_ID_KEY = "asaintsever.tinyworld.ui.layer.PhotoId";
+
+    // Search templates aggregations
+    protected final static String COUNTRY_AGGREGATION = "country";
+    protected final static String YEAR_AGGREGATION = "photo_year";
+    protected final static String MONTH_AGGREGATION = "photo_month";
+
     protected MainFrame frame;
     protected BasicTree photoTree;
     protected Indexor indexor;
 
+    protected String searchTemplate = DEFAULT_SEARCH_TEMPLATE;
+    protected int pageSize = DEFAULT_PAGE_SIZE;
+
     public TinyWorldPhotoTreeLayer(final MainFrame frame) {
         if (frame == null || frame.getWwd() == null) {
             String msg = Logging.getMessage("nullValue.WorldWindow");
@@ -97,6 +129,14 @@ public class TinyWorldPhotoTreeLayer extends RenderableLayer implements SelectLi
             }
             break;
         case SelectEvent.LEFT_CLICK:
+            // Next page of photos is loaded when reaching the end of the current one
+            if (node instanceof MorePhotosNode) {
+                this.loadNextPhotos((MorePhotosNode) node);
+                break;
+            }
+            if (node instanceof PlaceholderNode)
+                break;
+
             // Only consider leaf nodes. Allow for easier selection without having to precisely target the tick
             // box on the node's left side
             if (node.isLeaf()) {
@@ -129,10 +169,18 @@ public class TinyWorldPhotoTreeLayer extends RenderableLayer implements SelectLi
             this.photoTree = null;
         }
 
-        this.photoTree = new BasicTree();
+        Configuration cfg = this.frame.getCfg();
+        if (cfg != null && cfg.ui.photoTree != null) {
+            if (cfg.ui.photoTree.filter != null && cfg.ui.photoTree.filter.template != null)
+                this.searchTemplate = cfg.ui.photoTree.filter.template;
+            if (cfg.ui.photoTree.pageSize > 0)
+                this.pageSize = cfg.ui.photoTree.pageSize;
+        }
+
+        this.photoTree = new LazyPhotoTree();
 
         BasicTreeLayout layout = new BasicTreeLayout(this.photoTree, 40, 140);
-        layout.getFrame().setFrameTitle("Photos");
+        layout.getFrame().setFrameTitle(UIStrings.PHOTOTREE_TITLE);
         layout.getFrame().setSize(Size.fromPixels((int) (this.frame.getGlobe().getGLCanvas().getWidth() * 0.18),
                 (int) (this.frame.getGlobe().getGLCanvas().getHeight() * 0.7))); // Depending on width/height of Globe
                                                                                  // GL canvas
@@ -159,42 +207,235 @@ public class TinyWorldPhotoTreeLayer extends RenderableLayer implements SelectLi
 
         BasicTreeModel model = new BasicTreeModel();
 
-        BasicTreeNode root = new BasicTreeNode("Root");
+        // Root node holds the top-level buckets, loaded when expanded below
+        PhotoTreeNode root = new PhotoTreeNode("Root", new PhotoFilter(), new ArrayList<String>(), false);
         model.setRoot(root);
 
         if (this.indexor.isConnected()) {
             try {
                 if (!this.indexor.metadataIndex().exists())
                     this.indexor.metadataIndex().create();
-
-                // TODO default query on Indexor and dynamic photo tree construction (default query criteria to
-                // be added in config)
-
             } catch (IOException e) {
                 logger.error(e.getMessage(), e);
             }
         }
 
-        /*
-         * BasicTreeNode child = new BasicTreeNode("Child 1", ICON_PATH);
-         * child.setDescription("This is a child node"); child.addChild(new BasicTreeNode("Subchild 1,1"));
-         * child.addChild(new BasicTreeNode("Subchild 1,2")); child.addChild(new
-         * BasicTreeNode("Subchild 1,3", ICON_PATH)); root.addChild(child); child = new
-         * BasicTreeNode("Child 2", ICON_PATH); child.addChild(new BasicTreeNode("Subchild 2,1"));
-         * child.addChild(new BasicTreeNode("Subchild 2,2")); child.addChild(new
-         * BasicTreeNode("Subchild 2,3")); root.addChild(child); child = new BasicTreeNode("Child 3");
-         * child.addChild(new BasicTreeNode("Subchild 3,1")); child.addChild(new
-         * BasicTreeNode("Subchild 3,2")); child.addChild(new BasicTreeNode("Subchild 3,3"));
-         * root.addChild(child);
-         */
-
         this.photoTree.setModel(model);
 
-        this.photoTree.expandPath(root.getPath());
+        if (this.indexor.isConnected())
+            this.photoTree.expandPath(root.getPath());
 
         // Add tree layout not tree itself (else, in selected(SelectEvent event) method,
         // event.getTopPickedObject().getParentLayer() will be null whereas we want to filter on our layer)
         this.addRenderable(this.photoTree.getLayout());
     }
 
+    /**
+     * Load children of node, once
+     */
+    protected void loadChildren(PhotoTreeNode node) {
+        if (node.loaded || node.loading || this.indexor == null || !this.indexor.isConnected())
+            return;
+
+        node.loading = true;
+        CompletableFuture<Void> loading;
+
+        if (node.lastLevel) {
+            loading = this.indexor
+                    .photosAsync().search(Indexor.getFilterQuery(node.filter), 0, this.pageSize, PhotoLocation.FIELDS,
+                            null, PhotoLocation.class)
+                    .thenAccept(page -> this.updateTree(() -> this.addPhotos(node, page)));
+        } else {
+            // Aggregation narrowed on node's buckets: only its path (and children buckets) is returned
+            loading = this.indexor.photosAsync().getAggregations(this.searchTemplate, node.filter, null)
+                    .thenAccept(aggregations -> this.updateTree(
+                            () -> this.addBuckets(node, getChildAggregation(aggregations, node.bucketKeys))));
+        }
+
+        loading.exceptionally(e -> {
+            logger.error("Failed to load photo tree node " + node.getPath(), e);
+            // Allow new attempt on next expansion
+            this.updateTree(() -> node.loading = false);
+            return null;
+        });
+    }
+
+    protected void loadNextPhotos(MorePhotosNode node) {
+        if (node.loading)
+            return;
+
+        node.loading = true;
+
+        this.indexor.photosAsync().next(node.page, PhotoLocation.class)
+                .thenAccept(page -> this.updateTree(() -> this.addPhotos((PhotoTreeNode) node.getParent(), page)))
+                .exceptionally(e -> {
+                    logger.error("Failed to load next photos of " + node.getParent().getPath(), e);
+                    this.updateTree(() -> node.loading = false);
+                    return null;
+                });
+    }
+
+    protected void addBuckets(PhotoTreeNode node, TermsAggregation aggregation) {
+        node.removeAllChildren();
+
+        if (aggregation != null) {
+            for (TermsAggregation.Bucket bucket : aggregation.getBuckets()) {
+                List<String> bucketKeys = new ArrayList<String>(node.bucketKeys);
+                bucketKeys.add(bucket.getKey());
+
+                node.addChild(new PhotoTreeNode(getBucketLabel(aggregation.getName(), bucket.getKey()),
+                        narrow(node.filter, aggregation.getName(), bucket.getKey()), bucketKeys,
+                        bucket.getSubAggregations().isEmpty()));
+            }
+        }
+
+        node.loaded = true;
+        node.loading = false;
+    }
+
+    protected void addPhotos(PhotoTreeNode node, IndexPage<PhotoLocation> page) {
+        // Remove placeholder (first page) or "more" node (next pages)
+        List<TreeNode> placeholders = new ArrayList<TreeNode>();
+        for (TreeNode child : node.getChildren()) {
+            if (child instanceof PlaceholderNode)
+                placeholders.add(child);
+        }
+        placeholders.forEach(node::removeChild);
+
+        for (PhotoLocation photo : page.get()) {
+            BasicTreeNode leaf = new BasicTreeNode(getPhotoLabel(photo));
+            leaf.setValue(PHOTO_ID_KEY, photo.getId());
+            if (photo.getTakenDate() != null)
+                leaf.setDescription(photo.getTakenDate().toString());
+            node.addChild(leaf);
+        }
+
+        if (!page.isLastPage() && !page.get().isEmpty())
+            node.addChild(new MorePhotosNode(page));
+
+        node.loaded = true;
+        node.loading = false;
+    }
+
+    /**
+     * Apply changes to tree model on the event dispatch thread, where the tree is rendered
+     */
+    protected void updateTree(Runnable update) {
+        SwingUtilities.invokeLater(() -> {
+            update.run();
+            this.photoTree.firePropertyChange(AVKey.TREE, null, this.photoTree);
+            this.frame.getWwd().redraw();
+        });
+    }
+
+    /**
+     * Aggregation holding the children buckets of the bucket path
+     */
+    protected static TermsAggregation getChildAggregation(List<TermsAggregation> aggregations,
+            List<String> bucketKeys) {
+        for (String key : bucketKeys) {
+            if (aggregations == null || aggregations.isEmpty())
+                return null;
+
+            TermsAggregation.Bucket bucket = aggregations.get(0).getBuckets().stream()
+                    .filter(b -> key.equals(b.getKey())).findFirst().orElse(null);
+            if (bucket == null)
+                return null; // Index updated since parent node was loaded
+
+            aggregations = bucket.getSubAggregations();
+        }
+
+        return aggregations == null || aggregations.isEmpty() ? null : aggregations.get(0);
+    }
+
+    /**
+     * Copy of filter narrowed on bucket
+     */
+    protected static PhotoFilter narrow(PhotoFilter filter, String aggregation, String key) {
+        PhotoFilter narrowed = new PhotoFilter(filter);
+
+        switch (aggregation) {
+        case COUNTRY_AGGREGATION:
+            return narrowed.setCountries(List.of(key));
+        case YEAR_AGGREGATION:
+            return narrowed.setYear(Integer.valueOf(key));
+        case MONTH_AGGREGATION:
+            return narrowed.setMonth(Integer.valueOf(key));
+        default:
+            logger.warn("Unknown aggregation '" + aggregation + "': photos of bucket '" + key + "' not narrowed");
+            return narrowed;
+        }
+    }
+
+    protected static String getBucketLabel(String aggregation, String key) {
+        if (MONTH_AGGREGATION.equals(aggregation)) {
+            try {
+                return Month.of(Integer.parseInt(key)).getDisplayName(TextStyle.FULL, Locale.getDefault());
+            } catch (RuntimeException e) {
+                return key;
+            }
+        }
+
+        return key;
+    }
+
+    protected static String getPhotoLabel(PhotoLocation photo) {
+        if (photo.getPath() == null)
+            return photo.getId();
+
+        String path = photo.getPath().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Tree loading children of nodes when they are expanded
+     */
+    protected class LazyPhotoTree extends BasicTree {
+        @Override
+        public void expandPath(TreePath path) {
+            super.expandPath(path);
+
+            TreeNode node = this.getNode(path);
+            if (node instanceof PhotoTreeNode)
+                loadChildren((PhotoTreeNode) node);
+        }
+    }
+
+    /**
+     * Bucket node (or root). Holds a placeholder child until its children are loaded.
+     */
+    protected static class PhotoTreeNode extends BasicTreeNode {
+        protected final PhotoFilter filter;
+        protected final List<String> bucketKeys; // From top-level bucket to this one
+        protected final boolean lastLevel; // Children are photos
+        protected boolean loaded;
+        protected boolean loading;
+
+        public PhotoTreeNode(String text, PhotoFilter filter, List<String> bucketKeys, boolean lastLevel) {
+            super(text);
+            this.filter = filter;
+            this.bucketKeys = bucketKeys;
+            this.lastLevel = lastLevel;
+            this.addChild(new PlaceholderNode(UIStrings.PHOTOTREE_LOADING_LABEL));
+        }
+    }
+
+    protected static class PlaceholderNode extends BasicTreeNode {
+        public PlaceholderNode(String text) {
+            super(text);
+        }
+    }
+
+    /**
+     * Last child of a bucket node whose photos are not all loaded: next page is loaded when selected
+     */
+    protected static class MorePhotosNode extends PlaceholderNode {
+        protected final IndexPage<PhotoLocation> page;
+        protected boolean loading;
+
+        public MorePhotosNode(IndexPage<PhotoLocation> page) {
+            super(UIStrings.PHOTOTREE_MORE_LABEL);
+            this.page = page;
+        }
+    }
 }